@@ -0,0 +1,135 @@
+package com.hattonky.inventory.data.images;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.hattonky.inventory.data.databases.AppDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Throughput of re-encoding a batch of 500 camera-sized photos on the re-encoder's pool.
+ * Opt-in, as it takes minutes: run with
+ * {@code -Pandroid.testInstrumentationRunnerArguments.benchmark=true}. The result is reported
+ * as instrumentation status.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageReencoderBenchmark {
+
+    private static final int IMAGES = 500;
+    private static final int CHUNK = 50;  // Images on disk at a time, so the batch fits on small devices
+
+    private File directory;
+    private ExecutorService pool;
+
+    @Before
+    public void setUp() {
+        assumeTrue("true".equals(InstrumentationRegistry.getArguments().getString("benchmark")));
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        directory = new File(context.getCacheDir(), "reencode-benchmark");
+        directory.mkdirs();
+        pool = ImageReencoder.newBackgroundPool("image-reencode",
+                Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1)));
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        deleteContents();
+    }
+
+    @Test
+    public void benchmarkBatchReencode() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        ImageReencoder reencoder = new ImageReencoder(AppDatabase.getInstance(context).itemDao(),
+                directory, ImageReencoder.Config.DEFAULT, pool);
+        File capture = writeCapture(new File(context.getCacheDir(), "capture.jpg"));
+
+        int processed = 0;
+        long bytesIn = 0;
+        long bytesOut = 0;
+        long elapsedNanos = 0;
+        try {
+            for (int done = 0; done < IMAGES; done += CHUNK) {
+                List<File> batch = new ArrayList<>(CHUNK);
+                for (int i = done; i < done + CHUNK; i++) {
+                    File copy = new File(directory, "IMG_" + i + ".jpg");
+                    Files.copy(capture.toPath(), copy.toPath());
+                    batch.add(copy);
+                }
+                ImageReencoder.Stats stats = reencoder.reencodeBatch(batch);
+                processed += stats.imagesProcessed;
+                bytesIn += stats.bytesIn;
+                bytesOut += stats.bytesOut;
+                elapsedNanos += stats.elapsedNanos;
+                deleteContents();
+            }
+        } finally {
+            capture.delete();
+        }
+
+        assertEquals(IMAGES, processed);
+        assertTrue(bytesOut < bytesIn);
+        ImageReencoder.Stats total = new ImageReencoder.Stats(processed, bytesIn, bytesOut, elapsedNanos);
+        Bundle status = new Bundle();
+        status.putString("reencode", total.toString());
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+    }
+
+    // A 12MP JPEG with sensor-like noise, so it compresses about as badly as a real capture
+    private static File writeCapture(File file) throws IOException {
+        int width = 4000;
+        int height = 3000;
+        Random random = new Random(42);
+        int[] row = new int[width];
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        try {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int base = (x + y) * 255 / (width + height);
+                    int noise = random.nextInt(32);
+                    int value = Math.min(255, base + noise);
+                    row[x] = 0xFF000000 | value << 16 | (255 - value) << 8 | noise * 4;
+                }
+                bitmap.setPixels(row, 0, width, 0, y, width, 1);
+            }
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 95, out);
+            }
+        } finally {
+            bitmap.recycle();
+        }
+        return file;
+    }
+
+    private void deleteContents() {
+        File[] files = directory != null ? directory.listFiles() : null;
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+}
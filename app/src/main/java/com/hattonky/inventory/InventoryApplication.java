@@ -0,0 +1,18 @@
+package com.hattonky.inventory;
+
+import android.app.Application;
+
+import com.hattonky.inventory.data.Session;
+
+/**
+ * Starts loading the session as soon as the process starts, so the first screen finds it in
+ * memory instead of reading preferences on the main thread.
+ */
+public class InventoryApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Session.getInstance(this);
+    }
+}
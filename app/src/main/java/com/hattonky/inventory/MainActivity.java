@@ -1,8 +1,6 @@
 package com.hattonky.inventory;
 
-import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.AdapterView;
@@ -27,8 +25,16 @@ import com.hattonky.inventory.activities.ImageGalleryActivity;
 import com.hattonky.inventory.activities.LoginActivity;
 import com.hattonky.inventory.activities.ServerConfigActivity;
 import com.hattonky.inventory.adapters.ItemAdapter;
+import com.hattonky.inventory.data.ApiClient;
+import com.hattonky.inventory.data.Session;
+import com.hattonky.inventory.data.images.ImageUploader;
 import com.hattonky.inventory.data.model.Category;
 import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.sync.ChangeFeed;
+import com.hattonky.inventory.data.sync.DeltaSync;
+import com.hattonky.inventory.data.sync.OutboxDispatcher;
+import com.hattonky.inventory.data.sync.SyncJobService;
+import com.hattonky.inventory.repositories.UserRepository;
 import com.hattonky.inventory.viewmodels.CategoryViewModel;
 import com.hattonky.inventory.viewmodels.ItemViewModel;
 
@@ -48,20 +54,28 @@ public class MainActivity extends AppCompatActivity implements ItemAdapter.OnIte
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        SharedPreferences prefs = getSharedPreferences("auth", Context.MODE_PRIVATE);
-        String serverUrl = prefs.getString("server_url", null);
-        String jwt = prefs.getString("jwt", null);
-        if (serverUrl == null || serverUrl.isEmpty()) {
+        // Loaded in the background at startup; by now usually a field read
+        Session session = Session.getInstance(this);
+        if (session.getServerUrls().isEmpty()) {
             startActivity(new Intent(this, ServerConfigActivity.class));
             finish();
             return;
-        } else if (jwt == null || jwt.isEmpty()) {
+        } else if (!session.isLoggedIn()) {
             startActivity(new Intent(this, LoginActivity.class));
             finish();
             return;
         }
         setContentView(R.layout.activity_main);
 
+        // Send any changes left over from a previous run, e.g. if the app was killed while offline
+        OutboxDispatcher.getInstance(this).requestDispatch();
+        // Pick up changes made on other devices, continuing from where the last pull stopped
+        DeltaSync.getInstance(this).requestSync();
+        // Upload images the server doesn't have yet, continuing uploads that were cut off
+        ImageUploader.getInstance(this).enqueueAll();
+        // Keep syncing and cleaning up in the background when the app is closed
+        SyncJobService.schedule(this);
+
         // Initialize Toolbar and Drawer
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
@@ -160,8 +174,9 @@ public class MainActivity extends AppCompatActivity implements ItemAdapter.OnIte
                 return true;
             } else if (id == R.id.nav_logout) {
                 // Clear auth data and go to LoginActivity
-                SharedPreferences prefs = getSharedPreferences("auth", Context.MODE_PRIVATE);
-                prefs.edit().remove("jwt").remove("role").apply();
+                Session.getInstance(this).logout();
+                ApiClient.clearResponseCache(this);
+                UserRepository.getInstance(getApplication()).clear();
                 Intent logoutIntent = new Intent(MainActivity.this, LoginActivity.class);
                 logoutIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                 startActivity(logoutIntent);
@@ -195,6 +210,19 @@ public class MainActivity extends AppCompatActivity implements ItemAdapter.OnIte
 
 
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Receive changes from other devices as they happen while the list is visible
+        ChangeFeed.getInstance(this).start();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        ChangeFeed.getInstance(this).stop();
+    }
+
     @Override
     public void onItemClick(Item item) {
         // Navigate to AddEditItemActivity with the selected item
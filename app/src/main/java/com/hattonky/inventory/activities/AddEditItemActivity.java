@@ -14,15 +14,21 @@ import android.widget.Spinner;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.hattonky.inventory.R;
+import com.hattonky.inventory.adapters.AttachmentAdapter;
+import com.hattonky.inventory.data.images.ImageImporter;
 import com.hattonky.inventory.data.model.Category;
 import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.ItemImage;
 import com.hattonky.inventory.viewmodels.CategoryViewModel;
 import com.hattonky.inventory.viewmodels.ItemViewModel;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -37,7 +43,9 @@ public class AddEditItemActivity extends AppCompatActivity {
     private EditText editTextName, editTextDescription;
     private Spinner spinnerCategory, spinnerItem;
     private ImageView imageViewItem;
-    private Button buttonSave, buttonCaptureChooseImage, buttonAddNewItem;
+    private Button buttonSave, buttonCaptureChooseImage, buttonAddNewItem, buttonAddAttachment;
+    private RecyclerView recyclerViewAttachments;
+    private AttachmentAdapter attachmentAdapter;
 
     // ViewModels for data handling
     private ItemViewModel itemViewModel;
@@ -47,6 +55,9 @@ public class AddEditItemActivity extends AppCompatActivity {
     private int itemId = -1;  // -1 indicates a new item
     private String selectedCategory;
     private String imagePath;
+    private boolean pendingAttachment;  // True while choosing an additional photo rather than the primary one
+    private LiveData<List<ItemImage>> attachments;  // Attached photos of the item being edited, if any
+    private int attachmentsItemId = -1;  // Item whose attachments are currently observed
 
     // Request codes for activity results
     private static final int CAMERA_REQUEST_CODE = 2001;
@@ -74,6 +85,8 @@ public class AddEditItemActivity extends AppCompatActivity {
         buttonSave = findViewById(R.id.button_save);
         buttonCaptureChooseImage = findViewById(R.id.button_capture_image);
         buttonAddNewItem = findViewById(R.id.button_add_new_item);
+        buttonAddAttachment = findViewById(R.id.button_add_attachment);
+        recyclerViewAttachments = findViewById(R.id.recycler_view_attachments);
 
         // Initialize ViewModels
         itemViewModel = new ViewModelProvider(this).get(ItemViewModel.class);
@@ -82,8 +95,22 @@ public class AddEditItemActivity extends AppCompatActivity {
         // Set up the category spinner
         setupCategorySpinner();
 
+        // Set up the attachment strip; it is only populated once an existing item is shown
+        setupAttachmentStrip();
+
         // Set up listeners for buttons and spinners
-        buttonCaptureChooseImage.setOnClickListener(v -> showImageOptionsDialog());
+        buttonCaptureChooseImage.setOnClickListener(v -> {
+            pendingAttachment = false;
+            showImageOptionsDialog();
+        });
+        buttonAddAttachment.setOnClickListener(v -> {
+            if (itemId == -1) {
+                Toast.makeText(this, "Save the item before adding more photos", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            pendingAttachment = true;
+            showImageOptionsDialog();
+        });
         buttonSave.setOnClickListener(v -> saveItem());
         buttonAddNewItem.setOnClickListener(v -> clearFieldsForNewItem());
 
@@ -243,6 +270,7 @@ public class AddEditItemActivity extends AppCompatActivity {
                     editTextDescription.setText(item.getDescription());
                     imagePath = item.getImagePath();
                     Glide.with(this).load(imagePath).into(imageViewItem);
+                    showAttachments(item.getId());
                     break;
                 }
             }
@@ -263,6 +291,7 @@ public class AddEditItemActivity extends AppCompatActivity {
                     imagePath = item.getImagePath();
                     Glide.with(this).load(imagePath).into(imageViewItem);
                     itemId = item.getId();  // Set the itemId for editing
+                    showAttachments(itemId);
                     break;
                 }
             }
@@ -355,6 +384,7 @@ public class AddEditItemActivity extends AppCompatActivity {
         imagePath = null;
         spinnerItem.setSelection(0);
         itemId = -1;
+        hideAttachments();
         setTitle("Add Item");
     }
 
@@ -370,20 +400,120 @@ public class AddEditItemActivity extends AppCompatActivity {
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
 
+        boolean forAttachment = pendingAttachment;
+        pendingAttachment = false;
+
         if (resultCode == RESULT_OK && data != null) {
+            String chosenPath = null;
             if (requestCode == CAMERA_REQUEST_CODE) {
-                imagePath = data.getStringExtra("imagePath");
-                Glide.with(this).load(imagePath).into(imageViewItem);
+                chosenPath = data.getStringExtra("imagePath");
             } else if (requestCode == GALLERY_REQUEST_CODE) {
                 Uri selectedImageUri = data.getData();
                 if (selectedImageUri != null) {
-                    imagePath = selectedImageUri.toString();
-                    Glide.with(this).load(imagePath).into(imageViewItem);
+                    // Use the picked URI until the copy into the image store finishes
+                    chosenPath = selectedImageUri.toString();
+                    importGalleryImage(selectedImageUri);
                 }
             } else if (requestCode == INVENTORY_REQUEST_CODE) {
-                imagePath = data.getStringExtra("imagePath");
-                Glide.with(this).load(imagePath).into(imageViewItem);
+                chosenPath = data.getStringExtra("imagePath");
+            }
+
+            if (chosenPath != null) {
+                if (forAttachment && itemId != -1) {
+                    // Add to the item's photo list; the strip updates through LiveData
+                    itemViewModel.addImage(itemId, chosenPath);
+                } else {
+                    imagePath = chosenPath;
+                    Glide.with(this).load(imagePath).into(imageViewItem);
+                }
             }
         }
     }
+
+    /**
+     * Sets up the horizontal strip of attached photos.
+     * Tapping a photo makes it the item's primary image; long-pressing removes it.
+     */
+    private void setupAttachmentStrip() {
+        attachmentAdapter = new AttachmentAdapter(new AttachmentAdapter.OnAttachmentClickListener() {
+            @Override
+            public void onAttachmentClick(ItemImage image) {
+                imagePath = image.getPath();
+                Glide.with(AddEditItemActivity.this).load(imagePath).into(imageViewItem);
+                attachmentAdapter.setPrimaryPath(imagePath);
+                itemViewModel.setPrimaryImage(image.getItemId(), imagePath);
+            }
+
+            @Override
+            public void onAttachmentLongClick(ItemImage image) {
+                new AlertDialog.Builder(AddEditItemActivity.this)
+                        .setTitle("Remove Photo")
+                        .setMessage("Remove this photo from the item?")
+                        .setPositiveButton("Remove", (dialog, which) -> itemViewModel.removeImage(image))
+                        .setNegativeButton("Cancel", null)
+                        .show();
+            }
+        });
+        recyclerViewAttachments.setAdapter(attachmentAdapter);
+    }
+
+    /**
+     * Starts observing the photos attached to an item. The query only runs once an existing
+     * item is shown, so adding a new item never touches the item_images table.
+     *
+     * @param itemId The ID of the item being shown.
+     */
+    private void showAttachments(int itemId) {
+        attachmentAdapter.setPrimaryPath(imagePath);
+        if (itemId == attachmentsItemId) {
+            return;  // Already observing this item
+        }
+        hideAttachments();
+        attachmentsItemId = itemId;
+        attachments = itemViewModel.getImagesForItem(itemId);
+        attachments.observe(this, images -> {
+            attachmentAdapter.setImages(images);
+            recyclerViewAttachments.setVisibility(images.isEmpty() ? View.GONE : View.VISIBLE);
+        });
+    }
+
+    /**
+     * Stops observing attachments and hides the strip.
+     */
+    private void hideAttachments() {
+        if (attachments != null) {
+            attachments.removeObservers(this);
+            attachments = null;
+        }
+        attachmentsItemId = -1;
+        attachmentAdapter.setImages(new ArrayList<>());
+        recyclerViewAttachments.setVisibility(View.GONE);
+    }
+
+    /**
+     * Copies a picked gallery image into the app's image store in the background.
+     * Once the copy is done, the item switches from the content:// URI to the local file.
+     *
+     * @param selectedImageUri The URI returned by the gallery picker.
+     */
+    private void importGalleryImage(Uri selectedImageUri) {
+        String pickedPath = selectedImageUri.toString();
+        ImageImporter.getInstance(this).importImage(selectedImageUri, new ImageImporter.Callback() {
+            @Override
+            public void onImported(String importedPath) {
+                runOnUiThread(() -> {
+                    // Only switch if the user hasn't picked another image in the meantime
+                    if (pickedPath.equals(imagePath)) {
+                        imagePath = importedPath;
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                runOnUiThread(() -> Toast.makeText(AddEditItemActivity.this,
+                        "Could not copy image, using the gallery original", Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
 }
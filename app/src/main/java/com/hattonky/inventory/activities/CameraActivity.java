@@ -22,6 +22,7 @@ import androidx.core.app.ActivityCompat;
 import com.google.common.util.concurrent.ListenableFuture;
 import android.Manifest;
 import com.hattonky.inventory.R;
+import com.hattonky.inventory.data.images.ImageStore;
 
 import java.io.File;
 import java.util.concurrent.ExecutionException;
@@ -142,12 +143,7 @@ public class CameraActivity extends AppCompatActivity {
      * @return The File object representing the output directory.
      */
     private File getOutputDirectory() {
-        File mediaDir = getExternalMediaDirs()[0];  // Get external media directory (e.g., SD card)
-        File appDir = new File(mediaDir, getResources().getString(R.string.app_name));  // Create a subdirectory for the app
-        if (!appDir.exists()) {
-            appDir.mkdirs();  // Create the directory if it doesn't exist
-        }
-        return appDir;
+        return ImageStore.getImageDirectory(this);
     }
 
     /**
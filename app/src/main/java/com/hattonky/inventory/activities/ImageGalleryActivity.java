@@ -2,6 +2,7 @@ package com.hattonky.inventory.activities;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
@@ -10,9 +11,14 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.hattonky.inventory.R;
 import com.hattonky.inventory.adapters.ImageAdapter;
+import com.hattonky.inventory.data.images.ImageStore;
+import com.hattonky.inventory.data.images.ThumbnailStore;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * ImageGalleryActivity provides a grid view of images that the user has captured.
@@ -20,9 +26,14 @@ import java.util.Arrays;
  */
 public class ImageGalleryActivity extends AppCompatActivity {
 
+    private static final String TAG = "ImageGalleryActivity";
+
     private RecyclerView recyclerViewImages;  // RecyclerView for displaying images
     private ImageAdapter imageAdapter;        // Adapter to handle the display and interaction of images
 
+    // Background thread for compacting thumbnails and listing the image directory
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -35,25 +46,54 @@ public class ImageGalleryActivity extends AppCompatActivity {
         recyclerViewImages.setLayoutManager(new GridLayoutManager(this, 3));
 
         // Get the directory where images are saved (app-specific external storage directory)
-        File imageDirectory = new File(getExternalMediaDirs()[0], getResources().getString(R.string.app_name));
+        File imageDirectory = ImageStore.getImageDirectory(this);
 
-        // Check if the image directory exists
-        if (imageDirectory.exists()) {
-            // Get all the image files from the directory
+        // List the images off the main thread. Orphaned images are collected by the maintenance
+        // job, never here, so nothing this screen offers is deleted while it is open.
+        executorService.execute(() -> {
+            compactThumbnails();
             File[] imageFiles = imageDirectory.listFiles();
+            runOnUiThread(() -> showImages(imageFiles));
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        executorService.shutdownNow();  // Stop any listing still in progress
+    }
 
-            // If there are images available, set them to the adapter
-            if (imageFiles != null && imageFiles.length > 0) {
-                // Initialize the adapter with the list of images and a callback for image selection
-                imageAdapter = new ImageAdapter(Arrays.asList(imageFiles), this::onImageSelected);
-                recyclerViewImages.setAdapter(imageAdapter);  // Set the adapter to the RecyclerView
-            } else {
-                // If no images are found, display a toast message
-                Toast.makeText(this, "No images found", Toast.LENGTH_SHORT).show();
+    /**
+     * Drops thumbnails of deleted images from the thumbnail atlas once enough of it is dead.
+     */
+    private void compactThumbnails() {
+        try {
+            long reclaimed = ThumbnailStore.getInstance(this).compactIfNeeded();
+            if (reclaimed > 0) {
+                Log.d(TAG, "Thumbnail atlas compaction reclaimed " + reclaimed + " bytes");
             }
+        } catch (IOException e) {
+            Log.w(TAG, "Thumbnail atlas unavailable", e);
+        }
+    }
+
+    /**
+     * Displays the given image files in the grid, or a message if there are none.
+     *
+     * @param imageFiles The image files found in the image directory.
+     */
+    private void showImages(File[] imageFiles) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        // If there are images available, set them to the adapter
+        if (imageFiles != null && imageFiles.length > 0) {
+            // Initialize the adapter with the list of images and a callback for image selection
+            imageAdapter = new ImageAdapter(Arrays.asList(imageFiles), this::onImageSelected);
+            recyclerViewImages.setAdapter(imageAdapter);  // Set the adapter to the RecyclerView
         } else {
-            // If the image directory does not exist, display a toast message
-            Toast.makeText(this, "Image directory does not exist", Toast.LENGTH_SHORT).show();
+            // If no images are found, display a toast message
+            Toast.makeText(this, "No images found", Toast.LENGTH_SHORT).show();
         }
     }
 
@@ -64,6 +104,9 @@ public class ImageGalleryActivity extends AppCompatActivity {
      * @param imageFile The selected image file.
      */
     private void onImageSelected(File imageFile) {
+        // Restart the collector's grace period, so a released image is kept until the item is saved
+        imageFile.setLastModified(System.currentTimeMillis());
+
         // Prepare an intent to return the result to the calling activity
         Intent resultIntent = new Intent();
         resultIntent.putExtra("imagePath", imageFile.getAbsolutePath());  // Pass the selected image's path
@@ -1,24 +1,21 @@
 package com.hattonky.inventory.activities;
 
-import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 
 import com.hattonky.inventory.MainActivity;
 import com.hattonky.inventory.R;
-import com.hattonky.inventory.data.ApiClient;
-import org.json.JSONObject;
+import com.hattonky.inventory.viewmodels.AuthViewModel;
 
 public class LoginActivity extends AppCompatActivity {
     private EditText usernameOrEmailEditText, passwordEditText;
     private Button loginButton, registerButton;
+    private AuthViewModel authViewModel;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -29,6 +26,25 @@ public class LoginActivity extends AppCompatActivity {
         loginButton = findViewById(R.id.buttonLogin);
         registerButton = findViewById(R.id.buttonRegister);
 
+        authViewModel = new ViewModelProvider(this).get(AuthViewModel.class);
+        authViewModel.getResult().observe(this, result -> {
+            if (result == null) {
+                return;
+            }
+            authViewModel.consumeResult();
+            if (result.success) {
+                // Go to MainActivity (or wherever appropriate)
+                Toast.makeText(this, "Login successful!", Toast.LENGTH_SHORT).show();
+                Intent intent = new Intent(LoginActivity.this, MainActivity.class);
+                startActivity(intent);
+                finish();
+            } else if (result.error == null) {
+                Toast.makeText(this, "Login failed: Invalid response", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, "Login failed: " + result.error.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+
         loginButton.setOnClickListener(v -> {
             String usernameOrEmail = usernameOrEmailEditText.getText().toString().trim();
             String password = passwordEditText.getText().toString().trim();
@@ -36,36 +52,8 @@ public class LoginActivity extends AppCompatActivity {
                 Toast.makeText(this, "Please enter username/email and password", Toast.LENGTH_SHORT).show();
                 return;
             }
-            ApiClient.login(this, usernameOrEmail, password, new ApiClient.ApiCallback() {
-                @Override
-                public void onSuccess(String response) {
-                    // Parse JWT from response (assume JSON: { token: "...", role: "..." })
-                    try {
-                        JSONObject json = new JSONObject(response);
-                        String token = json.getString("token");
-                        String role = json.optString("role", "user");
-                        SharedPreferences prefs = getSharedPreferences("auth", Context.MODE_PRIVATE);
-                        prefs.edit().putString("jwt", token).putString("role", role).apply();
-                        // Go to MainActivity (or wherever appropriate)
-                        new Handler(Looper.getMainLooper()).post(() -> {
-                            Toast.makeText(LoginActivity.this, "Login successful!", Toast.LENGTH_SHORT).show();
-                            Intent intent = new Intent(LoginActivity.this, MainActivity.class);
-                            startActivity(intent);
-                            finish();
-                        });
-                    } catch (Exception e) {
-                        new Handler(Looper.getMainLooper()).post(() ->
-                            Toast.makeText(LoginActivity.this, "Login failed: Invalid response", Toast.LENGTH_SHORT).show()
-                        );
-                    }
-                }
-                @Override
-                public void onFailure(java.io.IOException e) {
-                    new Handler(Looper.getMainLooper()).post(() ->
-                        Toast.makeText(LoginActivity.this, "Login failed: " + e.getMessage(), Toast.LENGTH_SHORT).show()
-                    );
-                }
-            });
+            // Kept in the ViewModel, so rotating the screen doesn't abandon the login
+            authViewModel.login(usernameOrEmail, password);
         });
 
         registerButton.setOnClickListener(v -> {
@@ -1,23 +1,20 @@
 package com.hattonky.inventory.activities;
 
-import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 import com.hattonky.inventory.R;
-import com.hattonky.inventory.data.ApiClient;
-import org.json.JSONObject;
+import com.hattonky.inventory.viewmodels.AuthViewModel;
 
 public class RegisterActivity extends AppCompatActivity {
     private EditText usernameEditText, emailEditText, passwordEditText, nameEditText, addressEditText, phoneEditText, countryEditText;
     private Button registerButton;
+    private AuthViewModel authViewModel;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -32,6 +29,28 @@ public class RegisterActivity extends AppCompatActivity {
         countryEditText = findViewById(R.id.editTextCountry);
         registerButton = findViewById(R.id.buttonRegister);
 
+        authViewModel = new ViewModelProvider(this).get(AuthViewModel.class);
+        authViewModel.getResult().observe(this, result -> {
+            if (result == null) {
+                return;
+            }
+            authViewModel.consumeResult();
+            if (result.success) {
+                Toast.makeText(this, "Registration successful!", Toast.LENGTH_LONG).show();
+                Intent intent = new Intent(RegisterActivity.this, com.hattonky.inventory.MainActivity.class);
+                startActivity(intent);
+                finish();
+            } else if (result.error == null) {
+                Toast.makeText(this, "Registration failed: Invalid response", Toast.LENGTH_LONG).show();
+            } else {
+                new AlertDialog.Builder(this)
+                    .setTitle("Registration failed")
+                    .setMessage(result.error.getMessage())
+                    .setPositiveButton("OK", null)
+                    .show();
+            }
+        });
+
         registerButton.setOnClickListener(v -> {
             String username = usernameEditText.getText().toString().trim();
             String email = emailEditText.getText().toString().trim();
@@ -41,38 +60,8 @@ public class RegisterActivity extends AppCompatActivity {
                 Toast.makeText(this, "Please fill all required fields", Toast.LENGTH_SHORT).show();
                 return;
             }
-            ApiClient.register(this, username, email, password, new ApiClient.ApiCallback() {
-                @Override
-                public void onSuccess(String response) {
-                    try {
-                        JSONObject json = new JSONObject(response);
-                        String token = json.getString("token");
-                        String role = json.optString("role", "user");
-                        SharedPreferences prefs = getSharedPreferences("auth", Context.MODE_PRIVATE);
-                        prefs.edit().putString("jwt", token).putString("role", role).apply();
-                        new Handler(Looper.getMainLooper()).post(() -> {
-                            Toast.makeText(RegisterActivity.this, "Registration successful!", Toast.LENGTH_LONG).show();
-                            Intent intent = new Intent(RegisterActivity.this, com.hattonky.inventory.MainActivity.class);
-                            startActivity(intent);
-                            finish();
-                        });
-                    } catch (Exception e) {
-                        new Handler(Looper.getMainLooper()).post(() ->
-                            Toast.makeText(RegisterActivity.this, "Registration failed: Invalid response", Toast.LENGTH_LONG).show()
-                        );
-                    }
-                }
-                @Override
-                public void onFailure(java.io.IOException e) {
-                    new Handler(Looper.getMainLooper()).post(() -> {
-                        new AlertDialog.Builder(RegisterActivity.this)
-                            .setTitle("Registration failed")
-                            .setMessage(e.getMessage())
-                            .setPositiveButton("OK", null)
-                            .show();
-                    });
-                }
-            });
+            // Kept in the ViewModel, so rotating the screen doesn't abandon the registration
+            authViewModel.register(username, email, password);
         });
     }
 }
@@ -1,14 +1,18 @@
 package com.hattonky.inventory.activities;
 
-import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import com.hattonky.inventory.R;
+import com.hattonky.inventory.data.ApiClient;
+import com.hattonky.inventory.data.Session;
+
+import java.util.List;
+
+import okhttp3.HttpUrl;
 
 public class ServerConfigActivity extends AppCompatActivity {
     private EditText serverUrlEditText;
@@ -21,18 +25,25 @@ public class ServerConfigActivity extends AppCompatActivity {
         serverUrlEditText = findViewById(R.id.editTextServerUrl);
         saveButton = findViewById(R.id.buttonSaveServerUrl);
 
-        SharedPreferences prefs = getSharedPreferences("auth", Context.MODE_PRIVATE);
-        String currentUrl = prefs.getString("server_url", "");
-        serverUrlEditText.setText(currentUrl);
+        // One address per line, e.g. the site's LAN mirror and then its WAN endpoint
+        serverUrlEditText.setText(String.join("\n", Session.getInstance(this).getServerUrls()));
 
         saveButton.setOnClickListener(v -> {
-            String url = serverUrlEditText.getText().toString().trim();
-            if (url.isEmpty()) {
+            List<String> urls = Session.parseServerUrls(serverUrlEditText.getText().toString(), null);
+            if (urls.isEmpty()) {
                 Toast.makeText(this, "Please enter a server address", Toast.LENGTH_SHORT).show();
                 return;
             }
-            prefs.edit().putString("server_url", url).apply();
-            Toast.makeText(this, "Server address saved", Toast.LENGTH_SHORT).show();
+            for (String url : urls) {
+                if (HttpUrl.parse(url) == null) {
+                    Toast.makeText(this, "Not a valid address: " + url, Toast.LENGTH_SHORT).show();
+                    return;
+                }
+            }
+            // The fastest reachable address is picked in the background
+            ApiClient.setServerUrls(this, urls);
+            Toast.makeText(this, urls.size() == 1 ? "Server address saved" : "Server addresses saved",
+                    Toast.LENGTH_SHORT).show();
             Intent intent = new Intent(this, LoginActivity.class);
             intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
             startActivity(intent);
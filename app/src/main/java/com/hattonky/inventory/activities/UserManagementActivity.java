@@ -1,7 +1,15 @@
 package com.hattonky.inventory.activities;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.Spinner;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import android.widget.Button;
@@ -12,12 +20,24 @@ import java.util.List;
 import android.app.AlertDialog;
 import android.widget.EditText;
 import android.widget.Toast;
+import com.hattonky.inventory.data.ApiCall;
 import com.hattonky.inventory.data.ApiClient;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.hattonky.inventory.data.model.User;
+import com.hattonky.inventory.repositories.PagedLoader;
+import com.hattonky.inventory.viewmodels.UserViewModel;
 import java.io.IOException;
 
 public class UserManagementActivity extends AppCompatActivity {
+    private static final String[] ROLE_FILTERS = {"All roles", "admin", "user"};
+    private static final long SEARCH_DELAY_MS = 300;  // Wait for typing to pause before querying
+
+    private UserViewModel userViewModel;
+    private PagedLoader<User> userLoader;
+    private EditText editTextSearch;
+    private Spinner spinnerRole;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = this::reloadUsers;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -27,87 +47,78 @@ public class UserManagementActivity extends AppCompatActivity {
         Button buttonEdit = findViewById(R.id.buttonEditUser);
         Button buttonDelete = findViewById(R.id.buttonDeleteUser);
 
-        // Remove the placeholder text if present
-        android.view.View placeholder = findViewById(R.id.textViewUserManagementTitle).getRootView().findViewById(android.R.id.text1);
-        if (placeholder != null) placeholder.setVisibility(android.view.View.GONE);
-
         UserAdapter adapter = new UserAdapter();
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
         recyclerView.setAdapter(adapter);
 
-        // Fetch users from API
-        ApiClient.getAllUsers(this, new ApiClient.ApiCallback() {
+        // The list shows the local cache, so it appears at once and reflects edits immediately
+        userViewModel = new ViewModelProvider(this).get(UserViewModel.class);
+        userViewModel.getUsers().observe(this, adapter::setUsers);
+
+        // Load the directory a page at a time into the cache; the next page is fetched before the end is reached
+        userLoader = new PagedLoader<>(ApiCall.mainThread(), new PagedLoader.Listener<User>() {
             @Override
-            public void onSuccess(String response) {
-                try {
-                    JSONArray arr = new JSONArray(response);
-                    java.util.List<UserAdapter.User> users = new java.util.ArrayList<>();
-                    for (int i = 0; i < arr.length(); i++) {
-                        JSONObject obj = arr.getJSONObject(i);
-                        users.add(new UserAdapter.User(
-                            obj.optString("id"),
-                            obj.optString("username"),
-                            obj.optString("email"),
-                            obj.optString("role")
-                        ));
-                    }
-                    runOnUiThread(() -> adapter.setUsers(users));
-                } catch (Exception e) {
-                    runOnUiThread(() -> Toast.makeText(UserManagementActivity.this, "Failed to parse users", Toast.LENGTH_LONG).show());
-                }
+            public void onPage(List<User> users, boolean first, boolean hasMore) {
+                // The pages were stored in the cache, which updates the list. The cache may hold
+                // more rows than were fetched, so keep going if the user is already past them.
+                userLoader.onScrolled(layoutManager.findLastVisibleItemPosition(), userLoader.getLoadedCount());
             }
             @Override
             public void onFailure(IOException e) {
-                runOnUiThread(() -> {
-                    AlertDialog dialog = new AlertDialog.Builder(UserManagementActivity.this)
-                        .setTitle("Failed to fetch users")
-                        .setMessage(e.getMessage())
-                        .setPositiveButton("OK", null)
-                        .create();
-                    dialog.show();
-                });
+                AlertDialog dialog = new AlertDialog.Builder(UserManagementActivity.this)
+                    .setTitle("Failed to fetch users")
+                    .setMessage(e.getMessage())
+                    .setPositiveButton("Retry", (d, which) -> userLoader.retry())
+                    .setNegativeButton("Cancel", null)
+                    .create();
+                dialog.show();
             }
         });
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView view, int dx, int dy) {
+                // Against the rows fetched, not the cache size, so missing pages are still fetched
+                userLoader.onScrolled(layoutManager.findLastVisibleItemPosition(), userLoader.getLoadedCount());
+            }
+        });
+        setupFilters();
+        reloadUsers();
 
         adapter.setOnUserClickListener((user, position) -> {
-            buttonEdit.setEnabled(true);
-            buttonDelete.setEnabled(true);
+            buttonEdit.setEnabled(user != null);
+            buttonDelete.setEnabled(user != null);
         });
 
         buttonEdit.setOnClickListener(v -> {
-            UserAdapter.User selected = adapter.getSelectedUser();
+            User selected = adapter.getSelectedUser();
             if (selected != null) {
-                showEditUserDialog(selected, adapter);
+                showEditUserDialog(selected);
             }
         });
         buttonDelete.setOnClickListener(v -> {
-            UserAdapter.User selected = adapter.getSelectedUser();
+            User selected = adapter.getSelectedUser();
             if (selected != null) {
                 new AlertDialog.Builder(this)
                     .setTitle("Delete User")
-                    .setMessage("Are you sure you want to delete user '" + selected.username + "'?")
+                    .setMessage("Are you sure you want to delete user '" + selected.getUsername() + "'?")
                     .setPositiveButton("Delete", (dialog, which) -> {
-                        ApiClient.deleteUserById(this, selected.id, new ApiClient.ApiCallback() {
+                        // Removed from the list at once; put back if the server refuses
+                        userViewModel.deleteUser(selected.getId(), new ApiClient.ApiCallback() {
                             @Override
                             public void onSuccess(String response) {
-                                runOnUiThread(() -> {
-                                    Toast.makeText(UserManagementActivity.this, "User deleted", Toast.LENGTH_SHORT).show();
-                                    // Refresh user list
-                                    recreate();
-                                });
+                                Toast.makeText(UserManagementActivity.this, "User deleted", Toast.LENGTH_SHORT).show();
                             }
                             @Override
                             public void onFailure(IOException e) {
-                                runOnUiThread(() -> {
-                                    AlertDialog dialog = new AlertDialog.Builder(UserManagementActivity.this)
-                                        .setTitle("Delete failed")
-                                        .setMessage(e.getMessage())
-                                        .setPositiveButton("OK", null)
-                                        .create();
-                                    dialog.show();
-                                });
+                                AlertDialog dialog = new AlertDialog.Builder(UserManagementActivity.this)
+                                    .setTitle("Delete failed")
+                                    .setMessage(e.getMessage())
+                                    .setPositiveButton("OK", null)
+                                    .create();
+                                dialog.show();
                             }
-                        });
+                        }).bindTo(this);
                     })
                     .setNegativeButton("Cancel", null)
                     .show();
@@ -115,40 +126,88 @@ public class UserManagementActivity extends AppCompatActivity {
         });
     }
 
-    private void showEditUserDialog(UserAdapter.User user, UserAdapter adapter) {
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchHandler.removeCallbacks(searchRunnable);
+        userLoader.cancel();
+    }
+
+    private void setupFilters() {
+        editTextSearch = findViewById(R.id.editTextUserSearch);
+        spinnerRole = findViewById(R.id.spinnerUserRole);
+        ArrayAdapter<String> roleAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, ROLE_FILTERS);
+        roleAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerRole.setAdapter(roleAdapter);
+        spinnerRole.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            private boolean initialized;  // Skip the callback fired when the spinner is first laid out
+
+            @Override
+            public void onItemSelected(AdapterView<?> parent, android.view.View view, int position, long id) {
+                if (initialized) {
+                    reloadUsers();
+                }
+                initialized = true;
+            }
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+        editTextSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DELAY_MS);
+            }
+        });
+    }
+
+    // Shows cached users for the current filters and fetches matching pages from the server,
+    // unless the unfiltered directory was fetched recently
+    private void reloadUsers() {
+        int rolePosition = spinnerRole.getSelectedItemPosition();
+        String role = rolePosition > 0 ? ROLE_FILTERS[rolePosition] : null;
+        String query = editTextSearch.getText().toString().trim();
+        userViewModel.setFilter(role, query);
+        boolean unfiltered = role == null && query.isEmpty();
+        userLoader.reset(unfiltered && userViewModel.isDirectoryFresh() ? null : userViewModel.pageSource(role, query));
+    }
+
+    private void showEditUserDialog(User user) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Edit User");
         android.view.View dialogView = getLayoutInflater().inflate(R.layout.dialog_edit_user, null);
         EditText editUsername = dialogView.findViewById(R.id.editUsername);
         EditText editEmail = dialogView.findViewById(R.id.editEmail);
         EditText editRole = dialogView.findViewById(R.id.editRole);
-        editUsername.setText(user.username);
-        editEmail.setText(user.email);
-        editRole.setText(user.role);
+        editUsername.setText(user.getUsername());
+        editEmail.setText(user.getEmail());
+        editRole.setText(user.getRole());
         builder.setView(dialogView);
         builder.setPositiveButton("Save", (dialog, which) -> {
             String newRole = editRole.getText().toString();
-            ApiClient.updateUserById(this, user.id, newRole, new ApiClient.ApiCallback() {
+            // Shown in the list at once; reverted if the server refuses
+            userViewModel.updateRole(user.getId(), newRole, new ApiClient.ApiCallback() {
                 @Override
                 public void onSuccess(String response) {
-                    runOnUiThread(() -> {
-                        user.role = newRole;
-                        adapter.notifyDataSetChanged();
-                        Toast.makeText(UserManagementActivity.this, "User updated", Toast.LENGTH_SHORT).show();
-                    });
+                    Toast.makeText(UserManagementActivity.this, "User updated", Toast.LENGTH_SHORT).show();
                 }
                 @Override
                 public void onFailure(IOException e) {
-                    runOnUiThread(() -> {
-                        AlertDialog dialog = new AlertDialog.Builder(UserManagementActivity.this)
-                            .setTitle("Update failed")
-                            .setMessage(e.getMessage())
-                            .setPositiveButton("OK", null)
-                            .create();
-                        dialog.show();
-                    });
+                    AlertDialog dialog = new AlertDialog.Builder(UserManagementActivity.this)
+                        .setTitle("Update failed")
+                        .setMessage(e.getMessage())
+                        .setPositiveButton("OK", null)
+                        .create();
+                    dialog.show();
                 }
-            });
+            }).bindTo(this);
         });
         builder.setNegativeButton("Cancel", null);
         builder.show();
@@ -0,0 +1,116 @@
+package com.hattonky.inventory.adapters;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.hattonky.inventory.R;
+import com.hattonky.inventory.data.images.Thumbnail;
+import com.hattonky.inventory.data.model.ItemImage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RecyclerView Adapter for the horizontal strip of photos attached to an item.
+ * Thumbnails are only loaded for cells that are bound, and come from the thumbnail atlas.
+ * The cell showing the item's primary image is highlighted.
+ */
+public class AttachmentAdapter extends RecyclerView.Adapter<AttachmentAdapter.AttachmentViewHolder> {
+
+    // List of images attached to the current item
+    private List<ItemImage> images = new ArrayList<>();
+
+    // Path of the item's primary image, used to highlight its cell
+    private String primaryPath;
+
+    // Listener for handling clicks on attachments
+    private final OnAttachmentClickListener listener;
+
+    /**
+     * Interface to handle click events on attachments.
+     */
+    public interface OnAttachmentClickListener {
+        void onAttachmentClick(ItemImage image);      // Triggered when an attachment is tapped
+        void onAttachmentLongClick(ItemImage image);  // Triggered when an attachment is long-pressed
+    }
+
+    /**
+     * Constructor for the AttachmentAdapter.
+     *
+     * @param listener Listener to handle click events on each attachment.
+     */
+    public AttachmentAdapter(OnAttachmentClickListener listener) {
+        this.listener = listener;
+    }
+
+    @NonNull
+    @Override
+    public AttachmentViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.attachment_item, parent, false);
+        return new AttachmentViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull AttachmentViewHolder holder, int position) {
+        ItemImage image = images.get(position);
+
+        Glide.with(holder.itemView.getContext())
+                .load(image.getPath() != null ? new Thumbnail(image.getPath()) : null)  // Served from the thumbnail atlas
+                .diskCacheStrategy(DiskCacheStrategy.NONE)  // The atlas already caches thumbnails on disk
+                .placeholder(R.drawable.ic_placeholder_image)
+                .into(holder.imageView);
+
+        holder.itemView.setBackgroundResource(image.getPath() != null && image.getPath().equals(primaryPath)
+                ? R.color.blue_500
+                : android.R.color.transparent);
+        holder.itemView.setOnClickListener(v -> listener.onAttachmentClick(image));
+        holder.itemView.setOnLongClickListener(v -> {
+            listener.onAttachmentLongClick(image);
+            return true;
+        });
+    }
+
+    @Override
+    public int getItemCount() {
+        return images.size();
+    }
+
+    /**
+     * Updates the list of attached images.
+     *
+     * @param images The item's images in display order.
+     */
+    public void setImages(List<ItemImage> images) {
+        this.images = images;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Updates which image is highlighted as the primary image.
+     *
+     * @param primaryPath The path of the item's primary image.
+     */
+    public void setPrimaryPath(String primaryPath) {
+        this.primaryPath = primaryPath;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * ViewHolder class that holds the ImageView for each attachment.
+     */
+    static class AttachmentViewHolder extends RecyclerView.ViewHolder {
+        ImageView imageView;
+
+        AttachmentViewHolder(View itemView) {
+            super(itemView);
+            imageView = itemView.findViewById(R.id.image_view_attachment);
+        }
+    }
+}
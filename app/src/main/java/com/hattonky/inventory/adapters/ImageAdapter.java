@@ -9,7 +9,9 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.hattonky.inventory.R;
+import com.hattonky.inventory.data.images.Thumbnail;
 
 import java.io.File;
 import java.util.List;
@@ -73,9 +75,10 @@ public class ImageAdapter extends RecyclerView.Adapter<ImageAdapter.ImageViewHol
         // Get the current image file at the specified position
         File imageFile = imageFiles.get(position);
 
-        // Use Glide to load the image into the ImageView
+        // Use Glide to load the image's thumbnail from the thumbnail atlas into the ImageView
         Glide.with(holder.itemView.getContext())
-                .load(imageFile)  // Load the image from the file
+                .load(new Thumbnail(imageFile.getAbsolutePath()))  // Load the thumbnail for the file
+                .diskCacheStrategy(DiskCacheStrategy.NONE)  // The atlas already caches thumbnails on disk
                 .into(holder.imageView);  // Display it in the ImageView
 
         // Set a click listener on the item to trigger the OnItemClickListener
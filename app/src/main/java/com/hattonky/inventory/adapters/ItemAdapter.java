@@ -10,7 +10,9 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.hattonky.inventory.R;
+import com.hattonky.inventory.data.images.Thumbnail;
 import com.hattonky.inventory.data.model.Item;
 
 import java.util.ArrayList;
@@ -118,9 +120,11 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ItemViewHolder
         holder.textViewName.setText(currentItem.getName());
         holder.textViewCategory.setText(currentItem.getCategory());
 
-        // Use Glide to load the item image into the ImageView
+        // Use Glide to load the item's thumbnail from the thumbnail atlas into the ImageView
+        String imagePath = currentItem.getImagePath();
         Glide.with(holder.itemView.getContext())
-                .load(currentItem.getImagePath())  // Load the image from the path
+                .load(imagePath != null ? new Thumbnail(imagePath) : null)  // Load the thumbnail for the path
+                .diskCacheStrategy(DiskCacheStrategy.NONE)  // The atlas already caches thumbnails on disk
                 .placeholder(R.drawable.ic_placeholder_image)  // Placeholder while loading
                 .into(holder.imageViewItem);  // Set the image in the ImageView
 
@@ -7,28 +7,18 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import com.hattonky.inventory.R;
+import com.hattonky.inventory.data.model.User;
 import java.util.ArrayList;
 import java.util.List;
 
 public class UserAdapter extends RecyclerView.Adapter<UserAdapter.UserViewHolder> {
-    public static class User {
-        public String id;
-        public String username;
-        public String email;
-        public String role;
-        public User(String id, String username, String email, String role) {
-            this.id = id;
-            this.username = username;
-            this.email = email;
-            this.role = role;
-        }
-    }
-
     private List<User> users = new ArrayList<>();
     private int selectedPosition = RecyclerView.NO_POSITION;
+    private String selectedId;  // Kept across list updates, which move or drop the selected row
     private OnUserClickListener listener;
 
     public interface OnUserClickListener {
+        // user is null and position NO_POSITION when the selected user leaves the list
         void onUserClick(User user, int position);
     }
 
@@ -36,9 +26,23 @@ public class UserAdapter extends RecyclerView.Adapter<UserAdapter.UserViewHolder
         this.listener = listener;
     }
 
+    // Replaces the list; the selected user stays selected wherever it moved to
     public void setUsers(List<User> users) {
         this.users = users;
+        selectedPosition = RecyclerView.NO_POSITION;
+        for (int i = 0; selectedId != null && i < users.size(); i++) {
+            if (selectedId.equals(users.get(i).getId())) {
+                selectedPosition = i;
+                break;
+            }
+        }
         notifyDataSetChanged();
+        if (selectedId != null && selectedPosition == RecyclerView.NO_POSITION) {
+            selectedId = null;
+            if (listener != null) {
+                listener.onUserClick(null, RecyclerView.NO_POSITION);
+            }
+        }
     }
 
     public List<User> getUsers() {
@@ -62,13 +66,14 @@ public class UserAdapter extends RecyclerView.Adapter<UserAdapter.UserViewHolder
     @Override
     public void onBindViewHolder(@NonNull UserViewHolder holder, int position) {
         User user = users.get(position);
-        holder.usernameText.setText(user.username);
-        holder.emailText.setText(user.email);
-        holder.roleText.setText(user.role);
+        holder.usernameText.setText(user.getUsername());
+        holder.emailText.setText(user.getEmail());
+        holder.roleText.setText(user.getRole());
         holder.itemView.setSelected(selectedPosition == position);
         holder.itemView.setOnClickListener(v -> {
             int oldPosition = selectedPosition;
             selectedPosition = holder.getAdapterPosition();
+            selectedId = user.getId();
             notifyItemChanged(oldPosition);
             notifyItemChanged(selectedPosition);
             if (listener != null) {
@@ -0,0 +1,187 @@
+package com.hattonky.inventory.data;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import okhttp3.Call;
+
+/**
+ * Handle to a request made through {@link ApiClient}.
+ *
+ * Cancelling it aborts the HTTP calls behind the request and drops any result that has not been
+ * delivered yet, so the callback is never invoked afterwards. Results are delivered on the
+ * executor the handle was created with: {@link #DIRECT} runs the callback on the OkHttp thread,
+ * {@link #mainThread()} on the UI thread.
+ *
+ * A handle bound to a lifecycle with {@link #bindTo} is cancelled when the lifecycle is
+ * destroyed, e.g. when the user leaves the screen that started the request.
+ */
+public class ApiCall {
+
+    // Runs callbacks on the thread that completed the request
+    public static final Executor DIRECT = Runnable::run;
+
+    private static Executor mainThread;
+
+    private final Executor callbackExecutor;
+    private final List<Call> calls = new ArrayList<>();  // HTTP calls made so far; guarded by this
+    private volatile boolean canceled;
+    private Runnable onCancel;  // Guarded by this
+
+    /**
+     * @param callbackExecutor Where the callback is run.
+     */
+    public ApiCall(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * @return An executor posting to the main thread; one shared Handler serves all callbacks.
+     */
+    public static synchronized Executor mainThread() {
+        if (mainThread == null) {
+            Handler handler = new Handler(Looper.getMainLooper());
+            mainThread = handler::post;
+        }
+        return mainThread;
+    }
+
+    /**
+     * Creates a handle that delivers on the main thread and is cancelled with the lifecycle.
+     * Useful for callbacks that reach the screen through a repository.
+     */
+    public static ApiCall onMainThread(LifecycleOwner owner) {
+        return new ApiCall(mainThread()).bindTo(owner);
+    }
+
+    /**
+     * Cancels this call when the lifecycle is destroyed. Must be called on the main thread.
+     *
+     * @return This handle.
+     */
+    public ApiCall bindTo(LifecycleOwner owner) {
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            cancel();
+            return this;
+        }
+        lifecycle.addObserver((LifecycleEventObserver) (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                cancel();
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Aborts the request; its callback will not be invoked.
+     */
+    public void cancel() {
+        List<Call> toCancel;
+        Runnable listener;
+        synchronized (this) {
+            if (canceled) {
+                return;
+            }
+            canceled = true;
+            toCancel = new ArrayList<>(calls);
+            calls.clear();
+            listener = onCancel;
+        }
+        for (Call call : toCancel) {
+            call.cancel();
+        }
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Wraps a callback so it runs on this handle's executor, and not at all once cancelled.
+     */
+    public ApiClient.ApiCallback deliver(ApiClient.ApiCallback callback) {
+        return new ApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                post(() -> callback.onSuccess(response));
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                post(() -> callback.onFailure(e));
+            }
+        };
+    }
+
+    /**
+     * Wraps a callback so it runs on this handle's executor, and not at all once cancelled.
+     */
+    public <T> ApiClient.TypedCallback<T> deliver(ApiClient.TypedCallback<T> callback) {
+        return new ApiClient.TypedCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                post(() -> callback.onSuccess(result));
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                post(() -> callback.onFailure(e));
+            }
+        };
+    }
+
+    /**
+     * Registers an HTTP call made for this request; it is cancelled at once if the handle
+     * already is.
+     *
+     * @return The same call, ready to enqueue.
+     */
+    Call track(Call call) {
+        synchronized (this) {
+            if (!canceled) {
+                calls.add(call);
+                return call;
+            }
+        }
+        call.cancel();
+        return call;
+    }
+
+    /**
+     * Sets an action to run once when the handle is cancelled, for requests whose HTTP calls are
+     * shared with other handles and can't simply be aborted.
+     */
+    void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!canceled) {
+                onCancel = action;
+                return;
+            }
+        }
+        action.run();
+    }
+
+    private void post(Runnable delivery) {
+        if (canceled) {
+            return;
+        }
+        callbackExecutor.execute(() -> {
+            if (!canceled) {  // Checked again: cancel may have come while the delivery was queued
+                delivery.run();
+            }
+        });
+    }
+}
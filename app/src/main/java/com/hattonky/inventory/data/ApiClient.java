@@ -10,35 +10,281 @@ import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
 import javax.net.ssl.SSLSocketFactory;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.content.res.Resources;
+
+import com.hattonky.inventory.data.images.UploadSession;
+import com.hattonky.inventory.data.model.User;
+import com.hattonky.inventory.data.network.AuthInterceptor;
+import com.hattonky.inventory.data.network.CircuitBreaker;
+import com.hattonky.inventory.data.network.EndpointSelector;
+import com.hattonky.inventory.data.network.GzipRequestInterceptor;
+import com.hattonky.inventory.data.network.JsonDecoder;
+import com.hattonky.inventory.data.network.JsonDecoders;
+import com.hattonky.inventory.data.network.NetworkMetrics;
+import com.hattonky.inventory.data.network.Page;
+import com.hattonky.inventory.data.network.ResponseCache;
+import com.hattonky.inventory.data.network.RetryInterceptor;
+import com.hattonky.inventory.data.network.TokenStore;
+import com.hattonky.inventory.data.network.TrafficLane;
+import com.hattonky.inventory.data.sync.ChangePage;
+import com.hattonky.inventory.data.sync.OutboxDispatcher;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class ApiClient {
-    private static final OkHttpClient client = new OkHttpClient();
+    // Shared pinned client, built on first use; all calls share its connection pool,
+    // dispatcher and TLS session cache
+    private static volatile OkHttpClient client;
+
+    // The shared client plus token handling, for endpoints that require a logged-in user
+    private static volatile OkHttpClient authenticatedClient;
+    private static AuthInterceptor authInterceptor;
+    private static volatile TokenStore tokenStore;
+
+    // On-disk cache of GET responses, installed on the shared client
+    private static volatile ResponseCache responseCache;
+
+    // Retries transient failures of idempotent calls and fails fast while a host is down
+    private static final RetryInterceptor retryInterceptor = new RetryInterceptor(new CircuitBreaker());
+
+    // Compresses large request bodies for servers that accept gzip
+    private static final GzipRequestInterceptor gzipInterceptor = new GzipRequestInterceptor();
+
+    // Identical GETs in flight at the same time share one network call
+    private static final RequestCoalescer coalescer = new RequestCoalescer();
+
+    // Picks the fastest of the configured server addresses and fails over between them
+    private static final EndpointSelector endpointSelector = new EndpointSelector(Executors.newCachedThreadPool());
+
+    // Priority lanes: calls the user waits for, and sync/upload traffic that gives way to them
+    private static final TrafficLane interactiveLane = new TrafficLane("interactive", 16, 6);
+    private static final TrafficLane backgroundLane = new TrafficLane("background", 4, 2, interactiveLane, 2000);
+
+    // Per-endpoint phase timings and byte counts of every call, in both lanes
+    private static final NetworkMetrics networkMetrics = new NetworkMetrics();
+
+    // The shared client's counterparts in the background lane, with their own dispatcher and connections
+    private static volatile OkHttpClient backgroundClient;
+    private static volatile OkHttpClient authenticatedBackgroundClient;
+
+    // The shared client outside both lanes, for token refreshes and endpoint probes: calls in a
+    // lane wait on those while holding their slot, so they must never queue behind them
+    private static volatile OkHttpClient controlClient;
 
     public interface ApiCallback {
         void onSuccess(String response);
         void onFailure(IOException e);
     }
 
+    /**
+     * Callback receiving a decoded response instead of its text.
+     *
+     * @param <T> The decoded type.
+     */
+    public interface TypedCallback<T> {
+        void onSuccess(T result);
+        void onFailure(IOException e);
+    }
+
+    // The candidates come from the session once; after that the choice is a field read
     private static String getBaseUrl(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences("auth", Context.MODE_PRIVATE);
-        String url = prefs.getString("server_url", null);
-        if (url == null || url.isEmpty()) {
-            throw new IllegalStateException("Server URL not configured");
+        String url = endpointSelector.getBaseUrl();
+        if (url == null) {
+            synchronized (ApiClient.class) {
+                url = endpointSelector.getBaseUrl();
+                if (url == null) {
+                    List<String> urls = Session.getInstance(context).getServerUrls();
+                    if (urls.isEmpty()) {
+                        throw new IllegalStateException("Server URL not configured");
+                    }
+                    endpointSelector.setCandidates(urls, getControlClient(context));
+                    url = endpointSelector.getBaseUrl();
+                }
+            }
         }
-        if (!url.endsWith("/")) url = url + "/";
         return url;
     }
 
-    private static OkHttpClient getSafeClient(Context context) {
+    /**
+     * Saves the server addresses and starts using them. With more than one, the fastest
+     * reachable address is chosen in the background and calls fail over between them.
+     *
+     * @param urls Base URLs in order of preference, e.g. the site's LAN mirror, then its WAN endpoint.
+     */
+    public static void setServerUrls(Context context, List<String> urls) {
+        Context appContext = context.getApplicationContext();
+        Session.getInstance(appContext).setServerUrls(urls);
+        endpointSelector.setCandidates(urls, getControlClient(appContext));
+    }
+
+    /**
+     * Returns the process-wide client pinned to the bundled server certificate, in the
+     * interactive lane. The certificate is read and the SSLContext built only once; later calls
+     * reuse pooled connections and resume TLS sessions instead of handshaking from scratch.
+     */
+    static OkHttpClient getSafeClient(Context context) {
+        OkHttpClient result = client;
+        if (result == null) {
+            synchronized (ApiClient.class) {
+                result = client;
+                if (result == null) {
+                    Resources resources = context.getApplicationContext().getResources();
+                    int certificateId = resources.getIdentifier("server", "raw", context.getPackageName());
+                    ResponseCache cache = new ResponseCache(
+                            new File(context.getApplicationContext().getCacheDir(), "http"),
+                            ResponseCache.DEFAULT_MAX_SIZE);
+                    OkHttpClient pinned;
+                    try (InputStream caInput = resources.openRawResource(certificateId)) {
+                        pinned = newPinnedClient(caInput, cache.getCache()).newBuilder()
+                                .addInterceptor(endpointSelector)
+                                .addInterceptor(gzipInterceptor)
+                                .addInterceptor(retryInterceptor)
+                                .eventListenerFactory(networkMetrics)
+                                .build();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    // The lanes share the TLS setup, so background connections still resume
+                    // sessions, but each has its own dispatcher threads and connection pool
+                    result = pinned.newBuilder()
+                            .dispatcher(newDispatcher())
+                            .addInterceptor(interactiveLane)
+                            .build();
+                    backgroundClient = pinned.newBuilder()
+                            .dispatcher(newDispatcher())
+                            .connectionPool(new ConnectionPool(2, 1, TimeUnit.MINUTES))
+                            .addInterceptor(backgroundLane)
+                            .build();
+                    controlClient = pinned;
+                    responseCache = cache;
+                    client = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the shared client without a lane. It shares the interactive lane's connection pool,
+     * so probes warm the connections later calls use.
+     */
+    static OkHttpClient getControlClient(Context context) {
+        getSafeClient(context);
+        return controlClient;
+    }
+
+    /**
+     * Returns the shared client with the {@link AuthInterceptor} installed. It shares the pinned
+     * client's connection pool and dispatcher; only the interceptor chain differs.
+     */
+    static OkHttpClient getAuthenticatedClient(Context context) {
+        OkHttpClient result = authenticatedClient;
+        if (result == null) {
+            synchronized (ApiClient.class) {
+                result = authenticatedClient;
+                if (result == null) {
+                    Context appContext = context.getApplicationContext();
+                    TokenStore store = Session.getInstance(appContext);
+                    authInterceptor = new AuthInterceptor(store, token -> refreshToken(appContext, token));
+                    tokenStore = store;
+                    result = getSafeClient(appContext).newBuilder()
+                            .addInterceptor(authInterceptor)
+                            .authenticator(authInterceptor)
+                            .build();
+                    authenticatedBackgroundClient = backgroundClient.newBuilder()
+                            .addInterceptor(authInterceptor)
+                            .authenticator(authInterceptor)
+                            .build();
+                    authenticatedClient = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the authenticated client in the background lane, for sync, uploads and the change
+     * feed. Its calls wait while interactive calls are in flight, and never take the interactive
+     * lane's threads or connections.
+     */
+    static OkHttpClient getBackgroundClient(Context context) {
+        OkHttpClient result = authenticatedBackgroundClient;
+        if (result == null) {
+            getAuthenticatedClient(context);
+            result = authenticatedBackgroundClient;
+        }
+        return result;
+    }
+
+    // The lane enforces the caps, so the dispatcher only provides the threads and is never the queue
+    private static Dispatcher newDispatcher() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(64);
+        dispatcher.setMaxRequestsPerHost(64);
+        return dispatcher;
+    }
+
+    /**
+     * Exchanges a token for a fresh one. Runs on the thread of the request that needs it, which
+     * holds a lane slot, so it goes through the client without lanes or token handling.
+     */
+    private static String refreshToken(Context context, String token) throws IOException {
+        Request request = new Request.Builder()
+                .url(getBaseUrl(context) + "api/auth/refresh")
+                .post(RequestBody.create(new byte[0], null))
+                .header("Authorization", "Bearer " + token)
+                .build();
+        try (Response response = getControlClient(context).newCall(request).execute()) {
+            if (response.code() == 401 || response.code() == 403) {
+                throw new AuthInterceptor.RejectedException("Refresh rejected: " + response);
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected code " + response);
+            }
+            return new JSONObject(response.body().string()).getString("token");
+        } catch (JSONException e) {
+            throw new IOException("Invalid refresh response", e);
+        }
+    }
+
+    /**
+     * @return The number of token refreshes performed so far.
+     */
+    public static int getTokenRefreshCount() {
+        AuthInterceptor interceptor = authInterceptor;
+        return interceptor != null ? interceptor.getRefreshCount() : 0;
+    }
+
+    /**
+     * Builds a client that only trusts the given certificate.
+     *
+     * @param certificate The server's X.509 certificate (PEM or DER).
+     * @return A new client with its own connection pool.
+     */
+    static OkHttpClient newPinnedClient(InputStream certificate) {
+        return newPinnedClient(certificate, null);
+    }
+
+    /**
+     * Builds a client that only trusts the given certificate.
+     *
+     * @param certificate The server's X.509 certificate (PEM or DER).
+     * @param cache       The response cache to use, or null for none.
+     * @return A new client with its own connection pool.
+     */
+    static OkHttpClient newPinnedClient(InputStream certificate, Cache cache) {
         try {
             CertificateFactory cf = CertificateFactory.getInstance("X.509");
-            InputStream caInput = context.getResources().openRawResource(
-                context.getResources().getIdentifier("server", "raw", context.getPackageName()));
-            X509Certificate ca = (X509Certificate) cf.generateCertificate(caInput);
-            caInput.close();
+            X509Certificate ca = (X509Certificate) cf.generateCertificate(certificate);
 
             String keyStoreType = KeyStore.getDefaultType();
             KeyStore keyStore = KeyStore.getInstance(keyStoreType);
@@ -57,40 +303,329 @@ public class ApiClient {
             return new OkHttpClient.Builder()
                     .sslSocketFactory(sslSocketFactory, trustManager)
                     .hostnameVerifier((hostname, session) -> true)
+                    .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))  // HTTP/2 when the server offers it
+                    .cache(cache)
                     .build();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-    public static void login(Context context, String username, String password, ApiCallback callback) {
-        String baseUrl = getBaseUrl(context);
-        RequestBody formBody = new FormBody.Builder()
-                .add("username", username)
-                .add("password", password)
-                .build();
+    /**
+     * Replaces the shared client. Used by tests to point ApiClient at a local server.
+     */
+    static void setClient(OkHttpClient newClient) {
+        setClient(newClient, null);
+    }
+
+    /**
+     * Replaces the shared client and the response cache installed on it.
+     */
+    static synchronized void setClient(OkHttpClient newClient, ResponseCache newCache) {
+        client = newClient;
+        backgroundClient = newClient;  // No lanes; tests see every call as it is made
+        controlClient = newClient;
+        responseCache = newCache;
+        authenticatedClient = null;
+        authenticatedBackgroundClient = null;
+        authInterceptor = null;
+        tokenStore = null;
+        endpointSelector.clear();
+        Session.reset();
+    }
+
+    /**
+     * @return Hit/miss counters of the response cache, or null before the first call.
+     */
+    public static ResponseCache.Stats getCacheStats() {
+        ResponseCache cache = responseCache;
+        return cache != null ? cache.getStats() : null;
+    }
+
+    /**
+     * @return How many calls have been retried after a transient failure.
+     */
+    public static long getRetryCount() {
+        return retryInterceptor.getRetryCount();
+    }
+
+    /**
+     * @return Circuit states per host and how often calls were failed fast.
+     */
+    public static CircuitBreaker.Stats getCircuitStats() {
+        return retryInterceptor.getCircuitBreaker().getStats();
+    }
+
+    /**
+     * @return How many GETs were served by joining an identical one already in flight.
+     */
+    public static RequestCoalescer.Stats getCoalescingStats() {
+        return coalescer.getStats();
+    }
+
+    /**
+     * @return How many requests were sent compressed and how many bytes that saved.
+     */
+    public static GzipRequestInterceptor.Stats getCompressionStats() {
+        return gzipInterceptor.getStats();
+    }
+
+    /**
+     * @return Queue waits and slot use of the interactive lane.
+     */
+    public static TrafficLane.Stats getInteractiveLaneStats() {
+        return interactiveLane.getStats();
+    }
+
+    /**
+     * @return Queue waits, slot use and yields of the background lane.
+     */
+    public static TrafficLane.Stats getBackgroundLaneStats() {
+        return backgroundLane.getStats();
+    }
+
+    /**
+     * @return The server address in use, the probed ranking and how often calls failed over.
+     */
+    public static EndpointSelector.Stats getEndpointStats() {
+        return endpointSelector.getStats();
+    }
+
+    /**
+     * Returns the collector of per-endpoint timings: DNS, connect, TLS, request, time to first
+     * byte and body percentiles plus byte counts. Take a {@link NetworkMetrics#snapshot()} or
+     * set an exporter on it to ship the numbers somewhere.
+     *
+     * @return The collector shared by both lanes.
+     */
+    public static NetworkMetrics getNetworkMetrics() {
+        return networkMetrics;
+    }
+
+    /**
+     * Drops all cached responses in the background, e.g. on logout so the next user
+     * doesn't see the previous user's data.
+     */
+    public static void clearResponseCache(Context context) {
+        ResponseCache cache = responseCache;
+        if (cache == null) {
+            return;
+        }
+        getSafeClient(context).dispatcher().executorService().execute(() -> {
+            try {
+                cache.clear();
+            } catch (IOException e) {
+                android.util.Log.w("ApiClient", "Could not clear response cache", e);
+            }
+        });
+    }
+
+    /**
+     * Performs an authenticated GET through the response cache and returns the body as text.
+     *
+     * With {@link ResponseCache.Policy#STALE_WHILE_REVALIDATE} the callback may succeed twice:
+     * first with the stored copy, then with the new body if the server reports a change. If the
+     * stored copy was current, or revalidation fails after it was served, there is no second call.
+     * Identical GETs made while this one awaits its first result share its network call.
+     *
+     * @param path   Path relative to the base URL, e.g. "api/users".
+     * @param policy How to use the cache.
+     * @return A handle to cancel the request; the callback runs on the OkHttp thread.
+     */
+    static ApiCall get(Context context, String path, ResponseCache.Policy policy, ApiCallback callback) {
+        return get(context, path, policy, ApiCall.DIRECT, callback);
+    }
+
+    /**
+     * Same as {@link #get(Context, String, ResponseCache.Policy, ApiCallback)}, with the callback
+     * run on the given executor.
+     */
+    static ApiCall get(Context context, String path, ResponseCache.Policy policy, Executor executor,
+                       ApiCallback callback) {
+        return fetch(context, HttpUrl.get(getBaseUrl(context) + path), policy, "text", ResponseBody::string, executor, new TypedCallback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                callback.onSuccess(result);
+            }
+            @Override
+            public void onFailure(IOException e) {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Performs an authenticated GET through the response cache and decodes the body as it
+     * streams in, on the OkHttp thread. Same callback rules as {@link #get(Context, String,
+     * ResponseCache.Policy, ApiCallback)}; a body that doesn't decode is reported as a failure.
+     *
+     * @param decoder Turns the JSON body into the result.
+     */
+    static <T> ApiCall get(Context context, String path, ResponseCache.Policy policy,
+                           JsonDecoder<T> decoder, TypedCallback<T> callback) {
+        return get(context, HttpUrl.get(getBaseUrl(context) + path), policy, decoder, ApiCall.DIRECT, callback);
+    }
+
+    /**
+     * Same as {@link #get(Context, String, ResponseCache.Policy, JsonDecoder, TypedCallback)} for a
+     * URL with query parameters, with the callback run on the given executor.
+     */
+    static <T> ApiCall get(Context context, HttpUrl url, ResponseCache.Policy policy,
+                           JsonDecoder<T> decoder, Executor executor, TypedCallback<T> callback) {
+        return fetch(context, url, policy, decoder, body -> JsonDecoders.decode(body.charStream(), decoder),
+                executor, callback);
+    }
+
+    // Reads a successful response body into the callback's result type
+    private interface BodyReader<T> {
+        T read(ResponseBody body) throws IOException;
+    }
+
+    // Joins an identical GET in flight (same URL, policy, result type and token), or starts one.
+    // readerKey identifies what bodyReader produces, since equal readers aren't equal objects.
+    // Each caller's callback runs on its own executor.
+    private static <T> ApiCall fetch(Context context, HttpUrl url, ResponseCache.Policy policy, Object readerKey,
+                                     BodyReader<T> bodyReader, Executor executor, TypedCallback<T> callback) {
+        OkHttpClient safeClient = getAuthenticatedClient(context);
+        TokenStore store = tokenStore;
+        Object key = Arrays.asList(url, policy, readerKey, store != null ? store.getToken() : null);
+        return coalescer.join(key, executor, callback,
+                shared -> fetch(safeClient, url, policy, bodyReader, shared));
+    }
+
+    private static <T> ApiCall fetch(OkHttpClient safeClient, HttpUrl url, ResponseCache.Policy policy,
+                                     BodyReader<T> bodyReader, TypedCallback<T> callback) {
         Request request = new Request.Builder()
-                .url(baseUrl + "api/auth/login")
-                .post(formBody)
+                .url(url)
+                .get()
                 .build();
-        OkHttpClient safeClient = getSafeClient(context);
-        safeClient.newCall(request).enqueue(new Callback() {
+        ApiCall handle = new ApiCall(ApiCall.DIRECT);
+        TypedCallback<T> delivered = handle.deliver(callback);
+        if (policy != ResponseCache.Policy.STALE_WHILE_REVALIDATE) {
+            revalidate(safeClient, handle, request, false, bodyReader, delivered);
+            return handle;
+        }
+        handle.track(safeClient.newCall(ResponseCache.cachedOnly(request))).enqueue(new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
-                callback.onFailure(e);
+                revalidate(safeClient, handle, request, false, bodyReader, delivered);
+            }
+            @Override
+            public void onResponse(Call call, Response response) {
+                T cached = null;
+                try (ResponseBody body = response.body()) {
+                    if (response.isSuccessful()) {  // 504 when nothing is stored
+                        cached = bodyReader.read(body);
+                    }
+                } catch (IOException e) {
+                    cached = null;  // Unreadable copy; the network answer replaces it
+                }
+                if (cached != null) {
+                    delivered.onSuccess(cached);
+                }
+                revalidate(safeClient, handle, request, cached != null, bodyReader, delivered);
+            }
+        });
+        return handle;
+    }
+
+    private static <T> void revalidate(OkHttpClient safeClient, ApiCall handle, Request request, boolean served,
+                                       BodyReader<T> bodyReader, TypedCallback<T> callback) {
+        handle.track(safeClient.newCall(ResponseCache.revalidating(request))).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (!served) {
+                    callback.onFailure(e);
+                }
+            }
+            @Override
+            public void onResponse(Call call, Response response) {
+                T result;
+                try (Response r = response) {
+                    ResponseCache cache = responseCache;
+                    if (cache != null) {
+                        cache.record(r);
+                    }
+                    if (!r.isSuccessful()) {
+                        throw new IOException("Unexpected code " + r);
+                    }
+                    if (served && ResponseCache.isNotModified(r)) {
+                        return;  // The copy already delivered is current
+                    }
+                    result = bodyReader.read(r.body());
+                } catch (IOException e) {
+                    if (!served) {
+                        callback.onFailure(e);
+                    }
+                    return;
+                }
+                callback.onSuccess(result);
+            }
+        });
+    }
+
+    // Enqueues a call whose successful body is delivered as text
+    private static ApiCall enqueue(OkHttpClient client, Request request, Executor executor, ApiCallback callback) {
+        ApiCall handle = new ApiCall(executor);
+        ApiCallback delivered = handle.deliver(callback);
+        handle.track(client.newCall(request)).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                delivered.onFailure(e);
             }
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    callback.onSuccess(response.body().string());
-                } else {
-                    callback.onFailure(new IOException("Unexpected code " + response));
+            public void onResponse(Call call, Response response) {
+                try (Response r = response) {
+                    if (!r.isSuccessful()) {
+                        throw new IOException("Unexpected code " + r);
+                    }
+                    delivered.onSuccess(r.body().string());
+                } catch (IOException e) {
+                    delivered.onFailure(e);
                 }
             }
         });
+        return handle;
     }
 
-    public static void register(Context context, String username, String email, String password, ApiCallback callback) {
+    public static ApiCall login(Context context, String username, String password, ApiCallback callback) {
+        return login(context, username, password, ApiCall.DIRECT, callback);
+    }
+
+    /**
+     * Logs in.
+     *
+     * @param executor Where the callback runs, e.g. {@link ApiCall#mainThread()}.
+     * @return A handle to cancel the request.
+     */
+    public static ApiCall login(Context context, String username, String password, Executor executor,
+                                ApiCallback callback) {
+        String baseUrl = getBaseUrl(context);
+        RequestBody formBody = new FormBody.Builder()
+                .add("username", username)
+                .add("password", password)
+                .build();
+        Request request = new Request.Builder()
+                .url(baseUrl + "api/auth/login")
+                .post(formBody)
+                .build();
+        return enqueue(getSafeClient(context), request, executor, callback);
+    }
+
+    public static ApiCall register(Context context, String username, String email, String password,
+                                   ApiCallback callback) {
+        return register(context, username, email, password, ApiCall.DIRECT, callback);
+    }
+
+    /**
+     * Creates an account.
+     *
+     * @param executor Where the callback runs, e.g. {@link ApiCall#mainThread()}.
+     * @return A handle to cancel the request.
+     */
+    public static ApiCall register(Context context, String username, String email, String password,
+                                   Executor executor, ApiCallback callback) {
         String baseUrl = getBaseUrl(context);
         RequestBody formBody = new FormBody.Builder()
                 .add("username", username)
@@ -110,118 +645,276 @@ public class ApiClient {
                 .url(baseUrl + "api/auth/register")
                 .post(formBody)
                 .build();
-        OkHttpClient safeClient = getSafeClient(context);
-        safeClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                callback.onFailure(e);
-            }
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    callback.onSuccess(response.body().string());
-                } else {
-                    callback.onFailure(new IOException("Unexpected code " + response));
-                }
-            }
-        });
+        return enqueue(getSafeClient(context), request, executor, callback);
     }
 
     // Fetch all users (admin only)
-    public static void getAllUsers(Context context, ApiCallback callback) {
-        String baseUrl = getBaseUrl(context);
-        SharedPreferences prefs = context.getSharedPreferences("auth", Context.MODE_PRIVATE);
-        String jwt = prefs.getString("jwt", null);
-        if (jwt == null) {
-            callback.onFailure(new IOException("JWT token not found"));
-            return;
+    public static ApiCall getAllUsers(Context context, ApiCallback callback) {
+        return getAllUsers(context, ResponseCache.Policy.REVALIDATE, callback);
+    }
+
+    // Fetch all users (admin only); an unchanged list is answered from the cache with a 304
+    public static ApiCall getAllUsers(Context context, ResponseCache.Policy policy, ApiCallback callback) {
+        return getAllUsers(context, policy, ApiCall.DIRECT, callback);
+    }
+
+    // Same, with the callback run on the given executor, e.g. ApiCall.mainThread()
+    public static ApiCall getAllUsers(Context context, ResponseCache.Policy policy, Executor executor,
+                                      ApiCallback callback) {
+        return get(context, "api/users", policy, executor, callback);
+    }
+
+    // Fetch all users (admin only), decoded straight from the response stream
+    public static ApiCall getAllUsers(Context context, ResponseCache.Policy policy,
+                                      TypedCallback<List<User>> callback) {
+        return getAllUsers(context, policy, ApiCall.DIRECT, callback);
+    }
+
+    // Same, with the callback run on the given executor
+    public static ApiCall getAllUsers(Context context, ResponseCache.Policy policy, Executor executor,
+                                      TypedCallback<List<User>> callback) {
+        return get(context, HttpUrl.get(getBaseUrl(context) + "api/users"), policy, JsonDecoders.USERS,
+                executor, callback);
+    }
+
+    /**
+     * Fetches one page of the user directory (admin only).
+     *
+     * @param cursor The cursor from the previous page, or null for the first page.
+     * @param limit  Maximum number of users in the page.
+     * @param role   Only return users with this role, or null for all roles.
+     * @param query  Only return users whose username or email contains this text, or null.
+     */
+    public static ApiCall getUsersPage(Context context, String cursor, int limit, String role, String query,
+                                       TypedCallback<Page<User>> callback) {
+        return getUsersPage(context, cursor, limit, role, query, ApiCall.DIRECT, callback);
+    }
+
+    /**
+     * Same as {@link #getUsersPage(Context, String, int, String, String, TypedCallback)}, with the
+     * callback run on the given executor.
+     */
+    public static ApiCall getUsersPage(Context context, String cursor, int limit, String role, String query,
+                                       Executor executor, TypedCallback<Page<User>> callback) {
+        HttpUrl.Builder url = HttpUrl.get(getBaseUrl(context)).newBuilder()
+                .addPathSegments("api/users")
+                .addQueryParameter("limit", String.valueOf(limit));
+        if (cursor != null) {
+            url.addQueryParameter("cursor", cursor);
         }
-        Request request = new Request.Builder()
-                .url(baseUrl + "api/users")
-                .get()
-                .addHeader("Authorization", "Bearer " + jwt)
-                .build();
-        OkHttpClient safeClient = getSafeClient(context);
-        safeClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                callback.onFailure(e);
-            }
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    callback.onSuccess(response.body().string());
-                } else {
-                    callback.onFailure(new IOException("Unexpected code " + response));
-                }
-            }
-        });
+        if (role != null && !role.isEmpty()) {
+            url.addQueryParameter("role", role);
+        }
+        if (query != null && !query.isEmpty()) {
+            url.addQueryParameter("q", query);
+        }
+        return get(context, url.build(), ResponseCache.Policy.REVALIDATE, JsonDecoders.USER_PAGE, executor, callback);
     }
 
     // Update user by ID (admin only)
-    public static void updateUserById(Context context, String userId, String role, ApiCallback callback) {
+    public static ApiCall updateUserById(Context context, String userId, String role, ApiCallback callback) {
+        return updateUserById(context, userId, role, ApiCall.DIRECT, callback);
+    }
+
+    // Same, with the callback run on the given executor, e.g. ApiCall.mainThread()
+    public static ApiCall updateUserById(Context context, String userId, String role, Executor executor,
+                                         ApiCallback callback) {
         String baseUrl = getBaseUrl(context);
-        SharedPreferences prefs = context.getSharedPreferences("auth", Context.MODE_PRIVATE);
-        String jwt = prefs.getString("jwt", null);
-        if (jwt == null) {
-            callback.onFailure(new IOException("JWT token not found"));
-            return;
-        }
         MediaType JSON = MediaType.parse("application/json; charset=utf-8");
-        String jsonBody = "{\"role\":\"" + role + "\"}";
+        String jsonBody;
+        try {
+            jsonBody = new JSONObject().put("role", role).toString();
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
         RequestBody body = RequestBody.create(jsonBody, JSON);
         Request request = new Request.Builder()
                 .url(baseUrl + "api/users/" + userId)
                 .put(body)
-                .addHeader("Authorization", "Bearer " + jwt)
                 .addHeader("Content-Type", "application/json")
                 .build();
-        OkHttpClient safeClient = getSafeClient(context);
-        safeClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                callback.onFailure(e);
-            }
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    callback.onSuccess(response.body().string());
-                } else {
-                    callback.onFailure(new IOException("Unexpected code " + response));
-                }
-            }
-        });
+        return enqueue(getAuthenticatedClient(context), request, executor, callback);
     }
 
     // Delete user by ID (admin only)
-    public static void deleteUserById(Context context, String userId, ApiCallback callback) {
+    public static ApiCall deleteUserById(Context context, String userId, ApiCallback callback) {
+        return deleteUserById(context, userId, ApiCall.DIRECT, callback);
+    }
+
+    // Same, with the callback run on the given executor, e.g. ApiCall.mainThread()
+    public static ApiCall deleteUserById(Context context, String userId, Executor executor, ApiCallback callback) {
         String baseUrl = getBaseUrl(context);
-        SharedPreferences prefs = context.getSharedPreferences("auth", Context.MODE_PRIVATE);
-        String jwt = prefs.getString("jwt", null);
-        if (jwt == null) {
-            callback.onFailure(new IOException("JWT token not found"));
-            return;
-        }
         Request request = new Request.Builder()
                 .url(baseUrl + "api/users/" + userId)
                 .delete()
-                .addHeader("Authorization", "Bearer " + jwt)
                 .build();
-        OkHttpClient safeClient = getSafeClient(context);
-        safeClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                callback.onFailure(e);
+        return enqueue(getAuthenticatedClient(context), request, executor, callback);
+    }
+
+    /**
+     * Sends a batch of local item and category changes and waits for the answer. Must not be
+     * called on the main thread.
+     *
+     * @param idempotencyKey Identifies the batch, so a resent batch is applied only once.
+     * @param json           The batch, as {"changes": [...]}.
+     * @throws OutboxDispatcher.RejectedException If the server refused the batch for good.
+     * @throws IOException If the server did not accept the batch.
+     */
+    public static void sendChanges(Context context, String idempotencyKey, String json) throws IOException {
+        Request request = new Request.Builder()
+                .url(getBaseUrl(context) + "api/sync/changes")
+                .post(RequestBody.create(json, MediaType.get("application/json; charset=utf-8")))
+                .header(RetryInterceptor.IDEMPOTENCY_KEY, idempotencyKey)
+                .build();
+        try (Response response = getBackgroundClient(context).newCall(request).execute()) {
+            if (OutboxDispatcher.isRejection(response.code())) {
+                throw new OutboxDispatcher.RejectedException("Changes rejected: " + response);
             }
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    callback.onSuccess(response.body().string());
-                } else {
-                    callback.onFailure(new IOException("Unexpected code " + response));
-                }
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected code " + response);
             }
-        });
+        }
+    }
+
+    /**
+     * Fetches one page of item and category changes made on the server after a cursor, and waits
+     * for the answer. Must not be called on the main thread.
+     *
+     * @param cursor The cursor from the previous page, or null for every change.
+     * @param limit  Maximum rows in the page.
+     * @throws IOException If the page could not be fetched or read.
+     */
+    public static ChangePage getChanges(Context context, String cursor, int limit) throws IOException {
+        HttpUrl.Builder url = HttpUrl.get(getBaseUrl(context)).newBuilder()
+                .addPathSegments("api/sync/changes")
+                .addQueryParameter("limit", String.valueOf(limit));
+        if (cursor != null) {
+            url.addQueryParameter("since", cursor);
+        }
+        Request request = new Request.Builder().url(url.build()).build();
+        try (Response response = getBackgroundClient(context).newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected code " + response);
+            }
+            return JsonDecoders.decode(response.body().charStream(), ChangePage.DECODER);
+        }
+    }
+
+    /**
+     * Starts an image upload, or finds the server's upload of the same content, and waits for the
+     * answer. Must not be called on the main thread.
+     *
+     * @param contentHash The SHA-256 of the file; also the idempotency key, so a retried call
+     *                    finds the session the first one started.
+     * @param size        The file's size in bytes.
+     * @param fileName    The file's name.
+     * @throws IOException If the upload could not be started.
+     */
+    public static UploadSession startImageUpload(Context context, String contentHash, long size,
+                                                 String fileName) throws IOException {
+        String json;
+        try {
+            json = new JSONObject()
+                    .put("sha256", contentHash)
+                    .put("size", size)
+                    .put("fileName", fileName)
+                    .toString();
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+        Request request = new Request.Builder()
+                .url(getBaseUrl(context) + "api/uploads")
+                .post(RequestBody.create(json, MediaType.get("application/json; charset=utf-8")))
+                .header(RetryInterceptor.IDEMPOTENCY_KEY, contentHash)
+                .build();
+        try (Response response = getBackgroundClient(context).newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected code " + response);
+            }
+            return JsonDecoders.decode(response.body().charStream(), UploadSession.DECODER);
+        }
+    }
+
+    /**
+     * Asks the server how much of an upload it has, and waits for the answer. Must not be called
+     * on the main thread.
+     *
+     * @param uploadId The ID from {@link #startImageUpload}.
+     * @return The session, or null if the server no longer knows it.
+     * @throws IOException If the server could not be asked.
+     */
+    public static UploadSession getImageUpload(Context context, String uploadId) throws IOException {
+        Request request = new Request.Builder()
+                .url(HttpUrl.get(getBaseUrl(context)).newBuilder()
+                        .addPathSegments("api/uploads")
+                        .addPathSegment(uploadId)
+                        .build())
+                .header("Cache-Control", "no-cache")  // The offset changes with every chunk
+                .build();
+        try (Response response = getBackgroundClient(context).newCall(request).execute()) {
+            if (response.code() == 404) {
+                return null;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected code " + response);
+            }
+            return JsonDecoders.decode(response.body().charStream(), UploadSession.DECODER);
+        }
+    }
+
+    /**
+     * Sends one chunk of an upload as a multipart part, streaming it from the given body, and
+     * waits for the answer. Must not be called on the main thread.
+     *
+     * @param uploadId The ID from {@link #startImageUpload}.
+     * @param offset   The position of the chunk in the file.
+     * @param chunk    The chunk's bytes.
+     * @return The session after the chunk, or as it stands if the server expected another offset.
+     * @throws IOException If the chunk did not arrive.
+     */
+    public static UploadSession sendImageChunk(Context context, String uploadId, long offset,
+                                               RequestBody chunk) throws IOException {
+        Request request = new Request.Builder()
+                .url(HttpUrl.get(getBaseUrl(context)).newBuilder()
+                        .addPathSegments("api/uploads")
+                        .addPathSegment(uploadId)
+                        .build())
+                .put(new MultipartBody.Builder()
+                        .setType(MultipartBody.FORM)
+                        .addFormDataPart("chunk", uploadId, chunk)
+                        .build())
+                .header("Upload-Offset", String.valueOf(offset))
+                .build();
+        try (Response response = getBackgroundClient(context).newCall(request).execute()) {
+            if (!response.isSuccessful() && response.code() != 409) {  // 409: wrong offset, body says where to go on
+                throw new IOException("Unexpected code " + response);
+            }
+            return JsonDecoders.decode(response.body().charStream(), UploadSession.DECODER);
+        }
+    }
+
+    /**
+     * Creates a call that opens the server's change feed, a long-lived event stream. The call
+     * shares the background client's connections; it only waits longer for data, since the
+     * server sends a keep-alive comment every 30 seconds.
+     *
+     * @param lastEventId The ID of the last event received, or null for the whole log.
+     * @return The call, not yet executed.
+     */
+    public static Call newChangeFeedCall(Context context, String lastEventId) {
+        HttpUrl.Builder url = HttpUrl.get(getBaseUrl(context)).newBuilder()
+                .addPathSegments("api/sync/feed");
+        Request.Builder request = new Request.Builder()
+                .header("Accept", "text/event-stream")
+                .header("Cache-Control", "no-store");
+        if (lastEventId != null) {
+            url.addQueryParameter("since", lastEventId);
+            request.header("Last-Event-ID", lastEventId);
+        }
+        return getBackgroundClient(context).newBuilder()
+                .readTimeout(90, TimeUnit.SECONDS)  // Three missed keep-alives mean the connection is gone
+                .build()
+                .newCall(request.url(url.build()).build());
     }
 
     // Add more API methods as needed
@@ -0,0 +1,148 @@
+package com.hattonky.inventory.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Lets identical requests made at the same time share one network call.
+ *
+ * Requests with equal keys that start while an earlier one is still waiting for its first
+ * result join it instead of going to the network, and every caller receives the same result.
+ * Joining closes with the first result, so a request made afterwards fetches again. Each caller
+ * gets its own {@link ApiCall}; the shared call is only aborted when all of them are cancelled.
+ *
+ * Results are shared, not copied: callers must not modify them.
+ */
+public class RequestCoalescer {
+
+    /**
+     * Snapshot of the coalescing counters.
+     */
+    public static class Stats {
+        public final long requests;   // All requests passed through
+        public final long coalesced;  // Requests that joined one already in flight
+
+        Stats(long requests, long coalesced) {
+            this.requests = requests;
+            this.coalesced = coalesced;
+        }
+
+        public double hitRate() {
+            return requests == 0 ? 0 : (double) coalesced / requests;
+        }
+    }
+
+    /**
+     * Starts the shared network call, delivering to the given callback.
+     */
+    interface Starter<T> {
+        ApiCall start(ApiClient.TypedCallback<T> callback);
+    }
+
+    // One shared call and the callers waiting on it; guarded by the coalescer
+    private static class Flight<T> {
+        final List<ApiClient.TypedCallback<T>> subscribers = new ArrayList<>();
+        ApiCall call;
+        boolean abandoned;  // Every caller cancelled
+    }
+
+    private final Map<Object, Flight<?>> flights = new HashMap<>();
+    private long requests;
+    private long coalesced;
+
+    /**
+     * Starts a request or joins the identical one in flight.
+     *
+     * @param key      Identifies identical requests, e.g. URL plus credentials; needs equals/hashCode.
+     * @param executor Where this caller's callback runs.
+     * @param callback This caller's callback.
+     * @param starter  Starts the network call if none is in flight.
+     * @return This caller's handle.
+     */
+    @SuppressWarnings("unchecked")
+    <T> ApiCall join(Object key, Executor executor, ApiClient.TypedCallback<T> callback, Starter<T> starter) {
+        ApiCall handle = new ApiCall(executor);
+        ApiClient.TypedCallback<T> delivered = handle.deliver(callback);
+        Flight<T> flight;
+        boolean leader;
+        synchronized (this) {
+            requests++;
+            flight = (Flight<T>) flights.get(key);
+            leader = flight == null;
+            if (leader) {
+                flight = new Flight<>();
+                flights.put(key, flight);
+            } else {
+                coalesced++;
+            }
+            flight.subscribers.add(delivered);
+        }
+        Flight<T> joined = flight;
+        handle.onCancel(() -> leave(key, joined, delivered));
+        if (leader) {
+            ApiCall call = starter.start(fanOut(key, flight));
+            boolean abandoned;
+            synchronized (this) {
+                flight.call = call;
+                abandoned = flight.abandoned;
+            }
+            if (abandoned) {
+                call.cancel();
+            }
+        }
+        return handle;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(requests, coalesced);
+    }
+
+    // Delivers each result of the shared call to everyone waiting on it
+    private <T> ApiClient.TypedCallback<T> fanOut(Object key, Flight<T> flight) {
+        return new ApiClient.TypedCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                for (ApiClient.TypedCallback<T> subscriber : close(key, flight)) {
+                    subscriber.onSuccess(result);
+                }
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                for (ApiClient.TypedCallback<T> subscriber : close(key, flight)) {
+                    subscriber.onFailure(e);
+                }
+            }
+        };
+    }
+
+    // Stops new callers from joining and returns the current subscribers
+    private synchronized <T> List<ApiClient.TypedCallback<T>> close(Object key, Flight<T> flight) {
+        if (flights.get(key) == flight) {
+            flights.remove(key);
+        }
+        return new ArrayList<>(flight.subscribers);
+    }
+
+    private <T> void leave(Object key, Flight<T> flight, ApiClient.TypedCallback<T> subscriber) {
+        ApiCall call;
+        synchronized (this) {
+            flight.subscribers.remove(subscriber);
+            if (!flight.subscribers.isEmpty()) {
+                return;
+            }
+            if (flights.get(key) == flight) {
+                flights.remove(key);
+            }
+            flight.abandoned = true;
+            call = flight.call;
+        }
+        if (call != null) {
+            call.cancel();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.hattonky.inventory.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.hattonky.inventory.data.network.Jwt;
+import com.hattonky.inventory.data.network.TokenStore;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The signed-in session: server addresses, token, the token's claims, role and user.
+ *
+ * Everything is read from the "auth" preferences once, on a background thread, when the
+ * session is first requested (the application does that at startup), and kept in memory as an
+ * immutable snapshot, so a lookup is a field read. Changes replace the snapshot at once and are
+ * written back in the background; several changes in quick succession are written together. A
+ * read made before loading has finished waits for it.
+ */
+public class Session implements TokenStore {
+
+    private static final String TAG = "Session";
+
+    private static final String PREFS_NAME = "auth";
+    private static final String KEY_SERVER_URL = "server_url";    // First address; read by older versions
+    private static final String KEY_SERVER_URLS = "server_urls";  // All addresses, one per line
+    private static final String KEY_JWT = "jwt";
+    private static final String KEY_ROLE = "role";
+    private static final String KEY_USER = "user";
+
+    private static Session instance;
+
+    // One consistent view of the session; replaced as a whole
+    private static final class State {
+        final List<String> serverUrls;
+        final String token;
+        final JSONObject claims;
+        final long expiresAt;
+        final String role;
+        final JSONObject user;
+
+        State(List<String> serverUrls, String token, String role, JSONObject user) {
+            this.serverUrls = Collections.unmodifiableList(new ArrayList<>(serverUrls));
+            this.token = token;
+            this.claims = token != null ? Jwt.claims(token) : new JSONObject();
+            this.expiresAt = token != null ? Jwt.expiresAt(token) : 0;
+            this.role = role;
+            this.user = user;
+        }
+    }
+
+    private final SharedPreferences prefs;
+    private final Executor executor;
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();  // A write is queued and not yet started
+    private volatile State state;  // Null until loaded
+
+    /**
+     * Returns the app's session, loading it in the background on first use.
+     */
+    public static synchronized Session getInstance(Context context) {
+        if (instance == null) {
+            instance = new Session(context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE),
+                    Executors.newSingleThreadExecutor());
+        }
+        return instance;
+    }
+
+    /**
+     * Forgets the app's session, so the next {@link #getInstance} loads it again. Used by tests.
+     */
+    static synchronized void reset() {
+        instance = null;
+    }
+
+    /**
+     * Starts loading the session.
+     *
+     * @param prefs    Where the session is kept.
+     * @param executor Loads and writes the session; should be single-threaded so writes stay in order.
+     */
+    public Session(SharedPreferences prefs, Executor executor) {
+        this.prefs = prefs;
+        this.executor = executor;
+        executor.execute(this::load);
+    }
+
+    /**
+     * @return The configured server addresses in order of preference; empty if none.
+     */
+    public List<String> getServerUrls() {
+        return state().serverUrls;
+    }
+
+    /**
+     * Replaces the server addresses.
+     *
+     * @param urls Base URLs in order of preference.
+     */
+    public synchronized void setServerUrls(List<String> urls) {
+        State current = state();
+        update(new State(urls, current.token, current.role, current.user));
+    }
+
+    @Override
+    public String getToken() {
+        return state().token;
+    }
+
+    @Override
+    public synchronized void setToken(String token) {
+        State current = state();
+        update(new State(current.serverUrls, token, current.role, current.user));
+    }
+
+    /**
+     * @return The claims of the current token; empty when logged out or unreadable. Don't modify.
+     */
+    public JSONObject getClaims() {
+        return state().claims;
+    }
+
+    /**
+     * @return When the current token expires, in epoch milliseconds; 0 when logged out.
+     */
+    public long getExpiresAt() {
+        return state().expiresAt;
+    }
+
+    /**
+     * @return The role the server gave at login, or else the token's "role" claim; null if neither.
+     */
+    public String getRole() {
+        State current = state();
+        if (current.role != null) {
+            return current.role;
+        }
+        String claim = current.claims.optString("role", "");
+        return claim.isEmpty() ? null : claim;
+    }
+
+    /**
+     * @return The user returned at login, or null. Don't modify.
+     */
+    public JSONObject getUser() {
+        return state().user;
+    }
+
+    /**
+     * @return Whether a user is logged in.
+     */
+    public boolean isLoggedIn() {
+        String token = state().token;
+        return token != null && !token.isEmpty();
+    }
+
+    /**
+     * Starts a session after logging in or registering.
+     *
+     * @param token The token to authenticate with.
+     * @param role  The user's role, or null to use the token's claim.
+     * @param user  The user as the server returned it, or null.
+     */
+    public synchronized void login(String token, String role, JSONObject user) {
+        update(new State(state().serverUrls, token, role, user));
+    }
+
+    /**
+     * Ends the session. The server addresses are kept.
+     */
+    public synchronized void logout() {
+        update(new State(state().serverUrls, null, null, null));
+    }
+
+    /**
+     * Returns the server addresses in a list: one per line of {@code urls}, or just {@code url}
+     * as saved before several could be configured.
+     */
+    public static List<String> parseServerUrls(String urls, String url) {
+        List<String> result = new ArrayList<>();
+        for (String line : (urls != null ? urls : url != null ? url : "").split("\n")) {
+            if (!line.trim().isEmpty()) {
+                result.add(line.trim());
+            }
+        }
+        return result;
+    }
+
+    private State state() {
+        State current = state;
+        if (current == null) {
+            try {
+                loaded.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading the session", e);
+            }
+            current = state;
+        }
+        return current;
+    }
+
+    private void load() {
+        JSONObject user = null;
+        String userJson = prefs.getString(KEY_USER, null);
+        if (userJson != null) {
+            try {
+                user = new JSONObject(userJson);
+            } catch (JSONException e) {
+                Log.w(TAG, "Ignoring unreadable saved user", e);
+            }
+        }
+        state = new State(parseServerUrls(prefs.getString(KEY_SERVER_URLS, null), prefs.getString(KEY_SERVER_URL, null)),
+                prefs.getString(KEY_JWT, null), prefs.getString(KEY_ROLE, null), user);
+        loaded.countDown();
+    }
+
+    private void update(State next) {
+        state = next;
+        if (writeScheduled.compareAndSet(false, true)) {
+            executor.execute(this::write);
+        }
+    }
+
+    // Writes whatever the session is by the time this runs
+    private void write() {
+        writeScheduled.set(false);
+        State current = state;
+        SharedPreferences.Editor editor = prefs.edit();
+        if (current.serverUrls.isEmpty()) {
+            editor.remove(KEY_SERVER_URL).remove(KEY_SERVER_URLS);
+        } else {
+            editor.putString(KEY_SERVER_URL, current.serverUrls.get(0))
+                    .putString(KEY_SERVER_URLS, String.join("\n", current.serverUrls));
+        }
+        putOrRemove(editor, KEY_JWT, current.token);
+        putOrRemove(editor, KEY_ROLE, current.role);
+        putOrRemove(editor, KEY_USER, current.user != null ? current.user.toString() : null);
+        if (!editor.commit()) {
+            Log.w(TAG, "Saving the session failed");
+        }
+    }
+
+    private static void putOrRemove(SharedPreferences.Editor editor, String key, String value) {
+        if (value != null) {
+            editor.putString(key, value);
+        } else {
+            editor.remove(key);
+        }
+    }
+}
@@ -1,39 +1,37 @@
 package com.hattonky.inventory.data;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import org.json.JSONObject;
 
+/**
+ * Login state for callers that only need the token and user. Backed by the app's
+ * {@link Session}, so it holds no copy of its own.
+ */
 public class UserManager {
-    private static final String PREFS_NAME = "user_prefs";
-    private static final String KEY_TOKEN = "token";
-    private static final String KEY_USER = "user";
-    private SharedPreferences prefs;
+    private final Session session;
 
     public UserManager(Context context) {
-        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        session = Session.getInstance(context);
     }
 
     public void saveLogin(String token, JSONObject user) {
-        prefs.edit().putString(KEY_TOKEN, token).putString(KEY_USER, user.toString()).apply();
+        String role = user.optString("role", "");
+        session.login(token, role.isEmpty() ? null : role, user);
     }
 
     public String getToken() {
-        return prefs.getString(KEY_TOKEN, null);
+        return session.getToken();
     }
 
     public JSONObject getUser() {
-        try {
-            String userStr = prefs.getString(KEY_USER, null);
-            return userStr != null ? new JSONObject(userStr) : null;
-        } catch (Exception e) { return null; }
+        return session.getUser();
     }
 
     public void logout() {
-        prefs.edit().clear().apply();
+        session.logout();
     }
 
     public boolean isLoggedIn() {
-        return getToken() != null;
+        return session.isLoggedIn();
     }
 }
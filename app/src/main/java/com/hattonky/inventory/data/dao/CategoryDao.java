@@ -5,10 +5,14 @@ import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Update;
 
 import com.hattonky.inventory.data.model.Category;
+import com.hattonky.inventory.data.model.OutboxEntry;
 
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Data Access Object (DAO) for accessing and manipulating the categories in the database.
@@ -23,9 +27,18 @@ public interface CategoryDao {
      * If the category already exists, it will be ignored by default (conflict resolution not specified).
      *
      * @param category The category to be inserted.
+     * @return The ID of the new category.
      */
     @Insert
-    void insert(Category category);
+    long insert(Category category);
+
+    /**
+     * Updates an existing category, matched by its ID.
+     *
+     * @param category The category to be updated.
+     */
+    @Update
+    void update(Category category);
 
     /**
      * Deletes the specified category from the database.
@@ -40,9 +53,71 @@ public interface CategoryDao {
      * Queries all categories from the database and orders them by name in ascending order.
      * This method returns a LiveData object, which allows automatic updates to any observers
      * when the data in the "categories" table changes.
+     * Deleted categories waiting to be synced are left out.
      *
      * @return A LiveData list of all categories sorted by name.
      */
-    @Query("SELECT * FROM categories ORDER BY name ASC")
+    @Query("SELECT * FROM categories WHERE deleted = 0 ORDER BY name ASC")
     LiveData<List<Category>> getAllCategories();
+
+    /**
+     * Adds an entry to the outbox of changes waiting to be sent to the server.
+     *
+     * @param entry The entry to add.
+     */
+    @Insert
+    void insertOutboxEntry(OutboxEntry entry);
+
+    /**
+     * Inserts a category and records the change in the outbox, in one transaction.
+     * A new category is given a UID and the current time as its change time.
+     *
+     * @param category The category to be inserted; its ID is set to the new row's ID.
+     * @return The ID of the new category.
+     */
+    @Transaction
+    default long insertAndRecord(Category category) {
+        if (category.getUid() == null) {
+            category.setUid(UUID.randomUUID().toString());
+        }
+        category.setUpdatedAt(System.currentTimeMillis());
+        long id = insert(category);
+        category.setId((int) id);
+        insertOutboxEntry(OutboxEntry.forCategory(OutboxEntry.OP_UPSERT, category));
+        return id;
+    }
+
+    /**
+     * Marks a category as deleted and records the change in the outbox, in one transaction.
+     * The row stays as a tombstone until the deletion has been synced; see {@link #purgeTombstones}.
+     *
+     * @param category The category to be deleted.
+     */
+    @Transaction
+    default void deleteAndRecord(Category category) {
+        category.setDeleted(true);
+        category.setUpdatedAt(System.currentTimeMillis());
+        update(category);
+        insertOutboxEntry(OutboxEntry.forCategory(OutboxEntry.OP_DELETE, category));
+    }
+
+    /**
+     * Returns a category by its UID, including a deleted one.
+     * This is a blocking call and must be made on a background thread.
+     *
+     * @param uid The category's UID.
+     * @return The category, or null if there is none with that UID.
+     */
+    @Query("SELECT * FROM categories WHERE uid = :uid")
+    Category getByUid(String uid);
+
+    /**
+     * Removes deleted categories whose deletion has been sent to the server. Tombstones with a
+     * change still in the outbox are kept.
+     *
+     * @return The number of categories removed.
+     */
+    @Query("DELETE FROM categories WHERE deleted = 1 AND id NOT IN "
+            + "(SELECT entityId FROM outbox WHERE entityType = 'category')")
+    int purgeTombstones();
 }
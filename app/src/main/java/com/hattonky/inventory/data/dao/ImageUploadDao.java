@@ -0,0 +1,75 @@
+package com.hattonky.inventory.data.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.hattonky.inventory.data.model.ImageUpload;
+
+/**
+ * Data Access Object (DAO) for the "image_uploads" table of image upload checkpoints.
+ * Written by the uploader after every chunk the server confirms; all calls are blocking and
+ * must be made on a background thread.
+ */
+@Dao
+public interface ImageUploadDao {
+
+    /**
+     * Stores the upload state of a file, replacing the previous one.
+     *
+     * @param upload The state to store.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(ImageUpload upload);
+
+    /**
+     * Returns the upload state of a file.
+     *
+     * @param path The image path.
+     * @return The state, or null if the file was never hashed.
+     */
+    @Query("SELECT * FROM image_uploads WHERE path = :path")
+    ImageUpload getByPath(String path);
+
+    /**
+     * Returns a finished upload of the same content, from any path.
+     *
+     * @param contentHash The SHA-256 of the file.
+     * @return A complete upload, or null if these bytes were never uploaded.
+     */
+    @Query("SELECT * FROM image_uploads WHERE contentHash = :contentHash AND remoteUrl IS NOT NULL LIMIT 1")
+    ImageUpload getCompletedByHash(String contentHash);
+
+    /**
+     * Records the bytes the server has confirmed, as a checkpoint to resume from.
+     *
+     * @param path           The image path.
+     * @param uploadId       The server's upload session.
+     * @param confirmedBytes The bytes the server has.
+     * @param updatedAt      The current time.
+     */
+    @Query("UPDATE image_uploads SET uploadId = :uploadId, confirmedBytes = :confirmedBytes, "
+            + "updatedAt = :updatedAt WHERE path = :path")
+    void checkpoint(String path, String uploadId, long confirmedBytes, long updatedAt);
+
+    /**
+     * Marks an upload as finished.
+     *
+     * @param path      The image path.
+     * @param remoteUrl The server URL of the image.
+     * @param updatedAt The current time.
+     */
+    @Query("UPDATE image_uploads SET remoteUrl = :remoteUrl, confirmedBytes = size, "
+            + "updatedAt = :updatedAt WHERE path = :path")
+    void complete(String path, String remoteUrl, long updatedAt);
+
+    /**
+     * Removes the state of files no item refers to any more.
+     *
+     * @return The number of rows removed.
+     */
+    @Query("DELETE FROM image_uploads WHERE path NOT IN (SELECT imagePath FROM items WHERE imagePath IS NOT NULL "
+            + "UNION SELECT path FROM item_images WHERE path IS NOT NULL)")
+    int purgeOrphans();
+}
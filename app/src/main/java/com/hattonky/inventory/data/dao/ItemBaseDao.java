@@ -0,0 +1,42 @@
+package com.hattonky.inventory.data.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.hattonky.inventory.data.model.ItemBase;
+
+/**
+ * Data Access Object (DAO) for the "item_bases" table of last agreed item copies.
+ * Written and read by the sync while it applies server changes; all calls are blocking and
+ * must be made on a background thread.
+ */
+@Dao
+public interface ItemBaseDao {
+
+    /**
+     * Stores the agreed copy of an item, replacing the previous one.
+     *
+     * @param base The copy to store.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(ItemBase base);
+
+    /**
+     * Returns the agreed copy of an item.
+     *
+     * @param uid The item's UID.
+     * @return The copy, or null if the item was never synced.
+     */
+    @Query("SELECT * FROM item_bases WHERE uid = :uid")
+    ItemBase getByUid(String uid);
+
+    /**
+     * Removes copies of items that no longer exist locally, e.g. after tombstones are purged.
+     *
+     * @return The number of copies removed.
+     */
+    @Query("DELETE FROM item_bases WHERE uid NOT IN (SELECT uid FROM items WHERE uid IS NOT NULL)")
+    int purgeOrphans();
+}
@@ -5,11 +5,15 @@ import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.OutboxEntry;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
 
 /**
  * Data Access Object (DAO) for interacting with the "items" table in the database.
@@ -23,9 +27,10 @@ public interface ItemDao {
      * If the item already exists, Room will handle conflict resolution (default behavior).
      *
      * @param item The item to be inserted.
+     * @return The row ID of the inserted item.
      */
     @Insert
-    void insert(Item item);
+    long insert(Item item);
 
     /**
      * Updates an existing item in the database.
@@ -55,10 +60,11 @@ public interface ItemDao {
     /**
      * Retrieves all items from the database, ordered by their name in ascending order.
      * Returns a LiveData list, meaning the UI can observe changes in the list automatically.
+     * Deleted items waiting to be synced are left out.
      *
      * @return A LiveData list of all items sorted by name.
      */
-    @Query("SELECT * FROM items ORDER BY name ASC")
+    @Query("SELECT * FROM items WHERE deleted = 0 ORDER BY name ASC")
     LiveData<List<Item>> getAllItems();
 
     /**
@@ -68,6 +74,170 @@ public interface ItemDao {
      * @param category The category by which to filter items.
      * @return A LiveData list of items filtered by the specified category.
      */
-    @Query("SELECT * FROM items WHERE category = :category ORDER BY name ASC")
+    @Query("SELECT * FROM items WHERE category = :category AND deleted = 0 ORDER BY name ASC")
     LiveData<List<Item>> getItemsByCategory(String category);
+
+    /**
+     * Retrieves every image path referenced by an item, either as its primary image or as an
+     * attached image, in a single query.
+     * Used to work out which files in the image store are still referenced. Deleted items keep
+     * their images until the tombstone is purged.
+     * This is a blocking call and must be made on a background thread.
+     *
+     * @return A list of all non-null referenced image paths.
+     */
+    @Query("SELECT imagePath FROM items WHERE imagePath IS NOT NULL "
+            + "UNION SELECT path FROM item_images WHERE path IS NOT NULL")
+    List<String> getAllImagePaths();
+
+    /**
+     * Returns the IDs of the items that use an image path as their primary image.
+     *
+     * @param path The image path.
+     * @return The matching item IDs.
+     */
+    @Query("SELECT id FROM items WHERE imagePath = :path")
+    List<Integer> getIdsByImagePath(String path);
+
+    /**
+     * Replaces an image path on every attached image that still uses it.
+     *
+     * @param oldPath The image path to replace.
+     * @param newPath The new image path.
+     * @return The number of attached images updated.
+     */
+    @Query("UPDATE item_images SET path = :newPath WHERE path = :oldPath")
+    int updateAttachedImagePath(String oldPath, String newPath);
+
+    /**
+     * Replaces an image path everywhere it is referenced, as a primary or attached image,
+     * in one transaction. The match on the old path makes this a conditional swap: items whose
+     * image was changed in the meantime are left alone. Each item changed is recorded in the outbox.
+     *
+     * @param oldPath The image path to replace.
+     * @param newPath The new image path.
+     * @return The total number of rows updated.
+     */
+    @Transaction
+    default int swapImagePath(String oldPath, String newPath) {
+        int updated = 0;
+        for (int itemId : getIdsByImagePath(oldPath)) {
+            updated += setImagePathAndRecord(itemId, oldPath, newPath) ? 1 : 0;
+        }
+        return updated + updateAttachedImagePath(oldPath, newPath);
+    }
+
+    /**
+     * Returns an item by its unique identifier (ID).
+     *
+     * @param itemId The ID of the item.
+     * @return The item, or null if there is none with that ID.
+     */
+    @Query("SELECT * FROM items WHERE id = :itemId")
+    Item getById(int itemId);
+
+    /**
+     * Adds an entry to the outbox of changes waiting to be sent to the server.
+     *
+     * @param entry The entry to add.
+     */
+    @Insert
+    void insertOutboxEntry(OutboxEntry entry);
+
+    /**
+     * Inserts an item and records the change in the outbox, in one transaction.
+     * A new item is given a UID and the current time as its change time.
+     *
+     * @param item The item to be inserted; its ID is set to the new row's ID.
+     * @return The row ID of the inserted item.
+     */
+    @Transaction
+    default long insertAndRecord(Item item) {
+        if (item.getUid() == null) {
+            item.setUid(UUID.randomUUID().toString());
+        }
+        item.setUpdatedAt(System.currentTimeMillis());
+        long id = insert(item);
+        item.setId((int) id);
+        insertOutboxEntry(OutboxEntry.forItem(OutboxEntry.OP_UPSERT, item));
+        return id;
+    }
+
+    /**
+     * Updates an item and records the change in the outbox, in one transaction.
+     * The entry only carries the fields that differ from the stored row.
+     *
+     * @param item The item to be updated.
+     */
+    @Transaction
+    default void updateAndRecord(Item item) {
+        Item previous = getById(item.getId());
+        item.setUpdatedAt(System.currentTimeMillis());
+        update(item);
+        insertOutboxEntry(previous != null
+                ? OutboxEntry.forItemChange(previous, item)
+                : OutboxEntry.forItem(OutboxEntry.OP_UPSERT, item));
+    }
+
+    /**
+     * Sets an item's primary image path and records the change in the outbox, in one transaction.
+     * Nothing is changed if the item is gone, or if its path is no longer the expected one.
+     *
+     * @param itemId       The ID of the item.
+     * @param expectedPath The path the item must have now.
+     * @param path         The new primary image path (may be null).
+     * @return Whether the item was changed.
+     */
+    @Transaction
+    default boolean setImagePathAndRecord(int itemId, String expectedPath, String path) {
+        Item previous = getById(itemId);
+        if (previous == null || !Objects.equals(previous.getImagePath(), expectedPath)
+                || Objects.equals(expectedPath, path)) {
+            return false;
+        }
+        Item item = getById(itemId);
+        item.setImagePath(path);
+        item.setUpdatedAt(System.currentTimeMillis());
+        update(item);
+        insertOutboxEntry(OutboxEntry.forItemChange(previous, item));
+        return true;
+    }
+
+    /**
+     * Marks an item as deleted by its ID and records the change in the outbox, in one transaction.
+     * The row stays as a tombstone until the deletion has been synced; see {@link #purgeTombstones}.
+     * Nothing is recorded if there is no such item.
+     *
+     * @param itemId The ID of the item to be deleted.
+     */
+    @Transaction
+    default void deleteByIdAndRecord(int itemId) {
+        Item item = getById(itemId);
+        if (item != null && !item.isDeleted()) {
+            item.setDeleted(true);
+            item.setUpdatedAt(System.currentTimeMillis());
+            update(item);
+            insertOutboxEntry(OutboxEntry.forItem(OutboxEntry.OP_DELETE, item));
+        }
+    }
+
+    /**
+     * Returns an item by its UID, including a deleted one.
+     * This is a blocking call and must be made on a background thread.
+     *
+     * @param uid The item's UID.
+     * @return The item, or null if there is none with that UID.
+     */
+    @Query("SELECT * FROM items WHERE uid = :uid")
+    Item getByUid(String uid);
+
+    /**
+     * Removes deleted items whose deletion has been sent to the server, together with their
+     * attached images. Tombstones with a change still in the outbox are kept.
+     *
+     * @return The number of items removed.
+     */
+    @Query("DELETE FROM items WHERE deleted = 1 AND id NOT IN "
+            + "(SELECT entityId FROM outbox WHERE entityType = 'item')")
+    int purgeTombstones();
 }
@@ -0,0 +1,165 @@
+package com.hattonky.inventory.data.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Update;
+
+import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.ItemImage;
+import com.hattonky.inventory.data.model.OutboxEntry;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Data Access Object (DAO) for the "item_images" table, which holds every photo attached to an item.
+ * The item's primary photo is mirrored on the item row, and the transactional methods here keep
+ * that pointer consistent with the attached images. Every change to the pointer is recorded in
+ * the outbox like any other item change.
+ */
+@Dao
+public interface ItemImageDao {
+
+    /**
+     * Inserts a new image row.
+     *
+     * @param image The image to be inserted.
+     */
+    @Insert
+    void insert(ItemImage image);
+
+    /**
+     * Deletes an image row. The file itself is left for the orphaned image collector.
+     *
+     * @param image The image to be deleted.
+     */
+    @Delete
+    void delete(ItemImage image);
+
+    /**
+     * Retrieves the images attached to an item in display order.
+     * Returns a LiveData list so the attachment strip updates automatically.
+     *
+     * @param itemId The ID of the item.
+     * @return A LiveData list of the item's images.
+     */
+    @Query("SELECT * FROM item_images WHERE itemId = :itemId ORDER BY position ASC")
+    LiveData<List<ItemImage>> getImagesForItem(int itemId);
+
+    /**
+     * Returns the position after the last image of an item, or 0 if it has none.
+     *
+     * @param itemId The ID of the item.
+     * @return The next free position.
+     */
+    @Query("SELECT COALESCE(MAX(position) + 1, 0) FROM item_images WHERE itemId = :itemId")
+    int getNextPosition(int itemId);
+
+    /**
+     * Counts how many times a path is attached to an item.
+     *
+     * @param itemId The ID of the item.
+     * @param path   The image path.
+     * @return The number of matching rows.
+     */
+    @Query("SELECT COUNT(*) FROM item_images WHERE itemId = :itemId AND path = :path")
+    int countImage(int itemId, String path);
+
+    /**
+     * Returns the path of an item's first image, or null if it has none.
+     *
+     * @param itemId The ID of the item.
+     * @return The first image's path.
+     */
+    @Query("SELECT path FROM item_images WHERE itemId = :itemId ORDER BY position ASC LIMIT 1")
+    String getFirstPath(int itemId);
+
+    /**
+     * Returns the primary image path stored on the item row.
+     *
+     * @param itemId The ID of the item.
+     * @return The item's primary image path.
+     */
+    @Query("SELECT imagePath FROM items WHERE id = :itemId")
+    String getPrimaryPath(int itemId);
+
+    /**
+     * Returns an item row by its ID.
+     *
+     * @param itemId The ID of the item.
+     * @return The item, or null if there is none with that ID.
+     */
+    @Query("SELECT * FROM items WHERE id = :itemId")
+    Item getItem(int itemId);
+
+    /**
+     * Updates an item row.
+     *
+     * @param item The item to be updated.
+     */
+    @Update
+    void updateItem(Item item);
+
+    /**
+     * Adds an entry to the outbox of changes waiting to be sent to the server.
+     *
+     * @param entry The entry to add.
+     */
+    @Insert
+    void insertOutboxEntry(OutboxEntry entry);
+
+    /**
+     * Sets the primary image pointer on the item row and records the change in the outbox,
+     * in one transaction, so the next sync doesn't overwrite it with the server's copy.
+     *
+     * @param itemId The ID of the item.
+     * @param path   The new primary image path (may be null).
+     */
+    @Transaction
+    default void setPrimaryPath(int itemId, String path) {
+        Item previous = getItem(itemId);
+        if (previous == null || Objects.equals(previous.getImagePath(), path)) {
+            return;
+        }
+        Item item = getItem(itemId);
+        item.setImagePath(path);
+        item.setUpdatedAt(System.currentTimeMillis());
+        updateItem(item);
+        insertOutboxEntry(OutboxEntry.forItemChange(previous, item));
+    }
+
+    /**
+     * Attaches an image to the end of an item's list, unless it is already attached.
+     * If the item has no primary image yet, the new image becomes the primary.
+     *
+     * @param itemId The ID of the item.
+     * @param path   The image path.
+     */
+    @Transaction
+    default void addImage(int itemId, String path) {
+        if (countImage(itemId, path) == 0) {
+            insert(new ItemImage(itemId, path, getNextPosition(itemId)));
+        }
+        if (getPrimaryPath(itemId) == null) {
+            setPrimaryPath(itemId, path);
+        }
+    }
+
+    /**
+     * Removes an image from its item. If it was the primary image, the item's first remaining
+     * image becomes the primary.
+     *
+     * @param image The image to remove.
+     */
+    @Transaction
+    default void removeImage(ItemImage image) {
+        delete(image);
+        if (image.getPath() != null && image.getPath().equals(getPrimaryPath(image.getItemId()))) {
+            setPrimaryPath(image.getItemId(), getFirstPath(image.getItemId()));
+        }
+    }
+}
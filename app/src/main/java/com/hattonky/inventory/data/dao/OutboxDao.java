@@ -0,0 +1,100 @@
+package com.hattonky.inventory.data.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import com.hattonky.inventory.data.model.OutboxEntry;
+
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) for the "outbox" table of local changes waiting to be sent.
+ * Entries are added by {@link ItemDao} and {@link CategoryDao} together with the row change
+ * they record; this DAO reads them back in order and removes them once sent. Entries the
+ * server rejected are kept, marked with {@code rejectedAt}, and left out of everything that
+ * concerns pending changes.
+ */
+@Dao
+public interface OutboxDao {
+
+    /**
+     * Inserts an entry. Normally done by the item and category DAOs inside their transactions.
+     *
+     * @param entry The entry to insert.
+     * @return The ID of the new entry.
+     */
+    @Insert
+    long insert(OutboxEntry entry);
+
+    /**
+     * Returns the oldest pending entries, in the order the changes were made.
+     *
+     * @param limit Maximum number of entries.
+     * @return Up to limit entries, oldest first.
+     */
+    @Query("SELECT * FROM outbox WHERE rejectedAt = 0 ORDER BY id ASC LIMIT :limit")
+    List<OutboxEntry> getBatch(int limit);
+
+    /**
+     * Removes entries the server has accepted. Entries added later have higher IDs and are kept,
+     * as are rejected ones.
+     *
+     * @param lastId The highest ID that was sent.
+     * @return The number of entries removed.
+     */
+    @Query("DELETE FROM outbox WHERE id <= :lastId AND rejectedAt = 0")
+    int deleteUpTo(long lastId);
+
+    /**
+     * Counts pending entries.
+     *
+     * @return The number of changes not yet sent.
+     */
+    @Query("SELECT COUNT(*) FROM outbox WHERE rejectedAt = 0")
+    int count();
+
+    /**
+     * Checks whether a row has changes not yet sent. Such a row must not be overwritten by a
+     * copy from the server, or the local change would be lost.
+     *
+     * @param entityType The kind of row: {@link OutboxEntry#TYPE_ITEM} or {@link OutboxEntry#TYPE_CATEGORY}.
+     * @param entityId   The local ID of the row.
+     * @return True if an entry for the row is pending.
+     */
+    @Query("SELECT EXISTS(SELECT 1 FROM outbox WHERE entityType = :entityType AND entityId = :entityId "
+            + "AND rejectedAt = 0)")
+    boolean hasPending(String entityType, int entityId);
+
+    /**
+     * Observes the number of pending entries, e.g. to show that changes are waiting to be sent.
+     *
+     * @return A LiveData count that updates as entries are added and sent.
+     */
+    @Query("SELECT COUNT(*) FROM outbox WHERE rejectedAt = 0")
+    LiveData<Integer> observeCount();
+
+    /**
+     * Marks a row's pending changes up to an entry as rejected, so they are no longer sent. Used
+     * for the changes combined into one that the server refused.
+     *
+     * @param entityType The kind of row.
+     * @param entityId   The local ID of the row.
+     * @param lastId     The highest entry ID that was combined.
+     * @param reason     Why the change was rejected.
+     * @param rejectedAt When, in epoch milliseconds; must not be 0.
+     * @return The number of entries marked.
+     */
+    @Query("UPDATE outbox SET rejectedAt = :rejectedAt, rejection = :reason WHERE entityType = :entityType "
+            + "AND entityId = :entityId AND id <= :lastId AND rejectedAt = 0")
+    int markRejected(String entityType, int entityId, long lastId, String reason, long rejectedAt);
+
+    /**
+     * Returns the rejected changes, most recent first, for review.
+     *
+     * @return The rejected entries.
+     */
+    @Query("SELECT * FROM outbox WHERE rejectedAt != 0 ORDER BY id DESC")
+    List<OutboxEntry> getRejected();
+}
@@ -0,0 +1,60 @@
+package com.hattonky.inventory.data.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import com.hattonky.inventory.data.model.SyncConflict;
+
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) for the "sync_conflicts" queue of merge conflicts waiting for review.
+ * Entries are added by the sync inside the transaction that merges the item.
+ */
+@Dao
+public interface SyncConflictDao {
+
+    /**
+     * Adds conflicts to the queue.
+     *
+     * @param conflicts The conflicts found in one merge.
+     */
+    @Insert
+    void insertAll(List<SyncConflict> conflicts);
+
+    /**
+     * Observes the queue, oldest first.
+     *
+     * @return A LiveData list that updates as conflicts are added and resolved.
+     */
+    @Query("SELECT * FROM sync_conflicts ORDER BY id ASC")
+    LiveData<List<SyncConflict>> observeAll();
+
+    /**
+     * Returns the conflicts recorded for an item, oldest first.
+     * This is a blocking call and must be made on a background thread.
+     *
+     * @param entityUid The item's UID.
+     * @return The item's conflicts.
+     */
+    @Query("SELECT * FROM sync_conflicts WHERE entityUid = :entityUid ORDER BY id ASC")
+    List<SyncConflict> getForEntity(String entityUid);
+
+    /**
+     * Counts conflicts waiting for review.
+     *
+     * @return The number of entries in the queue.
+     */
+    @Query("SELECT COUNT(*) FROM sync_conflicts")
+    int count();
+
+    /**
+     * Removes a conflict once it has been reviewed.
+     *
+     * @param id The ID of the entry.
+     */
+    @Query("DELETE FROM sync_conflicts WHERE id = :id")
+    void delete(long id);
+}
@@ -0,0 +1,91 @@
+package com.hattonky.inventory.data.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.hattonky.inventory.data.model.User;
+
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) for the locally cached user directory in the "users" table.
+ * Rows are written as directory pages arrive from the server and changed optimistically
+ * when an admin edits or deletes a user.
+ */
+@Dao
+public interface UserDao {
+
+    /**
+     * Inserts users, replacing any cached row with the same ID.
+     *
+     * @param users The users to store.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<User> users);
+
+    /**
+     * Inserts a user, replacing any cached row with the same ID.
+     *
+     * @param user The user to store.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(User user);
+
+    /**
+     * Queries cached users matching a role and a search text, sorted by username.
+     *
+     * @param role  Only users with this role, or null for all roles.
+     * @param query Only users whose username or email contains this text, or null.
+     * @return A LiveData list of matching users that updates when the cache changes.
+     */
+    @Query("SELECT * FROM users WHERE (:role IS NULL OR role = :role) "
+            + "AND (:query IS NULL OR username LIKE '%' || :query || '%' OR email LIKE '%' || :query || '%') "
+            + "ORDER BY username COLLATE NOCASE ASC")
+    LiveData<List<User>> getUsers(String role, String query);
+
+    /**
+     * Returns a cached user.
+     *
+     * @param id The user's ID.
+     * @return The user, or null if not cached.
+     */
+    @Query("SELECT * FROM users WHERE id = :id")
+    User getById(String id);
+
+    /**
+     * Changes a cached user's role.
+     *
+     * @param id   The user's ID.
+     * @param role The new role.
+     * @return The number of rows updated.
+     */
+    @Query("UPDATE users SET role = :role WHERE id = :id")
+    int updateRole(String id, String role);
+
+    /**
+     * Removes a cached user.
+     *
+     * @param id The user's ID.
+     * @return The number of rows deleted.
+     */
+    @Query("DELETE FROM users WHERE id = :id")
+    int deleteById(String id);
+
+    /**
+     * Removes users not seen since the given time, i.e. deleted on the server.
+     *
+     * @param before Rows fetched before this time (epoch milliseconds) are removed.
+     * @return The number of rows deleted.
+     */
+    @Query("DELETE FROM users WHERE fetchedAt < :before")
+    int deleteFetchedBefore(long before);
+
+    /**
+     * Removes all cached users.
+     */
+    @Query("DELETE FROM users")
+    void deleteAll();
+}
@@ -2,21 +2,37 @@ package com.hattonky.inventory.data.databases;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.hattonky.inventory.data.dao.CategoryDao;
+import com.hattonky.inventory.data.dao.ImageUploadDao;
+import com.hattonky.inventory.data.dao.ItemBaseDao;
 import com.hattonky.inventory.data.dao.ItemDao;
+import com.hattonky.inventory.data.dao.ItemImageDao;
+import com.hattonky.inventory.data.dao.OutboxDao;
+import com.hattonky.inventory.data.dao.SyncConflictDao;
+import com.hattonky.inventory.data.dao.UserDao;
 import com.hattonky.inventory.data.model.Category;
+import com.hattonky.inventory.data.model.ImageUpload;
 import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.ItemBase;
+import com.hattonky.inventory.data.model.ItemImage;
+import com.hattonky.inventory.data.model.OutboxEntry;
+import com.hattonky.inventory.data.model.SyncConflict;
+import com.hattonky.inventory.data.model.User;
 
 /**
  * AppDatabase is the main database class for the application.
  * It provides a singleton instance of the Room database and defines access to DAO objects.
  * This class is annotated with @Database to specify the entities (tables) and the version of the database schema.
  */
-@Database(entities = {Item.class, Category.class}, version = 1, exportSchema = false)
+@Database(entities = {Item.class, Category.class, ItemImage.class, User.class, OutboxEntry.class,
+        ItemBase.class, SyncConflict.class, ImageUpload.class}, version = 8, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
 
     // Singleton instance to ensure only one database object exists at a time
@@ -38,6 +54,187 @@ public abstract class AppDatabase extends RoomDatabase {
      */
     public abstract CategoryDao categoryDao();  // Accessor for Category DAO
 
+    /**
+     * Abstract method to get the DAO for interacting with the ItemImage table.
+     * This method is implemented by Room at runtime.
+     *
+     * @return The ItemImageDao for accessing the item_images table.
+     */
+    public abstract ItemImageDao itemImageDao();
+
+    /**
+     * Abstract method to get the DAO for the cached user directory.
+     * This method is implemented by Room at runtime.
+     *
+     * @return The UserDao for accessing the users table.
+     */
+    public abstract UserDao userDao();
+
+    /**
+     * Abstract method to get the DAO for the outbox of changes waiting to be sent.
+     * This method is implemented by Room at runtime.
+     *
+     * @return The OutboxDao for accessing the outbox table.
+     */
+    public abstract OutboxDao outboxDao();
+
+    /**
+     * Abstract method to get the DAO for the last agreed copies of synced items.
+     * This method is implemented by Room at runtime.
+     *
+     * @return The ItemBaseDao for accessing the item_bases table.
+     */
+    public abstract ItemBaseDao itemBaseDao();
+
+    /**
+     * Abstract method to get the DAO for the queue of merge conflicts waiting for review.
+     * This method is implemented by Room at runtime.
+     *
+     * @return The SyncConflictDao for accessing the sync_conflicts table.
+     */
+    public abstract SyncConflictDao syncConflictDao();
+
+    /**
+     * Abstract method to get the DAO for the checkpoints of image uploads.
+     * This method is implemented by Room at runtime.
+     *
+     * @return The ImageUploadDao for accessing the image_uploads table.
+     */
+    public abstract ImageUploadDao imageUploadDao();
+
+    /**
+     * Migration from version 1 to 2: adds the item_images table for multiple photos per item.
+     * Existing items keep their single image as the primary image.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `item_images` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`itemId` INTEGER NOT NULL, "
+                    + "`path` TEXT, "
+                    + "`position` INTEGER NOT NULL, "
+                    + "FOREIGN KEY(`itemId`) REFERENCES `items`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_item_images_itemId` ON `item_images` (`itemId`)");
+            // Attach each existing image so it shows up in the item's image list
+            db.execSQL("INSERT INTO `item_images` (`itemId`, `path`, `position`) "
+                    + "SELECT `id`, `imagePath`, 0 FROM `items` WHERE `imagePath` IS NOT NULL");
+        }
+    };
+
+    /**
+     * Migration from version 2 to 3: adds the users table caching the server's user directory.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `users` ("
+                    + "`id` TEXT NOT NULL, "
+                    + "`username` TEXT, "
+                    + "`email` TEXT, "
+                    + "`role` TEXT, "
+                    + "`fetchedAt` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`id`))");
+        }
+    };
+
+    /**
+     * Migration from version 3 to 4: adds the outbox table of local changes waiting to be sent.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `outbox` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`entityType` TEXT, "
+                    + "`entityId` INTEGER NOT NULL, "
+                    + "`operation` TEXT, "
+                    + "`payload` TEXT, "
+                    + "`idempotencyKey` TEXT, "
+                    + "`createdAt` INTEGER NOT NULL)");
+        }
+    };
+
+    /**
+     * Migration from version 4 to 5: adds the sync columns to items and categories. Existing rows
+     * get a random UID, version 0 (never synced) and are not deleted.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            for (String table : new String[] {"items", "categories"}) {
+                db.execSQL("ALTER TABLE `" + table + "` ADD COLUMN `uid` TEXT");
+                db.execSQL("ALTER TABLE `" + table + "` ADD COLUMN `version` INTEGER NOT NULL DEFAULT 0");
+                db.execSQL("ALTER TABLE `" + table + "` ADD COLUMN `updatedAt` INTEGER NOT NULL DEFAULT 0");
+                db.execSQL("ALTER TABLE `" + table + "` ADD COLUMN `deleted` INTEGER NOT NULL DEFAULT 0");
+                db.execSQL("UPDATE `" + table + "` SET `uid` = lower(hex(randomblob(16)))");
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_" + table + "_uid` ON `" + table + "` (`uid`)");
+            }
+        }
+    };
+
+    /**
+     * Migration from version 5 to 6: adds the item quantity, the last agreed copies of synced
+     * items used for merging, and the queue of merge conflicts.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `items` ADD COLUMN `quantity` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `item_bases` ("
+                    + "`uid` TEXT NOT NULL, "
+                    + "`version` INTEGER NOT NULL, "
+                    + "`name` TEXT, "
+                    + "`description` TEXT, "
+                    + "`category` TEXT, "
+                    + "`imagePath` TEXT, "
+                    + "`quantity` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`uid`))");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `sync_conflicts` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`entityUid` TEXT, "
+                    + "`field` TEXT, "
+                    + "`baseValue` TEXT, "
+                    + "`localValue` TEXT, "
+                    + "`remoteValue` TEXT, "
+                    + "`remoteVersion` INTEGER NOT NULL, "
+                    + "`createdAt` INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_sync_conflicts_entityUid` ON `sync_conflicts` (`entityUid`)");
+        }
+    };
+
+    /**
+     * Migration from version 6 to 7: adds the image_uploads table of upload checkpoints.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `image_uploads` ("
+                    + "`path` TEXT NOT NULL, "
+                    + "`contentHash` TEXT, "
+                    + "`size` INTEGER NOT NULL, "
+                    + "`lastModified` INTEGER NOT NULL, "
+                    + "`uploadId` TEXT, "
+                    + "`confirmedBytes` INTEGER NOT NULL, "
+                    + "`remoteUrl` TEXT, "
+                    + "`updatedAt` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`path`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_image_uploads_contentHash` ON `image_uploads` (`contentHash`)");
+        }
+    };
+
+    /**
+     * Migration from version 7 to 8: adds the rejection columns to the outbox. Existing entries
+     * stay pending.
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `outbox` ADD COLUMN `rejectedAt` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `outbox` ADD COLUMN `rejection` TEXT");
+        }
+    };
+
     /**
      * Synchronized method to get the singleton instance of the AppDatabase.
      * If the instance is null, the database is created using Room.databaseBuilder.
@@ -51,6 +248,8 @@ public abstract class AppDatabase extends RoomDatabase {
             // Create the database using Room's database builder
             instance = Room.databaseBuilder(context.getApplicationContext(),
                             AppDatabase.class, "inventory_database")
+                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6,
+                            MIGRATION_6_7, MIGRATION_7_8)  // Keep existing data across known schema changes
                     .fallbackToDestructiveMigration()  // In case of schema changes, recreate the database
                     .build();
         }
@@ -8,13 +8,15 @@ import com.hattonky.inventory.data.dao.CategoryDao;
 import com.hattonky.inventory.data.dao.ItemDao;
 import com.hattonky.inventory.data.model.Category;
 import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.ItemImage;
+import com.hattonky.inventory.data.model.OutboxEntry;
 
 /**
  * The InventoryDatabase class represents the Room database for the inventory application.
  * It defines the database configuration and serves as the main access point for the underlying database connection.
  * This class provides access to DAOs (Data Access Objects) for interacting with database entities like Item and Category.
  */
-@Database(entities = {Item.class, Category.class}, version = 1)
+@Database(entities = {Item.class, Category.class, ItemImage.class, OutboxEntry.class}, version = 1)
 public abstract class InventoryDatabase extends RoomDatabase {
 
     // Singleton instance of the InventoryDatabase
@@ -0,0 +1,213 @@
+package com.hattonky.inventory.data.images;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.hattonky.inventory.data.dao.ItemDao;
+import com.hattonky.inventory.data.databases.AppDatabase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Deletes image files in the image store that items used to reference and no longer do.
+ * Images are orphaned when an item is deleted or when its image is replaced, since the
+ * database only ever stores the path and never removes the file.
+ *
+ * Captures that were never attached to an item are kept: the inventory gallery offers them for
+ * attaching later. To tell them apart, the collector remembers every path it has seen referenced
+ * (in preferences, next to the resume point) and only deletes files from that set.
+ *
+ * The set of referenced paths is loaded with a single query per run. Files are then visited
+ * in name order in bounded batches, so a run can be stopped between batches (by interrupting
+ * the thread) and the next run resumes after the last file that was checked. The resume point
+ * is saved in preferences, as runs are often days and processes apart.
+ * Files younger than the grace period are never deleted, which protects images that were just
+ * captured or imported but whose item has not been saved yet.
+ */
+public class ImageGarbageCollector {
+
+    // Default grace period: files modified within the last 24 hours are always kept
+    public static final long DEFAULT_GRACE_PERIOD_MS = 24L * 60 * 60 * 1000;
+
+    // Default number of files checked per batch
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    // Name of the last file checked by an interrupted run, used to resume the next run
+    private static final String KEY_RESUME_AFTER = "resume_after";
+
+    // Absolute paths seen referenced by an item and not yet deleted
+    private static final String KEY_KNOWN = "known";
+
+    private static ImageGarbageCollector instance;
+
+    private final ItemDao itemDao;
+    private final File imageDirectory;
+    private final SharedPreferences progress;
+    private final long gracePeriodMs;
+    private final int batchSize;
+
+    /**
+     * Result of a collection run.
+     */
+    public static class Result {
+        public final int filesScanned;
+        public final int filesDeleted;
+        public final long bytesReclaimed;
+        public final boolean complete;  // False if the run was interrupted before visiting every file
+
+        Result(int filesScanned, int filesDeleted, long bytesReclaimed, boolean complete) {
+            this.filesScanned = filesScanned;
+            this.filesDeleted = filesDeleted;
+            this.bytesReclaimed = bytesReclaimed;
+            this.complete = complete;
+        }
+
+        @Override
+        public String toString() {
+            return "scanned=" + filesScanned + ", deleted=" + filesDeleted
+                    + ", reclaimed=" + bytesReclaimed + " bytes" + (complete ? "" : " (partial)");
+        }
+    }
+
+    /**
+     * Returns the app's collector for the image store, so runs started from different places
+     * never overlap.
+     */
+    public static synchronized ImageGarbageCollector getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new ImageGarbageCollector(AppDatabase.getInstance(appContext).itemDao(),
+                    ImageStore.getImageDirectory(appContext),
+                    appContext.getSharedPreferences("image_gc", Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a collector with the default grace period and batch size.
+     *
+     * @param itemDao        The DAO used to load the referenced image paths.
+     * @param imageDirectory The image store directory to clean up.
+     * @param progress       Where the resume point of an interrupted run is kept.
+     */
+    public ImageGarbageCollector(ItemDao itemDao, File imageDirectory, SharedPreferences progress) {
+        this(itemDao, imageDirectory, progress, DEFAULT_GRACE_PERIOD_MS, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a collector with a custom grace period and batch size.
+     *
+     * @param itemDao        The DAO used to load the referenced image paths.
+     * @param imageDirectory The image store directory to clean up.
+     * @param progress       Where the resume point of an interrupted run is kept.
+     * @param gracePeriodMs  Minimum age of a file, in milliseconds, before it may be deleted.
+     * @param batchSize      Number of files checked between interruption checks.
+     */
+    public ImageGarbageCollector(ItemDao itemDao, File imageDirectory, SharedPreferences progress,
+                                 long gracePeriodMs, int batchSize) {
+        this.itemDao = itemDao;
+        this.imageDirectory = imageDirectory;
+        this.progress = progress;
+        this.gracePeriodMs = gracePeriodMs;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Runs a collection pass. Must be called on a background thread, as it queries the database
+     * and touches the file system.
+     *
+     * @return The number of files scanned and deleted, and the bytes reclaimed.
+     */
+    public synchronized Result collect() {
+        Set<String> referenced = loadReferencedPaths();
+        Set<String> known = new HashSet<>(progress.getStringSet(KEY_KNOWN, Collections.emptySet()));
+        known.addAll(referenced);
+
+        File[] files = imageDirectory.listFiles(File::isFile);
+        if (files == null || files.length == 0) {
+            saveResumePoint(null);
+            saveKnown(known);
+            return new Result(0, 0, 0, true);
+        }
+        Arrays.sort(files);
+        String resumeAfter = progress.getString(KEY_RESUME_AFTER, null);
+
+        long cutoff = System.currentTimeMillis() - gracePeriodMs;
+
+        int scanned = 0;
+        int deleted = 0;
+        long reclaimed = 0;
+
+        for (int start = 0; start < files.length; start += batchSize) {
+            int end = Math.min(files.length, start + batchSize);
+            for (int i = start; i < end; i++) {
+                File file = files[i];
+                if (resumeAfter != null && file.getName().compareTo(resumeAfter) <= 0) {
+                    continue;  // Already checked by the previous, interrupted run
+                }
+                scanned++;
+                String path = file.getAbsolutePath();
+                if (!known.contains(path) || referenced.contains(path) || file.lastModified() > cutoff) {
+                    continue;  // Never attached, still attached, or released too recently
+                }
+                long length = file.length();
+                if (file.delete()) {
+                    known.remove(path);
+                    deleted++;
+                    reclaimed += length;
+                }
+            }
+            // Stop between batches if asked to, remembering where to pick up next time
+            if (Thread.currentThread().isInterrupted() && end < files.length) {
+                saveResumePoint(files[end - 1].getName());
+                saveKnown(known);
+                return new Result(scanned, deleted, reclaimed, false);
+            }
+        }
+
+        saveResumePoint(null);
+        saveKnown(known);
+        return new Result(scanned, deleted, reclaimed, true);
+    }
+
+    private void saveResumePoint(String name) {
+        if (name != null) {
+            progress.edit().putString(KEY_RESUME_AFTER, name).apply();
+        } else if (progress.contains(KEY_RESUME_AFTER)) {
+            progress.edit().remove(KEY_RESUME_AFTER).apply();
+        }
+    }
+
+    // Keeps the known paths whose files still exist; the others were removed some other way
+    private void saveKnown(Set<String> known) {
+        Set<String> existing = new HashSet<>(known.size() * 2);
+        for (String path : known) {
+            if (new File(path).exists()) {
+                existing.add(path);
+            }
+        }
+        progress.edit().putStringSet(KEY_KNOWN, existing).apply();
+    }
+
+    /**
+     * Loads every image path referenced by an item and normalizes it to an absolute file path.
+     *
+     * @return The set of absolute paths of referenced local image files.
+     */
+    private Set<String> loadReferencedPaths() {
+        List<String> paths = itemDao.getAllImagePaths();
+        Set<String> referenced = new HashSet<>(paths.size() * 2);
+        for (String path : paths) {
+            File file = ImageStore.toFile(path);
+            if (file != null) {
+                referenced.add(file.getAbsolutePath());
+            }
+        }
+        return referenced;
+    }
+}
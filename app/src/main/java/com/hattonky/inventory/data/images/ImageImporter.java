@@ -0,0 +1,184 @@
+package com.hattonky.inventory.data.images;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.MimeTypeMap;
+
+import com.hattonky.inventory.data.dao.ItemDao;
+import com.hattonky.inventory.data.databases.AppDatabase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Copies images picked from the system gallery into the app's image store.
+ * A picked image arrives as a content:// URI; storing that URI means every later load goes
+ * back through a ContentResolver, and the read grant can lapse. Importing copies the image once,
+ * streaming it through a fixed-size buffer so the whole image is never held in memory.
+ *
+ * Imports run on a background thread. When an import finishes, any item that was already saved
+ * with the content:// URI is switched over to the imported file. Finished imports are also
+ * remembered, so an item write that was still queued at that point can use the imported file
+ * itself; see {@link #getImportedPath}.
+ */
+public class ImageImporter {
+
+    private static final String TAG = "ImageImporter";
+
+    // Size of the copy buffer; the only memory used per import regardless of image size
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    // Number of finished imports remembered; far more than a user picks before saving
+    private static final int REMEMBERED_IMPORTS = 32;
+
+    /**
+     * Callback for import results. Called on the importer's background thread.
+     */
+    public interface Callback {
+        void onImported(String imagePath);
+        void onFailure(IOException e);
+    }
+
+    private static ImageImporter instance;
+
+    private final ContentResolver contentResolver;
+    private final ItemDao itemDao;
+    private final File imageDirectory;
+    private final ImageReencoder imageReencoder;
+    private final ExecutorService executorService;
+
+    // Picked URI to imported file URI, for the most recent imports; guarded by itself
+    private final Map<String, String> imported = new LinkedHashMap<String, String>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > REMEMBERED_IMPORTS;
+        }
+    };
+
+    /**
+     * Returns the shared importer, creating it on first use.
+     *
+     * @param context Any context; the application context is retained.
+     * @return The shared ImageImporter.
+     */
+    public static synchronized ImageImporter getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new ImageImporter(
+                    appContext.getContentResolver(),
+                    AppDatabase.getInstance(appContext).itemDao(),
+                    ImageStore.getImageDirectory(appContext),
+                    ImageReencoder.getInstance(appContext),
+                    Executors.newSingleThreadExecutor());
+        }
+        return instance;
+    }
+
+    /**
+     * Creates an importer with explicit dependencies.
+     *
+     * @param contentResolver The resolver used to open picked images.
+     * @param itemDao         The DAO used to switch saved items over to the imported file.
+     * @param imageDirectory  The image store to copy into.
+     * @param imageReencoder  The re-encoder to hand imported images to, or null to skip re-encoding.
+     * @param executorService The executor that runs imports.
+     */
+    public ImageImporter(ContentResolver contentResolver, ItemDao itemDao, File imageDirectory,
+                         ImageReencoder imageReencoder, ExecutorService executorService) {
+        this.contentResolver = contentResolver;
+        this.itemDao = itemDao;
+        this.imageDirectory = imageDirectory;
+        this.imageReencoder = imageReencoder;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Imports a picked image in the background.
+     *
+     * @param source   The content:// URI of the picked image.
+     * @param callback Receives the imported image's path (as a file:// URI) or the failure.
+     */
+    public void importImage(Uri source, Callback callback) {
+        String sourcePath = source.toString();
+        executorService.execute(() -> {
+            File target = new File(imageDirectory, "IMG_" + System.currentTimeMillis() + "." + extensionFor(source));
+            File temp = new File(imageDirectory, target.getName() + ".tmp");
+            try (InputStream in = contentResolver.openInputStream(source)) {
+                if (in == null) {
+                    throw new IOException("Cannot open " + sourcePath);
+                }
+                try (FileOutputStream out = new FileOutputStream(temp)) {
+                    copy(in, out);
+                    out.getFD().sync();
+                }
+                if (!temp.renameTo(target)) {
+                    throw new IOException("Could not move " + temp + " to " + target);
+                }
+            } catch (IOException | SecurityException e) {
+                temp.delete();
+                Log.w(TAG, "Import failed for " + sourcePath, e);
+                callback.onFailure(e instanceof IOException ? (IOException) e : new IOException(e));
+                return;
+            }
+
+            String imagePath = Uri.fromFile(target).toString();
+            // Published before the swap, so a write that misses the swap sees it afterwards
+            synchronized (imported) {
+                imported.put(sourcePath, imagePath);
+            }
+            // Switch over any item that was saved before the copy finished
+            if (itemDao.swapImagePath(sourcePath, imagePath) > 0 && imageReencoder != null) {
+                imageReencoder.enqueue(imagePath);
+            }
+            callback.onImported(imagePath);
+        });
+    }
+
+    /**
+     * Returns the imported copy of a picked image, if its import has finished. An item write
+     * that runs on another thread uses this to store the copy instead of the picked URI, and
+     * checks again once written: an import that finished while the write was in flight may have
+     * found no item to switch over.
+     *
+     * @param sourcePath The picked image's content:// URI.
+     * @return The imported file's URI, or null if the image was not imported or not yet.
+     */
+    public String getImportedPath(String sourcePath) {
+        synchronized (imported) {
+            return imported.get(sourcePath);
+        }
+    }
+
+    /**
+     * Streams the input to the output through a fixed-size buffer.
+     *
+     * @param in  The stream to read from.
+     * @param out The stream to write to.
+     * @return The number of bytes copied.
+     * @throws IOException If reading or writing fails.
+     */
+    static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    private String extensionFor(Uri source) {
+        String extension = MimeTypeMap.getSingleton().getExtensionFromMimeType(contentResolver.getType(source));
+        return extension != null ? extension : "jpg";
+    }
+}
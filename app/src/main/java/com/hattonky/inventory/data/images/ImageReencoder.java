@@ -0,0 +1,461 @@
+package com.hattonky.inventory.data.images;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import com.hattonky.inventory.data.dao.ItemDao;
+import com.hattonky.inventory.data.databases.AppDatabase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Post-capture pipeline stage that re-encodes item images to a size-capped WebP or JPEG.
+ * Camera captures are written at full sensor resolution, often several megabytes each, which
+ * bloats storage and backups. Images are downscaled so their longest side fits the configured
+ * maximum dimension, then compressed with the configured format and quality.
+ *
+ * Work runs on a small, fixed-size pool of background threads with a bounded queue; an image
+ * queued while the queue is full is skipped and stays as captured. The re-encoded file is written
+ * to a temporary file and renamed into place, and the item's image path is swapped with a single
+ * conditional update, so items never point at a partially written file. The original file is
+ * left for {@link ImageGarbageCollector} to remove once nothing references it.
+ */
+public class ImageReencoder {
+
+    private static final String TAG = "ImageReencoder";
+
+    // Suffix added to re-encoded files, so they are never re-encoded twice
+    private static final String ENCODED_SUFFIX = "_enc";
+
+    // Tasks a background pool holds beyond the ones running; more are refused
+    static final int POOL_QUEUE_CAPACITY = 64;
+
+    // EXIF tags carried over to the re-encoded image when EXIF is kept
+    private static final String[] KEPT_EXIF_TAGS = {
+            ExifInterface.TAG_DATETIME,
+            ExifInterface.TAG_DATETIME_ORIGINAL,
+            ExifInterface.TAG_MAKE,
+            ExifInterface.TAG_MODEL,
+            ExifInterface.TAG_GPS_LATITUDE,
+            ExifInterface.TAG_GPS_LATITUDE_REF,
+            ExifInterface.TAG_GPS_LONGITUDE,
+            ExifInterface.TAG_GPS_LONGITUDE_REF,
+            ExifInterface.TAG_GPS_ALTITUDE,
+            ExifInterface.TAG_GPS_ALTITUDE_REF,
+            ExifInterface.TAG_GPS_DATESTAMP,
+            ExifInterface.TAG_GPS_TIMESTAMP
+    };
+
+    /**
+     * Output formats supported by the re-encoder.
+     */
+    public enum Format {
+        JPEG("jpg"),
+        WEBP("webp");
+
+        final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * Re-encoding settings.
+     */
+    public static class Config {
+        // Default settings: 2048px longest side, WebP at quality 85, EXIF stripped
+        public static final Config DEFAULT = new Config(2048, Format.WEBP, 85, false);
+
+        public final int maxDimension;
+        public final Format format;
+        public final int quality;
+        public final boolean keepExif;
+
+        /**
+         * @param maxDimension Maximum length, in pixels, of the longest side of the output image.
+         * @param format       Output format.
+         * @param quality      Compression quality from 0 to 100.
+         * @param keepExif     Whether to copy date, camera and location EXIF tags to the output.
+         *                     Only supported for JPEG output; WebP output never carries EXIF.
+         */
+        public Config(int maxDimension, Format format, int quality, boolean keepExif) {
+            this.maxDimension = maxDimension;
+            this.format = format;
+            this.quality = Math.max(0, Math.min(100, quality));
+            this.keepExif = keepExif;
+        }
+    }
+
+    /**
+     * Counters describing the work done by the re-encoder, used to measure throughput.
+     */
+    public static class Stats {
+        public final int imagesProcessed;
+        public final long bytesIn;
+        public final long bytesOut;
+        public final long elapsedNanos;
+
+        Stats(int imagesProcessed, long bytesIn, long bytesOut, long elapsedNanos) {
+            this.imagesProcessed = imagesProcessed;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return Images processed per second of elapsed time.
+         */
+        public double imagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : imagesProcessed * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return imagesProcessed + " images, " + bytesIn + " -> " + bytesOut + " bytes, "
+                    + String.format(java.util.Locale.US, "%.1f images/s", imagesPerSecond());
+        }
+    }
+
+    private static ImageReencoder instance;
+
+    private final ItemDao itemDao;
+    private final File imageDirectory;
+    private final ExecutorService executorService;
+    private volatile Config config;
+
+    // Paths currently queued or being re-encoded, to avoid duplicate work
+    private final Set<String> pending = Collections.synchronizedSet(new HashSet<>());
+
+    // Cumulative counters across all re-encodes
+    private final AtomicInteger imagesProcessed = new AtomicInteger();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    /**
+     * Returns the shared re-encoder, creating it with the default settings on first use.
+     *
+     * @param context Any context; the application context is retained.
+     * @return The shared ImageReencoder.
+     */
+    public static synchronized ImageReencoder getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new ImageReencoder(
+                    AppDatabase.getInstance(appContext).itemDao(),
+                    ImageStore.getImageDirectory(appContext),
+                    Config.DEFAULT,
+                    newBackgroundPool("image-reencode", Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1))));
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a re-encoder with explicit dependencies.
+     *
+     * @param itemDao         The DAO used to swap item image paths.
+     * @param imageDirectory  The image store; only files directly inside it are re-encoded.
+     * @param config          The re-encoding settings.
+     * @param executorService The pool that runs re-encodes.
+     */
+    public ImageReencoder(ItemDao itemDao, File imageDirectory, Config config, ExecutorService executorService) {
+        this.itemDao = itemDao;
+        this.imageDirectory = imageDirectory;
+        this.config = config;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Replaces the re-encoding settings used for images queued from now on.
+     *
+     * @param config The new settings.
+     */
+    public void setConfig(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * Queues an item image for re-encoding. Images outside the image store, images that were
+     * already re-encoded and images already queued are ignored.
+     * When the re-encode finishes, every item still pointing at the original path is updated
+     * to the new file.
+     *
+     * @param imagePath The image path as stored on the item.
+     */
+    public void enqueue(String imagePath) {
+        File source = ImageStore.toFile(imagePath);
+        if (!isReencodable(source) || !pending.add(imagePath)) {
+            return;
+        }
+        try {
+            executorService.execute(() -> {
+                try {
+                    File output = reencode(source, config);
+                    if (output != null) {
+                        swapImagePath(imagePath, source, output);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    Log.w(TAG, "Re-encode failed for " + imagePath, e);
+                } finally {
+                    pending.remove(imagePath);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(imagePath);
+            Log.w(TAG, "Re-encode queue full; keeping " + imagePath + " as captured");
+        }
+    }
+
+    /**
+     * Re-encodes a batch of images on the pool and waits for all of them to finish. Images the
+     * pool's queue has no room for are re-encoded on the calling thread.
+     * Item paths are not updated; this is intended for measuring throughput.
+     *
+     * @param sources The image files to re-encode.
+     * @return Counters for this batch, with elapsed wall-clock time.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public Stats reencodeBatch(List<File> sources) throws InterruptedException {
+        Config batchConfig = config;
+        AtomicInteger count = new AtomicInteger();
+        AtomicLong in = new AtomicLong();
+        AtomicLong out = new AtomicLong();
+        List<Future<?>> futures = new ArrayList<>(sources.size());
+        long start = System.nanoTime();
+        for (File source : sources) {
+            Runnable task = () -> {
+                try {
+                    File output = reencode(source, batchConfig);
+                    if (output != null) {
+                        count.incrementAndGet();
+                        in.addAndGet(source.length());
+                        out.addAndGet(output.length());
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "Re-encode failed for " + source, e);
+                }
+            };
+            try {
+                futures.add(executorService.submit(task));
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Log.w(TAG, "Re-encode task failed", e.getCause());
+            }
+        }
+        return new Stats(count.get(), in.get(), out.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Returns cumulative counters; elapsed time is the total time spent re-encoding across threads.
+     *
+     * @return The re-encoder's counters since it was created.
+     */
+    public Stats getStats() {
+        return new Stats(imagesProcessed.get(), bytesIn.get(), bytesOut.get(), busyNanos.get());
+    }
+
+    /**
+     * Decodes, downscales, orients and compresses a single image.
+     *
+     * @param source The original image file.
+     * @param config The settings to apply.
+     * @return The re-encoded file, or null if the image could not be decoded or would not shrink.
+     * @throws IOException If the output could not be written.
+     */
+    File reencode(File source, Config config) throws IOException {
+        long start = System.nanoTime();
+
+        // Read only the bounds first, to pick a sample size that avoids decoding full resolution
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(source.getAbsolutePath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inSampleSize = calculateSampleSize(options.outWidth, options.outHeight, config.maxDimension);
+        options.inJustDecodeBounds = false;
+        Bitmap bitmap = BitmapFactory.decodeFile(source.getAbsolutePath(), options);
+        if (bitmap == null) {
+            return null;
+        }
+
+        ExifInterface sourceExif = new ExifInterface(source.getAbsolutePath());
+        bitmap = scaleAndRotate(bitmap, config.maxDimension, sourceExif.getAttributeInt(
+                ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL));
+
+        String baseName = source.getName();
+        int dot = baseName.lastIndexOf('.');
+        if (dot > 0) {
+            baseName = baseName.substring(0, dot);
+        }
+        File output = new File(source.getParentFile(), baseName + ENCODED_SUFFIX + "." + config.format.extension);
+        File temp = new File(source.getParentFile(), output.getName() + ".tmp");
+
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(compressFormat(config.format), config.quality, out);
+            out.getFD().sync();
+        } finally {
+            bitmap.recycle();
+        }
+
+        if (config.keepExif && config.format == Format.JPEG) {
+            ExifInterface outputExif = new ExifInterface(temp.getAbsolutePath());
+            for (String tag : KEPT_EXIF_TAGS) {
+                String value = sourceExif.getAttribute(tag);
+                if (value != null) {
+                    outputExif.setAttribute(tag, value);
+                }
+            }
+            outputExif.saveAttributes();
+        }
+
+        // Keep the original if re-encoding did not make it smaller
+        if (temp.length() >= source.length()) {
+            temp.delete();
+            return null;
+        }
+        if (!temp.renameTo(output)) {
+            temp.delete();
+            throw new IOException("Could not move " + temp + " to " + output);
+        }
+
+        imagesProcessed.incrementAndGet();
+        bytesIn.addAndGet(source.length());
+        bytesOut.addAndGet(output.length());
+        busyNanos.addAndGet(System.nanoTime() - start);
+        return output;
+    }
+
+    /**
+     * Points every item that still uses the original image at the re-encoded file.
+     */
+    private void swapImagePath(String originalPath, File source, File output) {
+        // Store the new path in the same form as the original (file:// URI or plain path)
+        String newPath = originalPath.startsWith("file:")
+                ? Uri.fromFile(output).toString()
+                : output.getAbsolutePath();
+        int updated = itemDao.swapImagePath(originalPath, newPath);
+        if (updated == 0) {
+            // The item moved on to another image while we were working
+            output.delete();
+        } else {
+            // Restart the grace period so the collector keeps the original for a while
+            source.setLastModified(System.currentTimeMillis());
+        }
+    }
+
+    private boolean isReencodable(File source) {
+        return source != null
+                && source.isFile()
+                && imageDirectory.equals(source.getParentFile())
+                && !source.getName().contains(ENCODED_SUFFIX + ".");
+    }
+
+    /**
+     * Returns the largest power-of-two sample size that keeps the longest side at or above the
+     * target, so the final scale step only ever shrinks the image.
+     */
+    static int calculateSampleSize(int width, int height, int maxDimension) {
+        int longest = Math.max(width, height);
+        int sampleSize = 1;
+        while (longest / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static Bitmap scaleAndRotate(Bitmap bitmap, int maxDimension, int orientation) {
+        Matrix matrix = new Matrix();
+        int longest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longest > maxDimension) {
+            float scale = (float) maxDimension / longest;
+            matrix.postScale(scale, scale);
+        }
+        // Bake the EXIF orientation into the pixels, as the orientation tag is not carried over
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(270);
+                break;
+            default:
+                break;
+        }
+        if (matrix.isIdentity()) {
+            return bitmap;
+        }
+        Bitmap transformed = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (transformed != bitmap) {
+            bitmap.recycle();
+        }
+        return transformed;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat compressFormat(Format format) {
+        if (format == Format.JPEG) {
+            return Bitmap.CompressFormat.JPEG;
+        }
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP;
+    }
+
+    /**
+     * Creates a fixed-size pool of low-priority threads for image work. Its queue holds at most
+     * {@link #POOL_QUEUE_CAPACITY} tasks, so a burst can't queue without limit; once it is full,
+     * {@code execute} and {@code submit} throw {@link RejectedExecutionException}, and callers skip
+     * the work or do it themselves.
+     *
+     * @param name    Prefix of the thread names.
+     * @param threads Number of threads.
+     */
+    static ExecutorService newBackgroundPool(String name, int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(POOL_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(() -> {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }, name + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);  // Let idle threads exit between batches
+        return executor;
+    }
+}
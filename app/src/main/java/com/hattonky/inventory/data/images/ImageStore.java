@@ -0,0 +1,59 @@
+package com.hattonky.inventory.data.images;
+
+import android.content.Context;
+
+import com.hattonky.inventory.R;
+
+import java.io.File;
+import java.net.URI;
+
+/**
+ * Helper for locating the app's image store and resolving stored image paths to files.
+ * Item images are kept under the app-specific external media directory, in a subdirectory
+ * named after the app. Image paths in the database may be plain absolute paths (from the
+ * inventory gallery), "file://" URIs (from the camera) or "content://" URIs (from the system gallery).
+ */
+public final class ImageStore {
+
+    private ImageStore() {
+        // Static helpers only
+    }
+
+    /**
+     * Returns the directory where captured and imported images are stored, creating it if needed.
+     *
+     * @param context The context used to resolve the external media directory.
+     * @return The image store directory.
+     */
+    public static File getImageDirectory(Context context) {
+        File mediaDir = context.getExternalMediaDirs()[0];  // App-specific external media directory
+        File appDir = new File(mediaDir, context.getResources().getString(R.string.app_name));
+        if (!appDir.exists()) {
+            appDir.mkdirs();  // Create the directory if it doesn't exist
+        }
+        return appDir;
+    }
+
+    /**
+     * Resolves a stored image path to a local file.
+     *
+     * @param imagePath The image path as stored on an item.
+     * @return The local file, or null if the path does not refer to a local file (e.g. a content:// URI).
+     */
+    public static File toFile(String imagePath) {
+        if (imagePath == null || imagePath.isEmpty()) {
+            return null;
+        }
+        if (imagePath.startsWith("file:")) {
+            try {
+                return new File(URI.create(imagePath).getPath());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        if (imagePath.startsWith("/")) {
+            return new File(imagePath);
+        }
+        return null;  // content:// and other schemes are not files we own
+    }
+}
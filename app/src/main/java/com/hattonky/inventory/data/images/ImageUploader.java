@@ -0,0 +1,322 @@
+package com.hattonky.inventory.data.images;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.hattonky.inventory.data.ApiClient;
+import com.hattonky.inventory.data.dao.ImageUploadDao;
+import com.hattonky.inventory.data.dao.ItemDao;
+import com.hattonky.inventory.data.databases.AppDatabase;
+import com.hattonky.inventory.data.model.ImageUpload;
+import com.hattonky.inventory.data.network.BandwidthLimiter;
+import com.hattonky.inventory.data.network.FileChunkBody;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.RequestBody;
+import okio.ByteString;
+
+/**
+ * Uploads item images to the server in chunks that survive lost connections.
+ *
+ * Each file is identified by the SHA-256 of its bytes. The server is asked to start an upload
+ * for that hash and answers with how much of it it already has, so content the server already
+ * holds is not sent again, and a file whose bytes were already uploaded under another path is
+ * not even announced. The file is then streamed from disk in chunks through a fixed-size buffer,
+ * and the byte count the server confirms after each chunk is checkpointed in Room. An upload
+ * that fails, or is cut off by the app being killed, asks the server for its offset the next
+ * time and continues from there.
+ *
+ * Uploads run on a small, fixed-size pool of background threads, so a batch of photos does not
+ * open a connection per image, and every chunk draws from one shared {@link BandwidthLimiter}.
+ * A failed upload is not retried by the pool, and an image queued while the pool's bounded queue
+ * is full is skipped; the next {@link #enqueueAll()} picks either up.
+ */
+public class ImageUploader {
+
+    private static final String TAG = "ImageUploader";
+
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+    public static final int BUFFER_SIZE = 16 * 1024;  // Read buffer for hashing and sending
+
+    /**
+     * The upload endpoints. Called on the upload threads; every call must block until the server
+     * answers.
+     */
+    public interface Server {
+        /**
+         * Starts an upload, or returns the server's existing one for the same content.
+         *
+         * @param contentHash The SHA-256 of the file, in lowercase hex.
+         * @param size        The file's size in bytes.
+         * @param fileName    The file's name, for the server's records.
+         * @throws IOException If the server could not be reached or refused.
+         */
+        UploadSession start(String contentHash, long size, String fileName) throws IOException;
+
+        /**
+         * Returns the server's progress on an upload.
+         *
+         * @param uploadId The ID from {@link #start}.
+         * @return The session, or null if the server no longer knows it.
+         * @throws IOException If the server could not be reached.
+         */
+        UploadSession status(String uploadId) throws IOException;
+
+        /**
+         * Sends one chunk.
+         *
+         * @param uploadId The ID from {@link #start}.
+         * @param offset   The position of the chunk's first byte in the file.
+         * @param chunk    The chunk's bytes.
+         * @return The session after the chunk; if the server expected another offset, the
+         *         session as it stands, to continue from.
+         * @throws IOException If the chunk did not arrive.
+         */
+        UploadSession send(String uploadId, long offset, RequestBody chunk) throws IOException;
+    }
+
+    /**
+     * Counters describing the uploads done so far.
+     */
+    public static class Stats {
+        public final long uploaded;      // Files the server has in full after an upload
+        public final long deduplicated;  // Files not sent because the same bytes were already uploaded
+        public final long resumed;       // Uploads continued from a checkpoint
+        public final long chunks;        // Chunks the server confirmed
+        public final long bytes;         // Bytes in those chunks
+
+        Stats(long uploaded, long deduplicated, long resumed, long chunks, long bytes) {
+            this.uploaded = uploaded;
+            this.deduplicated = deduplicated;
+            this.resumed = resumed;
+            this.chunks = chunks;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return uploaded + " uploaded, " + deduplicated + " deduplicated, " + resumed + " resumed, "
+                    + chunks + " chunks, " + bytes + " bytes";
+        }
+    }
+
+    private static ImageUploader instance;
+
+    private final ImageUploadDao uploadDao;
+    private final ItemDao itemDao;
+    private final Server server;
+    private final ExecutorService executorService;
+    private final BandwidthLimiter limiter;
+    private final int chunkSize;
+
+    // Paths currently queued or being uploaded, to avoid duplicate work
+    private final Set<String> pending = Collections.synchronizedSet(new HashSet<>());
+
+    private final AtomicLong uploaded = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong resumed = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Returns the shared uploader, which sends through {@link ApiClient}, two files at a time
+     * and without a bandwidth limit until one is set.
+     *
+     * @param context Any context; the application context is retained.
+     * @return The shared ImageUploader.
+     */
+    public static synchronized ImageUploader getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            AppDatabase database = AppDatabase.getInstance(appContext);
+            instance = new ImageUploader(database.imageUploadDao(), database.itemDao(), new Server() {
+                @Override
+                public UploadSession start(String contentHash, long size, String fileName) throws IOException {
+                    return ApiClient.startImageUpload(appContext, contentHash, size, fileName);
+                }
+
+                @Override
+                public UploadSession status(String uploadId) throws IOException {
+                    return ApiClient.getImageUpload(appContext, uploadId);
+                }
+
+                @Override
+                public UploadSession send(String uploadId, long offset, RequestBody chunk) throws IOException {
+                    return ApiClient.sendImageChunk(appContext, uploadId, offset, chunk);
+                }
+            }, ImageReencoder.newBackgroundPool("image-upload", 2), new BandwidthLimiter(0), DEFAULT_CHUNK_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Creates an uploader with explicit dependencies.
+     *
+     * @param uploadDao       The DAO holding the checkpoints.
+     * @param itemDao         The DAO used to find the images to upload.
+     * @param server          The upload endpoints.
+     * @param executorService The pool uploads run on; its size bounds the parallel uploads.
+     * @param limiter         The limit shared by every chunk.
+     * @param chunkSize       The bytes sent per request, and so the most lost to a dropped connection.
+     */
+    public ImageUploader(ImageUploadDao uploadDao, ItemDao itemDao, Server server,
+                         ExecutorService executorService, BandwidthLimiter limiter, int chunkSize) {
+        this.uploadDao = uploadDao;
+        this.itemDao = itemDao;
+        this.server = server;
+        this.executorService = executorService;
+        this.limiter = limiter;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Caps the upload rate of all uploads together.
+     *
+     * @param bytesPerSecond The rate to allow, or 0 for no limit.
+     */
+    public void setBandwidthLimit(long bytesPerSecond) {
+        limiter.setRate(bytesPerSecond);
+    }
+
+    /**
+     * Queues an image for upload. Images already queued or uploading are ignored.
+     *
+     * @param imagePath The image path as stored on the item.
+     */
+    public void enqueue(String imagePath) {
+        if (imagePath == null || !pending.add(imagePath)) {
+            return;
+        }
+        try {
+            executorService.execute(() -> {
+                try {
+                    upload(imagePath);
+                } catch (IOException | IllegalStateException e) {  // IllegalStateException: no server configured yet
+                    Log.w(TAG, "Uploading " + imagePath + " failed", e);
+                } finally {
+                    pending.remove(imagePath);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(imagePath);
+            Log.w(TAG, "Upload queue full; " + imagePath + " waits for the next pass");
+        }
+    }
+
+    /**
+     * Queues every image an item refers to. Images already uploaded finish without a request.
+     */
+    public void enqueueAll() {
+        try {
+            executorService.execute(() -> {
+                uploadDao.purgeOrphans();
+                for (String path : itemDao.getAllImagePaths()) {
+                    enqueue(path);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Upload queue full; skipping this pass");
+        }
+    }
+
+    /**
+     * Uploads one image on the calling thread, continuing from its checkpoint if it has one.
+     *
+     * @param imagePath The image path as stored on the item.
+     * @return The server URL of the image, or null if the path is not a local file.
+     * @throws IOException If the file could not be read or a request failed; the chunks the
+     *                     server confirmed stay checkpointed.
+     */
+    public String upload(String imagePath) throws IOException {
+        File file = ImageStore.toFile(imagePath);
+        if (file == null || !file.isFile()) {
+            return null;  // Gallery URIs and missing files have nothing to send
+        }
+        ImageUpload upload = uploadDao.getByPath(imagePath);
+        if (upload == null || upload.getSize() != file.length() || upload.getLastModified() != file.lastModified()) {
+            // New or rewritten file; an old session for other bytes is of no use
+            upload = new ImageUpload(imagePath, hash(file), file.length(), file.lastModified());
+            upload.setUpdatedAt(System.currentTimeMillis());
+            uploadDao.upsert(upload);
+        }
+        if (upload.isComplete()) {
+            return upload.getRemoteUrl();
+        }
+        ImageUpload same = uploadDao.getCompletedByHash(upload.getContentHash());
+        if (same != null) {
+            uploadDao.complete(imagePath, same.getRemoteUrl(), System.currentTimeMillis());
+            deduplicated.incrementAndGet();
+            return same.getRemoteUrl();
+        }
+
+        UploadSession session = null;
+        if (upload.getUploadId() != null) {
+            // The server's offset wins over the checkpoint: a chunk may have arrived after the
+            // connection dropped, or the server may have kept less than it confirmed
+            session = server.status(upload.getUploadId());
+            if (session != null) {
+                resumed.incrementAndGet();
+            }
+        }
+        if (session == null) {
+            session = server.start(upload.getContentHash(), upload.getSize(), file.getName());
+        }
+        while (!session.isComplete()) {
+            long offset = session.offset;
+            uploadDao.checkpoint(imagePath, session.uploadId, offset, System.currentTimeMillis());
+            if (offset >= upload.getSize()) {
+                throw new IOException("Server has all " + offset + " bytes but did not complete the upload");
+            }
+            long length = Math.min(chunkSize, upload.getSize() - offset);
+            session = server.send(session.uploadId, offset,
+                    new FileChunkBody(file, offset, length, BUFFER_SIZE, limiter));
+            if (!session.isComplete() && session.offset == offset) {
+                throw new IOException("Server did not accept the chunk at " + offset);
+            }
+            if (session.isComplete() || session.offset == offset + length) {
+                chunks.incrementAndGet();
+                bytes.addAndGet(length);
+            }
+        }
+        uploadDao.complete(imagePath, session.url, System.currentTimeMillis());
+        uploaded.incrementAndGet();
+        return session.url;
+    }
+
+    /**
+     * @return The upload counters so far.
+     */
+    public Stats getStats() {
+        return new Stats(uploaded.get(), deduplicated.get(), resumed.get(), chunks.get(), bytes.get());
+    }
+
+    // Streams the file through a fixed buffer, so large images are hashed without loading them
+    static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);  // Every Android and Java runtime has SHA-256
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return ByteString.of(digest.digest()).hex();
+    }
+}
@@ -0,0 +1,30 @@
+package com.hattonky.inventory.data.images;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.module.AppGlideModule;
+
+import java.nio.ByteBuffer;
+
+/**
+ * App-wide Glide configuration. Registers {@link ThumbnailModelLoader} so adapters can load a
+ * {@link Thumbnail} and have it served from the thumbnail atlas.
+ */
+@GlideModule
+public class InventoryGlideModule extends AppGlideModule {
+
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide, @NonNull Registry registry) {
+        registry.prepend(Thumbnail.class, ByteBuffer.class, new ThumbnailModelLoader.Factory(context));
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;  // No libraries in this app register manifest modules
+    }
+}
@@ -0,0 +1,43 @@
+package com.hattonky.inventory.data.images;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Glide model for loading an image's thumbnail from the {@link ThumbnailStore}.
+ * Pass an instance to {@code Glide.with(...).load(...)} instead of the image path to have the
+ * thumbnail decoded straight from the memory-mapped atlas.
+ */
+public final class Thumbnail {
+
+    private final String imagePath;
+
+    /**
+     * @param imagePath The image path as stored on an item.
+     */
+    public Thumbnail(@NonNull String imagePath) {
+        this.imagePath = imagePath;
+    }
+
+    /**
+     * @return The image path the thumbnail is generated from.
+     */
+    public String getImagePath() {
+        return imagePath;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Thumbnail && imagePath.equals(((Thumbnail) o).imagePath);
+    }
+
+    @Override
+    public int hashCode() {
+        return imagePath.hashCode();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "Thumbnail(" + imagePath + ")";
+    }
+}
@@ -0,0 +1,423 @@
+package com.hattonky.inventory.data.images;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Append-only store that packs many small thumbnails into a few large atlas files.
+ * Opening one file per grid cell costs an open/close pair and per-file overhead on every
+ * bind, which adds up on galleries with thousands of images. Here each thumbnail is appended
+ * to the current atlas file and recorded in an index (key to file, offset and length).
+ * Reads map the atlas file once with {@link FileChannel#map} and hand out slices of the
+ * mapping, so a thumbnail read is a hash lookup with no system calls. The file being appended to
+ * is grown in doubling steps ahead of the data, so a reader only has to map it again a handful
+ * of times as it fills up, not after every append.
+ *
+ * Entries are never rewritten in place. Replaced and removed entries leave dead bytes behind,
+ * which {@link #compact} reclaims by copying the live entries into fresh atlas files.
+ *
+ * This class has no Android dependencies; {@link ThumbnailStore} generates the thumbnails.
+ */
+public class ThumbnailAtlas implements Closeable {
+
+    // Default size at which the current atlas file is closed and a new one started
+    public static final long DEFAULT_MAX_ATLAS_BYTES = 32L * 1024 * 1024;
+
+    // Smallest step the current atlas file is grown by
+    private static final long MIN_ALLOCATION = 256 * 1024;
+
+    private static final String ATLAS_PREFIX = "atlas_";
+    private static final String ATLAS_SUFFIX = ".dat";
+    private static final String INDEX_FILE = "atlas.idx";
+
+    // Length written to the index to record that a key was removed
+    private static final int TOMBSTONE = -1;
+
+    /**
+     * Location of one thumbnail within the atlas files.
+     */
+    static final class Entry {
+        final int file;
+        final long offset;
+        final int length;
+
+        Entry(int file, long offset, int length) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Decides which keys survive a compaction.
+     */
+    public interface KeyFilter {
+        boolean keep(String key);
+    }
+
+    private final File directory;
+    private final long maxAtlasBytes;
+
+    // Key -> location; read without locking, written under the atlas lock
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+
+    // Atlas file number -> read-only mapping of that file
+    private final Map<Integer, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+
+    // Held for reading while an entry is looked up and mapped, and for writing while compaction
+    // switches files, so a reader never follows an entry into a deleted file
+    private final ReadWriteLock switchLock = new ReentrantReadWriteLock();
+
+    private DataOutputStream indexOut;
+    private RandomAccessFile currentAtlas;
+    private int currentFile;
+    private long appendOffset;  // End of the data in the current file; the file may be longer
+    private long totalBytes;  // Bytes written to all atlas files, live or dead
+    private long liveBytes;   // Bytes of entries still in the index
+
+    /**
+     * Opens (or creates) an atlas in the given directory with the default file size limit.
+     *
+     * @param directory The directory holding the atlas and index files.
+     * @throws IOException If the directory or index cannot be read.
+     */
+    public ThumbnailAtlas(File directory) throws IOException {
+        this(directory, DEFAULT_MAX_ATLAS_BYTES);
+    }
+
+    /**
+     * Opens (or creates) an atlas in the given directory.
+     *
+     * @param directory     The directory holding the atlas and index files.
+     * @param maxAtlasBytes Size at which a new atlas file is started.
+     * @throws IOException If the directory or index cannot be read.
+     */
+    public ThumbnailAtlas(File directory, long maxAtlasBytes) throws IOException {
+        this.directory = directory;
+        this.maxAtlasBytes = maxAtlasBytes;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        loadIndex();
+        openForAppend();
+    }
+
+    /**
+     * Returns a read-only view of a thumbnail's bytes, backed by the mapped atlas file.
+     *
+     * @param key The thumbnail's key.
+     * @return The thumbnail bytes, or null if the key is not in the atlas.
+     * @throws IOException If the atlas file cannot be mapped.
+     */
+    public ByteBuffer get(String key) throws IOException {
+        switchLock.readLock().lock();
+        try {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            MappedByteBuffer mapping = mappings.get(entry.file);
+            if (mapping == null || entry.offset + entry.length > mapping.capacity()) {
+                mapping = map(entry.file);  // Not mapped yet, or the file grew since it was mapped
+            }
+            ByteBuffer slice = mapping.duplicate();
+            slice.position((int) entry.offset);
+            slice.limit((int) (entry.offset + entry.length));
+            return slice.slice().asReadOnlyBuffer();
+        } finally {
+            switchLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns whether a key is in the atlas.
+     *
+     * @param key The thumbnail's key.
+     * @return True if the key has an entry.
+     */
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Appends a thumbnail, replacing any existing entry for the key.
+     *
+     * @param key  The thumbnail's key.
+     * @param data The encoded thumbnail.
+     * @throws IOException If the atlas or index cannot be written.
+     */
+    public synchronized void put(String key, byte[] data) throws IOException {
+        if (appendOffset > 0 && appendOffset + data.length > maxAtlasBytes) {
+            currentAtlas.setLength(appendOffset);  // Give back what was allocated but not used
+            currentAtlas.close();
+            currentFile++;
+            currentAtlas = new RandomAccessFile(atlasFile(currentFile), "rw");
+            appendOffset = 0;
+        }
+        long offset = appendOffset;
+        long end = offset + data.length;
+        if (end > currentAtlas.length()) {
+            long doubled = Math.max(MIN_ALLOCATION, 2 * currentAtlas.length());
+            currentAtlas.setLength(Math.max(end, Math.min(maxAtlasBytes, doubled)));
+        }
+        currentAtlas.seek(offset);
+        currentAtlas.write(data);
+        appendOffset = end;
+
+        Entry entry = new Entry(currentFile, offset, data.length);
+        writeIndexRecord(indexOut, key, entry);
+        indexOut.flush();
+
+        Entry previous = index.put(key, entry);
+        if (previous != null) {
+            liveBytes -= previous.length;
+        }
+        liveBytes += data.length;
+        totalBytes += data.length;
+    }
+
+    /**
+     * Removes a thumbnail. Its bytes stay in the atlas file until the next compaction.
+     *
+     * @param key The thumbnail's key.
+     * @throws IOException If the index cannot be written.
+     */
+    public synchronized void remove(String key) throws IOException {
+        Entry previous = index.remove(key);
+        if (previous != null) {
+            writeIndexRecord(indexOut, key, new Entry(0, 0, TOMBSTONE));
+            indexOut.flush();
+            liveBytes -= previous.length;
+        }
+    }
+
+    /**
+     * @return The number of thumbnails in the atlas.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return The fraction of atlas bytes taken up by replaced or removed entries, from 0 to 1.
+     */
+    public synchronized double deadFraction() {
+        return totalBytes == 0 ? 0 : (double) (totalBytes - liveBytes) / totalBytes;
+    }
+
+    /**
+     * Returns the fraction of atlas bytes a compaction with the given filter would reclaim: the
+     * dead bytes plus the entries the filter drops. Must be called on a background thread if the
+     * filter touches the file system.
+     *
+     * @param filter Decides which keys would be kept.
+     * @return A fraction from 0 to 1.
+     */
+    public double reclaimableFraction(KeyFilter filter) {
+        long dropped = 0;
+        for (Map.Entry<String, Entry> mapEntry : index.entrySet()) {
+            if (!filter.keep(mapEntry.getKey())) {
+                dropped += mapEntry.getValue().length;
+            }
+        }
+        synchronized (this) {
+            return totalBytes == 0 ? 0 : Math.min(1, (double) (totalBytes - liveBytes + dropped) / totalBytes);
+        }
+    }
+
+    /**
+     * Copies the entries accepted by the filter into fresh atlas files, rewrites the index and
+     * deletes the old files. Buffers handed out before compaction stay readable.
+     *
+     * @param filter Decides which keys to keep.
+     * @return The number of bytes reclaimed.
+     * @throws IOException If the new files cannot be written.
+     */
+    public synchronized long compact(KeyFilter filter) throws IOException {
+        long before = totalBytes;
+        int firstNewFile = currentFile + 1;
+        int newFile = firstNewFile;
+        File indexTemp = new File(directory, INDEX_FILE + ".tmp");
+        Map<String, Entry> newIndex = new HashMap<>();
+        long newBytes = 0;
+
+        RandomAccessFile out = new RandomAccessFile(atlasFile(newFile), "rw");
+        try (DataOutputStream newIndexOut = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(indexTemp)))) {
+            for (Map.Entry<String, Entry> mapEntry : index.entrySet()) {
+                if (!filter.keep(mapEntry.getKey())) {
+                    continue;
+                }
+                ByteBuffer data = get(mapEntry.getKey());
+                if (out.length() > 0 && out.length() + data.remaining() > maxAtlasBytes) {
+                    out.close();
+                    newFile++;
+                    out = new RandomAccessFile(atlasFile(newFile), "rw");
+                }
+                long offset = out.length();
+                out.seek(offset);
+                int length = data.remaining();
+                out.getChannel().write(data, offset);
+                Entry entry = new Entry(newFile, offset, length);
+                writeIndexRecord(newIndexOut, mapEntry.getKey(), entry);
+                newIndex.put(mapEntry.getKey(), entry);
+                newBytes += length;
+            }
+            newIndexOut.flush();
+        } finally {
+            out.close();
+        }
+
+        // Switch over: the new index replaces the old one in a single rename
+        switchLock.writeLock().lock();
+        try {
+            indexOut.close();
+            currentAtlas.close();
+            File indexFile = new File(directory, INDEX_FILE);
+            if (!indexTemp.renameTo(indexFile)) {
+                throw new IOException("Could not replace " + indexFile);
+            }
+            for (int file = 0; file < firstNewFile; file++) {
+                mappings.remove(file);
+                atlasFile(file).delete();
+            }
+            index.clear();
+            index.putAll(newIndex);
+            totalBytes = newBytes;
+            liveBytes = newBytes;
+            currentFile = newFile;
+            openForAppend();
+            appendOffset = currentAtlas.length();
+        } finally {
+            switchLock.writeLock().unlock();
+        }
+        return before - newBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        switchLock.writeLock().lock();
+        try {
+            indexOut.close();
+            currentAtlas.setLength(appendOffset);
+            currentAtlas.close();
+            mappings.clear();
+        } finally {
+            switchLock.writeLock().unlock();
+        }
+    }
+
+    // Maps the whole file, including space allocated ahead of the data
+    private MappedByteBuffer map(int file) throws IOException {
+        try (RandomAccessFile atlas = new RandomAccessFile(atlasFile(file), "r")) {
+            FileChannel channel = atlas.getChannel();
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mappings.put(file, mapping);
+            return mapping;
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        File indexFile = new File(directory, INDEX_FILE);
+        if (!indexFile.exists()) {
+            return;
+        }
+        long validLength = 0;  // Length of the index up to the last complete record
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            while (true) {
+                String key = in.readUTF();
+                int file = in.readInt();
+                long offset = in.readLong();
+                int length = in.readInt();
+                validLength += recordLength(key);
+                Entry previous = length == TOMBSTONE
+                        ? index.remove(key)
+                        : index.put(key, new Entry(file, offset, length));
+                if (previous != null) {
+                    liveBytes -= previous.length;
+                }
+                if (length != TOMBSTONE) {
+                    liveBytes += length;
+                    currentFile = Math.max(currentFile, file);
+                }
+            }
+        } catch (EOFException e) {
+            // End of the index
+        }
+        if (validLength < indexFile.length()) {
+            // Cut off a partially written last record so new records line up
+            try (RandomAccessFile truncate = new RandomAccessFile(indexFile, "rw")) {
+                truncate.setLength(validLength);
+            }
+        }
+        // Drop entries that point past the end of their file (e.g. the app died mid-write)
+        for (Map.Entry<String, Entry> mapEntry : new HashMap<>(index).entrySet()) {
+            Entry entry = mapEntry.getValue();
+            if (entry.offset + entry.length > atlasFile(entry.file).length()) {
+                index.remove(mapEntry.getKey());
+                liveBytes -= entry.length;
+            } else if (entry.file == currentFile) {
+                appendOffset = Math.max(appendOffset, entry.offset + entry.length);
+            }
+        }
+        // The current file may extend past its data if the app died before trimming it
+        for (int file = 0; file < currentFile; file++) {
+            totalBytes += atlasFile(file).length();
+        }
+        totalBytes += appendOffset;
+    }
+
+    private void openForAppend() throws IOException {
+        currentAtlas = new RandomAccessFile(atlasFile(currentFile), "rw");
+        indexOut = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(new File(directory, INDEX_FILE), true)));
+    }
+
+    private File atlasFile(int file) {
+        return new File(directory, ATLAS_PREFIX + file + ATLAS_SUFFIX);
+    }
+
+    /**
+     * Returns the number of bytes {@link #writeIndexRecord} writes for a key: the modified UTF-8
+     * encoding of the key with its two-byte length, then file, offset and length.
+     */
+    private static long recordLength(String key) {
+        long utfLength = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                utfLength += 1;
+            } else if (c > 0x07FF) {
+                utfLength += 3;
+            } else {
+                utfLength += 2;
+            }
+        }
+        return 2 + utfLength + 4 + 8 + 4;
+    }
+
+    private static void writeIndexRecord(DataOutputStream out, String key, Entry entry) throws IOException {
+        out.writeUTF(key);
+        out.writeInt(entry.file);
+        out.writeLong(entry.offset);
+        out.writeInt(entry.length);
+    }
+}
@@ -0,0 +1,107 @@
+package com.hattonky.inventory.data.images;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Glide ModelLoader that turns a {@link Thumbnail} into the thumbnail's bytes from the atlas.
+ * The bytes are handed to Glide as a slice of the mapped atlas file, which Glide's built-in
+ * ByteBuffer decoder reads directly without copying them into a separate array.
+ */
+public class ThumbnailModelLoader implements ModelLoader<Thumbnail, ByteBuffer> {
+
+    private final Context context;
+
+    ThumbnailModelLoader(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public LoadData<ByteBuffer> buildLoadData(@NonNull Thumbnail model, int width, int height, @NonNull Options options) {
+        return new LoadData<>(new ObjectKey(model), new Fetcher(context, model));
+    }
+
+    @Override
+    public boolean handles(@NonNull Thumbnail model) {
+        return true;
+    }
+
+    /**
+     * Fetches a thumbnail on one of Glide's background threads.
+     */
+    private static class Fetcher implements DataFetcher<ByteBuffer> {
+        private final Context context;
+        private final Thumbnail model;
+
+        Fetcher(Context context, Thumbnail model) {
+            this.context = context;
+            this.model = model;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super ByteBuffer> callback) {
+            try {
+                callback.onDataReady(ThumbnailStore.getInstance(context).getThumbnail(model.getImagePath()));
+            } catch (IOException e) {
+                callback.onLoadFailed(e);
+            }
+        }
+
+        @Override
+        public void cleanup() {
+            // Nothing to release; the atlas mapping is shared
+        }
+
+        @Override
+        public void cancel() {
+            // Thumbnail generation is short and not interruptible
+        }
+
+        @NonNull
+        @Override
+        public Class<ByteBuffer> getDataClass() {
+            return ByteBuffer.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.LOCAL;
+        }
+    }
+
+    /**
+     * Factory registered with Glide in {@link InventoryGlideModule}.
+     */
+    public static class Factory implements ModelLoaderFactory<Thumbnail, ByteBuffer> {
+        private final Context context;
+
+        public Factory(Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<Thumbnail, ByteBuffer> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new ThumbnailModelLoader(context);
+        }
+
+        @Override
+        public void teardown() {
+            // Nothing to tear down
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.hattonky.inventory.data.images;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Generates item thumbnails and keeps them in a {@link ThumbnailAtlas}.
+ * The first request for an image decodes it at thumbnail size and appends the encoded thumbnail
+ * to the atlas; every later request is served from the memory-mapped atlas file.
+ *
+ * Keys include the source file's modification time, so a replaced file gets a fresh thumbnail
+ * and the stale one is dropped at the next compaction. Nothing removes entries as they go stale,
+ * so compaction is triggered by the share of bytes held by stale and dead entries together.
+ */
+public class ThumbnailStore {
+
+    private static final String TAG = "ThumbnailStore";
+
+    // Longest side, in pixels, of generated thumbnails
+    static final int THUMBNAIL_SIZE = 256;
+
+    // Compact once more than half of the atlas bytes are dead or stale
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    private static ThumbnailStore instance;
+
+    private final ContentResolver contentResolver;
+    private final ThumbnailAtlas atlas;
+
+    /**
+     * Returns the shared thumbnail store, opening the atlas on first use.
+     *
+     * @param context Any context; the application context is retained.
+     * @return The shared ThumbnailStore.
+     * @throws IOException If the atlas cannot be opened.
+     */
+    public static synchronized ThumbnailStore getInstance(Context context) throws IOException {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new ThumbnailStore(appContext.getContentResolver(),
+                    new ThumbnailAtlas(new File(appContext.getCacheDir(), "thumbnails")));
+        }
+        return instance;
+    }
+
+    ThumbnailStore(ContentResolver contentResolver, ThumbnailAtlas atlas) {
+        this.contentResolver = contentResolver;
+        this.atlas = atlas;
+    }
+
+    /**
+     * Returns the thumbnail for an image, generating it on first use. Must be called on a
+     * background thread, as a miss decodes the full image.
+     *
+     * @param imagePath The image path as stored on an item (plain path, file:// or content:// URI).
+     * @return The encoded thumbnail, backed by the mapped atlas file.
+     * @throws IOException If the image cannot be read or decoded.
+     */
+    public ByteBuffer getThumbnail(String imagePath) throws IOException {
+        String key = keyFor(imagePath);
+        ByteBuffer thumbnail = atlas.get(key);
+        if (thumbnail == null) {
+            atlas.put(key, generate(imagePath));
+            thumbnail = atlas.get(key);
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Compacts the atlas if enough of it is dead or stale, dropping thumbnails whose source file
+     * has been deleted or replaced. Must be called on a background thread, as it checks the
+     * source file of every thumbnail.
+     *
+     * @return The number of bytes reclaimed.
+     */
+    public long compactIfNeeded() {
+        ThumbnailAtlas.KeyFilter current = key -> key.equals(keyFor(pathOf(key)));
+        if (atlas.reclaimableFraction(current) < COMPACTION_THRESHOLD) {
+            return 0;
+        }
+        try {
+            return atlas.compact(current);
+        } catch (IOException e) {
+            Log.w(TAG, "Thumbnail atlas compaction failed", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Builds the atlas key for an image: the path plus, for local files, the modification time.
+     */
+    private static String keyFor(String imagePath) {
+        File file = ImageStore.toFile(imagePath);
+        return file == null ? imagePath : imagePath + "@" + file.lastModified();
+    }
+
+    private static String pathOf(String key) {
+        int at = key.lastIndexOf('@');
+        return at < 0 ? key : key.substring(0, at);
+    }
+
+    /**
+     * Decodes an image at roughly thumbnail size and encodes it as a JPEG.
+     */
+    private byte[] generate(String imagePath) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = open(imagePath)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Cannot decode " + imagePath);
+        }
+        options.inSampleSize = ImageReencoder.calculateSampleSize(options.outWidth, options.outHeight, THUMBNAIL_SIZE);
+        options.inJustDecodeBounds = false;
+
+        Bitmap bitmap;
+        try (InputStream in = open(imagePath)) {
+            bitmap = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("Cannot decode " + imagePath);
+        }
+
+        int longest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longest > THUMBNAIL_SIZE) {
+            float scale = (float) THUMBNAIL_SIZE / longest;
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                    Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                    Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+                bitmap = scaled;
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 80, out);
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+
+    private InputStream open(String imagePath) throws IOException {
+        if (imagePath.startsWith("/")) {
+            return new FileInputStream(imagePath);
+        }
+        InputStream in = contentResolver.openInputStream(Uri.parse(imagePath));
+        if (in == null) {
+            throw new IOException("Cannot open " + imagePath);
+        }
+        return in;
+    }
+}
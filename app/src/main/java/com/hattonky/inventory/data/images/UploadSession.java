@@ -0,0 +1,46 @@
+package com.hattonky.inventory.data.images;
+
+import com.hattonky.inventory.data.network.JsonDecoder;
+import com.hattonky.inventory.data.network.JsonDecoders;
+
+/**
+ * The server's view of one image upload: how many bytes it has, and where the image can be
+ * found once it has all of them.
+ */
+public class UploadSession {
+
+    /**
+     * Decodes {"uploadId": "...", "offset": 123, "url": "..."}; {@code url} is null or absent
+     * until the upload is complete.
+     */
+    public static final JsonDecoder<UploadSession> DECODER = reader -> {
+        String uploadId = null;
+        long offset = 0;
+        String url = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "uploadId": uploadId = JsonDecoders.nextString(reader); break;
+                case "offset": offset = reader.nextLong(); break;
+                case "url": url = JsonDecoders.nextString(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new UploadSession(uploadId, offset, url);
+    };
+
+    public final String uploadId;
+    public final long offset;  // Bytes received so far; the next chunk starts here
+    public final String url;  // Where the image is served from, once complete
+
+    public UploadSession(String uploadId, long offset, String url) {
+        this.uploadId = uploadId;
+        this.offset = offset;
+        this.url = url;
+    }
+
+    public boolean isComplete() {
+        return url != null;
+    }
+}
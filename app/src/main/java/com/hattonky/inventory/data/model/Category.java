@@ -1,6 +1,8 @@
 package com.hattonky.inventory.data.model;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 /**
@@ -8,7 +10,7 @@ import androidx.room.PrimaryKey;
  * This is a Room entity that maps to the "categories" table in the database.
  * Each category has an auto-generated ID and a name.
  */
-@Entity(tableName = "categories")
+@Entity(tableName = "categories", indices = @Index(value = "uid", unique = true))
 public class Category {
 
     /**
@@ -22,6 +24,32 @@ public class Category {
      */
     private String name;
 
+    /**
+     * A globally unique ID, shared with the server and other devices. Assigned when the category is
+     * first saved; the local ID above is only meaningful on this device.
+     */
+    private String uid;
+
+    /**
+     * The server's version of this category that the local copy is based on; 0 if the server has
+     * not seen it yet. Increases with every change the server accepts.
+     */
+    @ColumnInfo(defaultValue = "0")
+    private long version;
+
+    /**
+     * When the category was last changed, here or on the server, in epoch milliseconds.
+     */
+    @ColumnInfo(defaultValue = "0")
+    private long updatedAt;
+
+    /**
+     * True if the category was deleted. Deleted rows are kept as tombstones until the deletion has
+     * been synced, so an older copy from the server can't bring them back.
+     */
+    @ColumnInfo(defaultValue = "0")
+    private boolean deleted;
+
     /**
      * Constructor to create a new Category object with the specified name.
      * The ID will be auto-generated when the entity is inserted into the database.
@@ -68,4 +96,76 @@ public class Category {
     public void setName(String name) {
         this.name = name;
     }
+
+    /**
+     * Returns the category's globally unique ID.
+     *
+     * @return The UID, or null before the category is first saved.
+     */
+    public String getUid() {
+        return uid;
+    }
+
+    /**
+     * Sets the category's globally unique ID.
+     *
+     * @param uid The UID to set.
+     */
+    public void setUid(String uid) {
+        this.uid = uid;
+    }
+
+    /**
+     * Returns the server version the local copy is based on.
+     *
+     * @return The version, or 0 if never synced.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the server version the local copy is based on.
+     *
+     * @param version The version to set.
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Returns when the category was last changed.
+     *
+     * @return Epoch milliseconds.
+     */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Sets when the category was last changed.
+     *
+     * @param updatedAt Epoch milliseconds.
+     */
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Returns whether the category is a deletion tombstone.
+     *
+     * @return True if deleted.
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Marks the category as deleted or not.
+     *
+     * @param deleted True for a deletion tombstone.
+     */
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
 }
@@ -0,0 +1,230 @@
+package com.hattonky.inventory.data.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * The upload state of one image file.
+ * This is a Room entity that maps to the "image_uploads" table in the database.
+ *
+ * The content hash identifies the file's bytes, so two paths with the same content are only
+ * uploaded once. While an upload is in progress the row holds the server's upload session and
+ * the number of bytes the server has confirmed, so an upload cut off by a lost connection or by
+ * the app being killed continues from there instead of starting over.
+ */
+@Entity(tableName = "image_uploads", indices = @Index("contentHash"))
+public class ImageUpload {
+
+    /**
+     * The image path as stored on the item.
+     */
+    @PrimaryKey
+    @NonNull
+    private String path;
+
+    /**
+     * The SHA-256 of the file's bytes, in lowercase hex.
+     */
+    private String contentHash;
+
+    /**
+     * The file's size in bytes when it was hashed.
+     */
+    private long size;
+
+    /**
+     * The file's modification time when it was hashed, in epoch milliseconds.
+     */
+    private long lastModified;
+
+    /**
+     * The server's ID of the upload session, or null before one was started.
+     */
+    private String uploadId;
+
+    /**
+     * The number of bytes the server has confirmed receiving.
+     */
+    private long confirmedBytes;
+
+    /**
+     * The server URL of the uploaded image, or null until the upload is complete.
+     */
+    private String remoteUrl;
+
+    /**
+     * When the row was last changed, in epoch milliseconds.
+     */
+    private long updatedAt;
+
+    /**
+     * Constructor to create the upload state of a file that was just hashed.
+     *
+     * @param path         The image path.
+     * @param contentHash  The SHA-256 of the file.
+     * @param size         The file's size.
+     * @param lastModified The file's modification time.
+     */
+    public ImageUpload(@NonNull String path, String contentHash, long size, long lastModified) {
+        this.path = path;
+        this.contentHash = contentHash;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Returns the image path.
+     *
+     * @return The path as stored on the item.
+     */
+    @NonNull
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Sets the image path.
+     *
+     * @param path The value to set.
+     */
+    public void setPath(@NonNull String path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the SHA-256 of the file.
+     *
+     * @return The hash in lowercase hex.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Sets the SHA-256 of the file.
+     *
+     * @param contentHash The value to set.
+     */
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Returns the file's size when it was hashed.
+     *
+     * @return The size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Sets the file's size when it was hashed.
+     *
+     * @param size The value to set.
+     */
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * Returns the file's modification time when it was hashed.
+     *
+     * @return The time in epoch milliseconds.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Sets the file's modification time when it was hashed.
+     *
+     * @param lastModified The value to set.
+     */
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Returns the server's ID of the upload session.
+     *
+     * @return The session ID, or null before one was started.
+     */
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    /**
+     * Sets the server's ID of the upload session.
+     *
+     * @param uploadId The value to set.
+     */
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    /**
+     * Returns the number of bytes the server has confirmed receiving.
+     *
+     * @return The confirmed byte count.
+     */
+    public long getConfirmedBytes() {
+        return confirmedBytes;
+    }
+
+    /**
+     * Sets the number of bytes the server has confirmed receiving.
+     *
+     * @param confirmedBytes The value to set.
+     */
+    public void setConfirmedBytes(long confirmedBytes) {
+        this.confirmedBytes = confirmedBytes;
+    }
+
+    /**
+     * Returns the server URL of the uploaded image.
+     *
+     * @return The URL, or null until the upload is complete.
+     */
+    public String getRemoteUrl() {
+        return remoteUrl;
+    }
+
+    /**
+     * Sets the server URL of the uploaded image.
+     *
+     * @param remoteUrl The value to set.
+     */
+    public void setRemoteUrl(String remoteUrl) {
+        this.remoteUrl = remoteUrl;
+    }
+
+    /**
+     * Returns when the row was last changed.
+     *
+     * @return The time in epoch milliseconds.
+     */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Sets when the row was last changed.
+     *
+     * @param updatedAt The value to set.
+     */
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Checks whether the upload has finished.
+     *
+     * @return True once the server has the whole file.
+     */
+    public boolean isComplete() {
+        return remoteUrl != null;
+    }
+}
@@ -1,14 +1,16 @@
 package com.hattonky.inventory.data.model;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 /**
  * Represents an item in the inventory system.
  * This is a Room entity that maps to the "items" table in the database.
- * Each item has an auto-generated ID, name, description, category, and an associated image path.
+ * Each item has an auto-generated ID, name, description, category, quantity, and an associated image path.
  */
-@Entity(tableName = "items")
+@Entity(tableName = "items", indices = @Index(value = "uid", unique = true))
 public class Item {
 
     /**
@@ -37,6 +39,38 @@ public class Item {
      */
     private String imagePath;
 
+    /**
+     * How many of the item are in stock.
+     */
+    @ColumnInfo(defaultValue = "0")
+    private int quantity;
+
+    /**
+     * A globally unique ID, shared with the server and other devices. Assigned when the item is
+     * first saved; the local ID above is only meaningful on this device.
+     */
+    private String uid;
+
+    /**
+     * The server's version of this item that the local copy is based on; 0 if the server has
+     * not seen it yet. Increases with every change the server accepts.
+     */
+    @ColumnInfo(defaultValue = "0")
+    private long version;
+
+    /**
+     * When the item was last changed, here or on the server, in epoch milliseconds.
+     */
+    @ColumnInfo(defaultValue = "0")
+    private long updatedAt;
+
+    /**
+     * True if the item was deleted. Deleted rows are kept as tombstones until the deletion has
+     * been synced, so an older copy from the server can't bring them back.
+     */
+    @ColumnInfo(defaultValue = "0")
+    private boolean deleted;
+
     /**
      * Constructor to create a new Item object with the specified name, description, category, and image path.
      * The ID will be auto-generated when the entity is inserted into the database.
@@ -143,4 +177,94 @@ public class Item {
     public void setImagePath(String imagePath) {
         this.imagePath = imagePath;
     }
+
+    /**
+     * Returns how many of the item are in stock.
+     *
+     * @return The quantity.
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Sets how many of the item are in stock.
+     *
+     * @param quantity The quantity to set.
+     */
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    /**
+     * Returns the item's globally unique ID.
+     *
+     * @return The UID, or null before the item is first saved.
+     */
+    public String getUid() {
+        return uid;
+    }
+
+    /**
+     * Sets the item's globally unique ID.
+     *
+     * @param uid The UID to set.
+     */
+    public void setUid(String uid) {
+        this.uid = uid;
+    }
+
+    /**
+     * Returns the server version the local copy is based on.
+     *
+     * @return The version, or 0 if never synced.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the server version the local copy is based on.
+     *
+     * @param version The version to set.
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Returns when the item was last changed.
+     *
+     * @return Epoch milliseconds.
+     */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Sets when the item was last changed.
+     *
+     * @param updatedAt Epoch milliseconds.
+     */
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Returns whether the item is a deletion tombstone.
+     *
+     * @return True if deleted.
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Marks the item as deleted or not.
+     *
+     * @param deleted True for a deletion tombstone.
+     */
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
 }
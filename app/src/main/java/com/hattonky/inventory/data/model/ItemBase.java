@@ -0,0 +1,204 @@
+package com.hattonky.inventory.data.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * The last copy of an item that this device and the server agreed on.
+ * This is a Room entity that maps to the "item_bases" table in the database.
+ *
+ * When an item was changed both here and on the server, comparing each field with this copy
+ * shows which side changed it, so the two edits can be merged field by field instead of one
+ * replacing the other. A row is written whenever a server copy of the item is applied.
+ */
+@Entity(tableName = "item_bases")
+public class ItemBase {
+
+    /**
+     * The UID of the item this is a copy of.
+     */
+    @PrimaryKey
+    @NonNull
+    private String uid;
+
+    /**
+     * The server version of the copy.
+     */
+    private long version;
+
+    /**
+     * The item's synced fields, as in {@link Item}.
+     */
+    private String name;
+    private String description;
+    private String category;
+    private String imagePath;
+    private int quantity;
+
+    /**
+     * Constructor used by Room.
+     *
+     * @param uid The UID of the item.
+     */
+    public ItemBase(@NonNull String uid) {
+        this.uid = uid;
+    }
+
+    /**
+     * Creates a base from the server's copy of an item.
+     *
+     * @param item The item as received from the server; its UID must be set.
+     * @return A new base holding the item's synced fields.
+     */
+    public static ItemBase of(Item item) {
+        ItemBase base = new ItemBase(item.getUid());
+        base.version = item.getVersion();
+        base.name = item.getName();
+        base.description = item.getDescription();
+        base.category = item.getCategory();
+        base.imagePath = item.getImagePath();
+        base.quantity = item.getQuantity();
+        return base;
+    }
+
+    /**
+     * Returns the base as an item, for comparing with the local and server copies.
+     *
+     * @return A new item with the base's fields; its local ID is not set.
+     */
+    public Item toItem() {
+        Item item = new Item(name, description, category, imagePath);
+        item.setUid(uid);
+        item.setVersion(version);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    /**
+     * Returns the UID of the item.
+     *
+     * @return The UID.
+     */
+    @NonNull
+    public String getUid() {
+        return uid;
+    }
+
+    /**
+     * Sets the UID of the item.
+     *
+     * @param uid The value to set.
+     */
+    public void setUid(@NonNull String uid) {
+        this.uid = uid;
+    }
+
+    /**
+     * Returns the server version of the copy.
+     *
+     * @return The version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the server version of the copy.
+     *
+     * @param version The value to set.
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Returns the agreed name.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the agreed name.
+     *
+     * @param name The value to set.
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the agreed description.
+     *
+     * @return The description.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Sets the agreed description.
+     *
+     * @param description The value to set.
+     */
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Returns the agreed category.
+     *
+     * @return The category.
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Sets the agreed category.
+     *
+     * @param category The value to set.
+     */
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    /**
+     * Returns the agreed image path.
+     *
+     * @return The image path.
+     */
+    public String getImagePath() {
+        return imagePath;
+    }
+
+    /**
+     * Sets the agreed image path.
+     *
+     * @param imagePath The value to set.
+     */
+    public void setImagePath(String imagePath) {
+        this.imagePath = imagePath;
+    }
+
+    /**
+     * Returns the agreed quantity.
+     *
+     * @return The quantity.
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Sets the agreed quantity.
+     *
+     * @param quantity The value to set.
+     */
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
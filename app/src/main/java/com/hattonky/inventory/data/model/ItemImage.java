@@ -0,0 +1,129 @@
+package com.hattonky.inventory.data.model;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Represents one of the photos attached to an item (e.g. front, label, damage).
+ * This is a Room entity that maps to the "item_images" table in the database.
+ * Rows are deleted together with their item. The item's primary photo is also kept on the
+ * item row itself ({@link Item#getImagePath()}), so list queries never need to join this table.
+ */
+@Entity(tableName = "item_images",
+        foreignKeys = @ForeignKey(entity = Item.class,
+                parentColumns = "id",
+                childColumns = "itemId",
+                onDelete = ForeignKey.CASCADE),
+        indices = @Index("itemId"))
+public class ItemImage {
+
+    /**
+     * The primary key for the image, auto-generated by Room.
+     */
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+
+    /**
+     * The ID of the item this image belongs to.
+     */
+    private int itemId;
+
+    /**
+     * The path to the image file, in the same form as {@link Item#getImagePath()}.
+     */
+    private String path;
+
+    /**
+     * The display order of the image within its item, starting at 0.
+     */
+    private int position;
+
+    /**
+     * Constructor to create a new ItemImage for the given item.
+     * The ID will be auto-generated when the entity is inserted into the database.
+     *
+     * @param itemId   The ID of the item the image belongs to.
+     * @param path     The path to the image file.
+     * @param position The display order of the image.
+     */
+    public ItemImage(int itemId, String path, int position) {
+        this.itemId = itemId;
+        this.path = path;
+        this.position = position;
+    }
+
+    /**
+     * Returns the ID of the image.
+     *
+     * @return The image's ID.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Sets the ID of the image.
+     * This is typically used by Room when the entity is saved in the database.
+     *
+     * @param id The ID to set.
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the ID of the item this image belongs to.
+     *
+     * @return The owning item's ID.
+     */
+    public int getItemId() {
+        return itemId;
+    }
+
+    /**
+     * Sets the ID of the item this image belongs to.
+     *
+     * @param itemId The owning item's ID.
+     */
+    public void setItemId(int itemId) {
+        this.itemId = itemId;
+    }
+
+    /**
+     * Returns the path to the image file.
+     *
+     * @return The image path.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Sets the path to the image file.
+     *
+     * @param path The image path to set.
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the display order of the image within its item.
+     *
+     * @return The image's position.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Sets the display order of the image within its item.
+     *
+     * @param position The position to set.
+     */
+    public void setPosition(int position) {
+        this.position = position;
+    }
+}
@@ -0,0 +1,356 @@
+package com.hattonky.inventory.data.model;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Represents a local change to an item or category that has not been sent to the server yet.
+ * This is a Room entity that maps to the "outbox" table in the database.
+ *
+ * Entries are written in the same transaction as the row change they describe, so a change is
+ * never saved without its entry or the other way round, and they survive the app being killed.
+ * They are sent in ID order and deleted once the server has accepted them. Item edits carry only
+ * the fields that changed, so a batch of small edits stays small. A change the server refuses
+ * outright, or that can't be read back, is not retried: it stays in the table, marked rejected,
+ * so it can be reviewed, and no longer counts as pending.
+ */
+@Entity(tableName = "outbox")
+public class OutboxEntry {
+
+    public static final String TYPE_ITEM = "item";
+    public static final String TYPE_CATEGORY = "category";
+
+    public static final String OP_UPSERT = "upsert";
+    public static final String OP_DELETE = "delete";
+
+    /**
+     * The primary key, auto-generated by Room. Increases with every entry, so it is also the order
+     * in which changes were made.
+     */
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+
+    /**
+     * The kind of row that changed: {@link #TYPE_ITEM} or {@link #TYPE_CATEGORY}.
+     */
+    private String entityType;
+
+    /**
+     * The local ID of the row that changed.
+     */
+    private int entityId;
+
+    /**
+     * What happened to the row: {@link #OP_UPSERT} or {@link #OP_DELETE}.
+     */
+    private String operation;
+
+    /**
+     * The row's fields at the time of the change, as a JSON object.
+     */
+    private String payload;
+
+    /**
+     * A unique key for this change, sent with it so the server can ignore a change it has
+     * already applied when a batch is resent.
+     */
+    private String idempotencyKey;
+
+    /**
+     * When the change was made, in epoch milliseconds.
+     */
+    private long createdAt;
+
+    /**
+     * When the change was rejected, in epoch milliseconds; 0 while it is pending.
+     */
+    private long rejectedAt;
+
+    /**
+     * Why the change was rejected, e.g. the server's answer; null while it is pending.
+     */
+    private String rejection;
+
+    /**
+     * Constructor to create a new outbox entry.
+     * The ID will be auto-generated when the entity is inserted into the database.
+     *
+     * @param entityType     The kind of row that changed.
+     * @param entityId       The local ID of the row.
+     * @param operation      What happened to the row.
+     * @param payload        The row's fields as a JSON object.
+     * @param idempotencyKey A unique key for the change.
+     * @param createdAt      When the change was made, in epoch milliseconds.
+     */
+    public OutboxEntry(String entityType, int entityId, String operation, String payload,
+                       String idempotencyKey, long createdAt) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.operation = operation;
+        this.payload = payload;
+        this.idempotencyKey = idempotencyKey;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Creates an entry recording a change to an item. An upsert carries every field; a delete
+     * only identifies the item.
+     *
+     * @param operation {@link #OP_UPSERT} or {@link #OP_DELETE}.
+     * @param item      The item as saved; its ID must already be assigned.
+     * @return A new entry with a fresh idempotency key.
+     */
+    public static OutboxEntry forItem(String operation, Item item) {
+        JSONObject payload = identify(item);
+        if (OP_UPSERT.equals(operation)) {
+            try {
+                payload.put("name", item.getName());
+                payload.put("description", item.getDescription());
+                payload.put("category", item.getCategory());
+                payload.put("imagePath", item.getImagePath());
+                payload.put("quantity", item.getQuantity());
+            } catch (JSONException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        return create(TYPE_ITEM, item.getId(), operation, payload);
+    }
+
+    /**
+     * Creates an upsert entry carrying only the fields that differ between two copies of an
+     * item, e.g. the row before and after an edit. Fields left out are unchanged.
+     *
+     * @param previous The copy the change is relative to.
+     * @param item     The item as saved.
+     * @return A new entry with a fresh idempotency key.
+     */
+    public static OutboxEntry forItemChange(Item previous, Item item) {
+        JSONObject payload = identify(item);
+        try {
+            putIfChanged(payload, "name", previous.getName(), item.getName());
+            putIfChanged(payload, "description", previous.getDescription(), item.getDescription());
+            putIfChanged(payload, "category", previous.getCategory(), item.getCategory());
+            putIfChanged(payload, "imagePath", previous.getImagePath(), item.getImagePath());
+            putIfChanged(payload, "quantity", previous.getQuantity(), item.getQuantity());
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return create(TYPE_ITEM, item.getId(), OP_UPSERT, payload);
+    }
+
+    // The fields every item change carries: which row, and which server version it is based on
+    private static JSONObject identify(Item item) {
+        JSONObject payload = new JSONObject();
+        try {
+            payload.put("id", item.getId());
+            payload.put("uid", item.getUid());
+            payload.put("version", item.getVersion());
+            payload.put("updatedAt", item.getUpdatedAt());
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return payload;
+    }
+
+    private static void putIfChanged(JSONObject payload, String field, Object before, Object after)
+            throws JSONException {
+        if (!Objects.equals(before, after)) {
+            payload.put(field, after != null ? after : JSONObject.NULL);
+        }
+    }
+
+    /**
+     * Creates an entry recording a change to a category.
+     *
+     * @param operation {@link #OP_UPSERT} or {@link #OP_DELETE}.
+     * @param category  The category as saved; its ID must already be assigned.
+     * @return A new entry with a fresh idempotency key.
+     */
+    public static OutboxEntry forCategory(String operation, Category category) {
+        JSONObject payload = new JSONObject();
+        try {
+            payload.put("id", category.getId());
+            payload.put("uid", category.getUid());
+            payload.put("version", category.getVersion());
+            payload.put("updatedAt", category.getUpdatedAt());
+            payload.put("name", category.getName());
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return create(TYPE_CATEGORY, category.getId(), operation, payload);
+    }
+
+    private static OutboxEntry create(String entityType, int entityId, String operation, JSONObject payload) {
+        return new OutboxEntry(entityType, entityId, operation, payload.toString(),
+                UUID.randomUUID().toString(), System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the ID of the entry.
+     *
+     * @return The entry's ID.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Sets the ID of the entry.
+     * This is typically used by Room when the entity is saved in the database.
+     *
+     * @param id The ID to set.
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the kind of row that changed.
+     *
+     * @return {@link #TYPE_ITEM} or {@link #TYPE_CATEGORY}.
+     */
+    public String getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Sets the kind of row that changed.
+     *
+     * @param entityType The type to set.
+     */
+    public void setEntityType(String entityType) {
+        this.entityType = entityType;
+    }
+
+    /**
+     * Returns the local ID of the row that changed.
+     *
+     * @return The row's ID.
+     */
+    public int getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * Sets the local ID of the row that changed.
+     *
+     * @param entityId The ID to set.
+     */
+    public void setEntityId(int entityId) {
+        this.entityId = entityId;
+    }
+
+    /**
+     * Returns what happened to the row.
+     *
+     * @return {@link #OP_UPSERT} or {@link #OP_DELETE}.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Sets what happened to the row.
+     *
+     * @param operation The operation to set.
+     */
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Returns the row's fields at the time of the change.
+     *
+     * @return A JSON object as text.
+     */
+    public String getPayload() {
+        return payload;
+    }
+
+    /**
+     * Sets the row's fields at the time of the change.
+     *
+     * @param payload A JSON object as text.
+     */
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * Returns the change's idempotency key.
+     *
+     * @return The key.
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /**
+     * Sets the change's idempotency key.
+     *
+     * @param idempotencyKey The key to set.
+     */
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * Returns when the change was made.
+     *
+     * @return Epoch milliseconds.
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Sets when the change was made.
+     *
+     * @param createdAt Epoch milliseconds.
+     */
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Returns when the change was rejected.
+     *
+     * @return Epoch milliseconds, or 0 if the change is pending.
+     */
+    public long getRejectedAt() {
+        return rejectedAt;
+    }
+
+    /**
+     * Sets when the change was rejected.
+     *
+     * @param rejectedAt Epoch milliseconds, or 0 for pending.
+     */
+    public void setRejectedAt(long rejectedAt) {
+        this.rejectedAt = rejectedAt;
+    }
+
+    /**
+     * Returns why the change was rejected.
+     *
+     * @return The reason, or null if the change is pending.
+     */
+    public String getRejection() {
+        return rejection;
+    }
+
+    /**
+     * Sets why the change was rejected.
+     *
+     * @param rejection The reason to set.
+     */
+    public void setRejection(String rejection) {
+        this.rejection = rejection;
+    }
+}
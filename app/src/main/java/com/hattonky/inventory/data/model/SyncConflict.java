@@ -0,0 +1,226 @@
+package com.hattonky.inventory.data.model;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * A field that was changed differently on this device and on the server since they last agreed.
+ * This is a Room entity that maps to the "sync_conflicts" table in the database.
+ *
+ * The merge keeps the local value, so the user's edit is not lost and is sent to the server;
+ * the entry records what the server had, so the user can review the choice and switch to the
+ * server's value. Entries are removed once reviewed.
+ */
+@Entity(tableName = "sync_conflicts", indices = @Index("entityUid"))
+public class SyncConflict {
+
+    /**
+     * The primary key, auto-generated by Room.
+     */
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+
+    /**
+     * The UID of the item the conflict is in.
+     */
+    private String entityUid;
+
+    /**
+     * The name of the conflicting field, e.g. "name", or "deleted" when one side deleted the
+     * item and the other edited it.
+     */
+    private String field;
+
+    /**
+     * The value both sides last agreed on, as text; null if unknown.
+     */
+    private String baseValue;
+
+    /**
+     * The value kept, from this device, as text.
+     */
+    private String localValue;
+
+    /**
+     * The value the server had, as text.
+     */
+    private String remoteValue;
+
+    /**
+     * The server version that brought the conflicting value.
+     */
+    private long remoteVersion;
+
+    /**
+     * When the conflict was found, in epoch milliseconds.
+     */
+    private long createdAt;
+
+    /**
+     * Constructor to create a new conflict entry.
+     * The ID will be auto-generated when the entity is inserted into the database.
+     *
+     * @param entityUid     The UID of the item.
+     * @param field         The conflicting field.
+     * @param baseValue     The last agreed value, or null.
+     * @param localValue    The value kept.
+     * @param remoteValue   The server's value.
+     * @param remoteVersion The server version with the conflicting value.
+     * @param createdAt     When the conflict was found.
+     */
+    public SyncConflict(String entityUid, String field, String baseValue, String localValue,
+                        String remoteValue, long remoteVersion, long createdAt) {
+        this.entityUid = entityUid;
+        this.field = field;
+        this.baseValue = baseValue;
+        this.localValue = localValue;
+        this.remoteValue = remoteValue;
+        this.remoteVersion = remoteVersion;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Returns the ID of the entry.
+     *
+     * @return The entry's ID.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Sets the ID of the entry.
+     *
+     * @param id The value to set.
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the UID of the item the conflict is in.
+     *
+     * @return The item's UID.
+     */
+    public String getEntityUid() {
+        return entityUid;
+    }
+
+    /**
+     * Sets the UID of the item the conflict is in.
+     *
+     * @param entityUid The value to set.
+     */
+    public void setEntityUid(String entityUid) {
+        this.entityUid = entityUid;
+    }
+
+    /**
+     * Returns the name of the conflicting field.
+     *
+     * @return The field name.
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * Sets the name of the conflicting field.
+     *
+     * @param field The value to set.
+     */
+    public void setField(String field) {
+        this.field = field;
+    }
+
+    /**
+     * Returns the value both sides last agreed on.
+     *
+     * @return The value as text, or null if unknown.
+     */
+    public String getBaseValue() {
+        return baseValue;
+    }
+
+    /**
+     * Sets the value both sides last agreed on.
+     *
+     * @param baseValue The value to set.
+     */
+    public void setBaseValue(String baseValue) {
+        this.baseValue = baseValue;
+    }
+
+    /**
+     * Returns the value kept from this device.
+     *
+     * @return The value as text.
+     */
+    public String getLocalValue() {
+        return localValue;
+    }
+
+    /**
+     * Sets the value kept from this device.
+     *
+     * @param localValue The value to set.
+     */
+    public void setLocalValue(String localValue) {
+        this.localValue = localValue;
+    }
+
+    /**
+     * Returns the value the server had.
+     *
+     * @return The value as text.
+     */
+    public String getRemoteValue() {
+        return remoteValue;
+    }
+
+    /**
+     * Sets the value the server had.
+     *
+     * @param remoteValue The value to set.
+     */
+    public void setRemoteValue(String remoteValue) {
+        this.remoteValue = remoteValue;
+    }
+
+    /**
+     * Returns the server version that brought the conflicting value.
+     *
+     * @return The version.
+     */
+    public long getRemoteVersion() {
+        return remoteVersion;
+    }
+
+    /**
+     * Sets the server version that brought the conflicting value.
+     *
+     * @param remoteVersion The value to set.
+     */
+    public void setRemoteVersion(long remoteVersion) {
+        this.remoteVersion = remoteVersion;
+    }
+
+    /**
+     * Returns when the conflict was found.
+     *
+     * @return Epoch milliseconds.
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Sets when the conflict was found.
+     *
+     * @param createdAt The value to set.
+     */
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,149 @@
+package com.hattonky.inventory.data.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Represents a user account as last fetched from the server's user directory.
+ * This is a Room entity that maps to the "users" table, a local cache that lets the
+ * user management screen open without waiting for the network.
+ */
+@Entity(tableName = "users")
+public class User {
+
+    /**
+     * The server's ID for the user.
+     */
+    @PrimaryKey
+    @NonNull
+    private String id;
+
+    /**
+     * The user's login name.
+     */
+    private String username;
+
+    /**
+     * The user's email address.
+     */
+    private String email;
+
+    /**
+     * The user's role (e.g., admin, user).
+     */
+    private String role;
+
+    /**
+     * When this row was last fetched from the server, in epoch milliseconds.
+     */
+    private long fetchedAt;
+
+    /**
+     * Constructor to create a cached user.
+     *
+     * @param id        The server's ID for the user.
+     * @param username  The user's login name.
+     * @param email     The user's email address.
+     * @param role      The user's role.
+     * @param fetchedAt When the user was fetched, in epoch milliseconds.
+     */
+    public User(@NonNull String id, String username, String email, String role, long fetchedAt) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.role = role;
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * Returns the server's ID for the user.
+     *
+     * @return The user's ID.
+     */
+    @NonNull
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets the server's ID for the user.
+     *
+     * @param id The ID to set.
+     */
+    public void setId(@NonNull String id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the user's login name.
+     *
+     * @return The username.
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Sets the user's login name.
+     *
+     * @param username The username to set.
+     */
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    /**
+     * Returns the user's email address.
+     *
+     * @return The email address.
+     */
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * Sets the user's email address.
+     *
+     * @param email The email address to set.
+     */
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    /**
+     * Returns the user's role.
+     *
+     * @return The role.
+     */
+    public String getRole() {
+        return role;
+    }
+
+    /**
+     * Sets the user's role.
+     *
+     * @param role The role to set.
+     */
+    public void setRole(String role) {
+        this.role = role;
+    }
+
+    /**
+     * Returns when this row was last fetched from the server.
+     *
+     * @return The fetch time in epoch milliseconds.
+     */
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    /**
+     * Sets when this row was last fetched from the server.
+     *
+     * @param fetchedAt The fetch time in epoch milliseconds.
+     */
+    public void setFetchedAt(long fetchedAt) {
+        this.fetchedAt = fetchedAt;
+    }
+}
@@ -0,0 +1,173 @@
+package com.hattonky.inventory.data.network;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Authenticator;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+
+/**
+ * Attaches the current JWT to outgoing requests and refreshes it when needed.
+ *
+ * The token's {@code exp} claim is checked before each request so it can be refreshed shortly
+ * before it expires. If the server still answers 401, the request is retried once with a
+ * refreshed token. Refreshes are single-flight: when many requests need one at the same time,
+ * one of them performs the refresh and the others wait for it and reuse its token.
+ *
+ * A token the server refused to refresh is not tried again. After any other failure, such as a
+ * timeout, the token is tried again once {@link #DEFAULT_FAILURE_BACKOFF_MS} has passed, so a
+ * dropped connection doesn't lock the user out until they log in again.
+ *
+ * Install the same instance as both interceptor and authenticator. Requests that already carry
+ * an Authorization header are passed through untouched.
+ */
+public class AuthInterceptor implements Interceptor, Authenticator {
+
+    private static final String TAG = "AuthInterceptor";
+    private static final String HEADER = "Authorization";
+    private static final String BEARER = "Bearer ";
+
+    // Refresh when the token has less than this left, so it doesn't expire mid-flight
+    public static final long DEFAULT_REFRESH_MARGIN_MS = 60 * 1000;
+
+    // After a refresh fails without the server rejecting it, requests skip refreshing this long
+    public static final long DEFAULT_FAILURE_BACKOFF_MS = 10 * 1000;
+
+    /**
+     * Exchanges a token for a new one. Called on the thread of the request that needs it.
+     * Throws {@link RejectedException} if the server refuses the token.
+     */
+    public interface Refresher {
+        String refresh(String token) throws IOException;
+    }
+
+    /**
+     * Thrown by a {@link Refresher} when the server refuses to refresh the token (401 or 403),
+     * so it never will.
+     */
+    public static class RejectedException extends IOException {
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private final TokenStore tokenStore;
+    private final Refresher refresher;
+    private final long refreshMarginMs;
+    private final long failureBackoffMs;
+
+    private final Object refreshLock = new Object();
+    private String failedToken;  // Last token whose refresh failed, so waiters don't retry it
+    private long failedUntil;    // When failedToken may be tried again; Long.MAX_VALUE if rejected
+    private final AtomicInteger refreshCount = new AtomicInteger();
+
+    public AuthInterceptor(TokenStore tokenStore, Refresher refresher) {
+        this(tokenStore, refresher, DEFAULT_REFRESH_MARGIN_MS);
+    }
+
+    /**
+     * @param tokenStore      Source of the current token; updated after each refresh.
+     * @param refresher       Performs the refresh round-trip.
+     * @param refreshMarginMs How long before expiry a token is refreshed proactively.
+     */
+    public AuthInterceptor(TokenStore tokenStore, Refresher refresher, long refreshMarginMs) {
+        this(tokenStore, refresher, refreshMarginMs, DEFAULT_FAILURE_BACKOFF_MS);
+    }
+
+    /**
+     * @param tokenStore       Source of the current token; updated after each refresh.
+     * @param refresher        Performs the refresh round-trip.
+     * @param refreshMarginMs  How long before expiry a token is refreshed proactively.
+     * @param failureBackoffMs How long to skip refreshing after a refresh failed for a reason
+     *                         other than the server rejecting the token.
+     */
+    public AuthInterceptor(TokenStore tokenStore, Refresher refresher, long refreshMarginMs, long failureBackoffMs) {
+        this.tokenStore = tokenStore;
+        this.refresher = refresher;
+        this.refreshMarginMs = refreshMarginMs;
+        this.failureBackoffMs = failureBackoffMs;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header(HEADER) != null) {
+            return chain.proceed(request);
+        }
+        String token = tokenStore.getToken();
+        if (token == null) {
+            throw new IOException("JWT token not found");
+        }
+        if (Jwt.expiresAt(token) - refreshMarginMs <= System.currentTimeMillis()) {
+            String refreshed = refresh(token);
+            if (refreshed != null) {
+                token = refreshed;
+            }
+        }
+        return chain.proceed(withToken(request, token));
+    }
+
+    @Override
+    public Request authenticate(Route route, Response response) {
+        String header = response.request().header(HEADER);
+        if (header == null || !header.startsWith(BEARER) || response.priorResponse() != null) {
+            return null;  // Not our token, or already retried once: let the 401 through
+        }
+        String refreshed = refresh(header.substring(BEARER.length()));
+        return refreshed != null ? withToken(response.request(), refreshed) : null;
+    }
+
+    /**
+     * @return How many refresh round-trips have succeeded.
+     */
+    public int getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * Returns a token newer than the stale one, refreshing only if no other request already has.
+     *
+     * @param staleToken The token the caller found expired or rejected.
+     * @return The new token, or null if it could not be refreshed.
+     */
+    private String refresh(String staleToken) {
+        synchronized (refreshLock) {
+            String current = tokenStore.getToken();
+            if (current == null) {
+                return null;  // Logged out meanwhile
+            }
+            if (!current.equals(staleToken)) {
+                return current;  // Another request refreshed while we waited
+            }
+            if (staleToken.equals(failedToken) && System.currentTimeMillis() < failedUntil) {
+                return null;  // Refresh for this token just failed; don't repeat it per request
+            }
+            try {
+                String fresh = refresher.refresh(staleToken);
+                tokenStore.setToken(fresh);
+                refreshCount.incrementAndGet();
+                failedToken = null;
+                return fresh;
+            } catch (RejectedException e) {
+                Log.w(TAG, "Token refresh rejected", e);
+                failedToken = staleToken;
+                failedUntil = Long.MAX_VALUE;
+                return null;
+            } catch (IOException e) {
+                Log.w(TAG, "Token refresh failed", e);
+                failedToken = staleToken;
+                failedUntil = System.currentTimeMillis() + failureBackoffMs;
+                return null;
+            }
+        }
+    }
+
+    private static Request withToken(Request request, String token) {
+        return request.newBuilder().header(HEADER, BEARER + token).build();
+    }
+}
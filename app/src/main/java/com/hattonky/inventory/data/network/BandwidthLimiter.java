@@ -0,0 +1,68 @@
+package com.hattonky.inventory.data.network;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Caps the rate at which bytes are written, shared by every stream that uses it.
+ *
+ * A token bucket: each write takes as many tokens as it has bytes, and tokens come back at the
+ * configured rate up to one second's worth, so a short pause can be made up in a burst but the
+ * average stays at the limit. A writer that runs out waits, on its own thread, until enough
+ * tokens have accumulated. A rate of zero or less turns the limit off.
+ */
+public class BandwidthLimiter {
+
+    private long bytesPerSecond;  // Guarded by this
+    private double tokens;  // Guarded by this
+    private long refilledAt = System.nanoTime();  // Guarded by this
+
+    /**
+     * @param bytesPerSecond The rate to allow, or 0 for no limit.
+     */
+    public BandwidthLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Changes the rate. Writers waiting for tokens pick up the new rate on their next check.
+     *
+     * @param bytesPerSecond The rate to allow, or 0 for no limit.
+     */
+    public synchronized void setRate(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        notifyAll();
+    }
+
+    /**
+     * @return The rate allowed, or 0 or less for no limit.
+     */
+    public synchronized long getRate() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Waits until the given number of bytes may be written.
+     *
+     * @param bytes The size of the write; larger than one second's worth is allowed, but will
+     *              leave the bucket in debt until the rate has caught up.
+     * @throws InterruptedIOException If the thread is interrupted while waiting.
+     */
+    public synchronized void acquire(long bytes) throws InterruptedIOException {
+        while (bytesPerSecond > 0) {
+            long now = System.nanoTime();
+            tokens = Math.min(bytesPerSecond, tokens + (now - refilledAt) * bytesPerSecond / 1e9);
+            refilledAt = now;
+            if (tokens > 0) {
+                tokens -= bytes;  // May go negative; later writers wait for the debt to be paid
+                return;
+            }
+            long waitMs = Math.max(1, (long) Math.ceil(-tokens * 1000 / bytesPerSecond));
+            try {
+                wait(waitMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+            }
+        }
+    }
+}
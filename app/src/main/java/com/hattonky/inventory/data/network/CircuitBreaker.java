@@ -0,0 +1,154 @@
+package com.hattonky.inventory.data.network;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-host circuit breaker.
+ *
+ * After {@code failureThreshold} consecutive failures against a host, its circuit opens and
+ * calls to it fail at once with {@link OpenException} instead of waiting for another timeout.
+ * Once {@code openMs} has passed the circuit is half-open: a single probe call is let through,
+ * and its outcome closes the circuit again or reopens it for another period.
+ */
+public class CircuitBreaker {
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_MS = 30 * 1000;
+
+    public enum State {
+        CLOSED,     // Calls go through
+        OPEN,       // Calls fail fast
+        HALF_OPEN   // One probe call is in flight
+    }
+
+    /**
+     * Thrown instead of calling a host whose circuit is open.
+     */
+    public static class OpenException extends IOException {
+        public OpenException(String host) {
+            super("Circuit open for " + host);
+        }
+    }
+
+    /**
+     * Snapshot of the breaker's counters and circuit states.
+     */
+    public static class Stats {
+        public final long opened;    // Times a circuit opened
+        public final long rejected;  // Calls failed fast while open
+        public final Map<String, State> states;  // Current state per host
+
+        Stats(long opened, long rejected, Map<String, State> states) {
+            this.opened = opened;
+            this.rejected = rejected;
+            this.states = states;
+        }
+    }
+
+    // Failure count and timing for one host; guarded by the breaker
+    private static class Circuit {
+        State state = State.CLOSED;
+        int failures;
+        long openedAt;
+    }
+
+    private final int failureThreshold;
+    private final long openMs;
+    private final Map<String, Circuit> circuits = new HashMap<>();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MS);
+    }
+
+    /**
+     * @param failureThreshold Consecutive failures that open a circuit.
+     * @param openMs           How long a circuit stays open before a probe is allowed.
+     */
+    public CircuitBreaker(int failureThreshold, long openMs) {
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+    }
+
+    /**
+     * Checks whether a call to the host may go ahead. Must be followed by {@link #onSuccess},
+     * {@link #onFailure} or {@link #onCancel} for the same host.
+     *
+     * @throws OpenException If the circuit is open, or half-open with its probe in flight.
+     */
+    public synchronized void acquire(String host) throws OpenException {
+        Circuit circuit = circuit(host);
+        if (circuit.state == State.OPEN && System.currentTimeMillis() - circuit.openedAt >= openMs) {
+            circuit.state = State.HALF_OPEN;  // This call is the probe
+            return;
+        }
+        if (circuit.state != State.CLOSED) {
+            rejected.incrementAndGet();
+            throw new OpenException(host);
+        }
+    }
+
+    /**
+     * Records a call that reached the host and got a usable answer.
+     */
+    public synchronized void onSuccess(String host) {
+        Circuit circuit = circuit(host);
+        circuit.state = State.CLOSED;
+        circuit.failures = 0;
+    }
+
+    /**
+     * Records a call that failed because of the host or the network.
+     */
+    public synchronized void onFailure(String host) {
+        Circuit circuit = circuit(host);
+        circuit.failures++;
+        if (circuit.state == State.HALF_OPEN || circuit.failures >= failureThreshold) {
+            if (circuit.state != State.OPEN) {
+                opened.incrementAndGet();
+            }
+            circuit.state = State.OPEN;
+            circuit.openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Records a call abandoned by the caller. A probe that was cancelled leaves the circuit open,
+     * with the next call allowed to probe instead.
+     */
+    public synchronized void onCancel(String host) {
+        Circuit circuit = circuit(host);
+        if (circuit.state == State.HALF_OPEN) {
+            circuit.state = State.OPEN;
+        }
+    }
+
+    /**
+     * @return The host's circuit state; CLOSED for hosts never called.
+     */
+    public synchronized State getState(String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit != null ? circuit.state : State.CLOSED;
+    }
+
+    public synchronized Stats getStats() {
+        Map<String, State> states = new HashMap<>();
+        for (Map.Entry<String, Circuit> entry : circuits.entrySet()) {
+            states.put(entry.getKey(), entry.getValue().state);
+        }
+        return new Stats(opened.get(), rejected.get(), states);
+    }
+
+    private Circuit circuit(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            circuit = new Circuit();
+            circuits.put(host, circuit);
+        }
+        return circuit;
+    }
+}
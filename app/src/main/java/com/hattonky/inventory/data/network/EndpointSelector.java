@@ -0,0 +1,327 @@
+package com.hattonky.inventory.data.network;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.CacheControl;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Chooses which of several server addresses to use, e.g. a site's LAN mirror and its WAN
+ * endpoint, and keeps the choice in memory so callers don't read preferences per request.
+ *
+ * A probe asks every candidate's health endpoint twice, in parallel: the first request pays
+ * for connecting and the TLS handshake, the second is timed on the warm connection, which is
+ * what later calls will see. Candidates are ranked by that time and the fastest reachable one
+ * is used. Probes run in the background when the candidates are set, when the last probe is
+ * older than {@link #REPROBE_MS}, and after a failover.
+ *
+ * Install as an application interceptor ahead of the retry interceptor. When a call to the
+ * current endpoint still fails after its retries, the endpoint is marked down for a while and
+ * the next one in the ranking becomes current. The failed call is resent there if that is safe:
+ * it is idempotent, or it never reached the server.
+ */
+public class EndpointSelector implements Interceptor {
+
+    public static final String HEALTH_PATH = "api/health";
+    public static final long PROBE_TIMEOUT_MS = 3 * 1000;
+    public static final long REPROBE_MS = 10 * 60 * 1000;
+    public static final long DOWN_MS = 30 * 1000;
+
+    /**
+     * Snapshot of the selection.
+     */
+    public static class Stats {
+        public final String current;
+        public final List<String> ranking;         // Fastest first; unreachable ones last
+        public final Map<String, Long> latencyMs;  // Warm round trip of the last probe; -1 if unreachable
+        public final long probes;
+        public final long failovers;
+
+        Stats(String current, List<String> ranking, Map<String, Long> latencyMs, long probes, long failovers) {
+            this.current = current;
+            this.ranking = ranking;
+            this.latencyMs = latencyMs;
+            this.probes = probes;
+            this.failovers = failovers;
+        }
+
+        @Override
+        public String toString() {
+            return "current " + current + ", latency " + latencyMs + ", " + probes + " probes, "
+                    + failovers + " failovers";
+        }
+    }
+
+    // Marks probe requests, which go to a given candidate and must not fail over
+    private static final class Probe {
+    }
+
+    private static final Probe PROBE = new Probe();
+
+    private final ExecutorService executor;
+
+    private List<String> ranking = Collections.emptyList();  // Guarded by this
+    private Map<String, Long> latencyMs = Collections.emptyMap();  // Guarded by this
+    private final Map<String, Long> downUntil = new HashMap<>();  // Guarded by this
+    private volatile String current;
+    private volatile OkHttpClient probeClient;
+    private volatile long lastProbe;
+
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+
+    /**
+     * @param executor Runs probes; needs a thread per candidate plus one, so a cached pool suits.
+     */
+    public EndpointSelector(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Replaces the candidates. The first one is used until a probe finds a faster one.
+     *
+     * @param urls        Base URLs in order of preference; a missing trailing slash is added.
+     * @param probeClient The client the probes and later calls share, so probes warm its pool;
+     *                    null to never probe.
+     */
+    public void setCandidates(List<String> urls, OkHttpClient probeClient) {
+        List<String> normalized = new ArrayList<>();
+        for (String url : urls) {
+            String base = normalize(url);
+            if (!normalized.contains(base)) {
+                normalized.add(base);
+            }
+        }
+        synchronized (this) {
+            ranking = Collections.unmodifiableList(normalized);
+            latencyMs = Collections.emptyMap();
+            downUntil.clear();
+            current = normalized.isEmpty() ? null : normalized.get(0);
+        }
+        this.probeClient = probeClient;
+        lastProbe = 0;
+        requestProbe();
+    }
+
+    /**
+     * Forgets the candidates.
+     */
+    public void clear() {
+        setCandidates(Collections.emptyList(), null);
+    }
+
+    /**
+     * Returns the endpoint to use, starting a background probe if the last one is stale.
+     *
+     * @return The base URL, ending in a slash, or null if no candidates are set.
+     */
+    public String getBaseUrl() {
+        if (System.currentTimeMillis() - lastProbe > REPROBE_MS) {
+            requestProbe();
+        }
+        return current;
+    }
+
+    /**
+     * @return The current choice, ranking and counters.
+     */
+    public synchronized Stats getStats() {
+        return new Stats(current, ranking, latencyMs, probes.get(), failovers.get());
+    }
+
+    /**
+     * Probes in the background, unless a probe is already running or there is nothing to choose
+     * between.
+     */
+    public void requestProbe() {
+        List<String> candidates;
+        synchronized (this) {
+            candidates = ranking;
+        }
+        if (candidates.size() < 2 || probeClient == null || !probing.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                probe();
+            } finally {
+                probing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Probes every candidate on the calling thread and switches to the fastest reachable one.
+     * If none answers, the current choice stays.
+     *
+     * @return The new ranking.
+     */
+    public List<String> probe() {
+        OkHttpClient client = probeClient;
+        List<String> candidates;
+        synchronized (this) {
+            candidates = ranking;
+        }
+        if (client == null || candidates.isEmpty()) {
+            return candidates;
+        }
+        OkHttpClient timed = client.newBuilder().callTimeout(PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS).build();
+        Map<String, Future<Long>> pending = new LinkedHashMap<>();
+        for (String base : candidates) {
+            pending.put(base, executor.submit(() -> probeOne(timed, base)));
+        }
+        Map<String, Long> measured = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<Long>> entry : pending.entrySet()) {
+            measured.put(entry.getKey(), await(entry.getValue()));
+        }
+        lastProbe = System.currentTimeMillis();
+
+        List<String> ranked = new ArrayList<>(measured.keySet());
+        // Stable sort: equally fast candidates keep their configured order
+        Collections.sort(ranked, (a, b) -> Long.compare(rankOf(measured.get(a)), rankOf(measured.get(b))));
+        synchronized (this) {
+            if (!ranking.equals(candidates)) {
+                return ranking;  // Replaced while probing
+            }
+            ranking = Collections.unmodifiableList(ranked);
+            Map<String, Long> millis = new LinkedHashMap<>();
+            for (String base : ranked) {
+                millis.put(base, measured.get(base) < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(measured.get(base)));
+            }
+            latencyMs = Collections.unmodifiableMap(millis);
+            for (String base : ranked) {
+                if (measured.get(base) >= 0) {
+                    downUntil.remove(base);
+                }
+            }
+            if (measured.get(ranked.get(0)) >= 0) {
+                current = ranked.get(0);
+            }
+            probes.incrementAndGet();
+            return ranking;
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String base = current;
+        if (request.tag(Probe.class) != null || base == null || !request.url().toString().startsWith(base)) {
+            return chain.proceed(request);
+        }
+        try {
+            return chain.proceed(request);
+        } catch (IOException e) {
+            if (chain.call().isCanceled()) {
+                throw e;
+            }
+            String next = failover(base);
+            if (next == null || !(RetryInterceptor.isIdempotent(request) || neverSent(e))) {
+                throw e;
+            }
+            HttpUrl moved = HttpUrl.get(next + request.url().toString().substring(base.length()));
+            return chain.proceed(request.newBuilder().url(moved).build());
+        }
+    }
+
+    // Marks the endpoint down and moves to the next one that isn't; null if there is none
+    private String failover(String failed) {
+        String next = null;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            downUntil.put(failed, now + DOWN_MS);
+            if (!failed.equals(current)) {
+                return current;  // Another call already moved on
+            }
+            for (String base : ranking) {
+                Long until = downUntil.get(base);
+                if (until == null || until <= now) {
+                    next = base;
+                    break;
+                }
+            }
+            if (next == null) {
+                return null;
+            }
+            current = next;
+        }
+        failovers.incrementAndGet();
+        requestProbe();
+        return next;
+    }
+
+    // Warm round trip in nanoseconds, or -1 if the endpoint didn't answer with a 2xx
+    private static long probeOne(OkHttpClient client, String base) {
+        Request request = new Request.Builder()
+                .url(base + HEALTH_PATH)
+                .cacheControl(CacheControl.FORCE_NETWORK)
+                .tag(Probe.class, PROBE)
+                .build();
+        long elapsed = -1;
+        // The first request connects and handshakes; the second is timed on the warm connection
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            try (Response response = client.newCall(request).execute()) {
+                if (!response.isSuccessful()) {
+                    return -1;
+                }
+                response.body().source().skip(Long.MAX_VALUE);
+            } catch (IOException | RuntimeException e) {
+                return -1;
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        return elapsed;
+    }
+
+    private static long await(Future<Long> result) {
+        try {
+            return result.get(PROBE_TIMEOUT_MS * 2 + 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (ExecutionException | TimeoutException e) {
+            result.cancel(true);
+            return -1;
+        }
+    }
+
+    private static long rankOf(long latency) {
+        return latency < 0 ? Long.MAX_VALUE : latency;
+    }
+
+    // Failures that happen before any of the request is written
+    private static boolean neverSent(IOException e) {
+        return e instanceof ConnectException || e instanceof UnknownHostException
+                || e instanceof NoRouteToHostException || e instanceof CircuitBreaker.OpenException;
+    }
+
+    /**
+     * @return The URL with a trailing slash, as the API paths are appended to it.
+     */
+    public static String normalize(String url) {
+        String trimmed = url.trim();
+        return trimmed.endsWith("/") ? trimmed : trimmed + "/";
+    }
+}
@@ -0,0 +1,73 @@
+package com.hattonky.inventory.data.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * A request body that streams a byte range of a file.
+ *
+ * The range is read through one fixed-size buffer and written out as it is read, so memory use
+ * does not depend on the file or chunk size. Each write first takes its size from the
+ * {@link BandwidthLimiter}, if one is given. The file is reopened on every write, so the body
+ * can be sent again when a request is retried.
+ */
+public class FileChunkBody extends RequestBody {
+
+    private static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+
+    private final File file;
+    private final long offset;
+    private final long length;
+    private final int bufferSize;
+    private final BandwidthLimiter limiter;
+
+    /**
+     * @param file       The file to read.
+     * @param offset     Position of the first byte to send.
+     * @param length     Number of bytes to send.
+     * @param bufferSize Size of the read buffer.
+     * @param limiter    Caps the write rate, or null for no limit.
+     */
+    public FileChunkBody(File file, long offset, long length, int bufferSize, BandwidthLimiter limiter) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        this.bufferSize = bufferSize;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return OCTET_STREAM;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(offset);
+            long remaining = length;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("File ended " + remaining + " bytes before the chunk");
+                }
+                if (limiter != null) {
+                    limiter.acquire(read);
+                }
+                sink.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+}
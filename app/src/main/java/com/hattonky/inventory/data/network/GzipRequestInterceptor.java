@@ -0,0 +1,144 @@
+package com.hattonky.inventory.data.network;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Compresses large request bodies with gzip once the server has said it accepts them.
+ *
+ * A server announces support by listing gzip in an {@code Accept-Encoding} header on any of its
+ * responses (RFC 7694); until a host has done so, its requests are sent as they are. Only bodies
+ * of at least {@code minBytes} are compressed, since small ones gain nothing, and multipart file
+ * uploads are left alone. A host that rejects a compressed body with 415 is marked as not
+ * supporting it and the request is sent again uncompressed. The body is compressed up front so
+ * the request keeps a Content-Length.
+ *
+ * Responses need nothing from this class: OkHttp asks for gzip responses and decompresses them
+ * itself as long as the app doesn't set Accept-Encoding. Install as an application interceptor
+ * on the shared client, before the retry interceptor, so a retried request is compressed once.
+ */
+public class GzipRequestInterceptor implements Interceptor {
+
+    public static final int DEFAULT_MIN_BYTES = 1024;
+
+    private enum Support {
+        ACCEPTED,
+        REJECTED
+    }
+
+    /**
+     * Snapshot of the compression counters.
+     */
+    public static class Stats {
+        public final long compressed;   // Requests sent compressed
+        public final long bytesBefore;  // Body bytes of those requests before compression
+        public final long bytesAfter;   // Body bytes actually sent for them
+
+        Stats(long compressed, long bytesBefore, long bytesAfter) {
+            this.compressed = compressed;
+            this.bytesBefore = bytesBefore;
+            this.bytesAfter = bytesAfter;
+        }
+    }
+
+    private final int minBytes;
+    private final Map<String, Support> hosts = new HashMap<>();  // Guarded by this
+    private final AtomicLong compressed = new AtomicLong();
+    private final AtomicLong bytesBefore = new AtomicLong();
+    private final AtomicLong bytesAfter = new AtomicLong();
+
+    public GzipRequestInterceptor() {
+        this(DEFAULT_MIN_BYTES);
+    }
+
+    /**
+     * @param minBytes Smallest body worth compressing.
+     */
+    public GzipRequestInterceptor(int minBytes) {
+        this.minBytes = minBytes;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = request.url().host();
+        RequestBody body = request.body();
+        if (body == null || request.header("Content-Encoding") != null
+                || support(host) != Support.ACCEPTED || body.isOneShot() || body.isDuplex()
+                || isMultipart(body)) {
+            return learn(host, chain.proceed(request));
+        }
+        long length = body.contentLength();
+        if (length >= 0 && length < minBytes) {
+            return learn(host, chain.proceed(request));
+        }
+
+        Buffer plain = new Buffer();
+        body.writeTo(plain);
+        long plainSize = plain.size();
+        Buffer gzipped = new Buffer();
+        try (BufferedSink sink = Okio.buffer(new GzipSink(gzipped))) {
+            sink.writeAll(plain);
+        }
+        long gzippedSize = gzipped.size();
+        Response response = chain.proceed(request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(request.method(), RequestBody.create(gzipped.readByteString(), body.contentType()))
+                .build());
+        if (response.code() == 415) {
+            // The server changed its mind or a proxy doesn't pass the encoding through
+            response.close();
+            synchronized (this) {
+                hosts.put(host, Support.REJECTED);
+            }
+            return chain.proceed(request);
+        }
+        compressed.incrementAndGet();
+        bytesBefore.addAndGet(plainSize);
+        bytesAfter.addAndGet(gzippedSize);
+        return learn(host, response);
+    }
+
+    /**
+     * @return The compression counters so far.
+     */
+    public Stats getStats() {
+        return new Stats(compressed.get(), bytesBefore.get(), bytesAfter.get());
+    }
+
+    // Multipart bodies carry file uploads: images don't shrink, and buffering them would undo streaming
+    private static boolean isMultipart(RequestBody body) {
+        MediaType type = body.contentType();
+        return type != null && "multipart".equals(type.type());
+    }
+
+    private synchronized Support support(String host) {
+        return hosts.get(host);
+    }
+
+    // Records a host's first announcement; a host that rejected gzip stays uncompressed
+    private Response learn(String host, Response response) {
+        String accepted = response.header("Accept-Encoding");
+        if (accepted != null && accepted.toLowerCase(Locale.ROOT).contains("gzip")) {
+            synchronized (this) {
+                if (!hosts.containsKey(host)) {
+                    hosts.put(host, Support.ACCEPTED);
+                }
+            }
+        }
+        return response;
+    }
+}
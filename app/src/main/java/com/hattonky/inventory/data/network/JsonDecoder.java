@@ -0,0 +1,14 @@
+package com.hattonky.inventory.data.network;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * Reads one value from a JSON stream straight into a model object.
+ *
+ * @param <T> The decoded type.
+ */
+public interface JsonDecoder<T> {
+    T decode(JsonReader reader) throws IOException;
+}
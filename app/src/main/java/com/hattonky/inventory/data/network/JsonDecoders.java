@@ -0,0 +1,174 @@
+package com.hattonky.inventory.data.network;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.hattonky.inventory.data.model.Category;
+import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.User;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming decoders for API responses.
+ * Each decoder pulls tokens from the response as they arrive and builds model objects
+ * directly, so neither the response text nor an intermediate JSON tree is kept in memory.
+ * Unknown fields are skipped, which keeps the decoders working when the server adds fields.
+ */
+public final class JsonDecoders {
+
+    /**
+     * Decodes a user object: {"id", "username", "email", "role"}. Missing fields decode as "".
+     * The fetch time is left at 0 for the caller to set.
+     */
+    public static final JsonDecoder<User> USER = reader -> {
+        String id = "", username = "", email = "", role = "";
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": id = nextString(reader); break;
+                case "username": username = nextString(reader); break;
+                case "email": email = nextString(reader); break;
+                case "role": role = nextString(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new User(orEmpty(id), orEmpty(username), orEmpty(email), orEmpty(role), 0);
+    };
+
+    public static final JsonDecoder<List<User>> USERS = listOf(USER);
+
+    public static final JsonDecoder<Page<User>> USER_PAGE = pageOf("users", USER);
+
+    /**
+     * Decodes an item object: {"id", "name", "description", "category", "imagePath", "quantity"},
+     * plus the sync fields {"uid", "version", "updatedAt", "deleted"} when present.
+     */
+    public static final JsonDecoder<Item> ITEM = reader -> {
+        Item item = new Item(null, null, null, null);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": item.setId(reader.nextInt()); break;
+                case "name": item.setName(nextString(reader)); break;
+                case "description": item.setDescription(nextString(reader)); break;
+                case "category": item.setCategory(nextString(reader)); break;
+                case "imagePath": item.setImagePath(nextString(reader)); break;
+                case "quantity": item.setQuantity(reader.nextInt()); break;
+                case "uid": item.setUid(nextString(reader)); break;
+                case "version": item.setVersion(reader.nextLong()); break;
+                case "updatedAt": item.setUpdatedAt(reader.nextLong()); break;
+                case "deleted": item.setDeleted(reader.nextBoolean()); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return item;
+    };
+
+    public static final JsonDecoder<List<Item>> ITEMS = listOf(ITEM);
+
+    /**
+     * Decodes a category object: {"id", "name"}, plus the sync fields {"uid", "version",
+     * "updatedAt", "deleted"} when present.
+     */
+    public static final JsonDecoder<Category> CATEGORY = reader -> {
+        Category category = new Category(null);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": category.setId(reader.nextInt()); break;
+                case "name": category.setName(nextString(reader)); break;
+                case "uid": category.setUid(nextString(reader)); break;
+                case "version": category.setVersion(reader.nextLong()); break;
+                case "updatedAt": category.setUpdatedAt(reader.nextLong()); break;
+                case "deleted": category.setDeleted(reader.nextBoolean()); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return category;
+    };
+
+    public static final JsonDecoder<List<Category>> CATEGORIES = listOf(CATEGORY);
+
+    private JsonDecoders() {
+    }
+
+    /**
+     * Returns a decoder for a JSON array whose elements are read by the given decoder.
+     */
+    public static <T> JsonDecoder<List<T>> listOf(JsonDecoder<T> element) {
+        return reader -> {
+            List<T> list = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                list.add(element.decode(reader));
+            }
+            reader.endArray();
+            return list;
+        };
+    }
+
+    /**
+     * Returns a decoder for one page: {"<itemsField>": [...], "nextCursor": "..."}.
+     * A bare array is accepted as a single, final page, for servers without paging.
+     */
+    public static <T> JsonDecoder<Page<T>> pageOf(String itemsField, JsonDecoder<T> element) {
+        JsonDecoder<List<T>> list = listOf(element);
+        return reader -> {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                return new Page<>(list.decode(reader), null);
+            }
+            List<T> items = new ArrayList<>();
+            String nextCursor = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals(itemsField)) {
+                    items = list.decode(reader);
+                } else if (name.equals("nextCursor")) {
+                    nextCursor = nextString(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return new Page<>(items, nextCursor);
+        };
+    }
+
+    /**
+     * Decodes a whole document and closes the reader.
+     *
+     * @param in      The JSON text, e.g. a response body's char stream.
+     * @param decoder The decoder for the top-level value.
+     * @return The decoded value.
+     * @throws IOException If reading fails or the JSON does not have the expected shape.
+     */
+    public static <T> T decode(Reader in, JsonDecoder<T> decoder) throws IOException {
+        try (JsonReader reader = new JsonReader(in)) {
+            return decoder.decode(reader);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Unexpected JSON: " + e.getMessage(), e);  // Wrong token type
+        }
+    }
+
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * Reads a string (numbers are returned as text), or null.
+     */
+    public static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
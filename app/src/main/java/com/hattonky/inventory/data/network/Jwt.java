@@ -0,0 +1,61 @@
+package com.hattonky.inventory.data.network;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads claims from a JWT without verifying it. The server verifies every token it receives;
+ * the app only needs the expiry to know when to refresh ahead of time, and the other claims to
+ * show who is signed in.
+ */
+public final class Jwt {
+
+    private static final Pattern EXP = Pattern.compile("\"exp\"\\s*:\\s*(\\d+)");
+
+    private Jwt() {
+    }
+
+    /**
+     * Returns when a token expires.
+     *
+     * @param token The encoded JWT.
+     * @return The expiry in epoch milliseconds, or Long.MAX_VALUE if the token has no readable
+     * {@code exp} claim (the server's 401 then decides).
+     */
+    public static long expiresAt(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length < 2) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+            Matcher matcher = EXP.matcher(payload);
+            return matcher.find() ? Long.parseLong(matcher.group(1)) * 1000 : Long.MAX_VALUE;
+        } catch (IllegalArgumentException e) {
+            return Long.MAX_VALUE;  // Not base64url, or exp out of range
+        }
+    }
+
+    /**
+     * Returns all claims of a token.
+     *
+     * @param token The encoded JWT.
+     * @return The decoded payload, or an empty object if it can't be read.
+     */
+    public static JSONObject claims(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length < 2) {
+            return new JSONObject();
+        }
+        try {
+            return new JSONObject(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException | JSONException e) {
+            return new JSONObject();  // Not base64url, or not a JSON object
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.hattonky.inventory.data.network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Records how long each phase of a call takes, per endpoint, to show where time goes when the
+ * app feels slow: name lookup, connecting, the TLS handshake, sending the request, waiting for
+ * the server (time to first byte) or reading the body.
+ *
+ * Install as the client's event listener factory. Each call gets a small listener that notes
+ * {@link System#nanoTime()} at each event and, when the call ends, adds its phase durations to
+ * the endpoint's histograms. A histogram keeps the last {@code window} samples in a ring, so
+ * recording is constant time and percentiles follow recent behaviour; they are only computed
+ * when a snapshot is taken. Endpoints are the method plus the path with ID-like segments
+ * replaced by {id}, so /api/uploads/3f2a... and /api/uploads/9c1b... share one entry.
+ *
+ * Phases that didn't happen on a call are not recorded for it: a call on a pooled connection
+ * has no DNS, connect or TLS sample, and a cache hit has only a total. Comparing the connect
+ * count with the call count therefore shows how often connections were reused.
+ */
+public class NetworkMetrics implements EventListener.Factory {
+
+    public static final int DEFAULT_WINDOW = 256;
+
+    /**
+     * The timed phases of a call.
+     */
+    public enum Phase {
+        DNS,      // Name lookup
+        CONNECT,  // TCP connect, including TLS
+        TLS,      // TLS handshake
+        REQUEST,  // Writing request headers and body
+        TTFB,     // From the end of the request to the first byte of the response
+        BODY,     // Reading the response body
+        TOTAL     // The whole call, including retries and queueing in interceptors
+    }
+
+    /**
+     * Receives snapshots. Called on the thread of the call that completed the period.
+     */
+    public interface Exporter {
+        void export(List<EndpointStats> snapshot);
+    }
+
+    /**
+     * Percentiles of one phase over the recent window, in milliseconds.
+     */
+    public static class Percentiles {
+        public final int count;
+        public final double p50;
+        public final double p90;
+        public final double p99;
+        public final double max;
+
+        Percentiles(int count, double p50, double p90, double p99, double max) {
+            this.count = count;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "p50 %.1f, p90 %.1f, p99 %.1f, max %.1f ms (n=%d)", p50, p90, p99, max, count);
+        }
+    }
+
+    /**
+     * Snapshot of one endpoint's counters and phase percentiles.
+     */
+    public static class EndpointStats {
+        public final String endpoint;       // E.g. "GET /api/users"
+        public final long calls;
+        public final long failures;         // Calls that ended in an exception
+        public final long connects;         // New connections opened for it
+        public final long bytesSent;        // Request headers and bodies
+        public final long bytesReceived;    // Response headers and bodies
+        public final Map<Phase, Percentiles> phases;  // Only phases with samples
+
+        EndpointStats(String endpoint, long calls, long failures, long connects, long bytesSent,
+                      long bytesReceived, Map<Phase, Percentiles> phases) {
+            this.endpoint = endpoint;
+            this.calls = calls;
+            this.failures = failures;
+            this.connects = connects;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+            this.phases = phases;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(endpoint).append(": ").append(calls).append(" calls, ")
+                    .append(failures).append(" failed, ").append(connects).append(" connects, ")
+                    .append(bytesSent).append(" B out, ").append(bytesReceived).append(" B in");
+            for (Map.Entry<Phase, Percentiles> phase : phases.entrySet()) {
+                text.append("\n  ").append(phase.getKey()).append(": ").append(phase.getValue());
+            }
+            return text.toString();
+        }
+    }
+
+    private final int window;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private volatile Exporter exporter;
+    private volatile long exportPeriodNanos;
+    private final AtomicLong lastExport = new AtomicLong(System.nanoTime());
+
+    public NetworkMetrics() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param window Samples kept per endpoint and phase.
+     */
+    public NetworkMetrics(int window) {
+        this.window = window;
+    }
+
+    /**
+     * Sends a snapshot to the exporter after calls end, at most once per period; the first
+     * one after a full period has passed.
+     *
+     * @param exporter The receiver, or null to stop exporting.
+     * @param periodMs The shortest time between snapshots.
+     */
+    public void setExporter(Exporter exporter, long periodMs) {
+        this.exportPeriodNanos = periodMs * 1_000_000;
+        lastExport.set(System.nanoTime());
+        this.exporter = exporter;
+    }
+
+    /**
+     * @return Every endpoint's counters and percentiles, sorted by endpoint.
+     */
+    public List<EndpointStats> snapshot() {
+        List<EndpointStats> result = new ArrayList<>();
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            result.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        Collections.sort(result, (a, b) -> a.endpoint.compareTo(b.endpoint));
+        return result;
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        endpoints.clear();
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        return new CallTimer();
+    }
+
+    /**
+     * Returns the endpoint a URL is counted under: the path with ID-like segments replaced.
+     *
+     * @param method The request method.
+     * @param url    The request URL.
+     * @return E.g. "PUT /api/uploads/{id}".
+     */
+    static String endpointOf(String method, HttpUrl url) {
+        StringBuilder path = new StringBuilder(method).append(' ');
+        for (String segment : url.pathSegments()) {
+            path.append('/').append(isId(segment) ? "{id}" : segment);
+        }
+        return path.toString();
+    }
+
+    // Numbers, UUIDs and hashes; names like "v2" or "users" stay as they are
+    private static boolean isId(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        boolean digits = true;
+        boolean hex = true;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            digits &= c >= '0' && c <= '9';
+            hex &= (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F') || c == '-';
+        }
+        return digits || (hex && segment.length() >= 16);
+    }
+
+    private void record(String endpoint, long[] durations, boolean failed, boolean connected,
+                        long bytesSent, long bytesReceived) {
+        Endpoint stats = endpoints.get(endpoint);
+        if (stats == null) {
+            stats = endpoints.computeIfAbsent(endpoint, key -> new Endpoint(window));
+        }
+        stats.add(durations, failed, connected, bytesSent, bytesReceived);
+        Exporter target = exporter;
+        if (target != null) {
+            long last = lastExport.get();
+            long now = System.nanoTime();
+            if (now - last >= exportPeriodNanos && lastExport.compareAndSet(last, now)) {
+                target.export(snapshot());
+            }
+        }
+    }
+
+    // Counters and histograms of one endpoint
+    private static class Endpoint {
+        private final Histogram[] phases = new Histogram[Phase.values().length];
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong connects = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+
+        Endpoint(int window) {
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new Histogram(window);
+            }
+        }
+
+        void add(long[] durations, boolean failed, boolean connected, long sent, long received) {
+            for (int i = 0; i < durations.length; i++) {
+                if (durations[i] >= 0) {
+                    phases[i].add(durations[i]);
+                }
+            }
+            calls.incrementAndGet();
+            if (failed) {
+                failures.incrementAndGet();
+            }
+            if (connected) {
+                connects.incrementAndGet();
+            }
+            bytesSent.addAndGet(sent);
+            bytesReceived.addAndGet(received);
+        }
+
+        EndpointStats snapshot(String endpoint) {
+            Map<Phase, Percentiles> percentiles = new EnumMap<>(Phase.class);
+            for (Phase phase : Phase.values()) {
+                Percentiles p = phases[phase.ordinal()].percentiles();
+                if (p != null) {
+                    percentiles.put(phase, p);
+                }
+            }
+            return new EndpointStats(endpoint, calls.get(), failures.get(), connects.get(),
+                    bytesSent.get(), bytesReceived.get(), percentiles);
+        }
+    }
+
+    /**
+     * The last {@code size} samples of one phase, in nanoseconds.
+     */
+    static class Histogram {
+        private final long[] samples;
+        private int next;  // Guarded by this
+        private int count;  // Guarded by this
+
+        Histogram(int size) {
+            samples = new long[size];
+        }
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * @return The percentiles of the samples in the window, or null if there are none.
+         */
+        Percentiles percentiles() {
+            long[] sorted;
+            synchronized (this) {
+                if (count == 0) {
+                    return null;
+                }
+                sorted = Arrays.copyOf(samples, count);
+            }
+            Arrays.sort(sorted);
+            return new Percentiles(sorted.length, rank(sorted, 0.50), rank(sorted, 0.90), rank(sorted, 0.99),
+                    sorted[sorted.length - 1] / 1e6);
+        }
+
+        // Nearest-rank percentile, in milliseconds
+        private static double rank(long[] sorted, double quantile) {
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    // Notes event times for one call; OkHttp calls a listener from one thread at a time
+    private class CallTimer extends EventListener {
+        private final long[] durations = new long[Phase.values().length];
+        private long callStart;
+        private long dnsStart;
+        private long connectStart;
+        private long tlsStart;
+        private long requestStart;
+        private long requestEnd;
+        private long bodyStart;
+        private boolean connected;
+        private long bytesSent;
+        private long bytesReceived;
+        private Request request;
+
+        CallTimer() {
+            Arrays.fill(durations, -1);
+        }
+
+        @Override
+        public void callStart(Call call) {
+            callStart = System.nanoTime();
+            request = call.request();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            add(Phase.DNS, System.nanoTime() - dnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            tlsStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            add(Phase.TLS, System.nanoTime() - tlsStart);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            add(Phase.CONNECT, System.nanoTime() - connectStart);
+            connected = true;
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                                  Protocol protocol, IOException ioe) {
+            add(Phase.CONNECT, System.nanoTime() - connectStart);
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            requestEnd = System.nanoTime();
+            bytesSent += request.headers().byteCount();
+            this.request = request;
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            requestEnd = System.nanoTime();
+            bytesSent += byteCount;
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            long now = System.nanoTime();
+            add(Phase.REQUEST, requestEnd - requestStart);
+            add(Phase.TTFB, now - requestEnd);
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            bytesReceived += response.headers().byteCount();
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            bodyStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            add(Phase.BODY, System.nanoTime() - bodyStart);
+            bytesReceived += byteCount;
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            finish(false);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            finish(true);
+        }
+
+        // Retries within the call add up; the total covers them all
+        private void add(Phase phase, long nanos) {
+            int i = phase.ordinal();
+            durations[i] = Math.max(0, durations[i]) + nanos;
+        }
+
+        private void finish(boolean failed) {
+            durations[Phase.TOTAL.ordinal()] = System.nanoTime() - callStart;
+            record(endpointOf(request.method(), request.url()), durations, failed, connected,
+                    bytesSent, bytesReceived);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.hattonky.inventory.data.network;
+
+import java.util.List;
+
+/**
+ * One page of a cursor-paged list.
+ *
+ * @param <T> The element type.
+ */
+public class Page<T> {
+    public final List<T> items;
+    public final String nextCursor;  // Opaque cursor for the following page, null on the last page
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null && !nextCursor.isEmpty();
+    }
+}
@@ -0,0 +1,138 @@
+package com.hattonky.inventory.data.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * On-disk cache for API GET responses, revalidated with ETag/If-None-Match.
+ *
+ * Cached responses are never trusted blindly: every read goes back to the server with the
+ * stored ETag, and an unchanged resource comes back as a bodiless 304 that OkHttp answers from
+ * disk. {@link Policy#STALE_WHILE_REVALIDATE} additionally serves the stored copy before the
+ * revalidation completes, so a screen can show data immediately.
+ *
+ * The policy is chosen per request, so any GET endpoint can use the cache. The server has to
+ * send an ETag and must not mark responses no-store or no-cache.
+ */
+public class ResponseCache {
+
+    public static final long DEFAULT_MAX_SIZE = 10L * 1024 * 1024;
+
+    /**
+     * How a GET uses the cache.
+     */
+    public enum Policy {
+        // Conditional request; the server decides whether the stored copy is still current
+        REVALIDATE,
+        // Serve the stored copy first, then revalidate and deliver again only if it changed
+        STALE_WHILE_REVALIDATE
+    }
+
+    /**
+     * Snapshot of the cache counters.
+     */
+    public static class Stats {
+        public final long hits;         // Served from disk, after a 304 or without the network
+        public final long misses;       // Full body downloaded
+        public final long revalidated;  // Subset of hits confirmed unchanged by a 304
+
+        Stats(long hits, long misses, long revalidated) {
+            this.hits = hits;
+            this.misses = misses;
+            this.revalidated = revalidated;
+        }
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    // max-age=0 rather than no-cache: OkHttp bypasses the cache entirely for no-cache requests,
+    // whereas a stale entry is revalidated with its ETag
+    private static final CacheControl REVALIDATE = new CacheControl.Builder().maxAge(0, TimeUnit.SECONDS).build();
+    private static final CacheControl CACHED_ONLY = new CacheControl.Builder()
+            .onlyIfCached()
+            .maxStale(Integer.MAX_VALUE, TimeUnit.SECONDS)
+            .build();
+
+    private final Cache cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+
+    /**
+     * @param directory The cache directory.
+     * @param maxSize   Maximum size of the cache in bytes.
+     */
+    public ResponseCache(File directory, long maxSize) {
+        this.cache = new Cache(directory, maxSize);
+    }
+
+    /**
+     * @return The OkHttp cache to install on the client.
+     */
+    public Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the request with headers that make OkHttp revalidate any stored copy.
+     */
+    public static Request revalidating(Request request) {
+        return request.newBuilder().cacheControl(REVALIDATE).build();
+    }
+
+    /**
+     * Returns the request with headers that answer it from disk only, however old the stored
+     * copy is. OkHttp answers 504 when nothing is stored.
+     */
+    public static Request cachedOnly(Request request) {
+        return request.newBuilder().cacheControl(CACHED_ONLY).build();
+    }
+
+    /**
+     * Returns whether a response was confirmed unchanged by the server (a 304).
+     */
+    public static boolean isNotModified(Response response) {
+        Response network = response.networkResponse();
+        return response.cacheResponse() != null && network != null && network.code() == 304;
+    }
+
+    /**
+     * Counts a response from a revalidating request as a hit or a miss.
+     *
+     * @param response The response returned by OkHttp.
+     */
+    public void record(Response response) {
+        Response network = response.networkResponse();
+        if (isNotModified(response)) {
+            hits.incrementAndGet();
+            revalidated.incrementAndGet();
+        } else if (network == null && response.cacheResponse() != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.get(), misses.get(), revalidated.get());
+    }
+
+    /**
+     * Removes every stored response, e.g. on logout. Performs disk I/O.
+     *
+     * @throws IOException If the cache cannot be cleared.
+     */
+    public void clear() throws IOException {
+        cache.evictAll();
+    }
+}
@@ -0,0 +1,165 @@
+package com.hattonky.inventory.data.network;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Retries idempotent requests that failed for transient reasons, and fails fast through a
+ * {@link CircuitBreaker} while a host keeps failing.
+ *
+ * A request is idempotent if its method is GET, HEAD, PUT, DELETE or OPTIONS, or if it carries
+ * an Idempotency-Key header. Connection errors, 408, 429 and 5xx responses are retried after an
+ * exponentially growing delay with full jitter (a random wait between zero and the cap), so
+ * clients that failed together don't retry together. A Retry-After header in seconds is
+ * honoured: the retry waits that long, or, if that is longer than the maximum delay, the answer
+ * is returned without retrying. Every attempt counts toward the host's circuit, except a 429,
+ * which shows the host is up and only asking this client to slow down; other requests (e.g.
+ * login) are not retried but still count.
+ *
+ * Install as an application interceptor on the shared client. Cache-only requests are passed
+ * through, since they never reach the network.
+ */
+public class RetryInterceptor implements Interceptor {
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_BASE_DELAY_MS = 250;
+    public static final long DEFAULT_MAX_DELAY_MS = 8 * 1000;
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private final CircuitBreaker circuitBreaker;
+    private final int maxRetries;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final Random random;
+    private final AtomicLong retryCount = new AtomicLong();
+
+    public RetryInterceptor(CircuitBreaker circuitBreaker) {
+        this(circuitBreaker, DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS, new Random());
+    }
+
+    /**
+     * @param circuitBreaker Tracks failures per host.
+     * @param maxRetries     Retries after the first attempt; 0 disables retrying.
+     * @param baseDelayMs    Delay cap for the first retry; doubled for each later one.
+     * @param maxDelayMs     Upper bound on any single delay.
+     * @param random         Source of the jitter.
+     */
+    public RetryInterceptor(CircuitBreaker circuitBreaker, int maxRetries, long baseDelayMs, long maxDelayMs,
+                            Random random) {
+        this.circuitBreaker = circuitBreaker;
+        this.maxRetries = maxRetries;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.random = random;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.cacheControl().onlyIfCached()) {
+            return chain.proceed(request);
+        }
+        String host = hostOf(request.url());
+        int retries = isIdempotent(request) ? maxRetries : 0;
+        for (int attempt = 0; ; attempt++) {
+            circuitBreaker.acquire(host);
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if (chain.call().isCanceled()) {
+                    circuitBreaker.onCancel(host);  // Not the host's fault
+                    throw e;
+                }
+                circuitBreaker.onFailure(host);
+                if (attempt >= retries) {
+                    throw e;
+                }
+                sleep(delay(attempt, null));
+                continue;
+            }
+            if (!isTransient(response.code()) || response.code() == 429) {
+                circuitBreaker.onSuccess(host);
+            } else {
+                circuitBreaker.onFailure(host);
+            }
+            if (!isTransient(response.code()) || attempt >= retries) {
+                return response;
+            }
+            long delayMs = delay(attempt, response.header("Retry-After"));
+            if (delayMs < 0) {
+                return response;  // Asked to wait longer than we would block the caller
+            }
+            response.close();
+            sleep(delayMs);
+        }
+    }
+
+    /**
+     * @return How many retries have been made.
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * @return The breaker this interceptor reports to.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    // Full jitter: a uniform wait up to base * 2^attempt, capped; Retry-After wins when given,
+    // and -1 means it asks for more than the cap, so the retry should not be made
+    long delay(int attempt, String retryAfter) {
+        if (retryAfter != null) {
+            try {
+                long requested = Long.parseLong(retryAfter.trim()) * 1000;
+                return requested <= maxDelayMs ? requested : -1;
+            } catch (NumberFormatException e) {
+                // An HTTP date; fall back to the computed delay
+            }
+        }
+        long cap = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 30));
+        return (long) (random.nextDouble() * cap);
+    }
+
+    private void sleep(long delayMs) throws IOException {
+        retryCount.incrementAndGet();
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    static boolean isIdempotent(Request request) {
+        switch (request.method()) {
+            case "GET":
+            case "HEAD":
+            case "PUT":
+            case "DELETE":
+            case "OPTIONS":
+                return true;
+            default:
+                return request.header(IDEMPOTENCY_KEY) != null;
+        }
+    }
+
+    private static boolean isTransient(int code) {
+        return code == 408 || code == 429 || code >= 500;
+    }
+
+    static String hostOf(HttpUrl url) {
+        return url.host() + ":" + url.port();
+    }
+}
@@ -0,0 +1,19 @@
+package com.hattonky.inventory.data.network;
+
+/**
+ * Holds the JWT used to authenticate API calls.
+ */
+public interface TokenStore {
+
+    /**
+     * @return The current token, or null when no user is logged in.
+     */
+    String getToken();
+
+    /**
+     * Replaces the current token, e.g. after a refresh.
+     *
+     * @param token The new token.
+     */
+    void setToken(String token);
+}
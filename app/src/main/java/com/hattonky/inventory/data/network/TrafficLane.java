@@ -0,0 +1,304 @@
+package com.hattonky.inventory.data.network;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * Admits the requests of one priority class, such as interactive calls or background sync.
+ *
+ * Each lane caps how many of its requests run at once, in total and per host; a request over
+ * the cap waits on its own thread until a slot frees up, or for at most {@code maxWaitMs}, after
+ * which it is let in over the cap. The cap is there to share bandwidth, not to guard a resource,
+ * so a request whose slot holders are themselves waiting on it (say, for a token refresh) must
+ * not hang forever. This works the same for blocking calls,
+ * which OkHttp's dispatcher does not limit, and for enqueued ones. A lower lane can be set to
+ * yield to a higher one: while the higher lane has requests in flight, the lower lane admits
+ * nothing new and pauses the request bodies it is sending, so a large upload stops competing
+ * for bandwidth while the user waits for a login. Waiting for admission lasts at most
+ * {@code maxYieldMs}, and so do all the pauses of one request body together, so background work
+ * still moves during long stretches of foreground traffic.
+ *
+ * Install as an application interceptor after the retry interceptor, so a request waiting to be
+ * retried doesn't hold a slot. Calls that requests holding a slot wait for, such as token
+ * refreshes, should go through a client without a lane. Event streams (Accept: text/event-stream) pass without a slot:
+ * they are idle most of the time and would hold it for hours.
+ */
+public class TrafficLane implements Interceptor {
+
+    /**
+     * Snapshot of a lane's counters.
+     */
+    public static class Stats {
+        public final String name;
+        public final long admitted;        // Requests that got a slot
+        public final long waited;          // Of those, requests that had to wait for it
+        public final long totalWaitNanos;  // Time spent waiting, over all requests
+        public final long maxWaitNanos;    // Longest single wait
+        public final long yields;          // Waits and body pauses caused by the higher lane
+        public final long overCap;         // Requests let in over the cap after waiting maxWaitMs
+        public final int active;           // Requests holding a slot now
+        public final int queued;           // Requests waiting for a slot now
+
+        Stats(String name, long admitted, long waited, long totalWaitNanos, long maxWaitNanos, long yields,
+              long overCap, int active, int queued) {
+            this.name = name;
+            this.admitted = admitted;
+            this.waited = waited;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.yields = yields;
+            this.overCap = overCap;
+            this.active = active;
+            this.queued = queued;
+        }
+
+        /**
+         * @return The average wait per admitted request, in milliseconds.
+         */
+        public double meanWaitMs() {
+            return admitted == 0 ? 0 : totalWaitNanos / 1e6 / admitted;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + admitted + " admitted, " + waited + " waited, "
+                    + String.format(java.util.Locale.US, "mean %.1f ms, max %.1f ms", meanWaitMs(), maxWaitNanos / 1e6)
+                    + ", " + yields + " yields, " + overCap + " over cap, " + active + " active, " + queued + " queued";
+        }
+    }
+
+    // How long a request waits for a slot before it is let in over the cap
+    public static final long DEFAULT_MAX_WAIT_MS = 10 * 1000;
+
+    private final String name;
+    private final int maxRequests;
+    private final int maxRequestsPerHost;
+    private final TrafficLane yieldTo;
+    private final long maxYieldMs;
+    private final long maxWaitMs;
+
+    private int active;  // Guarded by this
+    private int queued;  // Guarded by this
+    private final Map<String, Integer> activePerHost = new HashMap<>();  // Guarded by this
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong yields = new AtomicLong();
+    private final AtomicLong overCap = new AtomicLong();
+
+    /**
+     * Creates a lane that doesn't yield to another.
+     *
+     * @param name               Used in the stats.
+     * @param maxRequests        Requests allowed at once.
+     * @param maxRequestsPerHost Requests allowed at once to one host.
+     */
+    public TrafficLane(String name, int maxRequests, int maxRequestsPerHost) {
+        this(name, maxRequests, maxRequestsPerHost, null, 0);
+    }
+
+    /**
+     * @param name               Used in the stats.
+     * @param maxRequests        Requests allowed at once.
+     * @param maxRequestsPerHost Requests allowed at once to one host.
+     * @param yieldTo            The lane that takes precedence, or null.
+     * @param maxYieldMs         The longest a request waits for admission, and the longest its body
+     *                           pauses in total.
+     */
+    public TrafficLane(String name, int maxRequests, int maxRequestsPerHost, TrafficLane yieldTo, long maxYieldMs) {
+        this(name, maxRequests, maxRequestsPerHost, yieldTo, maxYieldMs, DEFAULT_MAX_WAIT_MS);
+    }
+
+    /**
+     * @param name               Used in the stats.
+     * @param maxRequests        Requests allowed at once.
+     * @param maxRequestsPerHost Requests allowed at once to one host.
+     * @param yieldTo            The lane that takes precedence, or null.
+     * @param maxYieldMs         The longest a request waits for admission, and the longest its body
+     *                           pauses in total.
+     * @param maxWaitMs          The longest a request waits for a slot before it is let in over the cap.
+     */
+    public TrafficLane(String name, int maxRequests, int maxRequestsPerHost, TrafficLane yieldTo, long maxYieldMs,
+                       long maxWaitMs) {
+        this.name = name;
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.yieldTo = yieldTo;
+        this.maxYieldMs = maxYieldMs;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String accept = request.header("Accept");
+        if (accept != null && accept.contains("text/event-stream")) {
+            return chain.proceed(request);
+        }
+        String host = request.url().host();
+        acquire(host);
+        try {
+            if (yieldTo != null && request.body() != null) {
+                request = request.newBuilder()
+                        .method(request.method(), new YieldingBody(request.body()))
+                        .build();
+            }
+            return chain.proceed(request);
+        } finally {
+            release(host);
+        }
+    }
+
+    /**
+     * @return Whether any request of this lane holds a slot.
+     */
+    public synchronized boolean isBusy() {
+        return active > 0;
+    }
+
+    /**
+     * @return The lane's counters so far.
+     */
+    public Stats getStats() {
+        int activeNow;
+        int queuedNow;
+        synchronized (this) {
+            activeNow = active;
+            queuedNow = queued;
+        }
+        return new Stats(name, admitted.get(), waited.get(), totalWaitNanos.get(), maxWaitNanos.get(),
+                yields.get(), overCap.get(), activeNow, queuedNow);
+    }
+
+    private void acquire(String host) throws InterruptedIOException {
+        long start = System.nanoTime();
+        synchronized (this) {
+            queued++;
+        }
+        boolean hadToWait;
+        try {
+            hadToWait = yieldToHigherLane(maxYieldMs) >= 0;
+            long deadline = System.currentTimeMillis() + maxWaitMs;
+            synchronized (this) {
+                while (active >= maxRequests || activePerHost.getOrDefault(host, 0) >= maxRequestsPerHost) {
+                    hadToWait = true;
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) {
+                        overCap.incrementAndGet();
+                        break;
+                    }
+                    wait(left);
+                }
+                active++;
+                activePerHost.merge(host, 1, Integer::sum);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a " + name + " slot");
+        } finally {
+            synchronized (this) {
+                queued--;
+            }
+        }
+        long waitNanos = System.nanoTime() - start;
+        admitted.incrementAndGet();
+        if (hadToWait) {
+            waited.incrementAndGet();
+        }
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private void release(String host) {
+        boolean idle;
+        synchronized (this) {
+            active--;
+            activePerHost.merge(host, -1, (count, minus) -> count + minus == 0 ? null : count + minus);
+            notifyAll();
+            idle = active == 0;
+        }
+        if (idle) {
+            // Outside this lane's lock: yielding lanes check isBusy() while holding the class lock
+            synchronized (TrafficLane.class) {
+                TrafficLane.class.notifyAll();  // Wake lanes yielding to this one
+            }
+        }
+    }
+
+    // Waits, up to limitMs, while the higher lane is busy; returns the milliseconds waited, or -1
+    // if the higher lane wasn't busy
+    private long yieldToHigherLane(long limitMs) throws InterruptedIOException {
+        if (yieldTo == null || !yieldTo.isBusy()) {
+            return -1;
+        }
+        yields.incrementAndGet();
+        long start = System.currentTimeMillis();
+        long deadline = start + limitMs;
+        synchronized (TrafficLane.class) {
+            try {
+                for (long left = limitMs; left > 0 && yieldTo.isBusy();
+                     left = deadline - System.currentTimeMillis()) {
+                    TrafficLane.class.wait(left);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while yielding to " + yieldTo.name);
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    // Pauses the upload between writes while the higher lane is busy, for up to maxYieldMs in all
+    private class YieldingBody extends RequestBody {
+        private final RequestBody delegate;
+        private long budgetMs = maxYieldMs;  // Pause time left for this request, over all its writes
+
+        YieldingBody(RequestBody delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return delegate.isOneShot();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            BufferedSink yielding = Okio.buffer(new ForwardingSink(sink) {
+                @Override
+                public void write(Buffer source, long byteCount) throws IOException {
+                    if (budgetMs > 0) {
+                        budgetMs -= Math.max(0, yieldToHigherLane(budgetMs));
+                    }
+                    super.write(source, byteCount);
+                }
+            });
+            delegate.writeTo(yielding);
+            yielding.emit();
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.hattonky.inventory.data.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.hattonky.inventory.data.ApiClient;
+import com.hattonky.inventory.data.network.JsonDecoders;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+/**
+ * Keeps a long-lived connection to the server's change feed while the app is in use, so changes
+ * made on other devices show up without polling.
+ *
+ * The feed is a server-sent event stream (text/event-stream). Each "change" event carries rows
+ * in the same shape as a {@link ChangePage}, and its ID is a change-log cursor. Events are not
+ * written one by one: the first event of a burst opens a short window, and everything received
+ * within it is applied in one batch and one transaction, so a burst of server changes causes a
+ * single UI update. After a dropped connection the feed reconnects with a growing, jittered delay
+ * and sends the last event ID it received, so the server resumes after it; the first connection
+ * resumes from the cursor of the last sync. A connection that delivered events resets the delay.
+ * If a batch can't be applied, the events received after it are dropped as well and the feed
+ * reconnects from the last event that was applied, so the server sends the failed events again
+ * rather than the feed skipping them.
+ */
+public class ChangeFeed {
+
+    private static final String TAG = "ChangeFeed";
+
+    public static final long DEFAULT_WINDOW_MS = 250;
+    public static final long DEFAULT_BASE_DELAY_MS = 1000;
+    public static final long DEFAULT_MAX_DELAY_MS = 60 * 1000;
+
+    /**
+     * Opens the event stream. Called on the feed thread.
+     */
+    public interface Source {
+        /**
+         * @param lastEventId The ID of the last event received, or null for the whole log.
+         * @return A call whose response body is the event stream; not yet executed.
+         */
+        Call newCall(String lastEventId);
+    }
+
+    /**
+     * Receives the batched events.
+     */
+    public interface Sink {
+        /**
+         * @return The cursor to resume from when the feed starts, or null for the whole log.
+         */
+        String getCursor();
+
+        /**
+         * Applies a batch of events in the order they were received. Called on the flush thread.
+         *
+         * @param batch One page per event, each with the event ID as its cursor.
+         */
+        void apply(List<ChangePage> batch);
+    }
+
+    private static ChangeFeed instance;
+
+    private final Source source;
+    private final Sink sink;
+    private final Executor readExecutor;
+    private final ScheduledExecutorService flushExecutor;
+    private final long windowMs;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final Random random = new Random();
+
+    private boolean running;  // Guarded by this
+    private Call current;  // The open connection; guarded by this
+    private volatile String lastEventId;  // ID of the last event applied, or skipped as unreadable
+    private volatile long retryMs;  // Server's "retry:" hint; replaces the base delay when given
+    private final List<ChangePage> pending = new ArrayList<>();  // Events waiting for the window to close; guarded by itself
+    private String receivedEventId;  // ID of the last event queued since the last failed batch; guarded by pending
+    private boolean discarding;  // A batch failed; events are dropped until the next connection. Guarded by pending
+
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong batchesApplied = new AtomicLong();
+
+    /**
+     * Returns the app's change feed, which connects through {@link ApiClient} and applies
+     * events through {@link DeltaSync}.
+     */
+    public static synchronized ChangeFeed getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            DeltaSync deltaSync = DeltaSync.getInstance(appContext);
+            instance = new ChangeFeed(lastEventId -> ApiClient.newChangeFeedCall(appContext, lastEventId),
+                    new Sink() {
+                        @Override
+                        public String getCursor() {
+                            return deltaSync.getCursor();
+                        }
+
+                        @Override
+                        public void apply(List<ChangePage> batch) {
+                            deltaSync.applyBatch(batch);
+                        }
+                    },
+                    Executors.newSingleThreadExecutor(), Executors.newSingleThreadScheduledExecutor(),
+                    DEFAULT_WINDOW_MS, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+        }
+        return instance;
+    }
+
+    /**
+     * @param source        Opens the event stream.
+     * @param sink          Applies batches of events.
+     * @param readExecutor  Runs the connection loop; holds a thread for as long as the feed runs.
+     * @param flushExecutor Applies batches; should be single-threaded so batches stay in order.
+     * @param windowMs      How long events are collected before they are applied.
+     * @param baseDelayMs   Wait before the first reconnect; doubled after each failed attempt.
+     * @param maxDelayMs    Upper bound on the wait between reconnects.
+     */
+    public ChangeFeed(Source source, Sink sink, Executor readExecutor, ScheduledExecutorService flushExecutor,
+                      long windowMs, long baseDelayMs, long maxDelayMs) {
+        this.source = source;
+        this.sink = sink;
+        this.readExecutor = readExecutor;
+        this.flushExecutor = flushExecutor;
+        this.windowMs = windowMs;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * Connects in the background, unless already running.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        readExecutor.execute(this::run);
+    }
+
+    /**
+     * Closes the connection. Events already received are still applied.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (current != null) {
+            current.cancel();
+        }
+        notifyAll();  // Ends a reconnect wait
+    }
+
+    /**
+     * @return Connections opened successfully so far.
+     */
+    public long getConnects() {
+        return connects.get();
+    }
+
+    /**
+     * @return Change events received so far.
+     */
+    public long getEventsReceived() {
+        return eventsReceived.get();
+    }
+
+    /**
+     * @return Batches handed to the sink so far.
+     */
+    public long getBatchesApplied() {
+        return batchesApplied.get();
+    }
+
+    private void run() {
+        if (lastEventId == null) {
+            lastEventId = sink.getCursor();
+        }
+        int failures = 0;  // Consecutive connections that delivered no events
+        while (true) {
+            Call call;
+            synchronized (this) {
+                if (!running) {
+                    return;
+                }
+                String resumeAfter;
+                synchronized (pending) {
+                    discarding = false;
+                    resumeAfter = receivedEventId != null ? receivedEventId : lastEventId;
+                }
+                try {
+                    call = source.newCall(resumeAfter);
+                } catch (IllegalStateException e) {  // No server configured yet
+                    running = false;
+                    return;
+                }
+                current = call;
+            }
+            long received = eventsReceived.get();
+            try (Response response = call.execute()) {
+                if (!response.isSuccessful()) {
+                    throw new IOException("Unexpected code " + response);
+                }
+                connects.incrementAndGet();
+                read(response.body().source());
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (!running) {
+                        return;  // Stopped
+                    }
+                }
+                Log.w(TAG, "Change feed connection lost", e);
+            } finally {
+                synchronized (this) {
+                    current = null;
+                }
+            }
+            failures = eventsReceived.get() > received ? 0 : failures + 1;
+            if (!waitToReconnect(failures)) {
+                return;
+            }
+        }
+    }
+
+    // Reads events until the server closes the stream
+    private void read(BufferedSource body) throws IOException {
+        String id = lastEventId;
+        String event = null;
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = body.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                // A blank line ends the event
+                if (data.length() > 0 && (event == null || "change".equals(event))) {
+                    receive(id, data.toString());
+                }
+                event = null;
+                data.setLength(0);
+                continue;
+            }
+            if (line.startsWith(":")) {
+                continue;  // Comment; the server's keep-alive
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(line.startsWith(": ", colon) ? colon + 2 : colon + 1);
+            switch (field) {
+                case "id": id = value; break;
+                case "event": event = value; break;
+                case "data":
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                    break;
+                case "retry":
+                    try {
+                        retryMs = Long.parseLong(value);
+                    } catch (NumberFormatException ignored) {
+                    }
+                    break;
+                default:
+            }
+        }
+    }
+
+    private void receive(String id, String data) {
+        ChangePage page;
+        try {
+            page = JsonDecoders.decode(new StringReader(data), ChangePage.DECODER);
+        } catch (IOException | RuntimeException e) {
+            // Queued without rows, so the feed moves past it once the events before it are applied
+            Log.w(TAG, "Skipping unreadable change event " + id, e);
+            page = new ChangePage(Collections.emptyList(), Collections.emptyList(), id, false);
+        }
+        eventsReceived.incrementAndGet();
+        synchronized (pending) {
+            if (discarding) {
+                return;
+            }
+            receivedEventId = id;
+            pending.add(new ChangePage(page.items, page.categories, id, false));
+            if (pending.size() == 1) {
+                flushExecutor.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void flush() {
+        List<ChangePage> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            sink.apply(batch);
+            batchesApplied.incrementAndGet();
+        } catch (RuntimeException e) {
+            // Later events must not be applied past the failed ones: drop them and reconnect from
+            // the last applied event, so the server sends them all again
+            Log.w(TAG, "Applying " + batch.size() + " change events failed", e);
+            synchronized (this) {  // Held so a connection can't open between the rewind and the cancel
+                synchronized (pending) {
+                    discarding = true;
+                    pending.clear();
+                    receivedEventId = null;
+                }
+                if (current != null) {
+                    current.cancel();
+                }
+            }
+            return;
+        }
+        lastEventId = batch.get(batch.size() - 1).cursor;
+    }
+
+    // Equal jitter: half the capped delay plus a random share of the other half
+    private synchronized boolean waitToReconnect(int failures) {
+        long base = retryMs > 0 ? retryMs : baseDelayMs;
+        long cap = Math.min(maxDelayMs, base << Math.min(Math.max(failures - 1, 0), 20));
+        long delay = cap / 2 + (long) (random.nextDouble() * (cap - cap / 2));
+        long deadline = System.currentTimeMillis() + delay;
+        try {
+            for (long left = delay; running && left > 0; left = deadline - System.currentTimeMillis()) {
+                wait(left);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return running;
+    }
+}
@@ -0,0 +1,55 @@
+package com.hattonky.inventory.data.sync;
+
+import com.hattonky.inventory.data.model.Category;
+import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.network.JsonDecoder;
+import com.hattonky.inventory.data.network.JsonDecoders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of server changes since a cursor: rows created, edited or deleted elsewhere, each
+ * with its new version. Deleted rows arrive as tombstones with {@code deleted} set.
+ */
+public class ChangePage {
+
+    /**
+     * Decodes {"items": [...], "categories": [...], "cursor": "...", "hasMore": true}.
+     * Missing lists decode as empty.
+     */
+    public static final JsonDecoder<ChangePage> DECODER = reader -> {
+        List<Item> items = new ArrayList<>();
+        List<Category> categories = new ArrayList<>();
+        String cursor = null;
+        boolean hasMore = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "items": items = JsonDecoders.ITEMS.decode(reader); break;
+                case "categories": categories = JsonDecoders.CATEGORIES.decode(reader); break;
+                case "cursor": cursor = JsonDecoders.nextString(reader); break;
+                case "hasMore": hasMore = reader.nextBoolean(); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new ChangePage(items, categories, cursor, hasMore);
+    };
+
+    public final List<Item> items;
+    public final List<Category> categories;
+    public final String cursor;  // Change-log position after this page, an increasing integer; the next pull starts here
+    public final boolean hasMore;  // More changes are waiting after the cursor
+
+    public ChangePage(List<Item> items, List<Category> categories, String cursor, boolean hasMore) {
+        this.items = items;
+        this.categories = categories;
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+    }
+
+    public int size() {
+        return items.size() + categories.size();
+    }
+}
@@ -0,0 +1,319 @@
+package com.hattonky.inventory.data.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.hattonky.inventory.data.ApiClient;
+import com.hattonky.inventory.data.dao.CategoryDao;
+import com.hattonky.inventory.data.dao.ItemBaseDao;
+import com.hattonky.inventory.data.dao.ItemDao;
+import com.hattonky.inventory.data.dao.OutboxDao;
+import com.hattonky.inventory.data.dao.SyncConflictDao;
+import com.hattonky.inventory.data.databases.AppDatabase;
+import com.hattonky.inventory.data.model.Category;
+import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.ItemBase;
+import com.hattonky.inventory.data.model.OutboxEntry;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pulls item and category changes made on the server since the last sync.
+ *
+ * The server keeps an ordered log of row versions; the app asks for the changes after its
+ * cursor, one page at a time, and applies each page in a single Room transaction, so the UI
+ * sees a page at once rather than row by row. The cursor is saved after each page, so a sync
+ * that is interrupted resumes where it stopped instead of starting over. Rows are matched by
+ * UID, and a remote copy is only applied if its version is newer, so applying a page twice is
+ * harmless. An item that also has local changes still waiting in the outbox is merged field by
+ * field with {@link ItemMerge}, inside the same transaction; the merged row is queued to be sent
+ * and any conflicts go to the conflict queue for review. Other rows with unsent changes are left
+ * for the server to reconcile when the outbox is sent. Deleted rows arrive as tombstones and are
+ * purged once nothing refers to them. Changes pushed over the {@link ChangeFeed} are applied the
+ * same way, a batch of events per transaction.
+ */
+public class DeltaSync {
+
+    private static final String TAG = "DeltaSync";
+
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
+    private static final String PREFS_NAME = "delta_sync";
+    private static final String KEY_CURSOR = "cursor";  // Server position after the last applied page
+
+    /**
+     * Fetches one page of changes. Called on the sync thread; must block until the server answers.
+     */
+    public interface Source {
+        /**
+         * @param cursor The position to continue from, or null for everything.
+         * @param limit  Maximum rows in the page.
+         * @throws IOException If the page could not be fetched.
+         */
+        ChangePage fetch(String cursor, int limit) throws IOException;
+    }
+
+    private static DeltaSync instance;
+
+    private final AppDatabase database;
+    private final ItemDao itemDao;
+    private final CategoryDao categoryDao;
+    private final OutboxDao outboxDao;
+    private final ItemBaseDao itemBaseDao;
+    private final SyncConflictDao syncConflictDao;
+    private final Source source;
+    private final SharedPreferences prefs;
+    private final Executor executor;
+    private final int pageSize;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();  // A run is queued and not yet started
+    private final AtomicLong pagesApplied = new AtomicLong();
+    private final AtomicLong changesApplied = new AtomicLong();
+    private final AtomicLong changesSkipped = new AtomicLong();
+    private final AtomicLong itemsMerged = new AtomicLong();
+    private final AtomicLong conflictsFound = new AtomicLong();
+
+    /**
+     * Returns the app's sync, which fetches through {@link ApiClient}.
+     */
+    public static synchronized DeltaSync getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new DeltaSync(AppDatabase.getInstance(appContext),
+                    (cursor, limit) -> ApiClient.getChanges(appContext, cursor, limit),
+                    appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE),
+                    Executors.newSingleThreadExecutor(), DEFAULT_PAGE_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * @param database The database the changes are applied to.
+     * @param source   Fetches pages from the server.
+     * @param prefs    Stores the cursor between runs.
+     * @param executor Runs background syncs; should be single-threaded.
+     * @param pageSize Maximum rows requested per page.
+     */
+    public DeltaSync(AppDatabase database, Source source, SharedPreferences prefs, Executor executor,
+                     int pageSize) {
+        this.database = database;
+        this.itemDao = database.itemDao();
+        this.categoryDao = database.categoryDao();
+        this.outboxDao = database.outboxDao();
+        this.itemBaseDao = database.itemBaseDao();
+        this.syncConflictDao = database.syncConflictDao();
+        this.source = source;
+        this.prefs = prefs;
+        this.executor = executor;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Pulls changes in the background. Requests made while a run is already queued are folded
+     * into it. A failed run is not retried; the next request continues from the saved cursor.
+     */
+    public void requestSync() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                scheduled.set(false);
+                try {
+                    sync();
+                } catch (IOException | IllegalStateException e) {  // IllegalStateException: no server configured yet
+                    Log.w(TAG, "Pulling changes failed", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Pulls and applies every change after the saved cursor, page by page, on the calling thread.
+     *
+     * @return The number of rows changed locally.
+     * @throws IOException If a page could not be fetched; the pages before it stay applied.
+     */
+    public synchronized int sync() throws IOException {
+        int applied = 0;
+        ChangePage page;
+        do {
+            page = source.fetch(getCursor(), pageSize);
+            ChangePage fetched = page;
+            applied += database.runInTransaction(() -> apply(fetched));
+            advanceCursor(page.cursor);
+            pagesApplied.incrementAndGet();
+        } while (page.hasMore && page.cursor != null);
+        database.runInTransaction(() -> {
+            itemDao.purgeTombstones();
+            categoryDao.purgeTombstones();
+            itemBaseDao.purgeOrphans();
+        });
+        return applied;
+    }
+
+    /**
+     * Applies pages pushed by the server, e.g. a burst of {@link ChangeFeed} events, in a single
+     * transaction, so observers see one update for the whole batch. The last cursor in the batch
+     * is saved, so the next pull starts after it, unless a sync has already gone further.
+     *
+     * @param pages The pages in the order they were received.
+     * @return The number of rows changed locally.
+     */
+    public synchronized int applyBatch(List<ChangePage> pages) {
+        int applied = database.runInTransaction(() -> {
+            int count = 0;
+            for (ChangePage page : pages) {
+                count += apply(page);
+            }
+            return count;
+        });
+        String cursor = null;
+        for (ChangePage page : pages) {
+            if (page.cursor != null) {
+                cursor = page.cursor;
+            }
+        }
+        advanceCursor(cursor);
+        pagesApplied.addAndGet(pages.size());
+        return applied;
+    }
+
+    // Saves the cursor unless the saved one is further along, e.g. when a feed batch from before
+    // a sync is applied after it; moving back would only fetch those changes again
+    private void advanceCursor(String cursor) {
+        String saved = getCursor();
+        if (cursor != null && (saved == null || compareCursors(cursor, saved) > 0)) {
+            prefs.edit().putString(KEY_CURSOR, cursor).commit();
+        }
+    }
+
+    /**
+     * Orders two cursors by log position. The server's cursors are increasing integers, compared
+     * by length first so they needn't fit in a long.
+     */
+    static int compareCursors(String a, String b) {
+        if (a.length() != b.length()) {
+            return Integer.compare(a.length(), b.length());
+        }
+        return a.compareTo(b);
+    }
+
+    /**
+     * @return The server position after the last applied page, or null before the first sync.
+     */
+    public String getCursor() {
+        return prefs.getString(KEY_CURSOR, null);
+    }
+
+    /**
+     * @return Pages fetched and applied so far.
+     */
+    public long getPagesApplied() {
+        return pagesApplied.get();
+    }
+
+    /**
+     * @return Remote rows written locally so far.
+     */
+    public long getChangesApplied() {
+        return changesApplied.get();
+    }
+
+    /**
+     * @return Remote rows ignored because the local copy was as new or had unsent changes.
+     */
+    public long getChangesSkipped() {
+        return changesSkipped.get();
+    }
+
+    /**
+     * @return Items changed on both sides and merged field by field; included in the applied count.
+     */
+    public long getItemsMerged() {
+        return itemsMerged.get();
+    }
+
+    /**
+     * @return Fields added to the conflict queue so far.
+     */
+    public long getConflictsFound() {
+        return conflictsFound.get();
+    }
+
+    // Runs inside the page's transaction
+    private int apply(ChangePage page) {
+        int applied = 0;
+        for (Category remote : page.categories) {
+            if (applyCategory(remote)) {
+                applied++;
+            }
+        }
+        for (Item remote : page.items) {
+            if (applyItem(remote)) {
+                applied++;
+            }
+        }
+        changesApplied.addAndGet(applied);
+        changesSkipped.addAndGet(page.size() - applied);
+        return applied;
+    }
+
+    private boolean applyItem(Item remote) {
+        Item local = itemDao.getByUid(remote.getUid());
+        if (local == null) {
+            if (remote.isDeleted()) {
+                return false;  // Created and deleted elsewhere before this device saw it
+            }
+            remote.setId(0);
+            itemDao.insert(remote);
+            itemBaseDao.upsert(ItemBase.of(remote));
+            return true;
+        }
+        if (remote.getVersion() <= local.getVersion()) {
+            return false;
+        }
+        if (!outboxDao.hasPending(OutboxEntry.TYPE_ITEM, local.getId())) {
+            remote.setId(local.getId());
+            itemDao.update(remote);
+            itemBaseDao.upsert(ItemBase.of(remote));
+            return true;
+        }
+        // Changed on both sides: merge against the last agreed copy, then send the result
+        ItemBase base = itemBaseDao.getByUid(remote.getUid());
+        ItemMerge merge = ItemMerge.merge(base != null ? base.toItem() : null, local, remote);
+        itemDao.update(merge.merged);
+        itemBaseDao.upsert(ItemBase.of(remote));
+        if (!merge.conflicts.isEmpty()) {
+            syncConflictDao.insertAll(merge.conflicts);
+            conflictsFound.addAndGet(merge.conflicts.size());
+        }
+        itemDao.insertOutboxEntry(merge.merged.isDeleted()
+                ? OutboxEntry.forItem(OutboxEntry.OP_DELETE, merge.merged)
+                : OutboxEntry.forItemChange(remote, merge.merged));  // Only what the server doesn't have yet
+        itemsMerged.incrementAndGet();
+        return true;
+    }
+
+    private boolean applyCategory(Category remote) {
+        Category local = categoryDao.getByUid(remote.getUid());
+        if (local == null) {
+            if (remote.isDeleted()) {
+                return false;
+            }
+            remote.setId(0);
+            categoryDao.insert(remote);
+            return true;
+        }
+        if (remote.getVersion() <= local.getVersion()
+                || outboxDao.hasPending(OutboxEntry.TYPE_CATEGORY, local.getId())) {
+            return false;
+        }
+        remote.setId(local.getId());
+        categoryDao.update(remote);
+        return true;
+    }
+}
@@ -0,0 +1,107 @@
+package com.hattonky.inventory.data.sync;
+
+import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.SyncConflict;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Three-way merge of an item that was changed both on this device and on the server.
+ *
+ * Each field of the local and server copies is compared with the base, the last copy both sides
+ * agreed on. A field changed on one side only takes that side's value, so edits to different
+ * fields are combined rather than one copy replacing the other. Quantities changed on both sides
+ * are combined as adjustments to the base (base 5, local 3, server 8 gives 6). Any other field
+ * changed differently on both sides keeps the local value and is reported as a conflict. Without
+ * a base every differing field counts as changed on both sides.
+ */
+public final class ItemMerge {
+
+    public final Item merged;  // The local row with the server's changes; based on the server version
+    public final List<SyncConflict> conflicts;  // Fields where the local value was kept over the server's
+
+    private ItemMerge(Item merged, List<SyncConflict> conflicts) {
+        this.merged = merged;
+        this.conflicts = conflicts;
+    }
+
+    /**
+     * Merges the server's copy of an item into the local one.
+     *
+     * @param base   The last agreed copy, or null if unknown.
+     * @param local  The local row, with unsent changes.
+     * @param remote The server's newer copy.
+     * @return The merged row, with the local ID and the server's version, and any conflicts.
+     */
+    public static ItemMerge merge(Item base, Item local, Item remote) {
+        Fields fields = new Fields(base != null, local.getUid(), remote.getVersion());
+        Item merged = new Item(
+                fields.merge("name", base != null ? base.getName() : null, local.getName(), remote.getName()),
+                fields.merge("description", base != null ? base.getDescription() : null,
+                        local.getDescription(), remote.getDescription()),
+                fields.merge("category", base != null ? base.getCategory() : null,
+                        local.getCategory(), remote.getCategory()),
+                fields.merge("imagePath", base != null ? base.getImagePath() : null,
+                        local.getImagePath(), remote.getImagePath()));
+        merged.setQuantity(fields.mergeQuantity(base != null ? base.getQuantity() : 0,
+                local.getQuantity(), remote.getQuantity()));
+        if (local.isDeleted() != remote.isDeleted()) {
+            // One side deleted the item and the other edited it; the local choice is kept
+            fields.conflict("deleted", base != null ? "false" : null,
+                    String.valueOf(local.isDeleted()), String.valueOf(remote.isDeleted()));
+        }
+        merged.setDeleted(local.isDeleted());
+        merged.setId(local.getId());
+        merged.setUid(local.getUid());
+        merged.setVersion(remote.getVersion());
+        merged.setUpdatedAt(Math.max(local.getUpdatedAt(), remote.getUpdatedAt()));
+        return new ItemMerge(merged, fields.conflicts);
+    }
+
+    // Per-field rules, collecting conflicts as they are found
+    private static class Fields {
+        private final boolean baseKnown;
+        private final String uid;
+        private final long remoteVersion;
+        private final long now = System.currentTimeMillis();
+        private final List<SyncConflict> conflicts = new ArrayList<>();
+
+        Fields(boolean baseKnown, String uid, long remoteVersion) {
+            this.baseKnown = baseKnown;
+            this.uid = uid;
+            this.remoteVersion = remoteVersion;
+        }
+
+        String merge(String field, String base, String local, String remote) {
+            if (Objects.equals(local, remote)) {
+                return local;
+            }
+            if (baseKnown && Objects.equals(local, base)) {
+                return remote;  // Only the server changed it
+            }
+            if (baseKnown && Objects.equals(remote, base)) {
+                return local;  // Only this device changed it
+            }
+            conflict(field, baseKnown ? base : null, local, remote);
+            return local;
+        }
+
+        int mergeQuantity(int base, int local, int remote) {
+            if (local == remote) {
+                return local;
+            }
+            if (!baseKnown) {
+                conflict("quantity", null, String.valueOf(local), String.valueOf(remote));
+                return local;
+            }
+            // Each side's change is an adjustment to the base; apply both
+            return base + (local - base) + (remote - base);
+        }
+
+        void conflict(String field, String base, String local, String remote) {
+            conflicts.add(new SyncConflict(uid, field, base, local, remote, remoteVersion, now));
+        }
+    }
+}
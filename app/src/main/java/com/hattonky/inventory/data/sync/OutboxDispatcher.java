@@ -0,0 +1,337 @@
+package com.hattonky.inventory.data.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.hattonky.inventory.data.ApiClient;
+import com.hattonky.inventory.data.dao.OutboxDao;
+import com.hattonky.inventory.data.databases.AppDatabase;
+import com.hattonky.inventory.data.model.OutboxEntry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okio.ByteString;
+
+/**
+ * Sends the outbox of local item and category changes to the server.
+ *
+ * Pending entries are read in the order they were made and sent in batches. Within a batch,
+ * several changes to the same row are compacted into one: item edits only carry the fields they
+ * changed, so the later change's fields are laid over the earlier ones, and a delete replaces
+ * whatever came before it. Each change carries its idempotency key, and the batch request carries a key
+ * derived from them, so a batch that is resent after a lost response is not applied twice.
+ * Entries are deleted only after the server accepts their batch; because they live in the
+ * database, whatever was not sent when the app was killed is sent on the next run.
+ *
+ * Runs are started with {@link #requestDispatch()} and execute on a single background thread.
+ * After a failure the next attempt waits, doubling the wait up to a limit. Only transient
+ * failures are retried, though: a change whose payload can't be read, or that the server refuses
+ * with {@link RejectedException}, would fail the same way forever and hold back everything
+ * queued after it. Such a change is marked rejected in the outbox, where it is kept for review,
+ * and the rest are sent. When the server refuses a batch of several changes, they are sent one
+ * at a time to find the ones it won't take.
+ */
+public class OutboxDispatcher {
+
+    private static final String TAG = "OutboxDispatcher";
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_BASE_DELAY_MS = 5 * 1000;
+    public static final long DEFAULT_MAX_DELAY_MS = 5 * 60 * 1000;
+
+    /**
+     * Sends one batch. Called on the dispatcher thread; must block until the server answers.
+     */
+    public interface Sender {
+        /**
+         * @param idempotencyKey Identifies the batch; the same entries always give the same key.
+         * @param body           The batch as JSON: {"changes": [...]}.
+         * @throws RejectedException If the server refused the batch and would refuse it again.
+         * @throws IOException       If the batch was not accepted for another reason.
+         */
+        void send(String idempotencyKey, String body) throws IOException;
+    }
+
+    /**
+     * Thrown by a {@link Sender} when the server refuses a batch in a way resending won't fix,
+     * e.g. a 400 or 422 for a change it can't apply.
+     */
+    public static class RejectedException extends IOException {
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private static OutboxDispatcher instance;
+
+    private final OutboxDao outboxDao;
+    private final Sender sender;
+    private final ScheduledExecutorService executor;
+    private final int batchSize;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();  // A run is queued and not yet started
+    private int failures;  // Consecutive failed runs; only touched on the executor thread
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong changesSent = new AtomicLong();
+    private final AtomicLong changesCompacted = new AtomicLong();
+    private final AtomicLong changesRejected = new AtomicLong();
+
+    /**
+     * Returns the app's dispatcher, which sends through {@link ApiClient}.
+     */
+    public static synchronized OutboxDispatcher getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new OutboxDispatcher(AppDatabase.getInstance(appContext).outboxDao(),
+                    (key, body) -> ApiClient.sendChanges(appContext, key, body),
+                    Executors.newSingleThreadScheduledExecutor(),
+                    DEFAULT_BATCH_SIZE, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+        }
+        return instance;
+    }
+
+    /**
+     * @param outboxDao   The DAO for pending entries.
+     * @param sender      Sends one batch to the server.
+     * @param executor    Runs dispatches; should be single-threaded.
+     * @param batchSize   Maximum entries read per batch.
+     * @param baseDelayMs Wait before retrying after the first failure.
+     * @param maxDelayMs  Upper bound on the wait between retries.
+     */
+    public OutboxDispatcher(OutboxDao outboxDao, Sender sender, ScheduledExecutorService executor,
+                            int batchSize, long baseDelayMs, long maxDelayMs) {
+        this.outboxDao = outboxDao;
+        this.sender = sender;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * Sends pending changes in the background. Requests made while a run is already queued are
+     * folded into it.
+     */
+    public void requestDispatch() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::run);
+        }
+    }
+
+    private void run() {
+        scheduled.set(false);
+        try {
+            dispatchPending();
+            failures = 0;
+        } catch (IOException | IllegalStateException e) {  // IllegalStateException: no server configured yet
+            long delay = Math.min(maxDelayMs, baseDelayMs << Math.min(failures, 20));
+            failures++;
+            Log.w(TAG, "Sending changes failed, retrying in " + delay + " ms", e);
+            if (scheduled.compareAndSet(false, true)) {
+                executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Sends every pending change, batch by batch, on the calling thread. Changes that can't be
+     * read or that the server rejects are marked rejected and skipped.
+     *
+     * @return The number of changes sent after compaction.
+     * @throws IOException If a batch failed transiently; it and later entries stay pending.
+     */
+    public synchronized int dispatchPending() throws IOException {
+        int sent = 0;
+        while (true) {
+            List<OutboxEntry> batch = outboxDao.getBatch(batchSize);
+            if (batch.isEmpty()) {
+                return sent;
+            }
+            long lastId = batch.get(batch.size() - 1).getId();
+            List<OutboxEntry> compacted = compact(batch);
+            List<OutboxEntry> changes = new ArrayList<>(compacted.size());
+            for (OutboxEntry change : compacted) {
+                if (isReadable(change)) {
+                    changes.add(change);
+                } else {
+                    reject(change, lastId, "Unreadable payload");
+                }
+            }
+            int accepted = send(changes, lastId);
+            outboxDao.deleteUpTo(lastId);
+            changesCompacted.addAndGet(batch.size() - compacted.size());
+            sent += accepted;
+        }
+    }
+
+    // Sends the changes as one batch, or one at a time if the server refuses the batch
+    private int send(List<OutboxEntry> changes, long lastId) throws IOException {
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        try {
+            sendBatch(changes);
+            return changes.size();
+        } catch (RejectedException e) {
+            if (changes.size() == 1) {
+                reject(changes.get(0), lastId, e.getMessage());
+                return 0;
+            }
+        }
+        int accepted = 0;
+        for (OutboxEntry change : changes) {
+            try {
+                sendBatch(Collections.singletonList(change));
+                accepted++;
+            } catch (RejectedException e) {
+                reject(change, lastId, e.getMessage());
+            }
+        }
+        return accepted;
+    }
+
+    private void sendBatch(List<OutboxEntry> changes) throws IOException {
+        sender.send(batchKey(changes), toJson(changes));
+        batchesSent.incrementAndGet();
+        changesSent.addAndGet(changes.size());
+    }
+
+    // Takes the row's changes in this batch out of the queue, keeping them for review
+    private void reject(OutboxEntry change, long lastId, String reason) {
+        Log.w(TAG, "Change to " + change.getEntityType() + " " + change.getEntityId() + " rejected: " + reason);
+        outboxDao.markRejected(change.getEntityType(), change.getEntityId(), lastId, reason, System.currentTimeMillis());
+        changesRejected.incrementAndGet();
+    }
+
+    /**
+     * @return Batches accepted by the server so far.
+     */
+    public long getBatchesSent() {
+        return batchesSent.get();
+    }
+
+    /**
+     * @return Changes sent so far, after compaction.
+     */
+    public long getChangesSent() {
+        return changesSent.get();
+    }
+
+    /**
+     * @return Changes dropped because a later change to the same row replaced them.
+     */
+    public long getChangesCompacted() {
+        return changesCompacted.get();
+    }
+
+    /**
+     * @return Changes marked rejected instead of sent, after compaction.
+     */
+    public long getChangesRejected() {
+        return changesRejected.get();
+    }
+
+    /**
+     * @return Whether an HTTP status means the server refused the changes for good. Auth
+     *         failures, timeouts and throttling are worth retrying, so they don't count.
+     */
+    public static boolean isRejection(int code) {
+        return code >= 400 && code < 500 && code != 401 && code != 403 && code != 408 && code != 429;
+    }
+
+    /**
+     * Combines the changes to each row into one, in the position of the row's last change.
+     */
+    static List<OutboxEntry> compact(List<OutboxEntry> batch) {
+        Map<String, OutboxEntry> latest = new LinkedHashMap<>();
+        for (OutboxEntry entry : batch) {
+            String row = entry.getEntityType() + ":" + entry.getEntityId();
+            OutboxEntry earlier = latest.remove(row);  // Re-inserted below so it moves to the later position
+            latest.put(row, earlier != null ? combine(earlier, entry) : entry);
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    /**
+     * Lays a later change over an earlier one to the same row, keeping fields only the earlier
+     * one carried. The result takes the later change's key, so the same entries always combine
+     * into the same change.
+     */
+    static OutboxEntry combine(OutboxEntry earlier, OutboxEntry later) {
+        if (OutboxEntry.OP_DELETE.equals(later.getOperation())
+                || OutboxEntry.OP_DELETE.equals(earlier.getOperation())) {
+            return later;
+        }
+        try {
+            JSONObject payload = new JSONObject(earlier.getPayload());
+            JSONObject changes = new JSONObject(later.getPayload());
+            for (Iterator<String> fields = changes.keys(); fields.hasNext(); ) {
+                String field = fields.next();
+                payload.put(field, changes.get(field));
+            }
+            OutboxEntry combined = new OutboxEntry(later.getEntityType(), later.getEntityId(),
+                    later.getOperation(), payload.toString(), later.getIdempotencyKey(), later.getCreatedAt());
+            combined.setId(later.getId());
+            return combined;
+        } catch (JSONException e) {
+            return later;  // Unreadable; toJson reports it when the batch is built
+        }
+    }
+
+    // Same changes, same key: the batch is identified by the keys of the changes in it
+    static String batchKey(List<OutboxEntry> changes) {
+        StringBuilder keys = new StringBuilder();
+        for (OutboxEntry entry : changes) {
+            keys.append(entry.getIdempotencyKey()).append('\n');
+        }
+        return ByteString.encodeUtf8(keys.toString()).sha256().hex();
+    }
+
+    private static boolean isReadable(OutboxEntry entry) {
+        if (entry.getPayload() == null) {
+            return false;
+        }
+        try {
+            new JSONObject(entry.getPayload());
+            return true;
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    static String toJson(List<OutboxEntry> changes) throws IOException {
+        try {
+            JSONArray array = new JSONArray();
+            for (OutboxEntry entry : changes) {
+                JSONObject change = new JSONObject();
+                change.put("key", entry.getIdempotencyKey());
+                change.put("type", entry.getEntityType());
+                change.put("op", entry.getOperation());
+                change.put("id", entry.getEntityId());
+                change.put("data", new JSONObject(entry.getPayload()));
+                change.put("createdAt", entry.getCreatedAt());
+                array.put(change);
+            }
+            return new JSONObject().put("changes", array).toString();
+        } catch (JSONException e) {
+            throw new IOException("Unreadable outbox entry", e);
+        }
+    }
+}
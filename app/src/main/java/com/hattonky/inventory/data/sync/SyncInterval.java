@@ -0,0 +1,62 @@
+package com.hattonky.inventory.data.sync;
+
+import android.content.SharedPreferences;
+
+/**
+ * How long the background sync waits between runs, adapted to how often the server actually
+ * has changes for this device.
+ *
+ * A run that brought changes halves the interval, so a busy inventory is kept close to current;
+ * a run that found nothing stretches it by half, so a quiet device mostly leaves the radio off.
+ * Tightening is faster than backing off, so the interval settles low while changes keep coming
+ * and only drifts up after several quiet runs in a row. The interval is kept in preferences, so
+ * it survives the process being killed between jobs.
+ */
+public class SyncInterval {
+
+    public static final long DEFAULT_MIN_MS = 15 * 60 * 1000;  // JobScheduler's shortest period
+    public static final long DEFAULT_INITIAL_MS = 60 * 60 * 1000;
+    public static final long DEFAULT_MAX_MS = 6 * 60 * 60 * 1000;
+
+    private static final String KEY_INTERVAL = "interval_ms";
+
+    private final SharedPreferences prefs;
+    private final long minMs;
+    private final long initialMs;
+    private final long maxMs;
+
+    /**
+     * @param prefs     Stores the interval between runs.
+     * @param minMs     The shortest interval.
+     * @param initialMs The interval before the first run.
+     * @param maxMs     The longest interval.
+     */
+    public SyncInterval(SharedPreferences prefs, long minMs, long initialMs, long maxMs) {
+        this.prefs = prefs;
+        this.minMs = minMs;
+        this.initialMs = initialMs;
+        this.maxMs = maxMs;
+    }
+
+    /**
+     * @return The current wait between runs, in milliseconds.
+     */
+    public synchronized long getIntervalMs() {
+        return prefs.getLong(KEY_INTERVAL, initialMs);
+    }
+
+    /**
+     * Adapts the interval to the result of a run.
+     *
+     * @param changesApplied Remote rows the run changed locally.
+     * @return The wait before the next run, in milliseconds.
+     */
+    public synchronized long record(int changesApplied) {
+        long current = getIntervalMs();
+        long next = changesApplied > 0
+                ? Math.max(minMs, current / 2)
+                : Math.min(maxMs, current + current / 2);
+        prefs.edit().putLong(KEY_INTERVAL, next).apply();
+        return next;
+    }
+}
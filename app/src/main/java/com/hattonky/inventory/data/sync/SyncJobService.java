@@ -0,0 +1,169 @@
+package com.hattonky.inventory.data.sync;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import com.hattonky.inventory.data.databases.AppDatabase;
+import com.hattonky.inventory.data.images.ImageGarbageCollector;
+import com.hattonky.inventory.data.images.ThumbnailStore;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs sync and housekeeping while the app is not in use, through JobScheduler, so the system
+ * can batch the work with other apps' and only wake the radio when it is cheap.
+ *
+ * The sync job sends the outbox and pulls remote changes, and only runs on an unmetered network.
+ * It is a one-off job that schedules its successor when it ends, waiting the {@link SyncInterval}
+ * adapted to how many changes the run brought; a failed run is retried with the system's
+ * exponential backoff instead. The maintenance job deletes orphaned image files, compacts the
+ * thumbnail atlas and drops stale upload records; it runs about once a day, while the device is
+ * charging and idle. Both jobs survive reboots.
+ */
+public class SyncJobService extends JobService {
+
+    private static final String TAG = "SyncJobService";
+
+    static final int SYNC_JOB_ID = 1001;
+    static final int MAINTENANCE_JOB_ID = 1002;
+
+    private static final long RETRY_BACKOFF_MS = 30 * 1000;
+    private static final long MAINTENANCE_PERIOD_MS = TimeUnit.DAYS.toMillis(1);
+
+    private static final String PREFS_NAME = "sync_schedule";
+
+    private static SyncInterval interval;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<Integer, Future<?>> running = new ConcurrentHashMap<>();
+
+    /**
+     * Schedules both jobs unless they are already pending, so calling this on every start
+     * doesn't push the next run back.
+     */
+    public static void schedule(Context context) {
+        Context appContext = context.getApplicationContext();
+        JobScheduler scheduler = appContext.getSystemService(JobScheduler.class);
+        if (scheduler.getPendingJob(SYNC_JOB_ID) == null) {
+            scheduleSync(appContext, getInterval(appContext).getIntervalMs());
+        }
+        if (scheduler.getPendingJob(MAINTENANCE_JOB_ID) == null) {
+            scheduler.schedule(new JobInfo.Builder(MAINTENANCE_JOB_ID, new ComponentName(appContext, SyncJobService.class))
+                    .setPeriodic(MAINTENANCE_PERIOD_MS)
+                    .setRequiresCharging(true)
+                    .setRequiresDeviceIdle(true)
+                    .setPersisted(true)
+                    .build());
+        }
+    }
+
+    /**
+     * Returns the app's sync interval.
+     */
+    public static synchronized SyncInterval getInterval(Context context) {
+        if (interval == null) {
+            interval = new SyncInterval(
+                    context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE),
+                    SyncInterval.DEFAULT_MIN_MS, SyncInterval.DEFAULT_INITIAL_MS, SyncInterval.DEFAULT_MAX_MS);
+        }
+        return interval;
+    }
+
+    // Replaces any pending sync job with one that runs after the given delay
+    private static void scheduleSync(Context context, long delayMs) {
+        context.getSystemService(JobScheduler.class).schedule(
+                new JobInfo.Builder(SYNC_JOB_ID, new ComponentName(context, SyncJobService.class))
+                        .setMinimumLatency(delayMs)
+                        .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                        .setBackoffCriteria(RETRY_BACKOFF_MS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                        .setPersisted(true)
+                        .build());
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        int jobId = params.getJobId();
+        FutureTask<Void> work = new FutureTask<>(() -> {
+            if (jobId == SYNC_JOB_ID) {
+                runSync(params);
+            } else {
+                runMaintenance();
+                finish(params, false);
+            }
+        }, null);
+        running.put(jobId, work);  // Before it starts, so finish() finds it
+        executor.execute(work);
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The constraints no longer hold; stop between steps and let the system run it again
+        Future<?> work = running.remove(params.getJobId());
+        if (work != null) {
+            work.cancel(true);
+        }
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        executor.shutdownNow();
+    }
+
+    private void runSync(JobParameters params) {
+        int applied;
+        try {
+            OutboxDispatcher.getInstance(this).dispatchPending();
+            applied = DeltaSync.getInstance(this).sync();
+        } catch (IOException e) {
+            Log.w(TAG, "Background sync failed; retrying with backoff", e);
+            finish(params, true);
+            return;
+        } catch (IllegalStateException e) {  // No server configured yet
+            applied = 0;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return;  // Stopped; the system reschedules this job
+        }
+        long next = getInterval(this).record(applied);
+        Log.d(TAG, "Background sync applied " + applied + " changes; next in " + next / 60_000 + " min");
+        // Finish first: scheduling the same job ID while it runs would stop it
+        finish(params, false);
+        scheduleSync(getApplicationContext(), next);
+    }
+
+    private void runMaintenance() {
+        ImageGarbageCollector.Result collected = ImageGarbageCollector.getInstance(this).collect();
+        Log.d(TAG, "Orphaned image collection: " + collected);
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        try {
+            long reclaimed = ThumbnailStore.getInstance(this).compactIfNeeded();
+            Log.d(TAG, "Thumbnail atlas compaction reclaimed " + reclaimed + " bytes");
+        } catch (IOException e) {
+            Log.w(TAG, "Thumbnail atlas unavailable", e);
+        }
+        AppDatabase.getInstance(getApplicationContext()).imageUploadDao().purgeOrphans();
+    }
+
+    private void finish(JobParameters params, boolean reschedule) {
+        if (running.remove(params.getJobId()) != null) {
+            jobFinished(params, reschedule);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import androidx.lifecycle.LiveData;
 import com.hattonky.inventory.data.dao.CategoryDao;
 import com.hattonky.inventory.data.model.Category;
 import com.hattonky.inventory.data.databases.AppDatabase;
+import com.hattonky.inventory.data.sync.OutboxDispatcher;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -27,6 +28,9 @@ public class CategoryRepository {
     // ExecutorService for executing database operations on a background thread
     private ExecutorService executorService = Executors.newSingleThreadExecutor();
 
+    // Sends recorded changes to the server (null when not wanted, e.g. in tests)
+    private OutboxDispatcher outboxDispatcher;
+
     /**
      * Constructor that initializes the repository with the application context.
      * This version of the constructor is typically used in ViewModels that require the application context.
@@ -38,6 +42,7 @@ public class CategoryRepository {
         AppDatabase database = AppDatabase.getInstance(application);
         categoryDao = database.categoryDao();
         allCategories = categoryDao.getAllCategories();  // Fetch all categories from the DAO
+        outboxDispatcher = OutboxDispatcher.getInstance(application);
     }
 
     /**
@@ -64,21 +69,38 @@ public class CategoryRepository {
 
     /**
      * Inserts a new category into the database.
-     * The operation is performed asynchronously on a background thread using ExecutorService.
+     * The operation is performed asynchronously on a background thread using ExecutorService,
+     * and the change is then sent to the server.
      *
      * @param categoryName The name of the new category to be inserted.
      */
     public void insertCategory(String categoryName) {
-        executorService.execute(() -> categoryDao.insert(new Category(categoryName)));
+        executorService.execute(() -> {
+            categoryDao.insertAndRecord(new Category(categoryName));
+            dispatchChanges();
+        });
     }
 
     /**
      * Deletes a category from the database.
-     * The operation is performed asynchronously on a background thread using ExecutorService.
+     * The operation is performed asynchronously on a background thread using ExecutorService,
+     * and the change is then sent to the server.
      *
      * @param category The category to be deleted from the database.
      */
     public void delete(Category category) {
-        executorService.execute(() -> categoryDao.delete(category));
+        executorService.execute(() -> {
+            categoryDao.deleteAndRecord(category);
+            dispatchChanges();
+        });
+    }
+
+    /**
+     * Starts sending recorded changes to the server.
+     */
+    private void dispatchChanges() {
+        if (outboxDispatcher != null) {
+            outboxDispatcher.requestDispatch();
+        }
     }
 }
@@ -5,8 +5,13 @@ import android.app.Application;
 import androidx.lifecycle.LiveData;
 
 import com.hattonky.inventory.data.dao.ItemDao;
+import com.hattonky.inventory.data.dao.ItemImageDao;
 import com.hattonky.inventory.data.databases.AppDatabase;
+import com.hattonky.inventory.data.images.ImageImporter;
+import com.hattonky.inventory.data.images.ImageReencoder;
 import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.ItemImage;
+import com.hattonky.inventory.data.sync.OutboxDispatcher;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -22,12 +27,24 @@ public class ItemRepository {
     // DAO object to interact with the Item table in the database
     private final ItemDao itemDao;
 
+    // DAO object to interact with the item_images table (null when not wanted, e.g. in tests)
+    private final ItemImageDao itemImageDao;
+
     // LiveData object containing the list of all items, observed by the UI
     private final LiveData<List<Item>> allItems;
 
     // ExecutorService to handle database operations on a background thread
     private final ExecutorService executorService;
 
+    // Re-encodes captured images once their item is saved (null when not wanted, e.g. in tests)
+    private final ImageReencoder imageReencoder;
+
+    // Sends recorded changes to the server (null when not wanted, e.g. in tests)
+    private final OutboxDispatcher outboxDispatcher;
+
+    // Copies picked gallery images into the image store (null when not wanted, e.g. in tests)
+    private final ImageImporter imageImporter;
+
     /**
      * Constructor that initializes the repository with the application context.
      * This constructor is typically used by ViewModels that require access to the application context.
@@ -38,8 +55,12 @@ public class ItemRepository {
         // Get an instance of the database and DAO for accessing items
         AppDatabase database = AppDatabase.getInstance(application);
         itemDao = database.itemDao();  // Get the Item DAO
+        itemImageDao = database.itemImageDao();  // Get the ItemImage DAO
         allItems = itemDao.getAllItems();  // Fetch all items from the database
         executorService = Executors.newFixedThreadPool(2);  // Set up an Executor with two background threads
+        imageReencoder = ImageReencoder.getInstance(application);
+        outboxDispatcher = OutboxDispatcher.getInstance(application);
+        imageImporter = ImageImporter.getInstance(application);
     }
 
     /**
@@ -50,8 +71,12 @@ public class ItemRepository {
      */
     public ItemRepository(ItemDao itemDao, ExecutorService executorService) {
         this.itemDao = itemDao;
+        this.itemImageDao = null;
         this.executorService = executorService;
         this.allItems = itemDao.getAllItems();  // Fetch all items from the DAO
+        this.imageReencoder = null;
+        this.outboxDispatcher = null;
+        this.imageImporter = null;
     }
 
     /**
@@ -78,21 +103,37 @@ public class ItemRepository {
     /**
      * Inserts a new item into the database.
      * This operation is performed asynchronously on a background thread using ExecutorService.
+     * Once the item is stored, its image is queued for re-encoding and the change is sent to the server.
      *
      * @param item The item to be inserted into the database.
      */
     public void insert(Item item) {
-        executorService.execute(() -> itemDao.insert(item));  // Insert item in the background
+        executorService.execute(() -> {
+            item.setImagePath(importedPath(item.getImagePath()));
+            int itemId = (int) itemDao.insertAndRecord(item);  // Insert item in the background
+            attachImage(itemId, item.getImagePath());
+            item.setImagePath(claimImport(item.getImagePath()));
+            reencodeImage(item);
+            dispatchChanges();
+        });
     }
 
     /**
      * Updates an existing item in the database.
      * This operation is performed asynchronously on a background thread using ExecutorService.
+     * Once the item is stored, its image is queued for re-encoding and the change is sent to the server.
      *
      * @param item The item to be updated in the database.
      */
     public void update(Item item) {
-        executorService.execute(() -> itemDao.update(item));  // Update item in the background
+        executorService.execute(() -> {
+            item.setImagePath(importedPath(item.getImagePath()));
+            itemDao.updateAndRecord(item);  // Update item in the background
+            attachImage(item.getId(), item.getImagePath());
+            item.setImagePath(claimImport(item.getImagePath()));
+            reencodeImage(item);
+            dispatchChanges();
+        });
     }
 
     /**
@@ -102,7 +143,7 @@ public class ItemRepository {
      * @param item The item to be deleted from the database.
      */
     public void delete(Item item) {
-        executorService.execute(() -> itemDao.delete(item));  // Delete item in the background
+        deleteById(item.getId());
     }
 
     /**
@@ -112,6 +153,126 @@ public class ItemRepository {
      * @param itemId The unique ID of the item to be deleted.
      */
     public void deleteById(int itemId) {
-        executorService.execute(() -> itemDao.deleteById(itemId));  // Delete item by ID in the background
+        executorService.execute(() -> {
+            itemDao.deleteByIdAndRecord(itemId);  // Delete item by ID in the background
+            dispatchChanges();
+        });
+    }
+
+    /**
+     * Retrieves the photos attached to an item, in display order.
+     * The list is only queried when observed, so items that are never opened cost nothing.
+     *
+     * @param itemId The ID of the item.
+     * @return A LiveData list of the item's images.
+     */
+    public LiveData<List<ItemImage>> getImagesForItem(int itemId) {
+        return itemImageDao.getImagesForItem(itemId);
+    }
+
+    /**
+     * Attaches an additional photo to an item.
+     * This operation is performed asynchronously on a background thread using ExecutorService.
+     *
+     * @param itemId    The ID of the item.
+     * @param imagePath The path of the photo to attach.
+     */
+    public void addImage(int itemId, String imagePath) {
+        executorService.execute(() -> {
+            String path = importedPath(imagePath);
+            attachImage(itemId, path);
+            path = claimImport(path);
+            if (imageReencoder != null) {
+                imageReencoder.enqueue(path);
+            }
+            dispatchChanges();
+        });
+    }
+
+    /**
+     * Makes one of an item's photos its primary image, shown in lists.
+     * This operation is performed asynchronously on a background thread using ExecutorService.
+     *
+     * @param itemId    The ID of the item.
+     * @param imagePath The path of the photo to make primary.
+     */
+    public void setPrimaryImage(int itemId, String imagePath) {
+        executorService.execute(() -> {
+            itemImageDao.setPrimaryPath(itemId, imagePath);
+            dispatchChanges();
+        });
+    }
+
+    /**
+     * Removes a photo from its item. If it was the primary image, the next photo takes its place.
+     * This operation is performed asynchronously on a background thread using ExecutorService.
+     *
+     * @param image The photo to remove.
+     */
+    public void removeImage(ItemImage image) {
+        executorService.execute(() -> {
+            itemImageDao.removeImage(image);
+            dispatchChanges();
+        });
+    }
+
+    /**
+     * Makes sure the given image is in the item's image list.
+     *
+     * @param itemId    The ID of the item.
+     * @param imagePath The image path, or null for none.
+     */
+    private void attachImage(int itemId, String imagePath) {
+        if (itemImageDao != null && imagePath != null) {
+            itemImageDao.addImage(itemId, imagePath);
+        }
+    }
+
+    /**
+     * Returns the imported copy of a picked gallery image if its import has finished, so the
+     * item is written with it; otherwise the path as given.
+     *
+     * @param imagePath The image path, or null for none.
+     */
+    private String importedPath(String imagePath) {
+        String imported = imageImporter != null && imagePath != null
+                ? imageImporter.getImportedPath(imagePath) : null;
+        return imported != null ? imported : imagePath;
+    }
+
+    /**
+     * Switches rows just written with a picked image's URI over to its imported copy, if the
+     * import finished while they were written; an import that finishes later does this itself.
+     *
+     * @param imagePath The image path that was written, or null for none.
+     * @return The path the rows now use.
+     */
+    private String claimImport(String imagePath) {
+        String imported = importedPath(imagePath);
+        if (imported != null && !imported.equals(imagePath)) {
+            itemDao.swapImagePath(imagePath, imported);
+        }
+        return imported;
+    }
+
+    /**
+     * Starts sending recorded changes to the server.
+     */
+    private void dispatchChanges() {
+        if (outboxDispatcher != null) {
+            outboxDispatcher.requestDispatch();
+        }
+    }
+
+    /**
+     * Queues the item's image for re-encoding. Only called after the item row is written, so the
+     * re-encoder's path swap always finds the item.
+     *
+     * @param item The item whose image should be re-encoded.
+     */
+    private void reencodeImage(Item item) {
+        if (imageReencoder != null && item.getImagePath() != null) {
+            imageReencoder.enqueue(item.getImagePath());
+        }
     }
 }
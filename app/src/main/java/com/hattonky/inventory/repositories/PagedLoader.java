@@ -0,0 +1,204 @@
+package com.hattonky.inventory.repositories;
+
+import com.hattonky.inventory.data.ApiCall;
+import com.hattonky.inventory.data.ApiClient;
+import com.hattonky.inventory.data.network.Page;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads a cursor-paged list one page at a time, fetching the next page before the user reaches
+ * the end of what is already shown.
+ *
+ * At most one page request is in flight. {@link #reset} starts over with a new source (e.g. when
+ * the filter changes); the request still running for the previous source is cancelled, and any
+ * response that arrives anyway is dropped. {@link #cancel} stops loading altogether. After a
+ * failed page, prefetching pauses until {@link #retry} or {@link #reset} is called, so a dead
+ * connection doesn't cause a request per scroll event.
+ *
+ * Results reach the listener through the delivery executor, and whether they are stale is
+ * decided there, so a reset made on the main thread while a result is waiting to be posted
+ * still drops it.
+ *
+ * @param <T> The element type.
+ */
+public class PagedLoader<T> {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    // Start loading the next page when this many rows or fewer are left below the last visible one
+    public static final int DEFAULT_PREFETCH_DISTANCE = 15;
+
+    /**
+     * Fetches one page. The filter, if any, is part of the source.
+     */
+    public interface PageSource<T> {
+        /**
+         * @return A handle to cancel the request, or null if it can't be cancelled.
+         */
+        ApiCall load(String cursor, int limit, ApiClient.TypedCallback<Page<T>> callback);
+    }
+
+    /**
+     * Receives pages as they arrive, on the delivery executor.
+     */
+    public interface Listener<T> {
+        /**
+         * @param items   The new page's elements.
+         * @param first   True for the first page after a reset; the shown list should be replaced.
+         * @param hasMore Whether another page can be loaded.
+         */
+        void onPage(List<T> items, boolean first, boolean hasMore);
+
+        void onFailure(IOException e);
+    }
+
+    private final int pageSize;
+    private final int prefetchDistance;
+    private final Executor delivery;
+    private final Listener<T> listener;
+
+    private PageSource<T> source;
+    private String cursor;
+    private boolean loading;
+    private boolean endReached;
+    private boolean failed;
+    private int loadedCount;  // Rows delivered since the last reset
+    private int generation;  // Incremented on reset; responses from older generations are ignored
+    private ApiCall inFlight;  // The running page request, if it can be cancelled
+
+    /**
+     * @param delivery Where the listener is called, e.g. {@link ApiCall#mainThread()}.
+     * @param listener Receives the pages.
+     */
+    public PagedLoader(Executor delivery, Listener<T> listener) {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_PREFETCH_DISTANCE, delivery, listener);
+    }
+
+    public PagedLoader(int pageSize, int prefetchDistance, Executor delivery, Listener<T> listener) {
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+        this.delivery = delivery;
+        this.listener = listener;
+    }
+
+    /**
+     * Discards the loaded state and loads the first page from the given source.
+     *
+     * @param newSource The source to page through.
+     */
+    public synchronized void reset(PageSource<T> newSource) {
+        cancelInFlight();
+        source = newSource;
+        cursor = null;
+        loading = false;
+        endReached = false;
+        failed = false;
+        loadedCount = 0;
+        generation++;
+        loadNextPage();
+    }
+
+    /**
+     * Cancels the running request and stops loading, e.g. when the screen is closed.
+     */
+    public synchronized void cancel() {
+        cancelInFlight();
+        source = null;
+        loading = false;
+        generation++;
+    }
+
+    /**
+     * Resumes loading after a failed page.
+     */
+    public synchronized void retry() {
+        failed = false;
+        loadNextPage();
+    }
+
+    /**
+     * Called as the list scrolls; loads the next page when the end is near.
+     *
+     * @param lastVisiblePosition Adapter position of the last visible row.
+     * @param itemCount           Number of rows this loader has delivered, see {@link #getLoadedCount};
+     *                            not the size of a list that also shows rows from elsewhere.
+     */
+    public void onScrolled(int lastVisiblePosition, int itemCount) {
+        if (itemCount - 1 - lastVisiblePosition <= prefetchDistance) {
+            loadNextPage();
+        }
+    }
+
+    /**
+     * @return The number of rows delivered since the last reset.
+     */
+    public synchronized int getLoadedCount() {
+        return loadedCount;
+    }
+
+    /**
+     * @return True while a page request is in flight.
+     */
+    public synchronized boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * Requests the next page unless one is in flight, the last page was reached, or the previous
+     * page failed.
+     *
+     * @return True if a request was started.
+     */
+    public synchronized boolean loadNextPage() {
+        if (source == null || loading || endReached || failed) {
+            return false;
+        }
+        loading = true;
+        int requestGeneration = generation;
+        boolean first = cursor == null;
+        inFlight = source.load(cursor, pageSize, new ApiClient.TypedCallback<Page<T>>() {
+            @Override
+            public void onSuccess(Page<T> page) {
+                delivery.execute(() -> {
+                    synchronized (PagedLoader.this) {
+                        if (requestGeneration != generation) {
+                            return;
+                        }
+                        loading = false;
+                        inFlight = null;
+                        cursor = page.nextCursor;
+                        loadedCount += page.items.size();
+                        endReached = !page.hasMore();
+                    }
+                    listener.onPage(page.items, first, page.hasMore());
+                });
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                delivery.execute(() -> {
+                    synchronized (PagedLoader.this) {
+                        if (requestGeneration != generation) {
+                            return;
+                        }
+                        loading = false;
+                        inFlight = null;
+                        failed = true;
+                    }
+                    listener.onFailure(e);
+                });
+            }
+        });
+        return true;
+    }
+
+    private void cancelInFlight() {
+        if (inFlight != null) {
+            inFlight.cancel();
+            inFlight = null;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.hattonky.inventory.repositories;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.lifecycle.LiveData;
+
+import com.hattonky.inventory.data.ApiCall;
+import com.hattonky.inventory.data.ApiClient;
+import com.hattonky.inventory.data.dao.UserDao;
+import com.hattonky.inventory.data.databases.AppDatabase;
+import com.hattonky.inventory.data.model.User;
+import com.hattonky.inventory.data.network.Page;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Repository for the server's user directory, cached in the "users" table.
+ *
+ * The screen always reads from the cache, so it opens with the last known list. Directory pages
+ * fetched from the server are written into the cache; once every page of the unfiltered
+ * directory has been fetched, users that no longer appear are dropped and the cache counts as
+ * fresh for the TTL. Role changes and deletes are applied to the cached row at once, sent to
+ * the server, and undone if the server rejects them.
+ */
+public class UserRepository {
+
+    // How long a complete directory fetch is trusted before the list is fetched again
+    public static final long DEFAULT_TTL_MS = 10 * 60 * 1000;
+
+    private static final String PREFS_NAME = "user_directory";
+    private static final String KEY_SYNCED_AT = "synced_at";  // When the last complete fetch finished
+
+    /**
+     * Server calls the repository makes. Implemented with {@link ApiClient} in the app.
+     */
+    public interface UserApi {
+        ApiCall getPage(String cursor, int limit, String role, String query,
+                        ApiClient.TypedCallback<Page<User>> callback);
+        ApiCall updateRole(String id, String role, Executor executor, ApiClient.ApiCallback callback);
+        ApiCall delete(String id, Executor executor, ApiClient.ApiCallback callback);
+    }
+
+    private static UserRepository instance;
+
+    private final UserDao userDao;  // DAO for the cached users
+    private final ExecutorService executorService;  // Runs cache writes off the main thread
+    private final SharedPreferences prefs;  // Remembers when the cache was last complete
+    private final UserApi userApi;
+    private final long ttlMs;
+
+    /**
+     * Returns the app's repository, so screens and logout share one cache writer.
+     */
+    public static synchronized UserRepository getInstance(Application application) {
+        if (instance == null) {
+            instance = new UserRepository(application);
+        }
+        return instance;
+    }
+
+    // Constructor used by the app
+    private UserRepository(Application application) {
+        this(AppDatabase.getInstance(application).userDao(),
+                Executors.newSingleThreadExecutor(),
+                application.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE),
+                new UserApi() {
+                    @Override
+                    public ApiCall getPage(String cursor, int limit, String role, String query,
+                                           ApiClient.TypedCallback<Page<User>> callback) {
+                        return ApiClient.getUsersPage(application, cursor, limit, role, query, callback);
+                    }
+
+                    @Override
+                    public ApiCall updateRole(String id, String role, Executor executor,
+                                              ApiClient.ApiCallback callback) {
+                        return ApiClient.updateUserById(application, id, role, executor, callback);
+                    }
+
+                    @Override
+                    public ApiCall delete(String id, Executor executor, ApiClient.ApiCallback callback) {
+                        return ApiClient.deleteUserById(application, id, executor, callback);
+                    }
+                },
+                DEFAULT_TTL_MS);
+    }
+
+    // Constructor for testing with explicit dependencies
+    public UserRepository(UserDao userDao, ExecutorService executorService, SharedPreferences prefs,
+                          UserApi userApi, long ttlMs) {
+        this.userDao = userDao;
+        this.executorService = executorService;
+        this.prefs = prefs;
+        this.userApi = userApi;
+        this.ttlMs = ttlMs;
+    }
+
+    // Returns cached users matching the filter; updates as pages arrive and edits are made
+    public LiveData<List<User>> getUsers(String role, String query) {
+        return userDao.getUsers(role, query);
+    }
+
+    // Whether the whole directory was fetched within the TTL
+    public boolean isFresh() {
+        long syncedAt = prefs.getLong(KEY_SYNCED_AT, 0);
+        return System.currentTimeMillis() - syncedAt < ttlMs;
+    }
+
+    /**
+     * Returns a page source that fetches directory pages and stores them in the cache before
+     * passing them on.
+     *
+     * @param role  Role filter, or null.
+     * @param query Search text, or null.
+     */
+    public PagedLoader.PageSource<User> pageSource(String role, String query) {
+        boolean unfiltered = role == null && (query == null || query.isEmpty());
+        long[] sweepStart = new long[1];  // Start of the current complete fetch, for dropping old rows
+        return (cursor, limit, callback) -> {
+            long requestedAt = System.currentTimeMillis();
+            if (cursor == null) {
+                sweepStart[0] = requestedAt;
+            }
+            return userApi.getPage(cursor, limit, role, query, new ApiClient.TypedCallback<Page<User>>() {
+                @Override
+                public void onSuccess(Page<User> page) {
+                    executorService.execute(() -> {
+                        for (User user : page.items) {
+                            user.setFetchedAt(requestedAt);
+                        }
+                        userDao.insertAll(page.items);
+                        if (unfiltered && !page.hasMore()) {
+                            // Whole directory seen: anything older was deleted on the server
+                            userDao.deleteFetchedBefore(sweepStart[0]);
+                            prefs.edit().putLong(KEY_SYNCED_AT, System.currentTimeMillis()).apply();
+                        }
+                        callback.onSuccess(page);
+                    });
+                }
+
+                @Override
+                public void onFailure(IOException e) {
+                    callback.onFailure(e);
+                }
+            });
+        };
+    }
+
+    /**
+     * Changes a user's role in the cache at once, then on the server. If the server rejects the
+     * change, the cached role is restored (unless it was changed again meanwhile). Until the
+     * server has answered, the directory no longer counts as fresh, so an edit whose answer is
+     * never seen is corrected by the next fetch.
+     *
+     * @param id       The user's ID.
+     * @param role     The new role.
+     * @param executor Where the callback runs, e.g. {@link ApiCall#mainThread()}.
+     * @param callback Receives the server's result; a rollback is applied in the background.
+     * @return A handle to cancel the request.
+     */
+    public ApiCall updateRole(String id, String role, Executor executor, ApiClient.ApiCallback callback) {
+        User[] previous = new User[1];
+        // Queued before the request, so a rollback always runs after it on the same thread
+        executorService.execute(() -> {
+            previous[0] = userDao.getById(id);
+            userDao.updateRole(id, role);
+            prefs.edit().remove(KEY_SYNCED_AT).apply();
+        });
+        return userApi.updateRole(id, role, executor, new ApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                callback.onSuccess(response);
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                executorService.execute(() -> {
+                    User current = userDao.getById(id);
+                    if (previous[0] != null && current != null && role.equals(current.getRole())) {
+                        userDao.updateRole(id, previous[0].getRole());
+                    }
+                });
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Removes a user from the cache at once, then from the server. If the server rejects the
+     * delete, the cached row is put back. As with {@link #updateRole}, the directory is no longer
+     * fresh until the next fetch.
+     *
+     * @param id       The user's ID.
+     * @param executor Where the callback runs, e.g. {@link ApiCall#mainThread()}.
+     * @param callback Receives the server's result; a rollback is applied in the background.
+     * @return A handle to cancel the request.
+     */
+    public ApiCall delete(String id, Executor executor, ApiClient.ApiCallback callback) {
+        User[] previous = new User[1];
+        executorService.execute(() -> {
+            previous[0] = userDao.getById(id);
+            userDao.deleteById(id);
+            prefs.edit().remove(KEY_SYNCED_AT).apply();
+        });
+        return userApi.delete(id, executor, new ApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                callback.onSuccess(response);
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                executorService.execute(() -> {
+                    if (previous[0] != null) {
+                        userDao.insert(previous[0]);
+                    }
+                });
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    // Drops the cached directory, e.g. on logout
+    public void clear() {
+        executorService.execute(() -> {
+            userDao.deleteAll();
+            prefs.edit().remove(KEY_SYNCED_AT).apply();
+        });
+    }
+}
@@ -0,0 +1,103 @@
+package com.hattonky.inventory.viewmodels;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.hattonky.inventory.data.ApiCall;
+import com.hattonky.inventory.data.ApiClient;
+import com.hattonky.inventory.data.Session;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * Runs login and registration requests for their screens.
+ *
+ * Both are POSTs that can't safely be sent twice, so they are not tied to the screen's
+ * lifecycle: a request survives rotation, and one still running when the screen is closed
+ * finishes and starts the session anyway. The outcome is kept until the screen consumes it.
+ * Must be used from the main thread.
+ */
+public class AuthViewModel extends AndroidViewModel {
+
+    /**
+     * Outcome of a login or registration.
+     */
+    public static class Result {
+        public final boolean success;
+        public final IOException error;  // Why the request failed; null on success or an unreadable answer
+
+        Result(boolean success, IOException error) {
+            this.success = success;
+            this.error = error;
+        }
+    }
+
+    private final MutableLiveData<Result> result = new MutableLiveData<>();
+    private boolean inFlight;
+
+    public AuthViewModel(@NonNull Application application) {
+        super(application);
+    }
+
+    // The latest outcome, or null once consumed
+    public LiveData<Result> getResult() {
+        return result;
+    }
+
+    // Marks the outcome as handled, so it isn't shown again after rotation
+    public void consumeResult() {
+        result.setValue(null);
+    }
+
+    // Logs in; returns false if a request is already running
+    public boolean login(String usernameOrEmail, String password) {
+        if (inFlight) {
+            return false;
+        }
+        inFlight = true;
+        ApiClient.login(getApplication(), usernameOrEmail, password, ApiCall.mainThread(), sessionCallback());
+        return true;
+    }
+
+    // Creates an account and logs in; returns false if a request is already running
+    public boolean register(String username, String email, String password) {
+        if (inFlight) {
+            return false;
+        }
+        inFlight = true;
+        ApiClient.register(getApplication(), username, email, password, ApiCall.mainThread(), sessionCallback());
+        return true;
+    }
+
+    // Starts the session from the server's answer ({ token: "...", role: "...", user: {...} })
+    private ApiClient.ApiCallback sessionCallback() {
+        return new ApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                inFlight = false;
+                try {
+                    JSONObject json = new JSONObject(response);
+                    String token = json.getString("token");
+                    String role = json.optString("role", "user");
+                    Session.getInstance(getApplication()).login(token, role, json.optJSONObject("user"));
+                    result.setValue(new Result(true, null));
+                } catch (JSONException e) {
+                    result.setValue(new Result(false, null));
+                }
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                inFlight = false;
+                result.setValue(new Result(false, e));
+            }
+        };
+    }
+}
@@ -8,6 +8,7 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModel;
 
 import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.ItemImage;
 import com.hattonky.inventory.repositories.ItemRepository;
 
 import java.util.List;
@@ -59,4 +60,24 @@ public class ItemViewModel extends AndroidViewModel {
     public void delete(int itemId) {
         repository.deleteById(itemId);  // Call repository to delete item by ID
     }
-}
\ No newline at end of file
+
+    // Returns a LiveData object that the UI can observe to get the photos attached to an item
+    public LiveData<List<ItemImage>> getImagesForItem(int itemId) {
+        return repository.getImagesForItem(itemId);
+    }
+
+    // Attach an additional photo to an item
+    public void addImage(int itemId, String imagePath) {
+        repository.addImage(itemId, imagePath);
+    }
+
+    // Make one of an item's photos its primary image
+    public void setPrimaryImage(int itemId, String imagePath) {
+        repository.setPrimaryImage(itemId, imagePath);
+    }
+
+    // Remove a photo from its item
+    public void removeImage(ItemImage image) {
+        repository.removeImage(image);
+    }
+}
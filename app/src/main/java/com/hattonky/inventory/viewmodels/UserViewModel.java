@@ -0,0 +1,76 @@
+package com.hattonky.inventory.viewmodels;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+
+import com.hattonky.inventory.data.ApiCall;
+import com.hattonky.inventory.data.ApiClient;
+import com.hattonky.inventory.data.model.User;
+import com.hattonky.inventory.repositories.PagedLoader;
+import com.hattonky.inventory.repositories.UserRepository;
+
+import java.util.List;
+
+public class UserViewModel extends AndroidViewModel {
+
+    private final UserRepository repository;
+    // Role and search text the list is filtered by; null means no filter
+    private static class Filter {
+        final String role;
+        final String query;
+
+        Filter(String role, String query) {
+            this.role = role;
+            this.query = query;
+        }
+    }
+
+    private final MutableLiveData<Filter> filter = new MutableLiveData<>(new Filter(null, null));
+    private final LiveData<List<User>> users;
+
+    // Constructor, initializes the repository and the filtered user list
+    public UserViewModel(@NonNull Application application) {
+        this(application, UserRepository.getInstance(application));
+    }
+
+    public UserViewModel(@NonNull Application application, UserRepository userRepository) {
+        super(application);
+        this.repository = userRepository;
+        users = Transformations.switchMap(filter, f -> repository.getUsers(f.role, f.query));
+    }
+
+    // Returns the cached users matching the current filter
+    public LiveData<List<User>> getUsers() {
+        return users;
+    }
+
+    // Changes the role/search filter; null or empty means no filter
+    public void setFilter(String role, String query) {
+        filter.setValue(new Filter(role, query == null || query.isEmpty() ? null : query));
+    }
+
+    // Whether the cached directory is recent enough to skip fetching it again
+    public boolean isDirectoryFresh() {
+        return repository.isFresh();
+    }
+
+    // Returns a page source that fills the cache with the server's matching users
+    public PagedLoader.PageSource<User> pageSource(String role, String query) {
+        return repository.pageSource(role, query);
+    }
+
+    // Change a user's role, optimistically; the callback runs on the main thread
+    public ApiCall updateRole(String id, String role, ApiClient.ApiCallback callback) {
+        return repository.updateRole(id, role, ApiCall.mainThread(), callback);
+    }
+
+    // Delete a user, optimistically; the callback runs on the main thread
+    public ApiCall deleteUser(String id, ApiClient.ApiCallback callback) {
+        return repository.delete(id, ApiCall.mainThread(), callback);
+    }
+}
@@ -0,0 +1,476 @@
+package com.hattonky.inventory.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.hattonky.inventory.data.model.User;
+import com.hattonky.inventory.data.network.Page;
+import com.hattonky.inventory.data.network.ResponseCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ApiClientTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private Context context;
+
+    @Mock
+    private SharedPreferences prefs;  // Mocked "auth" preferences
+
+    private MockWebServer server;
+    private HeldCertificate serverCertificate;
+
+    @Before
+    public void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+
+        // Local HTTPS stand-in server with a self-signed certificate, like the bundled raw/server one
+        String localhost = InetAddress.getByName("localhost").getCanonicalHostName();
+        serverCertificate = new HeldCertificate.Builder()
+                .addSubjectAlternativeName(localhost)
+                .build();
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder()
+                .heldCertificate(serverCertificate)
+                .build();
+        server = new MockWebServer();
+        server.useHttps(serverCertificates.sslSocketFactory(), false);
+        server.start();
+
+        when(context.getApplicationContext()).thenReturn(context);
+        when(context.getSharedPreferences("auth", Context.MODE_PRIVATE)).thenReturn(prefs);
+        when(prefs.getString("server_url", null)).thenReturn(server.url("/").toString());
+        when(prefs.getString("jwt", null)).thenReturn("token");
+        when(prefs.edit()).thenReturn(mock(SharedPreferences.Editor.class, RETURNS_SELF));
+
+        ApiClient.setClient(newPinnedClient());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        ApiClient.setClient(null);
+        server.shutdown();
+    }
+
+    // Consecutive calls go over the same pooled connection instead of a new handshake each
+    @Test
+    public void testCallsReuseOneConnection() throws Exception {
+        // Given: The server answers two user list requests
+        server.enqueue(new MockResponse().setBody("[]"));
+        server.enqueue(new MockResponse().setBody("[]"));
+
+        // When: Two calls are made through ApiClient
+        assertEquals("[]", getAllUsers());
+        assertEquals("[]", getAllUsers());
+
+        // Then: The second request is the second exchange on the first connection
+        RecordedRequest first = server.takeRequest();
+        assertEquals(0, first.getSequenceNumber());
+        assertEquals("Bearer token", first.getHeader("Authorization"));
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+    }
+
+    // Benchmark: per-request latency with a client built per call (old behaviour) vs. the shared client
+    @Test
+    public void benchmarkSharedClientVersusClientPerCall() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        int requests = 50;
+        for (int i = 0; i < 2 * requests + 2; i++) {
+            server.enqueue(new MockResponse().setBody("[]"));
+        }
+        Request request = new Request.Builder().url(server.url("/api/users")).build();
+
+        // Warm up class loading and the JIT on one call of each kind
+        execute(newPinnedClient(), request);
+        OkHttpClient shared = newPinnedClient();
+        execute(shared, request);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            execute(newPinnedClient(), request);  // Parse certificate, new pool, full handshake
+        }
+        long perCallNanos = (System.nanoTime() - start) / requests;
+
+        start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            execute(shared, request);  // Pooled connection
+        }
+        long sharedNanos = (System.nanoTime() - start) / requests;
+
+        assertEquals(2 * requests + 2, server.getRequestCount());
+        assertTrue("client per call " + perCallNanos / 1000 + " us, shared client " + sharedNanos / 1000 + " us",
+                sharedNanos < perCallNanos);
+    }
+
+    // An unchanged user list is answered with a 304 and served from the disk cache
+    @Test
+    public void testUnchangedListIsRevalidated() throws Exception {
+        // Given: A server that tags the user list with an ETag and honours If-None-Match
+        ResponseCache cache = useCache();
+        server.setDispatcher(new VersionedUsers("v1", "[{\"id\":\"1\"}]"));
+
+        // When: The list is fetched twice
+        List<String> first = getAllUsers(ResponseCache.Policy.REVALIDATE, 1);
+        List<String> second = getAllUsers(ResponseCache.Policy.REVALIDATE, 1);
+
+        // Then: The second fetch was conditional, got no body, and still returned the list
+        assertEquals(first, second);
+        assertEquals(null, server.takeRequest().getHeader("If-None-Match"));
+        RecordedRequest conditional = server.takeRequest();
+        assertEquals("\"v1\"", conditional.getHeader("If-None-Match"));
+        assertEquals("Bearer token", conditional.getHeader("Authorization"));
+        ResponseCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.hits);
+        assertEquals(1, stats.misses);
+        assertEquals(1, stats.revalidated);
+    }
+
+    // Stale-while-revalidate shows the stored list at once, then the changed one
+    @Test
+    public void testStaleWhileRevalidateDeliversCachedThenFresh() throws Exception {
+        ResponseCache cache = useCache();
+        server.setDispatcher(new VersionedUsers("v1", "[\"old\"]"));
+        getAllUsers(ResponseCache.Policy.REVALIDATE, 1);
+
+        // When: The list changed on the server since it was cached
+        server.setDispatcher(new VersionedUsers("v2", "[\"new\"]"));
+        List<String> results = getAllUsers(ResponseCache.Policy.STALE_WHILE_REVALIDATE, 2);
+
+        // Then: The cached list comes first, the fresh one second
+        assertEquals("[\"old\"]", results.get(0));
+        assertEquals("[\"new\"]", results.get(1));
+        assertEquals(2, cache.getStats().misses);
+    }
+
+    // A directory page request carries the cursor, limit and filters as query parameters
+    @Test
+    public void testUsersPageRequest() throws Exception {
+        server.enqueue(new MockResponse().setBody(
+                "{\"users\":[{\"id\":\"5\",\"username\":\"ann smith\"}],\"nextCursor\":\"c2\"}"));
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Page<User>> result = new AtomicReference<>();
+
+        ApiClient.getUsersPage(context, "c1", 25, "admin", "ann smith", new ApiClient.TypedCallback<Page<User>>() {
+            @Override
+            public void onSuccess(Page<User> page) {
+                result.set(page);
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("5", result.get().items.get(0).getId());
+        assertEquals("c2", result.get().nextCursor);
+        HttpUrl url = server.takeRequest().getRequestUrl();
+        assertEquals("/api/users", url.encodedPath());
+        assertEquals("c1", url.queryParameter("cursor"));
+        assertEquals("25", url.queryParameter("limit"));
+        assertEquals("admin", url.queryParameter("role"));
+        assertEquals("ann smith", url.queryParameter("q"));
+    }
+
+    // User edits deliver their result on the executor the caller chose
+    @Test
+    public void testUserEditCallsBackOnGivenExecutor() throws Exception {
+        server.enqueue(new MockResponse().setBody("{}"));
+        ExecutorService delivery = Executors.newSingleThreadExecutor(r -> new Thread(r, "delivery"));
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<String> thread = new AtomicReference<>();
+
+        ApiClient.deleteUserById(context, "5", delivery, new ApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                thread.set(Thread.currentThread().getName());
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("delivery", thread.get());
+        assertEquals("DELETE", server.takeRequest().getMethod());
+        delivery.shutdown();
+    }
+
+    // A cancelled call is aborted on the wire and its callback never runs
+    @Test
+    public void testCancelledCallNeverCallsBack() throws Exception {
+        // Given: A slow server
+        server.enqueue(new MockResponse().setBody("[]").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        CountDownLatch callbacks = new CountDownLatch(1);
+
+        // When: The call is cancelled while waiting for the response
+        ApiCall call = ApiClient.getAllUsers(context, new ApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                callbacks.countDown();
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                callbacks.countDown();
+            }
+        });
+        server.takeRequest(5, TimeUnit.SECONDS);
+        call.cancel();
+
+        // Then: Neither success nor the cancellation error is delivered
+        assertTrue(call.isCanceled());
+        assertFalse(callbacks.await(1, TimeUnit.SECONDS));
+    }
+
+    // Results are handed to the executor given by the caller
+    @Test
+    public void testCallbackRunsOnGivenExecutor() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"token\":\"t\"}"));
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "callbacks"));
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<String> thread = new AtomicReference<>();
+
+        ApiClient.login(context, "ann", "secret", executor, new ApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                thread.set(Thread.currentThread().getName());
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("callbacks", thread.get());
+        executor.shutdown();
+    }
+
+    // Identical GETs made together share one network call and all receive its result
+    @Test
+    public void testConcurrentIdenticalGetsAreCoalesced() throws Exception {
+        // Given: A slow server, so the calls overlap
+        server.enqueue(new MockResponse().setBody("[]").setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody("[]"));
+        RequestCoalescer.Stats before = ApiClient.getCoalescingStats();
+        int callers = 5;
+        CountDownLatch latch = new CountDownLatch(callers);
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+
+        // When: Five screens ask for the user list at once
+        for (int i = 0; i < callers; i++) {
+            ApiClient.getAllUsers(context, new ApiClient.ApiCallback() {
+                @Override
+                public void onSuccess(String response) {
+                    results.add(response);
+                    latch.countDown();
+                }
+
+                @Override
+                public void onFailure(IOException e) {
+                    latch.countDown();
+                }
+            });
+        }
+
+        // Then: One request reached the server and every caller got the body
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(callers, results.size());
+        assertEquals(1, server.getRequestCount());
+        RequestCoalescer.Stats after = ApiClient.getCoalescingStats();
+        assertEquals(callers, after.requests - before.requests);
+        assertEquals(callers - 1, after.coalesced - before.coalesced);
+
+        // Then: A call made after the result arrived goes to the network again
+        assertEquals("[]", getAllUsers());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    // Callers with different tokens may see different data, so they are not coalesced
+    @Test
+    public void testDifferentTokensAreNotCoalesced() throws Exception {
+        server.enqueue(new MockResponse().setBody("[]").setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody("[]"));
+        CountDownLatch latch = new CountDownLatch(2);
+        ApiClient.ApiCallback callback = new ApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                latch.countDown();
+            }
+        };
+
+        ApiClient.getAllUsers(context, callback);
+        Session.getInstance(context).setToken("other-token");
+        ApiClient.getAllUsers(context, callback);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    // Cancelling one caller leaves the shared call running for the others
+    @Test
+    public void testCancellingOneCallerKeepsSharedCall() throws Exception {
+        server.enqueue(new MockResponse().setBody("[]").setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        CountDownLatch cancelledCallbacks = new CountDownLatch(1);
+        ApiCall cancelled = ApiClient.getAllUsers(context, new ApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                cancelledCallbacks.countDown();
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                cancelledCallbacks.countDown();
+            }
+        });
+        AtomicReference<String> kept = new AtomicReference<>();
+        CountDownLatch keptLatch = new CountDownLatch(1);
+        ApiClient.getAllUsers(context, new ApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                kept.set(response);
+                keptLatch.countDown();
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                keptLatch.countDown();
+            }
+        });
+
+        cancelled.cancel();
+
+        assertTrue(keptLatch.await(5, TimeUnit.SECONDS));
+        assertEquals("[]", kept.get());
+        assertFalse(cancelledCallbacks.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    private ResponseCache useCache() throws IOException {
+        ResponseCache cache = new ResponseCache(temporaryFolder.newFolder("http"), ResponseCache.DEFAULT_MAX_SIZE);
+        byte[] pem = serverCertificate.certificatePem().getBytes(StandardCharsets.UTF_8);
+        ApiClient.setClient(ApiClient.newPinnedClient(new ByteArrayInputStream(pem), cache.getCache()), cache);
+        return cache;
+    }
+
+    // Serves one version of the user list with its ETag, or 304 when the client has it
+    private static class VersionedUsers extends Dispatcher {
+        private final String etag;
+        private final String body;
+
+        VersionedUsers(String version, String body) {
+            this.etag = "\"" + version + "\"";
+            this.body = body;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            if (etag.equals(request.getHeader("If-None-Match"))) {
+                return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+            }
+            return new MockResponse().setHeader("ETag", etag).setBody(body);
+        }
+    }
+
+    private List<String> getAllUsers(ResponseCache.Policy policy, int expectedResults) throws Exception {
+        CountDownLatch latch = new CountDownLatch(expectedResults);
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+        ApiClient.getAllUsers(context, policy, new ApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                results.add(response);
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return results;
+    }
+
+    private OkHttpClient newPinnedClient() {
+        byte[] pem = serverCertificate.certificatePem().getBytes(StandardCharsets.UTF_8);
+        return ApiClient.newPinnedClient(new ByteArrayInputStream(pem));
+    }
+
+    private static void execute(OkHttpClient client, Request request) throws IOException {
+        try (Response response = client.newCall(request).execute()) {
+            response.body().string();
+        }
+    }
+
+    private String getAllUsers() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<String> result = new AtomicReference<>();
+        ApiClient.getAllUsers(context, new ApiClient.ApiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                result.set(response);
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return result.get();
+    }
+}
@@ -0,0 +1,130 @@
+package com.hattonky.inventory.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class SessionTest {
+
+    private SharedPreferences prefs;
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final Executor queue = tasks::add;  // Runs nothing until runTasks()
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        prefs = context.getSharedPreferences("session-test", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+    }
+
+    @Test
+    public void testLoadsOnceAndReadsFromMemory() {
+        // Given: A saved session from an earlier version, with a single address
+        prefs.edit()
+                .putString("server_url", "https://lan.example.com/")
+                .putString("jwt", token("{\"sub\":\"42\",\"role\":\"admin\",\"exp\":2000000000}"))
+                .commit();
+
+        // When: The session is loaded
+        Session session = new Session(prefs, queue);
+        runTasks();
+
+        // Then: Later changes to the file are not read again
+        prefs.edit().putString("server_url", "https://other.example.com/").commit();
+        assertEquals(Collections.singletonList("https://lan.example.com/"), session.getServerUrls());
+
+        // And: The token's claims are decoded once, with the role taken from them
+        assertTrue(session.isLoggedIn());
+        assertEquals("42", session.getClaims().optString("sub"));
+        assertEquals("admin", session.getRole());
+        assertEquals(2000000000L * 1000, session.getExpiresAt());
+    }
+
+    @Test
+    public void testWritesBehindAndCoalesces() throws Exception {
+        Session session = new Session(prefs, queue);
+        runTasks();
+
+        // When: A login and a token refresh happen in quick succession
+        JSONObject user = new JSONObject().put("username", "sam");
+        session.setServerUrls(Arrays.asList("https://lan.example.com/", "https://wan.example.com/"));
+        session.login("first", "user", user);
+        session.setToken("second");
+
+        // Then: They are visible at once, but not written yet
+        assertEquals("second", session.getToken());
+        assertEquals("user", session.getRole());
+        assertEquals("sam", session.getUser().getString("username"));
+        assertNull(prefs.getString("jwt", null));
+
+        // And: One write saves the latest state
+        assertEquals(1, tasks.size());
+        runTasks();
+        assertEquals("second", prefs.getString("jwt", null));
+        assertEquals("user", prefs.getString("role", null));
+        assertEquals("https://lan.example.com/", prefs.getString("server_url", null));
+
+        // And: A new process picks it all up
+        Session restarted = new Session(prefs, queue);
+        runTasks();
+        assertEquals(Arrays.asList("https://lan.example.com/", "https://wan.example.com/"), restarted.getServerUrls());
+        assertEquals("second", restarted.getToken());
+        assertEquals("sam", restarted.getUser().getString("username"));
+    }
+
+    @Test
+    public void testLogoutKeepsServers() {
+        Session session = new Session(prefs, queue);
+        runTasks();
+        session.setServerUrls(Collections.singletonList("https://lan.example.com/"));
+        session.login("token", "admin", null);
+
+        // When: The user logs out
+        session.logout();
+        runTasks();
+
+        // Then: Only the server addresses remain
+        assertFalse(session.isLoggedIn());
+        assertNull(session.getRole());
+        assertNull(prefs.getString("jwt", null));
+        assertNull(prefs.getString("role", null));
+        assertEquals("https://lan.example.com/", prefs.getString("server_url", null));
+    }
+
+    @Test
+    public void testParseServerUrls() {
+        assertEquals(Arrays.asList("https://a/", "https://b/"), Session.parseServerUrls(" https://a/\n\nhttps://b/ \n", null));
+        assertEquals(Collections.singletonList("https://a/"), Session.parseServerUrls(null, "https://a/"));
+        assertTrue(Session.parseServerUrls(null, null).isEmpty());
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    private static String token(String claims) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(claims.getBytes(StandardCharsets.UTF_8)) + ".signature";
+    }
+}
@@ -1,6 +1,7 @@
 package com.hattonky.inventory.data.dao;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -12,6 +13,7 @@ import androidx.test.core.app.ApplicationProvider;
 
 import com.hattonky.inventory.data.databases.AppDatabase;
 import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.OutboxEntry;
 
 import org.junit.After;
 import org.junit.Before;
@@ -116,6 +118,25 @@ public class ItemDaoTest {
         assertEquals("Category1", itemList.get(0).getCategory());
     }
 
+    @Test
+    public void testSwapImagePathRecordsChange() {
+        // Given: Two items, only one of which still uses the original image
+        int swappedId = (int) itemDao.insert(new Item("Drill", "Description", "Tools", "original.jpg"));
+        int otherId = (int) itemDao.insert(new Item("Saw", "Description", "Tools", "other.jpg"));
+
+        // When: The image is replaced by its re-encoded copy
+        int updated = itemDao.swapImagePath("original.jpg", "encoded.jpg");
+
+        // Then: Only that item changed, and the change waits in the outbox so a pull keeps it
+        assertEquals(1, updated);
+        Item swapped = itemDao.getById(swappedId);
+        assertEquals("encoded.jpg", swapped.getImagePath());
+        assertTrue(swapped.getUpdatedAt() > 0);
+        OutboxDao outboxDao = database.outboxDao();
+        assertTrue(outboxDao.hasPending(OutboxEntry.TYPE_ITEM, swappedId));
+        assertFalse(outboxDao.hasPending(OutboxEntry.TYPE_ITEM, otherId));
+    }
+
     // Utility method to get LiveData value synchronously
     private <T> T getOrAwaitValue(final LiveData<T> liveData) throws InterruptedException {
         final Object[] data = new Object[1];
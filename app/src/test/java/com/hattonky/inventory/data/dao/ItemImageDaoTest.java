@@ -0,0 +1,144 @@
+package com.hattonky.inventory.data.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.hattonky.inventory.data.databases.AppDatabase;
+import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.ItemImage;
+import com.hattonky.inventory.data.model.OutboxEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ItemImageDaoTest {
+
+    private AppDatabase database;
+    private ItemDao itemDao;
+    private ItemImageDao itemImageDao;
+
+    // Rule to make LiveData updates synchronous in unit tests
+    @Rule
+    public InstantTaskExecutorRule instantExecutorRule = new InstantTaskExecutorRule();
+
+    @Before
+    public void setUp() {
+        // Create an in-memory database for testing
+        database = Room.inMemoryDatabaseBuilder(
+                        ApplicationProvider.getApplicationContext(), AppDatabase.class)
+                .allowMainThreadQueries()  // Allows Room operations on the main thread for testing
+                .build();
+        itemDao = database.itemDao();
+        itemImageDao = database.itemImageDao();
+    }
+
+    @After
+    public void tearDown() {
+        // Close the database when the test finishes
+        database.close();
+    }
+
+    @Test
+    public void testAddImagesKeepsOrderAndPrimary() throws InterruptedException {
+        // Given: An item without an image
+        int itemId = (int) itemDao.insert(new Item("Drill", "Description", "Tools", null));
+
+        // When: Attach two photos
+        itemImageDao.addImage(itemId, "front.jpg");
+        itemImageDao.addImage(itemId, "label.jpg");
+        itemImageDao.addImage(itemId, "front.jpg");  // Duplicate is ignored
+
+        // Then: Both are listed in order and the first became the primary image
+        List<ItemImage> images = getOrAwaitValue(itemImageDao.getImagesForItem(itemId));
+        assertEquals(2, images.size());
+        assertEquals("front.jpg", images.get(0).getPath());
+        assertEquals("label.jpg", images.get(1).getPath());
+        assertEquals("front.jpg", itemImageDao.getPrimaryPath(itemId));
+    }
+
+    @Test
+    public void testRemovingPrimaryPromotesNextImage() throws InterruptedException {
+        int itemId = (int) itemDao.insert(new Item("Drill", "Description", "Tools", null));
+        itemImageDao.addImage(itemId, "front.jpg");
+        itemImageDao.addImage(itemId, "damage.jpg");
+
+        // When: Remove the primary image
+        List<ItemImage> images = getOrAwaitValue(itemImageDao.getImagesForItem(itemId));
+        itemImageDao.removeImage(images.get(0));
+
+        // Then: The remaining image takes its place on the item row
+        assertEquals("damage.jpg", itemImageDao.getPrimaryPath(itemId));
+
+        // And removing the last image clears the pointer
+        itemImageDao.removeImage(getOrAwaitValue(itemImageDao.getImagesForItem(itemId)).get(0));
+        assertNull(itemImageDao.getPrimaryPath(itemId));
+    }
+
+    @Test
+    public void testPrimaryPathChangeIsRecorded() {
+        // Given: An item with two photos
+        int itemId = (int) itemDao.insert(new Item("Drill", "Description", "Tools", null));
+        itemImageDao.addImage(itemId, "front.jpg");
+        itemImageDao.addImage(itemId, "label.jpg");
+        int recorded = database.outboxDao().count();
+
+        // When: Make the second photo the primary image
+        itemImageDao.setPrimaryPath(itemId, "label.jpg");
+
+        // Then: The change is in the outbox, so the next pull doesn't overwrite it
+        assertEquals("label.jpg", itemImageDao.getPrimaryPath(itemId));
+        assertEquals(recorded + 1, database.outboxDao().count());
+        assertTrue(database.outboxDao().hasPending(OutboxEntry.TYPE_ITEM, itemId));
+        assertTrue(itemDao.getById(itemId).getUpdatedAt() > 0);
+
+        // And setting the same path again records nothing
+        itemImageDao.setPrimaryPath(itemId, "label.jpg");
+        assertEquals(recorded + 1, database.outboxDao().count());
+    }
+
+    @Test
+    public void testDeletingItemDeletesImagesAndPathsStayReferencedUntilThen() throws InterruptedException {
+        int itemId = (int) itemDao.insert(new Item("Drill", "Description", "Tools", "front.jpg"));
+        itemImageDao.addImage(itemId, "label.jpg");
+
+        // Attached images count as referenced for the orphaned image collector
+        assertTrue(itemDao.getAllImagePaths().contains("label.jpg"));
+
+        // When: Delete the item
+        itemDao.deleteById(itemId);
+
+        // Then: Its images are removed with it
+        assertTrue(getOrAwaitValue(itemImageDao.getImagesForItem(itemId)).isEmpty());
+        assertTrue(itemDao.getAllImagePaths().isEmpty());
+    }
+
+    // Utility method to get LiveData value synchronously
+    private <T> T getOrAwaitValue(final LiveData<T> liveData) throws InterruptedException {
+        final Object[] data = new Object[1];
+        CountDownLatch latch = new CountDownLatch(1);
+        Observer<T> observer = new Observer<T>() {
+            @Override
+            public void onChanged(T o) {
+                data[0] = o;
+                latch.countDown();
+                liveData.removeObserver(this);
+            }
+        };
+        liveData.observeForever(observer);
+        latch.await(2, TimeUnit.SECONDS);
+        return (T) data[0];
+    }
+}
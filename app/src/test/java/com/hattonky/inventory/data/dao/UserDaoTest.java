@@ -0,0 +1,117 @@
+package com.hattonky.inventory.data.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.hattonky.inventory.data.databases.AppDatabase;
+import com.hattonky.inventory.data.model.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class UserDaoTest {
+
+    private AppDatabase database;
+    private UserDao userDao;
+
+    // Rule to make LiveData updates synchronous in unit tests
+    @Rule
+    public InstantTaskExecutorRule instantExecutorRule = new InstantTaskExecutorRule();
+
+    @Before
+    public void setUp() {
+        // Create an in-memory database for testing
+        database = Room.inMemoryDatabaseBuilder(
+                        ApplicationProvider.getApplicationContext(), AppDatabase.class)
+                .allowMainThreadQueries()  // Allows Room operations on the main thread for testing
+                .build();
+        userDao = database.userDao();
+    }
+
+    @After
+    public void tearDown() {
+        // Close the database when the test finishes
+        database.close();
+    }
+
+    @Test
+    public void testFilterByRoleAndQuery() throws InterruptedException {
+        // Given: Three cached users
+        userDao.insertAll(Arrays.asList(
+                new User("1", "carol", "carol@example.com", "user", 100),
+                new User("2", "Alice", "alice@example.com", "admin", 100),
+                new User("3", "bob", "bob@corp.test", "user", 100)));
+
+        // Then: No filter lists everyone by username, ignoring case
+        List<User> all = getOrAwaitValue(userDao.getUsers(null, null));
+        assertEquals(3, all.size());
+        assertEquals("Alice", all.get(0).getUsername());
+        assertEquals("carol", all.get(2).getUsername());
+
+        // Then: Role and search text narrow the list; the text matches username or email
+        assertEquals(1, getOrAwaitValue(userDao.getUsers("admin", null)).size());
+        List<User> example = getOrAwaitValue(userDao.getUsers("user", "example"));
+        assertEquals(1, example.size());
+        assertEquals("1", example.get(0).getId());
+    }
+
+    @Test
+    public void testDeleteFetchedBeforeDropsUnseenUsers() {
+        // Given: One user from an older fetch and one from the latest
+        userDao.insert(new User("1", "old", null, "user", 100));
+        userDao.insert(new User("2", "current", null, "user", 200));
+
+        // When: Remove users not seen since the latest fetch started
+        int removed = userDao.deleteFetchedBefore(200);
+
+        // Then: Only the older row is gone
+        assertEquals(1, removed);
+        assertNull(userDao.getById("1"));
+        assertEquals("current", userDao.getById("2").getUsername());
+    }
+
+    @Test
+    public void testUpdateRoleAndDelete() {
+        // Given: A cached user
+        userDao.insert(new User("1", "dave", null, "user", 100));
+
+        // When: Change the role
+        assertEquals(1, userDao.updateRole("1", "admin"));
+
+        // Then: The row has the new role; unknown IDs change nothing
+        assertEquals("admin", userDao.getById("1").getRole());
+        assertEquals(0, userDao.updateRole("missing", "admin"));
+        assertEquals(1, userDao.deleteById("1"));
+        assertNull(userDao.getById("1"));
+    }
+
+    // Utility method to get LiveData value synchronously
+    private <T> T getOrAwaitValue(final LiveData<T> liveData) throws InterruptedException {
+        final Object[] data = new Object[1];
+        CountDownLatch latch = new CountDownLatch(1);
+        Observer<T> observer = new Observer<T>() {
+            @Override
+            public void onChanged(T o) {
+                data[0] = o;
+                latch.countDown();
+                liveData.removeObserver(this);
+            }
+        };
+        liveData.observeForever(observer);
+        latch.await(2, TimeUnit.SECONDS);
+        return (T) data[0];
+    }
+}
@@ -0,0 +1,159 @@
+package com.hattonky.inventory.data.images;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.hattonky.inventory.data.dao.ItemDao;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ImageGarbageCollectorTest {
+
+    private static final long HOUR_MS = 60L * 60 * 1000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private ItemDao itemDao;  // Mocked DAO supplying the referenced paths
+
+    private File imageDirectory;
+    private SharedPreferences progress;
+
+    @Before
+    public void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        imageDirectory = temporaryFolder.newFolder("Inventory");
+        Context context = ApplicationProvider.getApplicationContext();
+        progress = context.getSharedPreferences("image-gc-test", Context.MODE_PRIVATE);
+        progress.edit().clear().commit();
+    }
+
+    // Released files older than the grace period are deleted and their size reported
+    @Test
+    public void testDeletesOldReleasedFiles() throws IOException {
+        // Given: one file referenced as a path, one as a file:// URI, and one no item uses any more
+        File kept = createImage("IMG_1.jpg", 100, 2 * HOUR_MS);
+        File keptUri = createImage("IMG_2.jpg", 200, 2 * HOUR_MS);
+        File orphan = createImage("IMG_3.jpg", 300, 2 * HOUR_MS);
+        ImageGarbageCollector collector = new ImageGarbageCollector(itemDao, imageDirectory, progress, HOUR_MS, 2);
+        referenceAll();
+        collector.collect();
+        when(itemDao.getAllImagePaths()).thenReturn(Arrays.asList(
+                kept.getAbsolutePath(), keptUri.toURI().toString(), "content://media/external/images/1"));
+
+        // When: Run the collector with a one hour grace period
+        ImageGarbageCollector.Result result = collector.collect();
+
+        // Then: Only the orphan is removed
+        assertTrue(kept.exists());
+        assertTrue(keptUri.exists());
+        assertFalse(orphan.exists());
+        assertEquals(3, result.filesScanned);
+        assertEquals(1, result.filesDeleted);
+        assertEquals(300, result.bytesReclaimed);
+        assertTrue(result.complete);
+
+        // The referenced set is loaded with a single query per run
+        verify(itemDao, times(2)).getAllImagePaths();
+    }
+
+    // Captures never attached to an item are kept for the gallery, however old
+    @Test
+    public void testKeepsNeverAttachedCaptures() throws IOException {
+        File capture = createImage("IMG_1.jpg", 100, 48 * HOUR_MS);
+        when(itemDao.getAllImagePaths()).thenReturn(Collections.emptyList());
+        ImageGarbageCollector collector = new ImageGarbageCollector(itemDao, imageDirectory, progress, HOUR_MS, 10);
+
+        collector.collect();
+        ImageGarbageCollector.Result result = collector.collect();
+
+        assertTrue(capture.exists());
+        assertEquals(0, result.filesDeleted);
+    }
+
+    // Files inside the grace period are kept even when nothing references them
+    @Test
+    public void testKeepsRecentFiles() throws IOException {
+        File recent = createImage("IMG_new.jpg", 100, 0);
+        ImageGarbageCollector collector = new ImageGarbageCollector(itemDao, imageDirectory, progress, HOUR_MS, 10);
+        referenceAll();
+        collector.collect();
+        when(itemDao.getAllImagePaths()).thenReturn(Collections.emptyList());
+
+        ImageGarbageCollector.Result result = collector.collect();
+
+        assertTrue(recent.exists());
+        assertEquals(0, result.filesDeleted);
+        assertEquals(0, result.bytesReclaimed);
+    }
+
+    // An interrupted run stops between batches and the next run resumes where it left off, even
+    // when it is made by another collector, e.g. after the process was restarted
+    @Test
+    public void testInterruptedRunResumes() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            createImage("IMG_" + i + ".jpg", 10, 2 * HOUR_MS);
+        }
+        ImageGarbageCollector collector = new ImageGarbageCollector(itemDao, imageDirectory, progress, HOUR_MS, 2);
+        referenceAll();
+        collector.collect();
+        when(itemDao.getAllImagePaths()).thenReturn(Collections.emptyList());
+
+        // When: The thread is interrupted, only the first batch is processed
+        Thread.currentThread().interrupt();
+        ImageGarbageCollector.Result first = collector.collect();
+        Thread.interrupted();  // Clear the interrupt flag
+
+        assertFalse(first.complete);
+        assertEquals(2, first.filesDeleted);
+
+        // Then: The next run picks up the remaining files
+        ImageGarbageCollector restarted = new ImageGarbageCollector(itemDao, imageDirectory, progress, HOUR_MS, 2);
+        ImageGarbageCollector.Result second = restarted.collect();
+        assertTrue(second.complete);
+        assertEquals(2, second.filesScanned);
+        assertEquals(2, second.filesDeleted);
+        assertEquals(0, imageDirectory.listFiles().length);
+    }
+
+    // Makes every file in the store referenced, as if each had been attached to an item
+    private void referenceAll() {
+        List<String> paths = new ArrayList<>();
+        for (File file : imageDirectory.listFiles()) {
+            paths.add(file.getAbsolutePath());
+        }
+        when(itemDao.getAllImagePaths()).thenReturn(paths);
+    }
+
+    private File createImage(String name, int size, long ageMs) throws IOException {
+        File file = new File(imageDirectory, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[size]);
+        }
+        file.setLastModified(System.currentTimeMillis() - ageMs);
+        return file;
+    }
+}
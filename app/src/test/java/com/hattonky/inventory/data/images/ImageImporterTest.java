@@ -0,0 +1,46 @@
+package com.hattonky.inventory.data.images;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ImageImporterTest {
+
+    // The copy is byte-for-byte, including sizes that are not a multiple of the buffer
+    @Test
+    public void testCopyPreservesContent() throws IOException {
+        byte[] image = new byte[3 * ImageImporter.BUFFER_SIZE + 123];
+        new Random(42).nextBytes(image);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long copied = ImageImporter.copy(new ByteArrayInputStream(image), out);
+
+        assertEquals(image.length, copied);
+        assertArrayEquals(image, out.toByteArray());
+    }
+
+    // Reads never ask for more than one buffer at a time, whatever the image size
+    @Test
+    public void testCopyUsesFixedBuffer() throws IOException {
+        int[] largestRead = {0};
+        InputStream source = new ByteArrayInputStream(new byte[10 * ImageImporter.BUFFER_SIZE]) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                largestRead[0] = Math.max(largestRead[0], len);
+                return super.read(b, off, len);
+            }
+        };
+
+        ImageImporter.copy(source, new ByteArrayOutputStream());
+
+        assertTrue(largestRead[0] <= ImageImporter.BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,56 @@
+package com.hattonky.inventory.data.images;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ImageReencoderTest {
+
+    // Sample size is the largest power of two that keeps the longest side at or above the target
+    @Test
+    public void testCalculateSampleSize() {
+        // A 12MP capture (4000x3000) capped at 2048px is not sampled, as halving it would go under
+        assertEquals(1, ImageReencoder.calculateSampleSize(4000, 3000, 2048));
+        assertEquals(2, ImageReencoder.calculateSampleSize(4096, 3072, 2048));
+        assertEquals(4, ImageReencoder.calculateSampleSize(3000, 4000, 1000));
+
+        // Images already within the cap are never sampled
+        assertEquals(1, ImageReencoder.calculateSampleSize(800, 600, 2048));
+    }
+
+    // The pool's queue is bounded, so a burst is refused instead of piling up
+    @Test
+    public void testBackgroundPoolRefusesWorkBeyondItsQueue() {
+        ExecutorService pool = ImageReencoder.newBackgroundPool("test", 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // Given: The only thread is busy and the queue is full
+            pool.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            for (int i = 0; i < ImageReencoder.POOL_QUEUE_CAPACITY; i++) {
+                pool.execute(() -> { });
+            }
+
+            // When/Then: One more task is refused
+            try {
+                pool.execute(() -> { });
+                fail("Expected the full pool to refuse the task");
+            } catch (RejectedExecutionException expected) {
+                // The caller skips the work or does it itself
+            }
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.hattonky.inventory.data.images;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.hattonky.inventory.data.databases.AppDatabase;
+import com.hattonky.inventory.data.model.ImageUpload;
+import com.hattonky.inventory.data.network.BandwidthLimiter;
+import com.hattonky.inventory.data.network.JsonDecoders;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.MultipartReader;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+public class ImageUploaderTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private AppDatabase database;
+    private MockWebServer server;
+    private final UploadServer uploadServer = new UploadServer();
+    // OkHttp's own silent retry is off, so every dropped connection reaches the uploader
+    private final OkHttpClient client = new OkHttpClient.Builder().retryOnConnectionFailure(false).build();
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        server = new MockWebServer();
+        server.setDispatcher(uploadServer);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        database.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void testUploadsFileInChunks() throws Exception {
+        byte[] content = randomBytes(200 * 1024);
+        File file = writeFile("IMG_1.jpg", content);
+
+        String url = newUploader(0).upload(file.getAbsolutePath());
+
+        // Then: Four chunks arrive in order and the server has the exact bytes
+        assertEquals("https://cdn.example.com/" + ImageUploader.hash(file), url);
+        assertEquals(4, uploadServer.chunkOffsets.size());
+        assertEquals(Long.valueOf(3 * CHUNK_SIZE), uploadServer.chunkOffsets.get(3));
+        assertArrayEquals(content, uploadServer.received(ImageUploader.hash(file)));
+        ImageUpload upload = database.imageUploadDao().getByPath(file.getAbsolutePath());
+        assertEquals(url, upload.getRemoteUrl());
+        assertEquals(content.length, upload.getConfirmedBytes());
+    }
+
+    @Test
+    public void testLostChunkResumesFromCheckpointAfterRestart() throws Exception {
+        byte[] content = randomBytes(300 * 1024);
+        File file = writeFile("IMG_2.jpg", content);
+        uploadServer.dropChunk = 2;  // The third chunk never arrives
+
+        // When: The connection drops during the third chunk
+        try {
+            newUploader(0).upload(file.getAbsolutePath());
+            fail("Expected the dropped connection to fail the upload");
+        } catch (IOException expected) {
+        }
+
+        // Then: The two confirmed chunks are checkpointed
+        ImageUpload checkpoint = database.imageUploadDao().getByPath(file.getAbsolutePath());
+        assertEquals(2 * CHUNK_SIZE, checkpoint.getConfirmedBytes());
+        assertNull(checkpoint.getRemoteUrl());
+
+        // When: A new uploader, as after the app restarted, tries again
+        ImageUploader restarted = newUploader(0);
+        String url = restarted.upload(file.getAbsolutePath());
+
+        // Then: It asks where to go on and resends only from the lost chunk
+        assertEquals(1, uploadServer.statusRequests);
+        assertEquals(1, uploadServer.startRequests);
+        assertEquals(2, count(uploadServer.chunkOffsets, 2L * CHUNK_SIZE));
+        assertEquals(1, count(uploadServer.chunkOffsets, 0L));
+        assertEquals(1, restarted.getStats().resumed);
+        assertArrayEquals(content, uploadServer.received(ImageUploader.hash(file)));
+        assertTrue(url.endsWith(ImageUploader.hash(file)));
+    }
+
+    @Test
+    public void testLostAnswerDoesNotResendStoredChunk() throws Exception {
+        byte[] content = randomBytes(150 * 1024);
+        File file = writeFile("IMG_3.jpg", content);
+        uploadServer.dropChunk = 1;
+        uploadServer.storeDroppedChunk = true;  // The server keeps it, the answer is lost
+
+        try {
+            newUploader(0).upload(file.getAbsolutePath());
+            fail("Expected the dropped connection to fail the upload");
+        } catch (IOException expected) {
+        }
+        newUploader(0).upload(file.getAbsolutePath());
+
+        // Then: The server's offset skips the chunk it already had
+        assertEquals(1, count(uploadServer.chunkOffsets, (long) CHUNK_SIZE));
+        assertEquals(3, uploadServer.chunkOffsets.size());
+        assertArrayEquals(content, uploadServer.received(ImageUploader.hash(file)));
+    }
+
+    @Test
+    public void testSameContentIsUploadedOnce() throws Exception {
+        byte[] content = randomBytes(100 * 1024);
+        File first = writeFile("IMG_4.jpg", content);
+        File copy = writeFile("IMG_4_copy.jpg", content);
+        ImageUploader uploader = newUploader(0);
+
+        String url = uploader.upload(first.getAbsolutePath());
+        int requests = server.getRequestCount();
+        String copyUrl = uploader.upload(copy.getAbsolutePath());
+
+        // Then: The copy gets the same URL without a request
+        assertEquals(url, copyUrl);
+        assertEquals(requests, server.getRequestCount());
+        assertEquals(1, uploader.getStats().deduplicated);
+
+        // And: Content the server has from elsewhere is not sent again
+        database.clearAllTables();
+        int chunks = uploadServer.chunkOffsets.size();
+        assertEquals(url, newUploader(0).upload(copy.getAbsolutePath()));
+        assertEquals(chunks, uploadServer.chunkOffsets.size());
+    }
+
+    @Test
+    public void testBandwidthLimitSpreadsUploadOverTime() throws Exception {
+        File file = writeFile("IMG_5.jpg", randomBytes(160 * 1024));
+
+        // When: Uploading 160 KB at 100 KB/s
+        long start = System.nanoTime();
+        newUploader(100 * 1024).upload(file.getAbsolutePath());
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Then: It takes at least the time the first 144 KB need; the last buffer goes on credit
+        assertTrue("Took only " + elapsedMs + " ms", elapsedMs >= 1300);
+    }
+
+    @Test
+    public void testGalleryUrisAreSkipped() throws Exception {
+        assertNull(newUploader(0).upload("content://media/external/images/1"));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private ImageUploader newUploader(long bytesPerSecond) {
+        HttpUrl base = server.url("/api/uploads");
+        ImageUploader.Server endpoints = new ImageUploader.Server() {
+            @Override
+            public UploadSession start(String contentHash, long size, String fileName) throws IOException {
+                String json = "{\"sha256\":\"" + contentHash + "\",\"size\":" + size + "}";
+                return call(new Request.Builder().url(base)
+                        .post(RequestBody.create(json, MediaType.get("application/json"))).build());
+            }
+
+            @Override
+            public UploadSession status(String uploadId) throws IOException {
+                return call(new Request.Builder().url(base.newBuilder().addPathSegment(uploadId).build()).build());
+            }
+
+            @Override
+            public UploadSession send(String uploadId, long offset, RequestBody chunk) throws IOException {
+                return call(new Request.Builder()
+                        .url(base.newBuilder().addPathSegment(uploadId).build())
+                        .header("Upload-Offset", String.valueOf(offset))
+                        .put(new MultipartBody.Builder().setType(MultipartBody.FORM)
+                                .addFormDataPart("chunk", uploadId, chunk).build())
+                        .build());
+            }
+        };
+        return new ImageUploader(database.imageUploadDao(), database.itemDao(), endpoints,
+                Executors.newSingleThreadExecutor(), new BandwidthLimiter(bytesPerSecond), CHUNK_SIZE);
+    }
+
+    private UploadSession call(Request request) throws IOException {
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() == 404) {
+                return null;
+            }
+            if (!response.isSuccessful() && response.code() != 409) {
+                throw new IOException("Unexpected code " + response);
+            }
+            return JsonDecoders.decode(response.body().charStream(), UploadSession.DECODER);
+        }
+    }
+
+    private File writeFile(String name, byte[] content) throws IOException {
+        File file = temporaryFolder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static int count(List<Long> values, long value) {
+        int count = 0;
+        for (long v : values) {
+            if (v == value) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Stand-in for the server's upload endpoints. Chunks are stored once all of their bytes
+     * have arrived; {@link #dropChunk} cuts the connection on one chunk instead of answering.
+     */
+    static class UploadServer extends Dispatcher {
+        final List<Long> chunkOffsets = new ArrayList<>();  // Offset of every chunk received, in order
+        int startRequests;
+        int statusRequests;
+        int dropChunk = -1;  // Index of the chunk whose connection is cut
+        boolean storeDroppedChunk;  // Whether the cut chunk is stored before the cut
+
+        private final Map<String, ByteArrayOutputStream> uploads = new HashMap<>();  // By hash; also the upload ID
+        private final Map<String, Long> sizes = new HashMap<>();
+
+        synchronized byte[] received(String hash) {
+            return uploads.get(hash).toByteArray();
+        }
+
+        @Override
+        public synchronized MockResponse dispatch(RecordedRequest request) {
+            try {
+                List<String> segments = request.getRequestUrl().pathSegments();
+                if ("POST".equals(request.getMethod())) {
+                    startRequests++;
+                    JSONObject body = new JSONObject(request.getBody().readUtf8());
+                    String hash = body.getString("sha256");
+                    if (!uploads.containsKey(hash)) {
+                        uploads.put(hash, new ByteArrayOutputStream());
+                        sizes.put(hash, body.getLong("size"));
+                    }
+                    return session(hash, 200);
+                }
+                String id = segments.get(segments.size() - 1);
+                if (!uploads.containsKey(id)) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                if ("GET".equals(request.getMethod())) {
+                    statusRequests++;
+                    return session(id, 200);
+                }
+                long offset = Long.parseLong(request.getHeader("Upload-Offset"));
+                int index = chunkOffsets.size();
+                chunkOffsets.add(offset);
+                boolean drop = index == dropChunk;
+                if (drop && !storeDroppedChunk) {
+                    return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+                }
+                ByteArrayOutputStream upload = uploads.get(id);
+                if (offset != upload.size()) {
+                    return session(id, 409);
+                }
+                String boundary = MediaType.get(request.getHeader("Content-Type")).parameter("boundary");
+                try (MultipartReader reader = new MultipartReader(request.getBody(), boundary);
+                     MultipartReader.Part part = reader.nextPart()) {
+                    upload.write(part.body().readByteArray());
+                }
+                if (drop) {
+                    return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+                }
+                return session(id, 200);
+            } catch (Exception e) {
+                return new MockResponse().setResponseCode(500);
+            }
+        }
+
+        private MockResponse session(String hash, int code) throws Exception {
+            ByteArrayOutputStream upload = uploads.get(hash);
+            JSONObject json = new JSONObject().put("uploadId", hash).put("offset", upload.size());
+            if (upload.size() == sizes.get(hash)) {
+                json.put("url", "https://cdn.example.com/" + hash);
+            }
+            return new MockResponse().setResponseCode(code).setBody(json.toString());
+        }
+    }
+}
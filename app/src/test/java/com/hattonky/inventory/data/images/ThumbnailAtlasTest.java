@@ -0,0 +1,204 @@
+package com.hattonky.inventory.data.images;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class ThumbnailAtlasTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    // Thumbnails written to the atlas read back byte-for-byte, also after reopening
+    @Test
+    public void testPutGetAndReopen() throws IOException {
+        File directory = temporaryFolder.newFolder("thumbnails");
+        byte[] first = randomBytes(1, 2000);
+        byte[] second = randomBytes(2, 3000);
+
+        ThumbnailAtlas atlas = new ThumbnailAtlas(directory, 4096);  // Small limit forces a second atlas file
+        atlas.put("first", first);
+        atlas.put("second", second);
+        assertArrayEquals(first, toArray(atlas.get("first")));
+        assertArrayEquals(second, toArray(atlas.get("second")));
+        assertNull(atlas.get("missing"));
+        atlas.close();
+
+        ThumbnailAtlas reopened = new ThumbnailAtlas(directory, 4096);
+        assertEquals(2, reopened.size());
+        assertArrayEquals(first, toArray(reopened.get("first")));
+        assertArrayEquals(second, toArray(reopened.get("second")));
+        reopened.close();
+    }
+
+    // A record cut short by a crash is dropped without losing earlier records
+    @Test
+    public void testTruncatedIndexRecordIsIgnored() throws IOException {
+        File directory = temporaryFolder.newFolder("thumbnails");
+        byte[] data = randomBytes(3, 500);
+        ThumbnailAtlas atlas = new ThumbnailAtlas(directory);
+        atlas.put("kept", data);
+        atlas.close();
+        try (FileOutputStream index = new FileOutputStream(new File(directory, "atlas.idx"), true)) {
+            index.write(new byte[]{0, 9, 'p', 'a', 'r'});  // Half of a record
+        }
+
+        ThumbnailAtlas reopened = new ThumbnailAtlas(directory);
+        reopened.put("after", data);
+        reopened.close();
+
+        ThumbnailAtlas again = new ThumbnailAtlas(directory);
+        assertArrayEquals(data, toArray(again.get("kept")));
+        assertArrayEquals(data, toArray(again.get("after")));
+        again.close();
+    }
+
+    // Compaction drops removed and filtered entries and reclaims their bytes
+    @Test
+    public void testCompaction() throws IOException {
+        File directory = temporaryFolder.newFolder("thumbnails");
+        ThumbnailAtlas atlas = new ThumbnailAtlas(directory);
+        for (int i = 0; i < 10; i++) {
+            atlas.put("key" + i, randomBytes(i, 1000));
+        }
+        atlas.remove("key0");
+        atlas.put("key1", randomBytes(100, 1000));  // Replaced entry leaves dead bytes behind
+        assertTrue(atlas.deadFraction() > 0);
+
+        long reclaimed = atlas.compact(key -> !key.equals("key9"));
+
+        assertEquals(3000, reclaimed);
+        assertEquals(8, atlas.size());
+        assertEquals(0, atlas.deadFraction(), 0.0);
+        assertFalse(atlas.contains("key9"));
+        assertArrayEquals(randomBytes(100, 1000), toArray(atlas.get("key1")));
+        atlas.close();
+
+        ThumbnailAtlas reopened = new ThumbnailAtlas(directory);
+        assertEquals(8, reopened.size());
+        assertArrayEquals(randomBytes(5, 1000), toArray(reopened.get("key5")));
+        reopened.close();
+    }
+
+    // Entries a compaction would drop count towards what it would reclaim, like dead bytes
+    @Test
+    public void testReclaimableFractionCountsDroppedEntries() throws IOException {
+        File directory = temporaryFolder.newFolder("thumbnails");
+        ThumbnailAtlas atlas = new ThumbnailAtlas(directory);
+        for (int i = 0; i < 4; i++) {
+            atlas.put("key" + i, randomBytes(i, 1000));
+        }
+        assertEquals(0, atlas.reclaimableFraction(key -> true), 0.0);
+
+        // When: One entry is replaced and another would be filtered out
+        atlas.put("key0", randomBytes(10, 1000));
+
+        // Then: Both count, although only one of them is dead
+        assertEquals(0.2, atlas.deadFraction(), 1e-9);
+        assertEquals(0.4, atlas.reclaimableFraction(key -> !key.equals("key1")), 1e-9);
+        atlas.close();
+    }
+
+    // The file being appended to is allocated ahead of the data, and trimmed when closed
+    @Test
+    public void testAppendsIntoAllocatedSpace() throws IOException {
+        File directory = temporaryFolder.newFolder("thumbnails");
+        File file = new File(directory, "atlas_0.dat");
+        ThumbnailAtlas atlas = new ThumbnailAtlas(directory);
+
+        for (int i = 0; i < 100; i++) {
+            atlas.put("key" + i, randomBytes(i, 100));
+            assertArrayEquals(randomBytes(i, 100), toArray(atlas.get("key" + i)));
+        }
+        assertTrue(file.length() > 100 * 100);
+        atlas.close();
+        assertEquals(100 * 100, file.length());
+
+        // And: Reopening appends after the data, not after the allocated space
+        ThumbnailAtlas reopened = new ThumbnailAtlas(directory);
+        reopened.put("more", randomBytes(200, 100));
+        reopened.close();
+        assertEquals(101 * 100, file.length());
+    }
+
+    // Benchmark: reading 10k thumbnails from the mapped atlas vs. one file per thumbnail
+    @Test
+    public void benchmarkAtlasVersusPerFile() throws IOException {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        int count = 10_000;
+        int size = 2048;
+        File atlasDirectory = temporaryFolder.newFolder("atlas");
+        File fileDirectory = temporaryFolder.newFolder("files");
+        byte[] data = randomBytes(7, size);
+
+        ThumbnailAtlas atlas = new ThumbnailAtlas(atlasDirectory);
+        for (int i = 0; i < count; i++) {
+            atlas.put("thumb" + i, data);
+            try (FileOutputStream out = new FileOutputStream(new File(fileDirectory, "thumb" + i))) {
+                out.write(data);
+            }
+        }
+
+        // Warm up both paths once, then time a full pass over each
+        assertEquals(readFiles(fileDirectory, count, size), readAtlas(atlas, count));
+
+        long start = System.nanoTime();
+        readAtlas(atlas, count);
+        long atlasNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        readFiles(fileDirectory, count, size);
+        long fileNanos = System.nanoTime() - start;
+
+        assertTrue("atlas " + atlasNanos / 1_000_000 + " ms, per-file " + fileNanos / 1_000_000 + " ms",
+                atlasNanos < fileNanos);
+        atlas.close();
+    }
+
+    private static long readAtlas(ThumbnailAtlas atlas, int count) throws IOException {
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            ByteBuffer buffer = atlas.get("thumb" + i);
+            sum += buffer.get(buffer.limit() - 1);  // Touch the data, as a decoder would
+        }
+        return sum;
+    }
+
+    private static long readFiles(File directory, int count, int size) throws IOException {
+        long sum = 0;
+        byte[] buffer = new byte[size];
+        for (int i = 0; i < count; i++) {
+            try (FileInputStream in = new FileInputStream(new File(directory, "thumb" + i))) {
+                int read = in.read(buffer);
+                sum += buffer[read - 1];
+            }
+        }
+        return sum;
+    }
+
+    private static byte[] randomBytes(long seed, int size) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,281 @@
+package com.hattonky.inventory.data.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AuthInterceptorTest {
+
+    // The only token the stand-in server accepts
+    private static final String FRESH_TOKEN = token("fresh", 3600);
+
+    private MockWebServer server;
+    private InMemoryTokenStore tokenStore;
+    private AtomicInteger refreshCalls;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().equals("/api/auth/refresh")) {
+                    return new MockResponse().setBody("{\"token\":\"" + FRESH_TOKEN + "\"}");
+                }
+                boolean valid = ("Bearer " + FRESH_TOKEN).equals(request.getHeader("Authorization"));
+                return new MockResponse().setResponseCode(valid ? 200 : 401);
+            }
+        });
+        server.start();
+        tokenStore = new InMemoryTokenStore();
+        refreshCalls = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    // The exp claim is read from the payload without verifying the signature
+    @Test
+    public void testExpiryIsDecoded() {
+        long expiresAt = Jwt.expiresAt(token("a", 100));
+        long expected = (System.currentTimeMillis() / 1000 + 100) * 1000;
+        assertEquals(expected, expiresAt, 1000);
+        assertEquals(Long.MAX_VALUE, Jwt.expiresAt("not-a-jwt"));
+    }
+
+    // A token about to expire is refreshed before the request is sent
+    @Test
+    public void testRefreshesBeforeExpiry() throws IOException {
+        // Given: A token with 10 seconds left and a 60 second refresh margin
+        tokenStore.setToken(token("stale", 10));
+        OkHttpClient client = newClient(0);
+
+        // When: A request is made
+        int code = execute(client);
+
+        // Then: It went out with the refreshed token, without a 401 first
+        assertEquals(200, code);
+        assertEquals(1, refreshCalls.get());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    // Concurrent 401s share one refresh and are all retried with its token
+    @Test
+    public void testConcurrentUnauthorizedShareOneRefresh() throws Exception {
+        // Given: A token the client thinks is valid but the server has revoked
+        tokenStore.setToken(token("revoked", 3600));
+        OkHttpClient client = newClient(200);
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+
+        // When: Ten requests hit 401 at about the same time
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(executor.submit(() -> execute(client)));
+        }
+
+        // Then: All succeed after a single refresh round-trip
+        for (Future<Integer> result : results) {
+            assertEquals(200, (int) result.get());
+        }
+        assertEquals(1, refreshCalls.get());
+        executor.shutdown();
+    }
+
+    // When the refresh fails the original 401 reaches the caller
+    @Test
+    public void testFailedRefreshSurfacesUnauthorized() throws IOException {
+        tokenStore.setToken(token("revoked", 3600));
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(failingInterceptor())
+                .authenticator(failingInterceptor())
+                .build();
+
+        assertEquals(401, execute(client));
+    }
+
+    // A token the server refused to refresh is not tried again
+    @Test
+    public void testRejectedRefreshIsNotRepeated() throws IOException {
+        tokenStore.setToken(token("revoked", 3600));
+        AuthInterceptor interceptor = new AuthInterceptor(tokenStore, token -> {
+            refreshCalls.incrementAndGet();
+            throw new AuthInterceptor.RejectedException("Session expired");
+        }, AuthInterceptor.DEFAULT_REFRESH_MARGIN_MS, 0);
+        OkHttpClient client = new OkHttpClient.Builder().authenticator(interceptor).addInterceptor(interceptor).build();
+
+        assertEquals(401, execute(client));
+        assertEquals(401, execute(client));
+
+        assertEquals(1, refreshCalls.get());
+    }
+
+    // A refresh that failed on the way, e.g. timed out, is tried again after the backoff
+    @Test
+    public void testFailedRefreshIsRetriedAfterBackoff() throws Exception {
+        // Given: The first refresh times out
+        tokenStore.setToken(token("revoked", 3600));
+        AuthInterceptor interceptor = new AuthInterceptor(tokenStore, token -> {
+            if (refreshCalls.incrementAndGet() == 1) {
+                throw new SocketTimeoutException("timeout");
+            }
+            return FRESH_TOKEN;
+        }, AuthInterceptor.DEFAULT_REFRESH_MARGIN_MS, 200);
+        OkHttpClient client = new OkHttpClient.Builder().authenticator(interceptor).addInterceptor(interceptor).build();
+        assertEquals(401, execute(client));
+
+        // When: Requests are made within the backoff and after it
+        assertEquals(401, execute(client));
+        assertEquals(1, refreshCalls.get());
+        Thread.sleep(250);
+
+        // Then: The refresh is tried again and succeeds
+        assertEquals(200, execute(client));
+        assertEquals(2, refreshCalls.get());
+    }
+
+    // A refresh sent outside the lane goes through even when the callers hold every slot
+    @Test
+    public void testRefreshOutsideLaneWithSaturatedHost() throws Exception {
+        // Given: One slot per host, a long slot wait, and an expired token
+        tokenStore.setToken(token("expired", -60));
+        TrafficLane lane = new TrafficLane("interactive", 16, 1, null, 0, 60_000);
+        OkHttpClient control = new OkHttpClient();
+        OkHttpClient client = newLaneClient(lane, control);
+
+        // When: Several requests need the token at once
+        runConcurrently(client, 6);
+
+        // Then: One refresh served them all, and nobody had to be let in over the cap
+        assertEquals(1, refreshCalls.get());
+        assertEquals(0, lane.getStats().overCap);
+    }
+
+    // A refresh that does queue behind its own caller's slot is let in once the wait runs out
+    @Test
+    public void testRefreshInsideLaneIsLetInOverCap() throws Exception {
+        tokenStore.setToken(token("expired", -60));
+        TrafficLane lane = new TrafficLane("interactive", 16, 1, null, 0, 200);
+        OkHttpClient laned = new OkHttpClient.Builder().addInterceptor(lane).build();
+        OkHttpClient client = newLaneClient(lane, laned);
+
+        runConcurrently(client, 6);
+
+        assertEquals(1, refreshCalls.get());
+        assertTrue(lane.getStats().overCap >= 1);
+    }
+
+    // A client in the given lane whose refresher posts to the server through refreshClient
+    private OkHttpClient newLaneClient(TrafficLane lane, OkHttpClient refreshClient) {
+        AuthInterceptor interceptor = new AuthInterceptor(tokenStore, token -> {
+            refreshCalls.incrementAndGet();
+            Request request = new Request.Builder()
+                    .url(server.url("/api/auth/refresh"))
+                    .post(RequestBody.create(new byte[0], null))
+                    .header("Authorization", "Bearer " + token)
+                    .build();
+            try (Response response = refreshClient.newCall(request).execute()) {
+                assertEquals(200, response.code());
+            }
+            return FRESH_TOKEN;
+        });
+        return new OkHttpClient.Builder()
+                .addInterceptor(lane)
+                .addInterceptor(interceptor)
+                .authenticator(interceptor)
+                .build();
+    }
+
+    // Runs the requests in parallel and checks they all succeed without hanging
+    private void runConcurrently(OkHttpClient client, int requests) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                results.add(executor.submit(() -> execute(client)));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(200, (int) result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private AuthInterceptor failingInterceptor() {
+        return new AuthInterceptor(tokenStore, token -> {
+            throw new IOException("Session expired");
+        });
+    }
+
+    private OkHttpClient newClient(long refreshDelayMs) {
+        AuthInterceptor interceptor = new AuthInterceptor(tokenStore, token -> {
+            refreshCalls.incrementAndGet();
+            try {
+                Thread.sleep(refreshDelayMs);  // Let the other requests pile up behind the refresh
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return FRESH_TOKEN;
+        });
+        return new OkHttpClient.Builder()
+                .addInterceptor(interceptor)
+                .authenticator(interceptor)
+                .build();
+    }
+
+    private int execute(OkHttpClient client) throws IOException {
+        Request request = new Request.Builder().url(server.url("/api/users")).build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.code();
+        }
+    }
+
+    // Builds an unsigned JWT whose exp is the given number of seconds from now
+    private static String token(String subject, long expiresInSeconds) {
+        long exp = System.currentTimeMillis() / 1000 + expiresInSeconds;
+        String payload = "{\"sub\":\"" + subject + "\",\"exp\":" + exp + "}";
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".";
+    }
+
+    private static class InMemoryTokenStore implements TokenStore {
+        private volatile String token;
+
+        @Override
+        public String getToken() {
+            return token;
+        }
+
+        @Override
+        public void setToken(String token) {
+            this.token = token;
+        }
+    }
+}
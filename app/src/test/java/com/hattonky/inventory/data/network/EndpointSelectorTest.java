@@ -0,0 +1,145 @@
+package com.hattonky.inventory.data.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class EndpointSelectorTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final EndpointSelector selector = new EndpointSelector(executor);
+    private final OkHttpClient client = new OkHttpClient.Builder().addInterceptor(selector).build();
+    private MockWebServer lan;
+    private MockWebServer wan;
+
+    @Before
+    public void setUp() throws IOException {
+        lan = newServer("lan", 0);
+        wan = newServer("wan", 0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        lan.shutdown();
+        wan.shutdown();
+    }
+
+    @Test
+    public void testProbeRanksFastestFirst() throws Exception {
+        // Given: The first configured address is slow to answer
+        wan.shutdown();
+        wan = newServer("wan", 150);
+        selector.setCandidates(Arrays.asList(wan.url("/").toString(), lan.url("/").toString()), null);
+        assertEquals(wan.url("/").toString(), selector.getBaseUrl());
+
+        // When: They are probed in the background
+        selector.setCandidates(Arrays.asList(wan.url("/").toString(), lan.url("/").toString()), client);
+        awaitProbe();
+
+        // Then: The fast one is used from now on
+        assertEquals(Arrays.asList(lan.url("/").toString(), wan.url("/").toString()), selector.getStats().ranking);
+        assertEquals(lan.url("/").toString(), selector.getBaseUrl());
+        EndpointSelector.Stats stats = selector.getStats();
+        assertTrue(stats.latencyMs.get(wan.url("/").toString()) >= 150);
+        assertTrue(stats.latencyMs.get(lan.url("/").toString()) < 150);
+
+        // And: Each was asked twice, the second time on the warm connection
+        assertEquals(2, lan.getRequestCount());
+        lan.takeRequest();
+        assertEquals(1, lan.takeRequest().getSequenceNumber());
+    }
+
+    @Test
+    public void testUnreachableCandidateRanksLast() throws Exception {
+        // Given: The LAN mirror is down
+        String down = lan.url("/").toString();
+        lan.shutdown();
+
+        // When: The candidates are probed
+        selector.setCandidates(Arrays.asList(down, wan.url("/").toString()), client);
+        awaitProbe();
+
+        // Then: The WAN endpoint is used
+        assertEquals(wan.url("/").toString(), selector.getBaseUrl());
+        assertEquals(-1L, (long) selector.getStats().latencyMs.get(down));
+    }
+
+    @Test
+    public void testFailsOverAndResendsCall() throws IOException {
+        // Given: Calls go to the LAN mirror, which then goes away
+        selector.setCandidates(Arrays.asList(lan.url("/").toString(), wan.url("/").toString()), null);
+        lan.shutdown();
+
+        // When: A change is posted to it
+        Request request = new Request.Builder()
+                .url(selector.getBaseUrl() + "api/sync/changes")
+                .post(RequestBody.create("{}", MediaType.get("application/json")))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            // Then: It reaches the WAN endpoint, as the first attempt never got through
+            assertEquals("wan", response.body().string());
+        }
+        assertEquals("/api/sync/changes", wan.takeRequest(1, TimeUnit.SECONDS).getPath());
+
+        // And: Later calls go there directly
+        assertEquals(wan.url("/").toString(), selector.getBaseUrl());
+        assertEquals(1, selector.getStats().failovers);
+    }
+
+    @Test
+    public void testNoFailoverWithoutAlternative() throws IOException {
+        selector.setCandidates(Arrays.asList(lan.url("/").toString()), null);
+        String base = selector.getBaseUrl();
+        lan.shutdown();
+
+        try (Response ignored = client.newCall(new Request.Builder().url(base + "api/users").build()).execute()) {
+            throw new AssertionError("Expected the call to fail");
+        } catch (IOException expected) {
+        }
+        assertEquals(base, selector.getBaseUrl());
+        assertEquals(0, selector.getStats().failovers);
+    }
+
+    private void awaitProbe() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (selector.getStats().probes == 0) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timed out");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    // Answers every request with its name, after the given delay
+    private static MockWebServer newServer(String name, long delayMs) throws IOException {
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setHeadersDelay(delayMs, TimeUnit.MILLISECONDS).setBody(name);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,138 @@
+package com.hattonky.inventory.data.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+
+public class GzipRequestInterceptorTest {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private MockWebServer server;
+    private GzipRequestInterceptor interceptor;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        interceptor = new GzipRequestInterceptor(100);
+        client = new OkHttpClient.Builder().addInterceptor(interceptor).build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void testCompressesOnlyAfterServerAcceptsGzip() throws Exception {
+        String body = largeBody();
+        server.enqueue(new MockResponse().setHeader("Accept-Encoding", "gzip, deflate"));
+        server.enqueue(new MockResponse());
+
+        // When: The same body is posted before and after the server has announced gzip
+        post(body);
+        post(body);
+
+        // Then: The first goes as is, the second compressed, and both decode to the same text
+        RecordedRequest first = server.takeRequest();
+        assertNull(first.getHeader("Content-Encoding"));
+        RecordedRequest second = server.takeRequest();
+        assertEquals("gzip", second.getHeader("Content-Encoding"));
+        assertEquals(body, gunzip(second.getBody()));
+        assertEquals(1, interceptor.getStats().compressed);
+        assertEquals(second.getBodySize(), interceptor.getStats().bytesAfter);
+    }
+
+    @Test
+    public void testSmallBodiesAreNotCompressed() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Accept-Encoding", "gzip"));
+        server.enqueue(new MockResponse());
+
+        post(largeBody());
+        post("{\"role\":\"admin\"}");
+
+        server.takeRequest();
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void testRejectedGzipIsResentPlainAndNotUsedAgain() throws Exception {
+        String body = largeBody();
+        server.enqueue(new MockResponse().setHeader("Accept-Encoding", "gzip"));
+        server.enqueue(new MockResponse().setResponseCode(415));
+        server.enqueue(new MockResponse().setHeader("Accept-Encoding", "gzip"));
+        server.enqueue(new MockResponse());
+
+        // When: A compressed body is rejected
+        post(body);
+        try (Response response = post(body)) {
+            assertEquals(200, response.code());
+        }
+        post(body);
+
+        // Then: It was resent as is, and so is the next one
+        server.takeRequest();
+        assertEquals("gzip", server.takeRequest().getHeader("Content-Encoding"));
+        assertEquals(body, server.takeRequest().getBody().readUtf8());
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+        assertEquals(0, interceptor.getStats().compressed);
+    }
+
+    @Test
+    public void testGzipResponsesAreDecompressedTransparently() throws Exception {
+        Buffer gzipped = new Buffer();
+        try (BufferedSink sink = Okio.buffer(new GzipSink(gzipped))) {
+            sink.writeUtf8(largeBody());
+        }
+        server.enqueue(new MockResponse().setHeader("Content-Encoding", "gzip").setBody(gzipped));
+
+        try (Response response = client.newCall(new Request.Builder().url(server.url("/api/users")).build()).execute()) {
+            assertEquals(largeBody(), response.body().string());
+        }
+        assertEquals("gzip", server.takeRequest().getHeader("Accept-Encoding"));
+    }
+
+    private Response post(String body) throws IOException {
+        Response response = client.newCall(new Request.Builder()
+                .url(server.url("/api/sync/changes"))
+                .post(RequestBody.create(body, JSON))
+                .build()).execute();
+        response.close();
+        return response;
+    }
+
+    private static String gunzip(Buffer body) throws IOException {
+        return Okio.buffer(new GzipSource(body)).readUtf8();
+    }
+
+    private static String largeBody() {
+        StringBuilder json = new StringBuilder("{\"changes\":[");
+        for (int i = 0; i < 50; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"type\":\"item\",\"op\":\"upsert\",\"data\":{\"id\":").append(i)
+                    .append(",\"quantity\":").append(i).append("}}");
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,185 @@
+package com.hattonky.inventory.data.network;
+
+import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.User;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class JsonDecodersTest {
+
+    // Users decode field by field; unknown fields are skipped and missing ones become ""
+    @Test
+    public void testDecodesUsers() throws IOException {
+        String json = "[{\"id\":7,\"username\":\"ann\",\"email\":\"ann@example.com\",\"role\":\"admin\","
+                + "\"address\":{\"street\":\"Main\"},\"tags\":[1,2]},"
+                + "{\"id\":\"8\",\"username\":\"bob\",\"email\":null}]";
+
+        List<User> users = JsonDecoders.decode(new StringReader(json), JsonDecoders.USERS);
+
+        assertEquals(2, users.size());
+        assertEquals("7", users.get(0).getId());
+        assertEquals("admin", users.get(0).getRole());
+        assertEquals("8", users.get(1).getId());
+        assertEquals("", users.get(1).getEmail());
+        assertEquals("", users.get(1).getRole());
+    }
+
+    // Items keep null fields as null, like rows created locally
+    @Test
+    public void testDecodesItems() throws IOException {
+        String json = "[{\"id\":3,\"name\":\"Drill\",\"description\":\"18V\",\"category\":\"Tools\",\"imagePath\":null}]";
+
+        List<Item> items = JsonDecoders.decode(new StringReader(json), JsonDecoders.ITEMS);
+
+        assertEquals(1, items.size());
+        assertEquals(3, items.get(0).getId());
+        assertEquals("Drill", items.get(0).getName());
+        assertEquals("Tools", items.get(0).getCategory());
+        assertNull(items.get(0).getImagePath());
+    }
+
+    // A body of the wrong shape is reported as an IOException, not a runtime exception
+    @Test(expected = IOException.class)
+    public void testWrongShapeIsIOException() throws IOException {
+        JsonDecoders.decode(new StringReader("{\"users\":[]}"), JsonDecoders.USERS);
+    }
+
+    // Benchmark: body string + org.json tree (old path) vs. streaming decode, for users and items.
+    // Opt-in: run with -Pbenchmark
+    @Test
+    public void benchmarkStreamingVersusTree() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        byte[] users = usersPayload(10_000);
+        byte[] items = itemsPayload(100_000);
+
+        // Warm up both paths
+        decodeUsersWithTree(users);
+        JsonDecoders.decode(reader(users), JsonDecoders.USERS);
+        decodeItemsWithTree(items);
+        JsonDecoders.decode(reader(items), JsonDecoders.ITEMS);
+
+        assertCheaper(measure(() -> decodeUsersWithTree(users)),
+                measure(() -> JsonDecoders.decode(reader(users), JsonDecoders.USERS)));
+        assertCheaper(measure(() -> decodeItemsWithTree(items)),
+                measure(() -> JsonDecoders.decode(reader(items), JsonDecoders.ITEMS)));
+    }
+
+    private interface Decode {
+        List<?> run() throws Exception;
+    }
+
+    // Returns {elapsed nanos, allocated bytes (or -1 if unsupported)}
+    private static long[] measure(Decode decode) throws Exception {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        List<?> result = decode.run();
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+        if (result.isEmpty()) {
+            throw new AssertionError("Nothing decoded");
+        }
+        return new long[]{elapsed, allocated};
+    }
+
+    // Streaming skips the body string and the tree, so it allocates less, or at least runs faster
+    // where allocation can't be measured
+    private static void assertCheaper(long[] tree, long[] streaming) {
+        if (tree[1] >= 0) {
+            assertTrue(streaming[1] < tree[1]);
+        } else {
+            assertTrue(streaming[0] < tree[0]);
+        }
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    // What the callbacks did before: the whole body as a String, then a JSONArray, then models
+    private static List<User> decodeUsersWithTree(byte[] payload) throws IOException, JSONException {
+        JSONArray arr = new JSONArray(readString(new ByteArrayInputStream(payload)));
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < arr.length(); i++) {
+            JSONObject obj = arr.getJSONObject(i);
+            users.add(new User(obj.optString("id"), obj.optString("username"),
+                    obj.optString("email"), obj.optString("role"), 0));
+        }
+        return users;
+    }
+
+    private static List<Item> decodeItemsWithTree(byte[] payload) throws IOException, JSONException {
+        JSONArray arr = new JSONArray(readString(new ByteArrayInputStream(payload)));
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < arr.length(); i++) {
+            JSONObject obj = arr.getJSONObject(i);
+            Item item = new Item(obj.optString("name"), obj.optString("description"),
+                    obj.optString("category"), obj.optString("imagePath", null));
+            item.setId(obj.optInt("id"));
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static String readString(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static InputStreamReader reader(byte[] payload) {
+        return new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] usersPayload(int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":\"user_").append(i)
+                    .append("\",\"username\":\"user").append(i)
+                    .append("\",\"email\":\"user").append(i).append("@example.com\"")
+                    .append(",\"role\":\"").append(i % 10 == 0 ? "admin" : "user")
+                    .append("\",\"country\":\"USA\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] itemsPayload(int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":").append(i)
+                    .append(",\"name\":\"Item ").append(i)
+                    .append("\",\"description\":\"Description of item ").append(i)
+                    .append("\",\"category\":\"Category ").append(i % 50)
+                    .append("\",\"imagePath\":\"file:///storage/Inventory/IMG_").append(i).append(".webp\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,174 @@
+package com.hattonky.inventory.data.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+
+public class NetworkMetricsTest {
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private final NetworkMetrics metrics = new NetworkMetrics();
+
+    @Before
+    public void setUp() throws IOException {
+        // HTTPS stand-in server, so calls have a TLS phase
+        String localhost = InetAddress.getByName("localhost").getCanonicalHostName();
+        HeldCertificate certificate = new HeldCertificate.Builder()
+                .addSubjectAlternativeName(localhost)
+                .build();
+        server = new MockWebServer();
+        server.useHttps(new HandshakeCertificates.Builder().heldCertificate(certificate).build().sslSocketFactory(),
+                false);
+        server.start();
+
+        HandshakeCertificates trusted = new HandshakeCertificates.Builder()
+                .addTrustedCertificate(certificate.certificate())
+                .build();
+        client = new OkHttpClient.Builder()
+                .sslSocketFactory(trusted.sslSocketFactory(), trusted.trustManager())
+                .eventListenerFactory(metrics)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void testRecordsPhasesPerEndpoint() throws Exception {
+        // Given: The server takes 100 ms before answering
+        String body = "{\"uploadId\":\"1\"}";
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setHeadersDelay(100, TimeUnit.MILLISECONDS).setBody(body));
+        }
+
+        // When: Three uploads are looked up on one connection
+        get("/api/uploads/3f2a9c1b4d5e6f708192a3b4c5d6e7f8");
+        get("/api/uploads/9c1b3f2a4d5e6f708192a3b4c5d6e7f8");
+        get("/api/uploads/17");
+
+        // Then: They share one endpoint, and only the first call connected
+        List<NetworkMetrics.EndpointStats> snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.size());
+        NetworkMetrics.EndpointStats stats = snapshot.get(0);
+        assertEquals("GET /api/uploads/{id}", stats.endpoint);
+        assertEquals(3, stats.calls);
+        assertEquals(0, stats.failures);
+        assertEquals(1, stats.connects);
+        assertEquals(1, stats.phases.get(NetworkMetrics.Phase.CONNECT).count);
+        assertEquals(1, stats.phases.get(NetworkMetrics.Phase.TLS).count);
+
+        // And: The wait for the server shows up as time to first byte
+        NetworkMetrics.Percentiles ttfb = stats.phases.get(NetworkMetrics.Phase.TTFB);
+        assertEquals(3, ttfb.count);
+        assertTrue("TTFB p50 " + ttfb.p50, ttfb.p50 >= 100);
+        assertEquals(3, stats.phases.get(NetworkMetrics.Phase.BODY).count);
+        assertTrue(stats.phases.get(NetworkMetrics.Phase.TOTAL).p50 >= ttfb.p50);
+        assertTrue(stats.bytesReceived > 3 * body.length());
+        assertTrue(stats.bytesSent > 0);
+    }
+
+    @Test
+    public void testCountsFailedCalls() throws Exception {
+        // Given: Nothing listens on the server's port
+        HttpUrl url = server.url("/api/users");
+        server.shutdown();
+
+        // When: A call is made
+        try (Response ignored = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            throw new AssertionError("Expected the call to fail");
+        } catch (IOException expected) {
+        }
+
+        // Then: It is counted as a failure, without a response phase
+        NetworkMetrics.EndpointStats stats = metrics.snapshot().get(0);
+        assertEquals("GET /api/users", stats.endpoint);
+        assertEquals(1, stats.failures);
+        assertEquals(0, stats.connects);
+        assertNull(stats.phases.get(NetworkMetrics.Phase.TTFB));
+        assertEquals(1, stats.phases.get(NetworkMetrics.Phase.TOTAL).count);
+    }
+
+    @Test
+    public void testPercentilesFollowTheWindow() {
+        NetworkMetrics.Histogram histogram = new NetworkMetrics.Histogram(100);
+
+        // When: 1 to 100 ms are recorded
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.add(TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+
+        // Then: Percentiles are by nearest rank
+        NetworkMetrics.Percentiles percentiles = histogram.percentiles();
+        assertEquals(100, percentiles.count);
+        assertEquals(50, percentiles.p50, 0.001);
+        assertEquals(90, percentiles.p90, 0.001);
+        assertEquals(99, percentiles.p99, 0.001);
+        assertEquals(100, percentiles.max, 0.001);
+
+        // When: Another 100 samples of 500 ms arrive
+        for (int i = 0; i < 100; i++) {
+            histogram.add(TimeUnit.MILLISECONDS.toNanos(500));
+        }
+
+        // Then: The older samples have rolled out of the window
+        assertEquals(500, histogram.percentiles().p50, 0.001);
+        assertEquals(100, histogram.percentiles().count);
+    }
+
+    @Test
+    public void testEndpointTemplates() {
+        assertEquals("GET /api/users", NetworkMetrics.endpointOf("GET", HttpUrl.get("https://h/api/users?page=2")));
+        assertEquals("PUT /api/users/{id}", NetworkMetrics.endpointOf("PUT", HttpUrl.get("https://h/api/users/42")));
+        assertEquals("GET /api/v2/items/{id}/images", NetworkMetrics.endpointOf("GET",
+                HttpUrl.get("https://h/api/v2/items/0b9e6b1c-8f43-4f2e-9d3a-2c1f0e9d8c7b/images")));
+        assertEquals("GET /api/sync/feed", NetworkMetrics.endpointOf("GET", HttpUrl.get("https://h/api/sync/feed")));
+    }
+
+    @Test
+    public void testExportsAtMostOncePerPeriod() throws Exception {
+        List<List<NetworkMetrics.EndpointStats>> exports = new ArrayList<>();
+        metrics.setExporter(exports::add, 200);
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse());
+        }
+
+        // When: A call ends within the first period, and two more right after it has passed
+        get("/api/users");
+        Thread.sleep(250);
+        get("/api/users");
+        get("/api/users");
+
+        // Then: One snapshot was exported, taken when the second call ended
+        assertEquals(1, exports.size());
+        assertEquals(2, exports.get(0).get(0).calls);
+    }
+
+    private void get(String path) throws IOException {
+        try (Response response = client.newCall(new Request.Builder().url(server.url(path)).build()).execute()) {
+            assertEquals(200, response.code());
+            response.body().string();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.hattonky.inventory.data.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetryInterceptorTest {
+
+    private MockWebServer server;
+    private CircuitBreaker breaker;
+    private RetryInterceptor interceptor;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        breaker = new CircuitBreaker(3, 300);
+        interceptor = new RetryInterceptor(breaker, 3, 10, 100, new Random(42));
+        client = new OkHttpClient.Builder()
+                .retryOnConnectionFailure(false)  // Leave connection retries to the interceptor
+                .addInterceptor(interceptor)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    // Transient server errors and dropped connections are retried until a GET succeeds
+    @Test
+    public void testGetRetriedThroughFaults() throws IOException {
+        // Given: A server that fails twice in different ways before answering
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        // When: Make one call
+        try (Response response = client.newCall(get()).execute()) {
+            // Then: The caller only sees the success
+            assertEquals(200, response.code());
+            assertEquals("ok", response.body().string());
+        }
+        assertEquals(3, server.getRequestCount());
+        assertEquals(2, interceptor.getRetryCount());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(host()));
+    }
+
+    // Client errors are final and not retried
+    @Test
+    public void testClientErrorNotRetried() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        try (Response response = client.newCall(get()).execute()) {
+            assertEquals(404, response.code());
+        }
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, interceptor.getRetryCount());
+    }
+
+    // A POST could be applied twice, so it is only retried when it carries an idempotency key
+    @Test
+    public void testPostRetriedOnlyWithIdempotencyKey() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        try (Response response = client.newCall(post(null)).execute()) {
+            assertEquals(503, response.code());
+        }
+        assertEquals(1, server.getRequestCount());
+
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("ok"));
+        try (Response response = client.newCall(post("key-1")).execute()) {
+            assertEquals(200, response.code());
+        }
+        assertEquals(3, server.getRequestCount());
+    }
+
+    // Retries stop at the limit and the last answer is returned
+    @Test
+    public void testGivesUpAfterMaxRetries() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+        }
+        RetryInterceptor lenient = new RetryInterceptor(new CircuitBreaker(100, 300), 3, 10, 100, new Random(1));
+        OkHttpClient lenientClient = new OkHttpClient.Builder().addInterceptor(lenient).build();
+
+        try (Response response = lenientClient.newCall(get()).execute()) {
+            assertEquals(500, response.code());
+        }
+        assertEquals(4, server.getRequestCount());
+    }
+
+    // A failing host trips the circuit; calls then fail fast until a probe succeeds
+    @Test
+    public void testCircuitOpensAndRecovers() throws Exception {
+        // Given: A host that keeps failing
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+
+        // When: One call exhausts the threshold of three failures
+        try {
+            client.newCall(get()).execute().close();
+            fail("Expected the circuit to open before the last retry");
+        } catch (CircuitBreaker.OpenException expected) {
+            // The fourth attempt was refused locally
+        }
+        assertEquals(3, server.getRequestCount());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(host()));
+
+        // Then: Further calls fail at once without reaching the server
+        long start = System.nanoTime();
+        try {
+            client.newCall(get()).execute().close();
+            fail("Expected a fast failure");
+        } catch (CircuitBreaker.OpenException expected) {
+            assertTrue((System.nanoTime() - start) / 1_000_000 < 50);
+        }
+        assertEquals(3, server.getRequestCount());
+        assertEquals(1, breaker.getStats().opened);
+        assertTrue(breaker.getStats().rejected >= 2);
+
+        // When: The open period passes and the host has recovered
+        Thread.sleep(350);
+        server.enqueue(new MockResponse().setBody("ok"));
+        server.enqueue(new MockResponse().setBody("ok"));
+        try (Response response = client.newCall(get()).execute()) {
+            // Then: The probe goes through and closes the circuit
+            assertEquals(200, response.code());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(host()));
+    }
+
+    // A failed probe reopens the circuit for another period
+    @Test
+    public void testFailedProbeReopens() throws Exception {
+        CircuitBreaker single = new CircuitBreaker(1, 100);
+        single.onFailure("h");
+        assertEquals(CircuitBreaker.State.OPEN, single.getState("h"));
+
+        Thread.sleep(150);
+        single.acquire("h");  // Probe
+        assertEquals(CircuitBreaker.State.HALF_OPEN, single.getState("h"));
+        try {
+            single.acquire("h");
+            fail("Only one probe at a time");
+        } catch (CircuitBreaker.OpenException expected) {
+            // Second caller refused while probing
+        }
+        single.onFailure("h");
+        assertEquals(CircuitBreaker.State.OPEN, single.getState("h"));
+        assertEquals(2, single.getStats().opened);
+    }
+
+    // A 429 means the host is up but throttling: it is retried after Retry-After and never trips the circuit
+    @Test
+    public void testRateLimitDoesNotTripCircuit() throws IOException {
+        // Given: A host that rate-limits every attempt
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        }
+
+        // When: One call retries past the failure threshold
+        try (Response response = client.newCall(get()).execute()) {
+            assertEquals(429, response.code());
+        }
+
+        // Then: The circuit stays closed
+        assertEquals(4, server.getRequestCount());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(host()));
+    }
+
+    // A Retry-After longer than the maximum delay is honoured by returning instead of retrying early
+    @Test
+    public void testLongRetryAfterNotRetried() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "120"));
+
+        try (Response response = client.newCall(get()).execute()) {
+            assertEquals(429, response.code());
+            assertEquals("120", response.header("Retry-After"));
+        }
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, interceptor.getRetryCount());
+    }
+
+    // Delays grow exponentially, stay under the cap, and follow Retry-After when present
+    @Test
+    public void testBackoffWithJitter() {
+        RetryInterceptor backoff = new RetryInterceptor(breaker, 5, 100, 1000, new Random(7));
+        for (int attempt = 0; attempt < 6; attempt++) {
+            long cap = Math.min(1000, 100L << attempt);
+            for (int i = 0; i < 50; i++) {
+                long delay = backoff.delay(attempt, null);
+                assertTrue(delay >= 0 && delay < cap);
+            }
+        }
+        assertEquals(0, backoff.delay(3, " 0 "));
+        assertEquals(1000, backoff.delay(0, "1"));
+        assertEquals(-1, backoff.delay(0, "120"));  // Longer than the maximum delay: don't retry
+    }
+
+    private Request get() {
+        return new Request.Builder().url(server.url("/api/users")).build();
+    }
+
+    private Request post(String idempotencyKey) {
+        Request.Builder builder = new Request.Builder()
+                .url(server.url("/api/items"))
+                .post(RequestBody.create("{}", MediaType.get("application/json")));
+        if (idempotencyKey != null) {
+            builder.header(RetryInterceptor.IDEMPOTENCY_KEY, idempotencyKey);
+        }
+        return builder.build();
+    }
+
+    private String host() {
+        return server.getHostName() + ":" + server.getPort();
+    }
+}
@@ -0,0 +1,214 @@
+package com.hattonky.inventory.data.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.BufferedSink;
+
+public class TrafficLaneTest {
+
+    private MockWebServer server;
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final List<String> finished = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        // Every request takes as long as its "delay" query parameter says
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                String delay = request.getRequestUrl().queryParameter("delay");
+                Thread.sleep(delay != null ? Long.parseLong(delay) : 0);
+                inFlight.decrementAndGet();
+                finished.add(request.getRequestUrl().encodedPath());
+                return new MockResponse();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        threads.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void testPerHostCapQueuesTheRest() throws Exception {
+        TrafficLane lane = new TrafficLane("background", 4, 2);
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(lane).build();
+
+        // When: Six slow calls to one host are made at once
+        List<Future<?>> calls = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            calls.add(threads.submit(() -> get(client, "/api/sync/changes?delay=100")));
+        }
+        for (Future<?> call : calls) {
+            call.get(5, TimeUnit.SECONDS);
+        }
+
+        // Then: The server never sees more than two, and the others waited their turn
+        assertEquals(2, maxInFlight.get());
+        TrafficLane.Stats stats = lane.getStats();
+        assertEquals(6, stats.admitted);
+        assertEquals(4, stats.waited);
+        assertTrue(stats.maxWaitNanos >= TimeUnit.MILLISECONDS.toNanos(150));
+        assertEquals(0, stats.active);
+        assertEquals(0, stats.queued);
+    }
+
+    @Test
+    public void testBackgroundWaitsForInteractiveCall() throws Exception {
+        TrafficLane interactive = new TrafficLane("interactive", 16, 6);
+        TrafficLane background = new TrafficLane("background", 4, 2, interactive, 5000);
+        OkHttpClient foreground = new OkHttpClient.Builder().addInterceptor(interactive).build();
+        OkHttpClient sync = new OkHttpClient.Builder().addInterceptor(background).build();
+
+        // When: A sync starts while a login is in flight
+        Future<?> login = threads.submit(() -> get(foreground, "/auth/login?delay=300"));
+        awaitInFlight();
+        get(sync, "/api/sync/changes");
+        login.get(5, TimeUnit.SECONDS);
+
+        // Then: The sync was only sent after the login finished
+        assertEquals("/auth/login", finished.get(0));
+        assertEquals("/api/sync/changes", finished.get(1));
+        assertEquals(1, background.getStats().yields);
+        assertTrue(background.getStats().maxWaitNanos >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void testUploadPausesWhileInteractiveCallRuns() throws Exception {
+        TrafficLane interactive = new TrafficLane("interactive", 16, 6);
+        TrafficLane background = new TrafficLane("background", 4, 2, interactive, 5000);
+        OkHttpClient foreground = new OkHttpClient.Builder().addInterceptor(interactive).build();
+        OkHttpClient uploads = new OkHttpClient.Builder().addInterceptor(background).build();
+        List<Long> writeTimes = Collections.synchronizedList(new ArrayList<>());
+
+        // When: A login starts while an upload is sending its body
+        Future<?> upload = threads.submit(() -> {
+            Request request = new Request.Builder()
+                    .url(server.url("/api/uploads/1"))
+                    .put(new SlowBody(writeTimes))
+                    .build();
+            try (Response response = uploads.newCall(request).execute()) {
+                return response.code();
+            }
+        });
+        Thread.sleep(60);
+        get(foreground, "/auth/login?delay=300");
+        upload.get(5, TimeUnit.SECONDS);
+
+        // Then: The body stopped for about as long as the login took
+        long longestGap = 0;
+        for (int i = 1; i < writeTimes.size(); i++) {
+            longestGap = Math.max(longestGap, writeTimes.get(i) - writeTimes.get(i - 1));
+        }
+        assertTrue("Longest gap " + longestGap + " ms", longestGap >= 250);
+        assertTrue(background.getStats().yields >= 1);
+    }
+
+    @Test
+    public void testUploadPausesAtMostMaxYieldInTotal() throws Exception {
+        TrafficLane interactive = new TrafficLane("interactive", 16, 6);
+        TrafficLane background = new TrafficLane("background", 4, 2, interactive, 100);
+        OkHttpClient foreground = new OkHttpClient.Builder().addInterceptor(interactive).build();
+        OkHttpClient uploads = new OkHttpClient.Builder().addInterceptor(background).build();
+        List<Long> writeTimes = Collections.synchronizedList(new ArrayList<>());
+
+        // Given: A long interactive call is in flight
+        Future<?> report = threads.submit(() -> get(foreground, "/api/reports?delay=2000"));
+        awaitInFlight();
+
+        // When: An upload of 20 writes is sent meanwhile
+        long start = System.currentTimeMillis();
+        Request request = new Request.Builder()
+                .url(server.url("/api/uploads/1"))
+                .put(new SlowBody(writeTimes))
+                .build();
+        try (Response response = uploads.newCall(request).execute()) {
+            assertEquals(200, response.code());
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        report.get(5, TimeUnit.SECONDS);
+
+        // Then: It paused for one budget, not once per write, and finished before the call
+        assertTrue("Upload took " + elapsed + " ms", elapsed < 1000);
+        assertEquals(20, writeTimes.size());
+        assertEquals("/api/uploads/1", finished.get(0));
+    }
+
+    private Void get(OkHttpClient client, String path) throws IOException {
+        try (Response response = client.newCall(new Request.Builder().url(server.url(path)).build()).execute()) {
+            assertEquals(200, response.code());
+        }
+        return null;
+    }
+
+    private void awaitInFlight() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (inFlight.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    // Writes 20 segments of 8 KB, 10 ms apart, noting when each write got through
+    private static class SlowBody extends RequestBody {
+        private final List<Long> writeTimes;
+
+        SlowBody(List<Long> writeTimes) {
+            this.writeTimes = writeTimes;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return MediaType.get("application/octet-stream");
+        }
+
+        @Override
+        public long contentLength() {
+            return 20 * 8192;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            byte[] segment = new byte[8192];
+            for (int i = 0; i < 20; i++) {
+                sink.write(segment);
+                writeTimes.add(System.currentTimeMillis());
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.hattonky.inventory.data.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.hattonky.inventory.data.databases.AppDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+public class ChangeFeedTest {
+
+    private MockWebServer server;
+    private final FeedServer feedServer = new FeedServer();
+    private final OkHttpClient client = new OkHttpClient();
+    private final List<List<ChangePage>> batches = Collections.synchronizedList(new ArrayList<>());
+    private ChangeFeed feed;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(feedServer);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (feed != null) {
+            feed.stop();
+        }
+        server.shutdown();
+    }
+
+    @Test
+    public void testBurstIsAppliedInOneTransaction() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        AppDatabase database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        SharedPreferences prefs = context.getSharedPreferences("change-feed-test", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+        DeltaSync deltaSync = new DeltaSync(database, (cursor, limit) -> {
+            throw new IOException("Not used");
+        }, prefs, Runnable::run, DeltaSync.DEFAULT_PAGE_SIZE);
+        try {
+            // Given: Twenty items changed on the server at once
+            for (int i = 1; i <= 20; i++) {
+                feedServer.log.add(item("i" + i, "Item " + i));
+            }
+            feedServer.script.add(20);
+
+            // When: The feed connects
+            feed = new ChangeFeed(this::newCall, new ChangeFeed.Sink() {
+                @Override
+                public String getCursor() {
+                    return deltaSync.getCursor();
+                }
+
+                @Override
+                public void apply(List<ChangePage> batch) {
+                    deltaSync.applyBatch(batch);
+                }
+            }, Executors.newSingleThreadExecutor(), Executors.newSingleThreadScheduledExecutor(),
+                    200, 60_000, 60_000);
+            feed.start();
+            await(() -> feed.getBatchesApplied() == 1);
+
+            // Then: All twenty land in one batch and the cursor moves past them
+            assertEquals(20, feed.getEventsReceived());
+            assertEquals(20, deltaSync.getChangesApplied());
+            assertEquals("Item 20", database.itemDao().getByUid("i20").getName());
+            assertEquals("20", deltaSync.getCursor());
+            assertNull(server.takeRequest().getHeader("Last-Event-ID"));
+        } finally {
+            feed.stop();
+            database.close();
+        }
+    }
+
+    @Test
+    public void testReconnectsAndResumesAfterLastEvent() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            feedServer.log.add(item("i" + i, "Item " + i));
+        }
+        feedServer.script.add(3);    // Three events, then the connection ends
+        feedServer.script.add(-503);  // The server is briefly unavailable
+        feedServer.script.add(5);    // The rest
+
+        feed = newFeed(null);
+        feed.start();
+        await(() -> feed.getEventsReceived() == 5 && feed.getBatchesApplied() == 2);
+
+        // Then: Each reconnect continues after the last event received
+        assertNull(server.takeRequest().getRequestUrl().queryParameter("since"));
+        RecordedRequest second = server.takeRequest();
+        assertEquals("3", second.getHeader("Last-Event-ID"));
+        assertEquals("3", second.getRequestUrl().queryParameter("since"));
+        assertEquals("3", server.takeRequest().getHeader("Last-Event-ID"));
+        assertEquals(2, feed.getConnects());
+
+        // And: Every event arrives once, with its ID as the cursor
+        List<String> cursors = new ArrayList<>();
+        for (List<ChangePage> batch : batches) {
+            for (ChangePage page : batch) {
+                cursors.add(page.cursor);
+            }
+        }
+        assertEquals(Arrays.asList("1", "2", "3", "4", "5"), cursors);
+    }
+
+    @Test
+    public void testFailedBatchIsReceivedAgain() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            feedServer.log.add(item("i" + i, "Item " + i));
+        }
+        feedServer.script.add(3);
+        feedServer.script.add(3);
+
+        // Given: A sink that fails the first batch
+        AtomicBoolean fail = new AtomicBoolean(true);
+        feed = new ChangeFeed(this::newCall, new ChangeFeed.Sink() {
+            @Override
+            public String getCursor() {
+                return null;
+            }
+
+            @Override
+            public void apply(List<ChangePage> batch) {
+                if (fail.getAndSet(false)) {
+                    throw new IllegalStateException("Database busy");
+                }
+                batches.add(batch);
+            }
+        }, Executors.newSingleThreadExecutor(), Executors.newSingleThreadScheduledExecutor(), 50, 500, 1000);
+        feed.start();
+        await(() -> feed.getBatchesApplied() == 1);
+
+        // Then: The reconnect resumes from the last applied event, not the last received one
+        server.takeRequest();
+        assertNull(server.takeRequest().getHeader("Last-Event-ID"));
+        List<String> cursors = new ArrayList<>();
+        for (ChangePage page : batches.get(0)) {
+            cursors.add(page.cursor);
+        }
+        assertEquals(Arrays.asList("1", "2", "3"), cursors);
+    }
+
+    @Test
+    public void testResumesFromSinkCursorAndBacksOff() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            feedServer.script.add(-503);
+        }
+
+        feed = newFeed("42");
+        feed.start();
+        await(() -> feedServer.requestTimes.size() == 5);
+
+        // Then: The first connection starts at the stored cursor
+        assertEquals("42", server.takeRequest().getHeader("Last-Event-ID"));
+
+        // And: The wait between attempts grows (equal jitter: 50-100, 100-200, 200-400 ms)
+        List<Long> times = feedServer.requestTimes;
+        long first = times.get(1) - times.get(0);
+        long third = times.get(3) - times.get(2);
+        assertTrue("First wait " + first + " ms", first >= 50);
+        assertTrue("Third wait " + third + " ms", third >= 200);
+        assertTrue(third > first);
+    }
+
+    private ChangeFeed newFeed(String cursor) {
+        return new ChangeFeed(this::newCall, new ChangeFeed.Sink() {
+            @Override
+            public String getCursor() {
+                return cursor;
+            }
+
+            @Override
+            public void apply(List<ChangePage> batch) {
+                batches.add(batch);
+            }
+        }, Executors.newSingleThreadExecutor(), Executors.newSingleThreadScheduledExecutor(), 50, 100, 1000);
+    }
+
+    private Call newCall(String lastEventId) {
+        Request.Builder request = new Request.Builder().header("Accept", "text/event-stream");
+        HttpUrl.Builder url = server.url("/api/sync/feed").newBuilder();
+        if (lastEventId != null) {
+            url.addQueryParameter("since", lastEventId);
+            request.header("Last-Event-ID", lastEventId);
+        }
+        return client.newCall(request.url(url.build()).build());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timed out");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static JSONObject item(String uid, String name) throws Exception {
+        return new JSONObject().put("uid", uid).put("version", 1).put("name", name);
+    }
+
+    /**
+     * Stand-in for the change feed. {@link #log} holds one item per event, with its position
+     * (from 1) as the event ID. Each connection follows the next {@link #script} entry: send the
+     * events up to that ID and end the stream, or fail with the negated status code. Once the
+     * script runs out, connections stay open without an answer.
+     */
+    static class FeedServer extends Dispatcher {
+        final List<JSONObject> log = new ArrayList<>();
+        final List<Integer> script = new ArrayList<>();
+        final List<Long> requestTimes = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public synchronized MockResponse dispatch(RecordedRequest request) {
+            requestTimes.add(System.currentTimeMillis());
+            if (script.isEmpty()) {
+                return new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE);
+            }
+            int step = script.remove(0);
+            if (step < 0) {
+                return new MockResponse().setResponseCode(-step);
+            }
+            String since = request.getRequestUrl().queryParameter("since");
+            StringBuilder body = new StringBuilder(": connected\n\n");
+            for (int id = since != null ? Integer.parseInt(since) + 1 : 1; id <= step; id++) {
+                String data;
+                try {
+                    data = new JSONObject().put("items", new JSONArray().put(log.get(id - 1))).toString();
+                } catch (JSONException e) {
+                    return new MockResponse().setResponseCode(500);
+                }
+                body.append("id: ").append(id).append('\n')
+                        .append("event: change\n")
+                        .append("data: ").append(data).append("\n\n");
+            }
+            return new MockResponse()
+                    .setHeader("Content-Type", "text/event-stream")
+                    .setBody(body.toString());
+        }
+    }
+}
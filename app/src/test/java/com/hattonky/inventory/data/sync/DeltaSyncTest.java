@@ -0,0 +1,288 @@
+package com.hattonky.inventory.data.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.hattonky.inventory.data.databases.AppDatabase;
+import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.OutboxEntry;
+import com.hattonky.inventory.data.model.SyncConflict;
+import com.hattonky.inventory.data.network.JsonDecoders;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class DeltaSyncTest {
+
+    private AppDatabase database;
+    private SharedPreferences prefs;
+    private MockWebServer server;
+    private final OkHttpClient client = new OkHttpClient();
+    private final ChangeLog changeLog = new ChangeLog();
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        prefs = context.getSharedPreferences("delta-sync-test", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+        server = new MockWebServer();
+        server.setDispatcher(changeLog);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        database.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void testPullsEveryPageAndSavesCursor() throws Exception {
+        // Given: Five new items and a category on the server
+        for (int i = 0; i < 5; i++) {
+            changeLog.item("i" + i, 1, "Item " + i, false);
+        }
+        changeLog.category("c0", 1, "Tools", false);
+
+        // When: Syncing with pages of two rows
+        int applied = newSync(2).sync();
+
+        // Then: Three pages are fetched, each continuing from the last cursor
+        assertEquals(6, applied);
+        assertEquals(3, server.getRequestCount());
+        assertNull(server.takeRequest().getRequestUrl().queryParameter("since"));
+        assertEquals("2", server.takeRequest().getRequestUrl().queryParameter("since"));
+        assertEquals("4", server.takeRequest().getRequestUrl().queryParameter("since"));
+        assertEquals("Item 4", database.itemDao().getByUid("i4").getName());
+        assertEquals("Tools", database.categoryDao().getByUid("c0").getName());
+        assertEquals("6", prefs.getString("cursor", null));
+
+        // And: The next sync only asks for what came after
+        changeLog.item("i1", 2, "Item 1 renamed", false);
+        assertEquals(1, newSync(2).sync());
+        assertEquals("6", server.takeRequest().getRequestUrl().queryParameter("since"));
+        assertEquals("Item 1 renamed", database.itemDao().getByUid("i1").getName());
+    }
+
+    @Test
+    public void testLateFeedBatchDoesNotMoveCursorBack() throws Exception {
+        // Given: A sync that reached the end of a twelve-change log
+        for (int i = 0; i < 12; i++) {
+            changeLog.item("i" + i, 1, "Item " + i, false);
+        }
+        DeltaSync deltaSync = newSync(DeltaSync.DEFAULT_PAGE_SIZE);
+        deltaSync.sync();
+        assertEquals("12", deltaSync.getCursor());
+
+        // When: A feed batch received before the sync finished is applied after it
+        deltaSync.applyBatch(Collections.singletonList(
+                new ChangePage(new ArrayList<>(), new ArrayList<>(), "9", false)));
+
+        // Then: The cursor stays where the sync left it
+        assertEquals("12", deltaSync.getCursor());
+        assertTrue(DeltaSync.compareCursors("10", "9") > 0);
+    }
+
+    @Test
+    public void testInterruptedSyncResumesFromLastPage() throws Exception {
+        // Given: Six items, and a connection that drops on the third page
+        for (int i = 0; i < 6; i++) {
+            changeLog.item("i" + i, 1, "Item " + i, false);
+        }
+        changeLog.failAt = "4";
+
+        // When: The first sync fails part way
+        try {
+            newSync(2).sync();
+            fail("Expected the third page to fail");
+        } catch (IOException expected) {
+            // The first two pages stay applied
+        }
+        assertEquals("4", prefs.getString("cursor", null));
+        assertEquals("Item 3", database.itemDao().getByUid("i3").getName());
+
+        // Then: The next sync starts at the failed page rather than from the beginning
+        changeLog.failAt = null;
+        int requestsBefore = server.getRequestCount();
+        assertEquals(2, newSync(2).sync());
+        assertEquals(requestsBefore + 1, server.getRequestCount());
+        assertEquals("Item 5", database.itemDao().getByUid("i5").getName());
+    }
+
+    @Test
+    public void testStaleVersionsAreIgnored() throws Exception {
+        // Given: A synced item
+        changeLog.item("a", 3, "Drill", false);
+        newSync(10).sync();
+
+        // When: The server sends an older copy of it
+        changeLog.item("a", 2, "Old drill", false);
+        DeltaSync sync = newSync(10);
+        int applied = sync.sync();
+
+        // Then: The local row is kept
+        assertEquals(0, applied);
+        assertEquals(1, sync.getChangesSkipped());
+        assertEquals("Drill", database.itemDao().getByUid("a").getName());
+    }
+
+    @Test
+    public void testItemEditedOnBothSidesIsMergedInTheSyncTransaction() throws Exception {
+        // Given: A synced item with ten in stock, then edited locally: new description, two taken out
+        changeLog.rows.add(new String[] {"item", "{\"uid\":\"a\",\"version\":1,\"name\":\"Drill\","
+                + "\"category\":\"Tools\",\"quantity\":10}"});
+        newSync(10).sync();
+        Item drill = database.itemDao().getByUid("a");
+        drill.setDescription("Cordless");
+        drill.setQuantity(drill.getQuantity() - 2);
+        database.itemDao().updateAndRecord(drill);
+
+        // When: The server has a new name and three more in stock
+        changeLog.rows.add(new String[] {"item", "{\"uid\":\"a\",\"version\":2,\"name\":\"Hammer drill\","
+                + "\"category\":\"Tools\",\"quantity\":13}"});
+        DeltaSync sync = newSync(10);
+        assertEquals(1, sync.sync());
+
+        // Then: Both edits are kept, based on the server's version, and the result is queued to send
+        Item merged = database.itemDao().getByUid("a");
+        assertEquals("Hammer drill", merged.getName());
+        assertEquals("Cordless", merged.getDescription());
+        assertEquals(11, merged.getQuantity());
+        assertEquals(2, merged.getVersion());
+        assertEquals(1, sync.getItemsMerged());
+        assertEquals(0, database.syncConflictDao().count());
+        List<OutboxEntry> pending = database.outboxDao().getBatch(10);
+        JSONObject sent = new JSONObject(pending.get(pending.size() - 1).getPayload());
+        assertFalse(sent.has("name"));  // The server already has it
+        assertEquals("Cordless", sent.getString("description"));
+        assertEquals(11, sent.getInt("quantity"));
+        assertEquals(2, sent.getLong("version"));
+    }
+
+    @Test
+    public void testConflictingEditKeepsLocalValueAndIsQueued() throws Exception {
+        // Given: A synced item renamed locally
+        changeLog.item("b", 3, "Saw", false);
+        newSync(10).sync();
+        Item saw = database.itemDao().getByUid("b");
+        saw.setName("Hand saw");
+        database.itemDao().updateAndRecord(saw);
+
+        // When: The server renamed it differently
+        changeLog.item("b", 4, "Jigsaw", false);
+        newSync(10).sync();
+
+        // Then: The local name wins, and the server's name waits in the conflict queue
+        assertEquals("Hand saw", database.itemDao().getByUid("b").getName());
+        List<SyncConflict> conflicts = database.syncConflictDao().getForEntity("b");
+        assertEquals(1, conflicts.size());
+        assertEquals("name", conflicts.get(0).getField());
+        assertEquals("Saw", conflicts.get(0).getBaseValue());
+        assertEquals("Jigsaw", conflicts.get(0).getRemoteValue());
+    }
+
+    @Test
+    public void testDeletesArriveAsTombstonesAndArePurged() throws Exception {
+        // Given: A synced item and category, and a local delete not yet sent
+        changeLog.item("a", 1, "Drill", false);
+        changeLog.item("b", 1, "Saw", false);
+        changeLog.category("c", 1, "Tools", false);
+        newSync(10).sync();
+        database.itemDao().deleteByIdAndRecord(database.itemDao().getByUid("b").getId());
+
+        // When: The server reports the drill and the category as deleted
+        changeLog.item("a", 2, "Drill", true);
+        changeLog.category("c", 2, "Tools", true);
+        newSync(10).sync();
+
+        // Then: Remote deletes are gone; the local delete stays as a tombstone until it is sent
+        assertNull(database.itemDao().getByUid("a"));
+        assertNull(database.categoryDao().getByUid("c"));
+        assertTrue(database.itemDao().getByUid("b").isDeleted());
+        database.outboxDao().deleteUpTo(Long.MAX_VALUE);
+        newSync(10).sync();
+        assertNull(database.itemDao().getByUid("b"));
+        assertFalse(prefs.getString("cursor", "").isEmpty());
+    }
+
+    // Fetches like ApiClient.getChanges, from the stand-in server
+    private DeltaSync newSync(int pageSize) {
+        return new DeltaSync(database, (cursor, limit) -> {
+            HttpUrl.Builder url = server.url("/api/sync/changes").newBuilder()
+                    .addQueryParameter("limit", String.valueOf(limit));
+            if (cursor != null) {
+                url.addQueryParameter("since", cursor);
+            }
+            try (Response response = client.newCall(new Request.Builder().url(url.build()).build()).execute()) {
+                if (!response.isSuccessful()) {
+                    throw new IOException("Unexpected code " + response);
+                }
+                return JsonDecoders.decode(response.body().charStream(), ChangePage.DECODER);
+            }
+        }, prefs, Runnable::run, pageSize);
+    }
+
+    // Stand-in change log; the cursor is the position in the log
+    private static class ChangeLog extends Dispatcher {
+        final List<String[]> rows = new ArrayList<>();  // {"item"|"category", json}
+        volatile String failAt;  // Drop the connection when asked for this cursor
+
+        synchronized void item(String uid, long version, String name, boolean deleted) {
+            rows.add(new String[] {"item", "{\"uid\":\"" + uid + "\",\"version\":" + version
+                    + ",\"updatedAt\":" + version + ",\"deleted\":" + deleted
+                    + ",\"name\":\"" + name + "\",\"category\":\"Tools\"}"});
+        }
+
+        synchronized void category(String uid, long version, String name, boolean deleted) {
+            rows.add(new String[] {"category", "{\"uid\":\"" + uid + "\",\"version\":" + version
+                    + ",\"updatedAt\":" + version + ",\"deleted\":" + deleted + ",\"name\":\"" + name + "\"}"});
+        }
+
+        @Override
+        public synchronized MockResponse dispatch(RecordedRequest request) {
+            HttpUrl url = request.getRequestUrl();
+            String since = url.queryParameter("since");
+            if (since != null && since.equals(failAt)) {
+                return new MockResponse().setResponseCode(503);
+            }
+            int from = since != null ? Integer.parseInt(since) : 0;
+            int to = Math.min(from + Integer.parseInt(url.queryParameter("limit")), rows.size());
+            List<String> items = new ArrayList<>();
+            List<String> categories = new ArrayList<>();
+            for (String[] row : rows.subList(from, to)) {
+                (row[0].equals("item") ? items : categories).add(row[1]);
+            }
+            return new MockResponse().setBody("{\"items\":[" + String.join(",", items)
+                    + "],\"categories\":[" + String.join(",", categories)
+                    + "],\"cursor\":\"" + to + "\",\"hasMore\":" + (to < rows.size()) + "}");
+        }
+    }
+}
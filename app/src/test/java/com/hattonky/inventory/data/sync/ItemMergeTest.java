@@ -0,0 +1,67 @@
+package com.hattonky.inventory.data.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.hattonky.inventory.data.model.Item;
+
+import org.junit.Test;
+
+public class ItemMergeTest {
+
+    @Test
+    public void testFieldsChangedOnOneSideAreCombined() {
+        Item base = item("Drill", "18V", "Tools", 5);
+        Item local = item("Drill", "18V, cordless", "Tools", 3);
+        Item remote = item("Drill", "18V", "Power tools", 8);
+        remote.setVersion(7);
+
+        ItemMerge merge = ItemMerge.merge(base, local, remote);
+
+        assertEquals("18V, cordless", merge.merged.getDescription());
+        assertEquals("Power tools", merge.merged.getCategory());
+        assertEquals(6, merge.merged.getQuantity());  // 5 - 2 + 3
+        assertEquals(7, merge.merged.getVersion());
+        assertEquals(42, merge.merged.getId());
+        assertTrue(merge.conflicts.isEmpty());
+    }
+
+    @Test
+    public void testWithoutBaseEveryDifferenceIsAConflict() {
+        Item local = item("Drill", "18V", "Tools", 3);
+        Item remote = item("Drill", "12V", "Tools", 8);
+
+        ItemMerge merge = ItemMerge.merge(null, local, remote);
+
+        // Then: Local values are kept and both differences are queued
+        assertEquals("18V", merge.merged.getDescription());
+        assertEquals(3, merge.merged.getQuantity());
+        assertEquals(2, merge.conflicts.size());
+        assertEquals("description", merge.conflicts.get(0).getField());
+        assertEquals("quantity", merge.conflicts.get(1).getField());
+    }
+
+    @Test
+    public void testEditOnServerDoesNotUndoLocalDelete() {
+        Item base = item("Drill", null, "Tools", 1);
+        Item local = item("Drill", null, "Tools", 1);
+        local.setDeleted(true);
+        Item remote = item("Hammer drill", null, "Tools", 1);
+
+        ItemMerge merge = ItemMerge.merge(base, local, remote);
+
+        assertTrue(merge.merged.isDeleted());
+        assertEquals(1, merge.conflicts.size());
+        assertEquals("deleted", merge.conflicts.get(0).getField());
+        assertFalse(Boolean.parseBoolean(merge.conflicts.get(0).getRemoteValue()));
+    }
+
+    private static Item item(String name, String description, String category, int quantity) {
+        Item item = new Item(name, description, category, null);
+        item.setId(42);
+        item.setUid("uid-42");
+        item.setQuantity(quantity);
+        return item;
+    }
+}
@@ -0,0 +1,355 @@
+package com.hattonky.inventory.data.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.hattonky.inventory.data.dao.CategoryDao;
+import com.hattonky.inventory.data.dao.ItemDao;
+import com.hattonky.inventory.data.databases.AppDatabase;
+import com.hattonky.inventory.data.model.Category;
+import com.hattonky.inventory.data.model.Item;
+import com.hattonky.inventory.data.model.OutboxEntry;
+import com.hattonky.inventory.data.network.GzipRequestInterceptor;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class OutboxDispatcherTest {
+
+    private static final String DATABASE_NAME = "outbox-test.db";
+
+    private Context context;
+    private AppDatabase database;
+    private MockWebServer server;
+    private final OkHttpClient client = new OkHttpClient();
+
+    @Before
+    public void setUp() throws IOException {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+        database = openDatabase();
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        database.close();
+        context.deleteDatabase(DATABASE_NAME);
+        server.shutdown();
+    }
+
+    @Test
+    public void testChangesAreRecordedWithTheRowChange() {
+        // Given: An item is added, edited and another is deleted, plus a new category
+        ItemDao itemDao = database.itemDao();
+        Item drill = new Item("Drill", "Cordless", "Tools", null);
+        int drillId = (int) itemDao.insertAndRecord(drill);
+        drill.setDescription("Cordless, 18V");
+        itemDao.updateAndRecord(drill);
+        int sawId = (int) itemDao.insertAndRecord(new Item("Saw", null, "Tools", null));
+        itemDao.deleteByIdAndRecord(sawId);
+        database.categoryDao().insertAndRecord(new Category("Garden"));
+
+        // Then: Every change has its entry, in order, with the row's state at the time
+        List<OutboxEntry> entries = database.outboxDao().getBatch(10);
+        assertEquals(5, entries.size());
+        assertEquals(drillId, entries.get(0).getEntityId());
+        assertEquals(OutboxEntry.OP_UPSERT, entries.get(1).getOperation());
+        assertEquals(OutboxEntry.OP_DELETE, entries.get(3).getOperation());
+        assertEquals(OutboxEntry.TYPE_CATEGORY, entries.get(4).getEntityType());
+        for (OutboxEntry entry : entries) {
+            assertNotNull(entry.getIdempotencyKey());
+        }
+    }
+
+    @Test
+    public void testBatchesAreCompactedAndSentInOrder() throws Exception {
+        // Given: Three edits to one item and one change each to two other rows
+        ItemDao itemDao = database.itemDao();
+        Item drill = new Item("Drill", "v1", "Tools", null);
+        itemDao.insertAndRecord(drill);
+        drill.setDescription("v2");
+        itemDao.updateAndRecord(drill);
+        itemDao.insertAndRecord(new Item("Saw", null, "Tools", null));
+        drill.setDescription("v3");
+        itemDao.updateAndRecord(drill);
+        database.categoryDao().insertAndRecord(new Category("Garden"));
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+
+        // When: Dispatch with batches of three entries
+        OutboxDispatcher dispatcher = newDispatcher(3);
+        int sent = dispatcher.dispatchPending();
+
+        // Then: The first batch collapses the drill's first two changes to its state at the time
+        assertEquals(4, sent);
+        assertEquals(2, dispatcher.getBatchesSent());
+        assertEquals(1, dispatcher.getChangesCompacted());
+        JSONArray first = changes(server.takeRequest());
+        assertEquals(2, first.length());
+        assertEquals("v2", first.getJSONObject(0).getJSONObject("data").getString("description"));
+        assertEquals("Saw", first.getJSONObject(1).getJSONObject("data").getString("name"));
+        JSONArray second = changes(server.takeRequest());
+        assertEquals("v3", second.getJSONObject(0).getJSONObject("data").getString("description"));
+        assertEquals("category", second.getJSONObject(1).getString("type"));
+        assertEquals(0, database.outboxDao().count());
+    }
+
+    @Test
+    public void testFailedBatchIsResentWithSameKey() throws Exception {
+        // Given: One pending change and a server that fails the first attempt
+        database.categoryDao().insertAndRecord(new Category("Garden"));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse());
+        OutboxDispatcher dispatcher = newDispatcher(10);
+
+        // When: The first dispatch fails
+        try {
+            dispatcher.dispatchPending();
+            fail("Expected the batch to be rejected");
+        } catch (IOException expected) {
+            // The entry stays pending
+        }
+        assertEquals(1, database.outboxDao().count());
+
+        // Then: The retry carries the same batch and the same idempotency key
+        dispatcher.dispatchPending();
+        RecordedRequest failed = server.takeRequest();
+        RecordedRequest accepted = server.takeRequest();
+        assertEquals(failed.getHeader("Idempotency-Key"), accepted.getHeader("Idempotency-Key"));
+        assertEquals(failed.getBody().readUtf8(), accepted.getBody().readUtf8());
+        assertEquals(0, database.outboxDao().count());
+    }
+
+    @Test
+    public void testRejectedChangeDoesNotBlockTheRest() throws Exception {
+        // Given: Two categories, the second of which the server refuses
+        database.categoryDao().insertAndRecord(new Category("Garden"));
+        database.categoryDao().insertAndRecord(new Category("Rejected"));
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                boolean bad = request.getBody().clone().readUtf8().contains("Rejected");
+                return new MockResponse().setResponseCode(bad ? 422 : 200);
+            }
+        });
+        OutboxDispatcher dispatcher = newDispatcher(10);
+
+        // When: The batch is sent
+        int sent = dispatcher.dispatchPending();
+
+        // Then: The batch is split, the good change is sent and the refused one is set aside
+        assertEquals(1, sent);
+        assertEquals(1, dispatcher.getChangesRejected());
+        assertEquals(3, server.getRequestCount());  // The batch, then each change alone
+        assertEquals(0, database.outboxDao().count());
+        List<OutboxEntry> rejected = database.outboxDao().getRejected();
+        assertEquals(1, rejected.size());
+        assertTrue(rejected.get(0).getPayload().contains("Rejected"));
+        assertTrue(rejected.get(0).getRejection().contains("422"));
+
+        // And: A later run doesn't send it again
+        assertEquals(0, dispatcher.dispatchPending());
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void testUnreadableEntryIsRejectedWithoutSending() throws Exception {
+        // Given: An entry that can't be turned into JSON, ahead of a good one
+        database.outboxDao().insert(new OutboxEntry(OutboxEntry.TYPE_ITEM, 7, OutboxEntry.OP_UPSERT,
+                "{not json", UUID.randomUUID().toString(), 1));
+        database.categoryDao().insertAndRecord(new Category("Garden"));
+        server.enqueue(new MockResponse());
+
+        // When: The outbox is sent
+        int sent = newDispatcher(10).dispatchPending();
+
+        // Then: The good change goes through and the broken one is kept aside
+        assertEquals(1, sent);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, changes(server.takeRequest()).length());
+        assertEquals(0, database.outboxDao().count());
+        assertEquals(7, database.outboxDao().getRejected().get(0).getEntityId());
+    }
+
+    @Test
+    public void testPendingChangesSurviveRestart() throws Exception {
+        // Given: A change recorded while offline, then the app is killed
+        database.itemDao().insertAndRecord(new Item("Drill", null, "Tools", null));
+        database.close();
+
+        // When: The app starts again with a new database connection and dispatcher
+        database = openDatabase();
+        server.enqueue(new MockResponse());
+        int sent = newDispatcher(10).dispatchPending();
+
+        // Then: The change made before the restart is sent
+        assertEquals(1, sent);
+        assertEquals("Drill", changes(server.takeRequest()).getJSONObject(0).getJSONObject("data").getString("name"));
+    }
+
+    @Test
+    public void testCompactKeepsLastChangePerRow() {
+        OutboxEntry insert = new OutboxEntry("item", 1, "upsert", "{}", "a", 0);
+        OutboxEntry other = new OutboxEntry("item", 2, "upsert", "{}", "b", 0);
+        OutboxEntry delete = new OutboxEntry("item", 1, "delete", "{}", "c", 0);
+
+        List<OutboxEntry> compacted = OutboxDispatcher.compact(Arrays.asList(insert, other, delete));
+
+        assertEquals(Arrays.asList(other, delete), compacted);
+        assertEquals(OutboxDispatcher.batchKey(compacted), OutboxDispatcher.batchKey(Arrays.asList(other, delete)));
+    }
+
+    @Test
+    public void testEditsCarryOnlyChangedFieldsAndAreCombined() throws Exception {
+        // Given: An item that was already sent, then edited twice
+        ItemDao itemDao = database.itemDao();
+        Item drill = new Item("Drill", "Cordless", "Tools", "drill.jpg");
+        itemDao.insertAndRecord(drill);
+        database.outboxDao().deleteUpTo(Long.MAX_VALUE);
+        drill.setQuantity(4);
+        itemDao.updateAndRecord(drill);
+        drill.setDescription("Cordless, 18V");
+        itemDao.updateAndRecord(drill);
+        server.enqueue(new MockResponse());
+
+        // When: The edits are sent
+        newDispatcher(10).dispatchPending();
+
+        // Then: One change with both edited fields and the row's identity, nothing else
+        JSONArray changes = changes(server.takeRequest());
+        assertEquals(1, changes.length());
+        JSONObject data = changes.getJSONObject(0).getJSONObject("data");
+        assertEquals(4, data.getInt("quantity"));
+        assertEquals("Cordless, 18V", data.getString("description"));
+        assertEquals(drill.getUid(), data.getString("uid"));
+        assertFalse(data.has("name"));
+        assertFalse(data.has("imagePath"));
+    }
+
+    // Benchmark: bytes and time to upload 5k item edits over a throttled link, whole rows vs
+    // field deltas, each plain and gzipped. Opt-in: run with -Pbenchmark
+    @Test
+    public void benchmarkBytesOnTheWire() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        List<OutboxEntry> full = new ArrayList<>();
+        List<OutboxEntry> deltas = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Item before = new Item("Item " + i, "Description of item " + i + ", bought for the workshop",
+                    "Category " + i % 50, "/data/user/0/com.hattonky.inventory/files/images/IMG_" + i + ".webp");
+            before.setId(i + 1);
+            before.setUid(UUID.randomUUID().toString());
+            before.setVersion(3);
+            before.setQuantity(10);
+            Item after = new Item(before.getName(), before.getDescription(), before.getCategory(), before.getImagePath());
+            after.setId(before.getId());
+            after.setUid(before.getUid());
+            after.setVersion(3);
+            after.setQuantity(9);  // A typical stock-take edit
+            full.add(OutboxEntry.forItem(OutboxEntry.OP_UPSERT, after));
+            deltas.add(OutboxEntry.forItemChange(before, after));
+        }
+        String fullJson = OutboxDispatcher.toJson(full);
+        String deltaJson = OutboxDispatcher.toJson(deltas);
+
+        // A 4 Mbit/s link; the server accepts gzip request bodies
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse peek() {
+                return new MockResponse().throttleBody(64 * 1024, 125, TimeUnit.MILLISECONDS);  // Request bodies
+            }
+
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setHeader("Accept-Encoding", "gzip");
+            }
+        });
+        OkHttpClient gzipClient = client.newBuilder().addInterceptor(new GzipRequestInterceptor()).build();
+        upload(gzipClient, "{}");  // Learn that the server accepts gzip
+
+        long[] fullPlain = upload(client, fullJson);
+        long[] fullGzip = upload(gzipClient, fullJson);
+        long[] deltaPlain = upload(client, deltaJson);
+        long[] deltaGzip = upload(gzipClient, deltaJson);
+
+        // Each step saves bytes, and on a slow link bytes are time
+        assertTrue(fullGzip[0] < fullPlain[0]);
+        assertTrue(deltaPlain[0] < fullPlain[0]);
+        assertTrue(deltaGzip[0] < deltaPlain[0]);
+        assertTrue(deltaGzip[1] < fullPlain[1]);
+    }
+
+    // Returns {bytes received by the server, elapsed nanos}
+    private long[] upload(OkHttpClient uploadClient, String body) throws Exception {
+        long start = System.nanoTime();
+        Request request = new Request.Builder()
+                .url(server.url("/api/sync/changes"))
+                .post(RequestBody.create(body, MediaType.get("application/json")))
+                .build();
+        try (Response response = uploadClient.newCall(request).execute()) {
+            assertEquals(200, response.code());
+        }
+        long elapsed = System.nanoTime() - start;
+        return new long[]{server.takeRequest().getBodySize(), elapsed};
+    }
+
+    private AppDatabase openDatabase() {
+        return Room.databaseBuilder(context, AppDatabase.class, DATABASE_NAME)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    // Sends like ApiClient.sendChanges, to the stand-in server
+    private OutboxDispatcher newDispatcher(int batchSize) {
+        return new OutboxDispatcher(database.outboxDao(), (key, body) -> {
+            Request request = new Request.Builder()
+                    .url(server.url("/api/sync/changes"))
+                    .post(RequestBody.create(body, MediaType.get("application/json")))
+                    .header("Idempotency-Key", key)
+                    .build();
+            try (Response response = client.newCall(request).execute()) {
+                if (OutboxDispatcher.isRejection(response.code())) {
+                    throw new OutboxDispatcher.RejectedException("Changes rejected: " + response);
+                }
+                if (!response.isSuccessful()) {
+                    throw new IOException("Unexpected code " + response);
+                }
+            }
+        }, Executors.newSingleThreadScheduledExecutor(), batchSize, 10, 100);
+    }
+
+    private static JSONArray changes(RecordedRequest request) throws Exception {
+        return new JSONObject(request.getBody().readUtf8()).getJSONArray("changes");
+    }
+}
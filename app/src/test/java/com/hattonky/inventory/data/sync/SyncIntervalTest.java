@@ -0,0 +1,65 @@
+package com.hattonky.inventory.data.sync;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SyncIntervalTest {
+
+    private static final long MINUTE = 60 * 1000;
+
+    private SharedPreferences prefs;
+    private SyncInterval interval;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        prefs = context.getSharedPreferences("sync-interval-test", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+        interval = new SyncInterval(prefs, 15 * MINUTE, 60 * MINUTE, 360 * MINUTE);
+    }
+
+    @Test
+    public void testTightensWhileChangesArrive() {
+        // When: Runs keep bringing changes
+        assertEquals(30 * MINUTE, interval.record(12));
+        assertEquals(15 * MINUTE, interval.record(1));
+
+        // Then: The interval stops at the minimum
+        assertEquals(15 * MINUTE, interval.record(40));
+        assertEquals(15 * MINUTE, interval.getIntervalMs());
+    }
+
+    @Test
+    public void testBacksOffWhenNothingChanges() {
+        // When: Runs find nothing
+        assertEquals(90 * MINUTE, interval.record(0));
+        assertEquals(135 * MINUTE, interval.record(0));
+        for (int i = 0; i < 10; i++) {
+            interval.record(0);
+        }
+
+        // Then: The interval grows up to the maximum
+        assertEquals(360 * MINUTE, interval.getIntervalMs());
+
+        // And: One run with changes brings it back down quickly
+        assertEquals(180 * MINUTE, interval.record(3));
+    }
+
+    @Test
+    public void testSurvivesRestart() {
+        interval.record(0);
+
+        // When: The process is restarted
+        SyncInterval restarted = new SyncInterval(prefs, 15 * MINUTE, 60 * MINUTE, 360 * MINUTE);
+
+        // Then: The adapted interval is kept
+        assertEquals(90 * MINUTE, restarted.getIntervalMs());
+    }
+}
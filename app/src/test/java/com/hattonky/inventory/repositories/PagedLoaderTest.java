@@ -0,0 +1,254 @@
+package com.hattonky.inventory.repositories;
+
+import com.hattonky.inventory.data.ApiCall;
+import com.hattonky.inventory.data.ApiClient;
+import com.hattonky.inventory.data.model.User;
+import com.hattonky.inventory.data.network.JsonDecoders;
+import com.hattonky.inventory.data.network.Page;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class PagedLoaderTest {
+
+    private static final int USER_COUNT = 120;
+
+    private MockWebServer server;
+    private final OkHttpClient client = new OkHttpClient();
+    private final BlockingQueue<Object> events = new LinkedBlockingQueue<>();  // Pages and errors
+    private volatile long firstPageDelayMs;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new UserDirectory());
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    // Pages are requested one at a time with the previous cursor until the last page
+    @Test
+    public void testLoadsAllPagesInOrder() throws Exception {
+        PagedLoader<User> loader = new PagedLoader<>(50, 10, ApiCall.DIRECT, listener());
+
+        // When: The loader is started and asked for more after each page
+        loader.reset(source(null, null));
+        List<User> users = new ArrayList<>(nextPage().items);
+        while (loader.loadNextPage()) {
+            users.addAll(nextPage().items);
+        }
+
+        // Then: All users arrive in order in three requests, and nothing more is requested
+        assertEquals(USER_COUNT, users.size());
+        assertEquals("u0", users.get(0).getId());
+        assertEquals("u119", users.get(USER_COUNT - 1).getId());
+        assertEquals(3, server.getRequestCount());
+        assertEquals(USER_COUNT, loader.getLoadedCount());
+        assertEquals("50", server.takeRequest().getRequestUrl().queryParameter("limit"));
+        assertEquals("50", server.takeRequest().getRequestUrl().queryParameter("cursor"));
+        assertFalse(loader.loadNextPage());
+    }
+
+    // Scrolling only fetches near the end, and never while a page is in flight
+    @Test
+    public void testPrefetchesNearEndOnly() throws Exception {
+        PagedLoader<User> loader = new PagedLoader<>(50, 10, ApiCall.DIRECT, listener());
+        loader.reset(source(null, null));
+        nextPage();
+
+        loader.onScrolled(20, 50);  // 29 rows below: too early
+        assertFalse(loader.isLoading());
+
+        loader.onScrolled(40, 50);  // 9 rows below: prefetch
+        loader.onScrolled(41, 50);  // Same page already in flight
+        assertEquals(50, nextPage().items.size());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    // Filters go to the server, and a reset drops the page still loading for the old filter
+    @Test
+    public void testResetDropsStaleResponses() throws Exception {
+        PagedLoader<User> loader = new PagedLoader<>(50, 10, ApiCall.DIRECT, listener());
+        firstPageDelayMs = 500;
+        loader.reset(source(null, null));  // Slow, unfiltered
+
+        loader.reset(source("admin", "1"));  // Filter changed before the first page arrived
+
+        Page<User> page = nextPage();
+        for (User user : page.items) {
+            assertEquals("admin", user.getRole());
+            assertTrue(user.getUsername().contains("1"));
+        }
+        assertFalse(page.hasMore());
+        Thread.sleep(700);  // Let the slow response arrive
+        assertTrue(events.isEmpty());
+    }
+
+    // Cancelling drops the page in flight and stops further loads
+    @Test
+    public void testCancelDropsPageInFlight() throws Exception {
+        PagedLoader<User> loader = new PagedLoader<>(50, 10, ApiCall.DIRECT, listener());
+        firstPageDelayMs = 500;
+        loader.reset(source(null, null));
+
+        loader.cancel();
+
+        assertFalse(loader.isLoading());
+        assertFalse(loader.loadNextPage());
+        Thread.sleep(700);
+        assertTrue(events.isEmpty());
+    }
+
+    // A result already posted to the delivery thread is dropped if a reset got there first
+    @Test
+    public void testResetDropsResultWaitingForDelivery() throws Exception {
+        BlockingQueue<Runnable> posted = new LinkedBlockingQueue<>();
+        PagedLoader<User> loader = new PagedLoader<>(50, 10, posted::add, listener());
+        loader.reset(source(null, null));
+        Runnable stale = posted.poll(5, TimeUnit.SECONDS);
+        assertNotNull(stale);
+
+        // When: The filter changes before the first page is delivered
+        loader.reset(source("admin", null));
+        stale.run();
+
+        // Then: Only the new filter's page reaches the listener
+        assertTrue(events.isEmpty());
+        Runnable fresh = posted.poll(5, TimeUnit.SECONDS);
+        assertNotNull(fresh);
+        fresh.run();
+        for (User user : nextPage().items) {
+            assertEquals("admin", user.getRole());
+        }
+    }
+
+    // A failed page pauses prefetching until retried
+    @Test
+    public void testFailurePausesUntilRetry() throws Exception {
+        PagedLoader<User> loader = new PagedLoader<>(50, 10, ApiCall.DIRECT, listener());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(500);
+            }
+        });
+        loader.reset(source(null, null));
+        assertTrue(events.poll(5, TimeUnit.SECONDS) instanceof IOException);
+
+        loader.onScrolled(0, 0);
+        assertFalse(loader.isLoading());
+
+        server.setDispatcher(new UserDirectory());
+        loader.retry();
+        assertEquals(50, nextPage().items.size());
+    }
+
+    private PagedLoader.Listener<User> listener() {
+        return new PagedLoader.Listener<User>() {
+            @Override
+            public void onPage(List<User> items, boolean first, boolean hasMore) {
+                events.add(new Page<>(items, hasMore ? "more" : null));
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                events.add(e);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private Page<User> nextPage() throws InterruptedException {
+        Object event = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        return (Page<User>) event;
+    }
+
+    // Same request shape as ApiClient.getUsersPage, against the stand-in server
+    private PagedLoader.PageSource<User> source(String role, String query) {
+        return (cursor, limit, callback) -> {
+            HttpUrl.Builder url = server.url("/api/users").newBuilder()
+                    .addQueryParameter("limit", String.valueOf(limit));
+            if (cursor != null) url.addQueryParameter("cursor", cursor);
+            if (role != null) url.addQueryParameter("role", role);
+            if (query != null) url.addQueryParameter("q", query);
+            ApiCall handle = new ApiCall(ApiCall.DIRECT);
+            ApiClient.TypedCallback<Page<User>> delivered = handle.deliver(callback);
+            client.newCall(new Request.Builder().url(url.build()).build()).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    delivered.onFailure(e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try (Response r = response) {
+                        if (!r.isSuccessful()) {
+                            throw new IOException("Unexpected code " + r);
+                        }
+                        delivered.onSuccess(JsonDecoders.decode(r.body().charStream(), JsonDecoders.USER_PAGE));
+                    } catch (IOException e) {
+                        delivered.onFailure(e);
+                    }
+                }
+            });
+            return handle;
+        };
+    }
+
+    // Stand-in directory of USER_COUNT users; every fifth is an admin. The cursor is an offset.
+    private class UserDirectory extends Dispatcher {
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            HttpUrl url = request.getRequestUrl();
+            String role = url.queryParameter("role");
+            String query = url.queryParameter("q");
+            List<String> matches = new ArrayList<>();
+            for (int i = 0; i < USER_COUNT; i++) {
+                String userRole = i % 5 == 0 ? "admin" : "user";
+                if ((role == null || role.equals(userRole)) && (query == null || ("user" + i).contains(query))) {
+                    matches.add("{\"id\":\"u" + i + "\",\"username\":\"user" + i + "\",\"role\":\"" + userRole + "\"}");
+                }
+            }
+            int limit = Integer.parseInt(url.queryParameter("limit"));
+            String cursor = url.queryParameter("cursor");
+            int from = cursor != null ? Integer.parseInt(cursor) : 0;
+            int to = Math.min(from + limit, matches.size());
+            String next = to < matches.size() ? "\"" + to + "\"" : "null";
+            MockResponse response = new MockResponse().setBody(
+                    "{\"users\":[" + String.join(",", matches.subList(from, to)) + "],\"nextCursor\":" + next + "}");
+            if (role == null && cursor == null && firstPageDelayMs > 0) {
+                response.setBodyDelay(firstPageDelayMs, TimeUnit.MILLISECONDS);
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.hattonky.inventory.repositories;
+
+import android.content.SharedPreferences;
+
+import com.hattonky.inventory.data.ApiCall;
+import com.hattonky.inventory.data.ApiClient;
+import com.hattonky.inventory.data.dao.UserDao;
+import com.hattonky.inventory.data.model.User;
+import com.hattonky.inventory.data.network.Page;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class UserRepositoryTest {
+
+    private UserRepository userRepository;
+
+    @Mock
+    private UserDao userDao;  // Mocked DAO
+
+    @Mock
+    private ExecutorService executorService;  // Runs tasks inline
+
+    @Mock
+    private SharedPreferences prefs;
+
+    @Mock
+    private SharedPreferences.Editor editor;
+
+    @Mock
+    private UserRepository.UserApi userApi;
+
+    @Mock
+    private ApiClient.ApiCallback callback;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(executorService).execute(any(Runnable.class));
+        when(prefs.edit()).thenReturn(editor);
+        when(editor.putLong(anyString(), anyLong())).thenReturn(editor);
+        when(editor.remove(anyString())).thenReturn(editor);
+
+        userRepository = new UserRepository(userDao, executorService, prefs, userApi, 60_000);
+    }
+
+    // The last page of an unfiltered fetch drops users the server no longer has
+    @Test
+    public void testFinalUnfilteredPageSweepsAndMarksFresh() {
+        // Given: The server returns a single page
+        doAnswer(invocation -> {
+            ApiClient.TypedCallback<Page<User>> cb = invocation.getArgument(4);
+            cb.onSuccess(new Page<>(Arrays.asList(new User("1", "ann", null, "user", 0)), null));
+            return null;
+        }).when(userApi).getPage(isNull(), eq(50), isNull(), isNull(), any());
+        @SuppressWarnings("unchecked")
+        ApiClient.TypedCallback<Page<User>> pageCallback = mock(ApiClient.TypedCallback.class);
+
+        // When: Load the first page
+        userRepository.pageSource(null, null).load(null, 50, pageCallback);
+
+        // Then: The page is cached, older rows are swept, and the fetch time is saved
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<User>> stored = ArgumentCaptor.forClass(List.class);
+        verify(userDao).insertAll(stored.capture());
+        assertEquals("ann", stored.getValue().get(0).getUsername());
+        assertTrue(stored.getValue().get(0).getFetchedAt() > 0);
+        verify(userDao).deleteFetchedBefore(anyLong());
+        verify(editor).putLong(eq("synced_at"), anyLong());
+        verify(pageCallback).onSuccess(any());
+    }
+
+    // A filtered fetch only sees part of the directory, so nothing is swept
+    @Test
+    public void testFilteredPageDoesNotSweep() {
+        doAnswer(invocation -> {
+            ApiClient.TypedCallback<Page<User>> cb = invocation.getArgument(4);
+            cb.onSuccess(new Page<>(Arrays.asList(new User("1", "ann", null, "admin", 0)), null));
+            return null;
+        }).when(userApi).getPage(any(), anyInt(), any(), any(), any());
+        @SuppressWarnings("unchecked")
+        ApiClient.TypedCallback<Page<User>> pageCallback = mock(ApiClient.TypedCallback.class);
+
+        userRepository.pageSource("admin", null).load(null, 50, pageCallback);
+
+        verify(userDao).insertAll(anyList());
+        verify(userDao, never()).deleteFetchedBefore(anyLong());
+    }
+
+    // The cache is fresh only within the TTL of the last complete fetch
+    @Test
+    public void testIsFresh() {
+        when(prefs.getLong("synced_at", 0)).thenReturn(System.currentTimeMillis() - 1_000);
+        assertTrue(userRepository.isFresh());
+
+        when(prefs.getLong("synced_at", 0)).thenReturn(System.currentTimeMillis() - 120_000);
+        assertFalse(userRepository.isFresh());
+    }
+
+    // A rejected role change is rolled back in the cache
+    @Test
+    public void testUpdateRoleRollsBackOnFailure() {
+        // Given: A cached user and a server that refuses the change
+        when(userDao.getById("1")).thenReturn(new User("1", "ann", null, "user", 0),
+                new User("1", "ann", null, "admin", 0));
+        IOException error = new IOException("Forbidden");
+        doAnswer(invocation -> {
+            ((ApiClient.ApiCallback) invocation.getArgument(3)).onFailure(error);
+            return null;
+        }).when(userApi).updateRole(eq("1"), eq("admin"), any(), any());
+
+        // When: Change the role
+        userRepository.updateRole("1", "admin", ApiCall.DIRECT, callback);
+
+        // Then: The cache was changed first, then restored, and the caller sees the error
+        verify(userDao).updateRole("1", "admin");
+        verify(userDao).updateRole("1", "user");
+        verify(editor).remove("synced_at");  // Not fresh until the next fetch confirms the edit
+        verify(callback).onFailure(error);
+    }
+
+    // An accepted delete stays applied
+    @Test
+    public void testDeleteKeepsRowRemovedOnSuccess() {
+        when(userDao.getById("1")).thenReturn(new User("1", "ann", null, "user", 0));
+        doAnswer(invocation -> {
+            ((ApiClient.ApiCallback) invocation.getArgument(2)).onSuccess("");
+            return null;
+        }).when(userApi).delete(eq("1"), any(), any());
+
+        userRepository.delete("1", ApiCall.DIRECT, callback);
+
+        verify(userDao).deleteById("1");
+        verify(userDao, never()).insert(any(User.class));
+        verify(callback).onSuccess("");
+    }
+
+    // A rejected delete puts the row back
+    @Test
+    public void testDeleteRestoresRowOnFailure() {
+        User cached = new User("1", "ann", null, "user", 0);
+        when(userDao.getById("1")).thenReturn(cached);
+        doAnswer(invocation -> {
+            ((ApiClient.ApiCallback) invocation.getArgument(2)).onFailure(new IOException("Not found"));
+            return null;
+        }).when(userApi).delete(eq("1"), any(), any());
+
+        userRepository.delete("1", ApiCall.DIRECT, callback);
+
+        verify(userDao).deleteById("1");
+        verify(userDao).insert(cached);
+        verify(callback).onFailure(any(IOException.class));
+    }
+}